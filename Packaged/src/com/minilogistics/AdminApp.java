@@ -1,11 +1,23 @@
 package com.minilogistics.main;
 
+import com.minilogistics.api.ApiClient;
+import com.minilogistics.controller.Notifications;
+import com.minilogistics.db.AuditArchive;
+import com.minilogistics.db.ChangeLog;
+import com.minilogistics.db.Metrics;
 import com.minilogistics.view.AdminViews;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 public class AdminApp {
     public static void main(String[] args) {
+        Metrics.startDumps(); // no-op unless minilogistics.metrics.dumpFile is set
+        // Driver apps subscribe here for assignment pushes; in API client mode the API server hosts it
+        if (!ApiClient.isEnabled()) {
+            Notifications.startServer();
+            AuditArchive.startMaintenance(); // runs only while this process holds the maintenance lock
+            ChangeLog.startPruning();
+        }
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -1,21 +1,19 @@
 package com.minilogistics.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class AdminDBConfig {
-    static final String URL = "jdbc:mysql://localhost:3306/logistics_db";
-    static final String USER = "root";
-    static final String PASS = "";
-    
+    static final String URL = System.getProperty("minilogistics.db.url", "jdbc:mysql://localhost:3306/logistics_db?rewriteBatchedStatements=true&useServerPrepStmts=true&cacheCallableStmts=true");
+    static final String USER = System.getProperty("minilogistics.db.user", "root");
+    static final String PASS = System.getProperty("minilogistics.db.pass", "");
+
+    // Connections come from the shared pool; close() hands them back instead of dropping the socket
     public static Connection getConnection() throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-            throw new SQLException("MySQL Driver not found in classpath");
-        }
-        return DriverManager.getConnection(URL, USER, PASS);
+        return pool().getConnection();
+    }
+
+    public static ConnectionPool pool() {
+        return ConnectionPool.shared(URL, USER, PASS);
     }
 }
\ No newline at end of file
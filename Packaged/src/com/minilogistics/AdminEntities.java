@@ -1,6 +1,8 @@
 package com.minilogistics.model;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 // Contains all Admin-specific data models (renamed to avoid conflicts)
 public class AdminEntities {
@@ -39,8 +41,43 @@ public class AdminEntities {
         }
     }
 
+    // One row of a bulk assignment request. seenDriverId is the driver the admin saw on the delivery (0 for
+    // unassigned); if another admin changed it in the meantime the request is refused. -1 skips that check.
+    public static class AdminAssignment {
+        public int deliveryId, driverId, hours, seenDriverId = -1;
+        public String priority;
+        public AdminAssignment(int deliveryId, int driverId, String priority, int hours) {
+            this.deliveryId = deliveryId; this.driverId = driverId; this.priority = priority; this.hours = hours;
+        }
+        public AdminAssignment(int deliveryId, int driverId, String priority, int hours, int seenDriverId) {
+            this(deliveryId, driverId, priority, hours);
+            this.seenDriverId = seenDriverId;
+        }
+    }
+
     public static class AdminAuditLog {
+        public int id;
         public String time, cat, det;
         public AdminAuditLog(String t, String c, String d) { time=t; cat=c; det=d; }
+        public AdminAuditLog(int id, String t, String c, String d) { this(t, c, d); this.id = id; }
+    }
+
+    // One page of audit log search results, newest first, with the total number of matches
+    public static class AdminLogResults {
+        public int total;
+        public List<AdminAuditLog> rows = new ArrayList<>();
+        public long micros;
+        public String error; // bad query; nothing was searched
+    }
+
+    // Rows inserted/updated and IDs deleted since a panel's last poll, plus the new high-water mark
+    public static class AdminDelta<T> {
+        public List<T> rows = new ArrayList<>();
+        public List<Integer> deleted = new ArrayList<>();
+        public long mark;
+        public boolean expired; // the change log no longer reaches back to the panel's mark: reload everything
+
+        public AdminDelta(long mark) { this.mark = mark; }
+        public boolean isEmpty() { return rows.isEmpty() && deleted.isEmpty(); }
     }
 }
\ No newline at end of file
@@ -1,60 +1,57 @@
 package com.minilogistics.controller;
 
 import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.AuditIndex;
+import com.minilogistics.db.ChangeLog;
+import com.minilogistics.db.JdbcStore;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.QueryCache;
+import com.minilogistics.db.Repositories;
 import com.minilogistics.model.AdminEntities.*;
 
-import java.sql.*;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
 
 public class AdminPortalController {
-    
-    // Private helper method to log actions to the database
-    private void log(Connection c, String cat, String det) throws SQLException {
-        // Use CURRENT_TIMESTAMP in SQL for precise server time recording
-        String sql = "INSERT INTO audit_logs (category, details, timestamp) VALUES (?, ?, CURRENT_TIMESTAMP)";
-        PreparedStatement ps = c.prepareStatement(sql);
-        ps.setString(1, cat); 
-        ps.setString(2, det); 
-        ps.executeUpdate();
-    }
-    
+    // Storage behind every method here; JDBC unless minilogistics.store says otherwise (see Repositories)
+    private final Repositories.Store store;
+
+    public AdminPortalController() { this(Repositories.shared()); }
+    public AdminPortalController(Repositories.Store store) { this.store = store; }
+
     public List<AdminDriverEntity> getDrivers() {
-        List<AdminDriverEntity> list = new ArrayList<>();
-        // Note: We calculate active_jobs dynamically now as it was removed from drivers table
-        String sql = "SELECT u.user_id, u.name, d.status, d.rating, " +
-                     "(SELECT COUNT(*) FROM deliveries del WHERE del.assigned_driver_id = d.user_id AND del.status != 'COMPLETED' AND del.status != 'CANCELLED') as active_jobs, " +
-                     "v.model, v.plate_no, v.capacity " +
-                     "FROM drivers d JOIN users u ON d.user_id = u.user_id " +
-                     "JOIN vehicles v ON d.vehicle_id = v.vehicle_id";
-
-        try (Connection conn = AdminDBConfig.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            while(rs.next()) {
-                AdminVehicle v = new AdminVehicle(rs.getString("model"), rs.getString("plate_no"), rs.getDouble("capacity"));
-                list.add(new AdminDriverEntity(rs.getInt("user_id"), rs.getString("name"), rs.getString("status"), rs.getDouble("rating"), rs.getInt("active_jobs"), v));
-            }
-        } catch (SQLException e) { e.printStackTrace(); }
-        return list;
+        try (Metrics.Span m = Metrics.op("admin.getDrivers")) {
+            return m.rows(store.drivers().listAll());
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
     }
 
     public boolean updateDriverStatus(int id, String status, String reason) {
-        try (Connection conn = AdminDBConfig.getConnection()) {
-            String checkSql = "SELECT COUNT(*) FROM deliveries WHERE assigned_driver_id=? AND status != 'COMPLETED' AND status != 'CANCELLED'";
-            PreparedStatement check = conn.prepareStatement(checkSql);
-            check.setInt(1, id);
-            ResultSet rs = check.executeQuery();
-            
-            if(rs.next() && rs.getInt(1) > 0 && ("Inactive".equals(status) || "Suspended".equals(status))) return false;
+        try {
+            return Metrics.timed("admin.updateDriverStatus", () -> {
+                int active = store.deliveries().countActive(id);
 
-            PreparedStatement ps = conn.prepareStatement("UPDATE drivers SET status=? WHERE user_id=?");
-            ps.setString(1, status); ps.setInt(2, id);
-            ps.executeUpdate();
-            
-            // LOGGING CALL ADDED HERE
-            log(conn, "DRIVER_STATUS", "Admin changed Driver ID " + id + " status to " + status);
-            
-            return true;
+                if(active > 0 && ("Inactive".equals(status) || "Suspended".equals(status))) return false;
+
+                store.drivers().updateStatus(id, status);
+
+                // LOGGING CALL ADDED HERE (auto-commit write, so the entry goes through the batched writer)
+                store.auditLogs().append("DRIVER_STATUS", "Admin changed Driver ID " + id + " status to " + status);
+                Notifications.publish(id, Notifications.DRIVER_STATUS, 0);
+
+                return true;
+            });
         } catch (SQLException e) { 
              e.printStackTrace(); // Always print the stack trace for debugging connectivity/SQL issues
              return false; 
@@ -62,59 +59,287 @@ public class AdminPortalController {
     }
 
     public List<AdminDeliveryEntity> getDeliveries() {
-        List<AdminDeliveryEntity> list = new ArrayList<>();
-        String sql = "SELECT d.*, a.priority, a.deadline FROM deliveries d LEFT JOIN assignments a ON d.delivery_id = a.delivery_id";
-        try (Connection conn = AdminDBConfig.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            while(rs.next()) {
-                list.add(new AdminDeliveryEntity(rs.getInt("delivery_id"), rs.getString("description"), rs.getString("pickup")+" -> "+rs.getString("dropoff"), rs.getString("status"), rs.getInt("assigned_driver_id"), rs.getString("priority"), rs.getString("deadline")));
+        try (Metrics.Span m = Metrics.op("admin.getDeliveries")) {
+            return m.rows(store.deliveries().listAll());
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
+    }
+
+    // ---- Keyset paging for the deliveries table: memory stays at one page whatever the table size ----
+    // status null/"All" and driverId < 0 mean "no filter"
+
+    // Up to limit deliveries with delivery_id > afterId in ID order; pass the last ID of one page to get the next
+    public List<AdminDeliveryEntity> getDeliveriesPage(int afterId, int limit, String status, int driverId) {
+        try (Metrics.Span m = Metrics.op("admin.getDeliveriesPage")) {
+            return m.rows(store.deliveries().page(afterId, limit, status, driverId));
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
+    }
+
+    public int countDeliveries(String status, int driverId) {
+        try {
+            return Metrics.timed("admin.countDeliveries", () -> store.deliveries().count(status, driverId));
+        } catch (SQLException e) { e.printStackTrace(); return 0; }
+    }
+
+    // Keyset start for the page beginning at offset: the ID of the row just before it (0 for the first page)
+    public int getDeliveryKeyBefore(int offset, String status, int driverId) {
+        if (offset <= 0) return 0;
+        try {
+            return Metrics.timed("admin.getDeliveryKeyBefore", () -> store.deliveries().keyBefore(offset, status, driverId));
+        } catch (SQLException e) { e.printStackTrace(); return Integer.MAX_VALUE; }
+    }
+
+    // ---- Change tracking: panels take a mark before their full load, then poll for deltas ----
+
+    public long getChangeMark() {
+        try {
+            return Metrics.timed("admin.getChangeMark", () -> store.changes().mark());
+        } catch (SQLException e) { e.printStackTrace(); return 0; }
+    }
+
+    public AdminDelta<AdminDriverEntity> getDriverChanges(long since) {
+        return changesSince("admin.getDriverChanges", ChangeLog.DRIVERS, since, store.drivers()::findByIds, d -> d.id);
+    }
+
+    public AdminDelta<AdminDeliveryEntity> getDeliveryChanges(long since) {
+        return changesSince("admin.getDeliveryChanges", ChangeLog.DELIVERIES, since, store.deliveries()::findByIds, d -> d.id);
+    }
+
+    private interface Fetch<T> { List<T> byIds(Collection<Integer> ids) throws SQLException; }
+
+    private <T> AdminDelta<T> changesSince(String op, String table, long since, Fetch<T> fetch, ToIntFunction<T> idOf) {
+        AdminDelta<T> delta = new AdminDelta<>(since);
+        try (Metrics.Span m = Metrics.op(op)) {
+            Set<Integer> touched = new LinkedHashSet<>();
+            delta.mark = store.changes().since(table, since, touched);
+            if (delta.mark == ChangeLog.EXPIRED) {
+                delta.mark = since;
+                delta.expired = true;
+                return delta;
             }
-        } catch (SQLException e) { e.printStackTrace(); }
-        return list;
+            if (touched.isEmpty()) return delta;
+
+            Set<Integer> found = new HashSet<>();
+            for (T row : fetch.byIds(touched)) {
+                delta.rows.add(row);
+                found.add(idOf.applyAsInt(row));
+            }
+            touched.removeAll(found);
+            // Whatever no longer comes back was deleted
+            delta.deleted.addAll(touched);
+            m.rows(delta.rows.size() + delta.deleted.size());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            delta.mark = since; // retry the same range next poll
+            delta.rows.clear(); delta.deleted.clear();
+        }
+        return delta;
     }
 
     public String assignDriver(int delId, int drvId, String pri, int hours) {
-        try (Connection conn = AdminDBConfig.getConnection()) {
-            conn.setAutoCommit(false);
-            PreparedStatement ps = conn.prepareStatement("SELECT status FROM drivers WHERE user_id=?");
-            ps.setInt(1, drvId); ResultSet rs = ps.executeQuery();
-            if(!rs.next() || !"Active".equals(rs.getString("status"))) return "Error: Driver not active";
-
-            PreparedStatement ps2 = conn.prepareStatement("INSERT INTO assignments (delivery_id, priority, deadline) VALUES (?,?,?)");
-            ps2.setInt(1, delId); ps2.setString(2, pri); 
-            ps2.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now().plusHours(hours)));
-            ps2.executeUpdate();
-
-            conn.createStatement().executeUpdate("UPDATE deliveries SET status='ASSIGNED', assigned_driver_id="+drvId+" WHERE delivery_id="+delId);
-            
-            // LOGGING CALL ADDED HERE
-            log(conn, "DELIVERY_ASSIGN", "Delivery ID " + delId + " assigned to Driver ID " + drvId + " with priority " + pri);
-            
-            conn.commit();
-            return "Success";
-        } catch (SQLException e) { return "DB Error: " + e.getMessage(); }
+        List<AdminAssignment> one = new ArrayList<>(1);
+        one.add(new AdminAssignment(delId, drvId, pri, hours));
+        return assignMany(one).get(0);
+    }
+
+    // Assigns a whole wave in one transaction: one driver-status query, one delivery existence query, then
+    // batched assignment/delivery/audit/change-log writes. Returns "Success" or an error per request, in order.
+    // The checks here only spare the write obvious failures; assignAll repeats them under lock, since another
+    // admin or the dispatcher may take the delivery or change the driver in between.
+    public List<String> assignMany(List<AdminAssignment> reqs) {
+        String[] results = new String[reqs.size()];
+        if (reqs.isEmpty()) return Arrays.asList(results);
+        try (Metrics.Span m = Metrics.op("admin.assignMany")) {
+            Set<Integer> drvIds = new LinkedHashSet<>(), delIds = new LinkedHashSet<>();
+            for (AdminAssignment a : reqs) { drvIds.add(a.driverId); delIds.add(a.deliveryId); }
+            Map<Integer, String> status = store.drivers().statuses(drvIds);
+            Set<Integer> existing = store.deliveries().existing(delIds);
+
+            List<Integer> ok = new ArrayList<>();
+            List<AdminAssignment> valid = new ArrayList<>();
+            Set<Integer> taken = new HashSet<>();
+            for (int i = 0; i < results.length; i++) {
+                AdminAssignment a = reqs.get(i);
+                if (!"Active".equals(status.get(a.driverId))) results[i] = "Error: Driver not active";
+                else if (!existing.contains(a.deliveryId)) results[i] = "Error: Delivery not found";
+                else if (!taken.add(a.deliveryId)) results[i] = "Error: Delivery listed twice in this batch";
+                else { ok.add(i); valid.add(a); }
+            }
+            if (ok.isEmpty()) return Arrays.asList(results);
+
+            // LOGGING CALL ADDED HERE (one entry per assignment, committed with it)
+            List<String> audit = new ArrayList<>(valid.size());
+            for (AdminAssignment a : valid) {
+                audit.add("Delivery ID " + a.deliveryId + " assigned to Driver ID " + a.driverId + " with priority " + a.priority);
+            }
+            String[] errors = store.assignments().assignAll(valid, LocalDateTime.now(), audit);
+            int assigned = 0;
+            for (int k = 0; k < ok.size(); k++) {
+                int i = ok.get(k);
+                results[i] = errors[k] != null ? errors[k] : "Success";
+                if (errors[k] != null) continue;
+                Notifications.publish(reqs.get(i).driverId, Notifications.ASSIGNED, reqs.get(i).deliveryId);
+                assigned++;
+            }
+            m.rows(assigned);
+        } catch (SQLException e) {
+            // The transaction rolled back, so nothing that passed validation was written either
+            for (int i = 0; i < results.length; i++) if (results[i] == null) results[i] = "DB Error: " + e.getMessage();
+        }
+        return Arrays.asList(results);
     }
 
     public List<AdminAuditLog> getLogs() {
         List<AdminAuditLog> logs = new ArrayList<>();
         // Logs the access to the log panel itself (Use Case Pg 3, Step 14 equivalent)
-        try (Connection c = AdminDBConfig.getConnection()) {
-            log(c, "SECURITY", "Admin accessed Audit Log panel."); 
+        // Coalesced: reopening or refreshing the panel within the window doesn't add another row
+        store.auditLogs().appendCoalesced("SECURITY", "Admin accessed Audit Log panel.");
+        try (Metrics.Span m = Metrics.op("admin.getLogs")) {
             
             // Retrieve logs
-            try(ResultSet rs = c.createStatement().executeQuery("SELECT * FROM audit_logs ORDER BY log_id DESC LIMIT 100")) {
-                while(rs.next()) logs.add(new AdminAuditLog(rs.getString("timestamp"), rs.getString("category"), rs.getString("details")));
-            }
-        } catch (SQLException e) {}
+            logs = m.rows(store.auditLogs().latest(100));
+        } catch (SQLException e) { e.printStackTrace(); }
         return logs;
     }
 
-    public String generateReport(String type) {
-        StringBuilder sb = new StringBuilder("=== ADMIN REPORT ===\nGenerated: " + LocalDateTime.now() + "\n\n");
-        if ("Drivers".equals(type)) {
-            for(AdminDriverEntity d : getDrivers()) sb.append(String.format("%s | %s | Jobs: %d\n", d.name, d.status, d.activeJobs));
-        } else {
-            for(AdminDeliveryEntity d : getDeliveries()) sb.append(String.format("ID %d | %s | %s\n", d.id, d.status, d.desc));
+    // Entries newer than the newest one the panel already shows; the access itself was logged on the full load
+    public List<AdminAuditLog> getLogsSince(int lastLogId) {
+        try (Metrics.Span m = Metrics.op("admin.getLogsSince")) {
+            return m.rows(store.auditLogs().since(lastLogId, 100));
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
+    }
+
+    // One batch from the delivery ingest pipeline (DeliveryIngest), committed together with the file's new
+    // checkpoint. IDs line up with rows, 0 where the driver is no longer active; null when the batch failed and
+    // was rolled back.
+    public List<Integer> ingestDeliveries(String source, long offset, long rowsLoaded, long prefixHash, List<Repositories.NewDelivery> rows) {
+        try (Metrics.Span m = Metrics.op("admin.ingestDeliveries")) {
+            int[] ids = store.deliveries().ingest(source, offset, rowsLoaded, prefixHash, rows);
+            List<Integer> out = new ArrayList<>(ids.length);
+            int loaded = 0, first = 0, last = 0;
+            Map<Integer, Integer> lastJob = new HashMap<>(); // one push per driver per batch, not per job
+            for (int i = 0; i < ids.length; i++) {
+                out.add(ids[i]);
+                if (ids[i] == 0) continue;
+                loaded++;
+                if (first == 0) first = ids[i];
+                last = ids[i];
+                if (rows.get(i).driverId > 0) lastJob.put(rows.get(i).driverId, ids[i]);
+            }
+            lastJob.forEach((drv, job) -> Notifications.publish(drv, Notifications.ASSIGNED, job));
+            if (loaded > 0) { // a batch of only rejected lines just moves the checkpoint
+                store.auditLogs().append("DELIVERY_INGEST", "Ingested " + loaded + " deliveries from " + source
+                        + " (delivery IDs " + first + " to " + last + ")");
+            }
+            m.rows(loaded);
+            return out;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // { byte offset, rows loaded, prefix hash } already committed for the file, { 0, 0, 0 } if it was never ingested;
+    // null on a DB error
+    public long[] getIngestCheckpoint(String source) {
+        try {
+            long[] cp = Metrics.timed("admin.getIngestCheckpoint", () -> store.deliveries().ingestCheckpoint(source));
+            return cp == null ? new long[] { 0, 0, 0 } : cp;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // One chunk of a bulk driver import (DriverImporter). IDs line up with rows, 0 where the email is already
+    // registered; null when the chunk failed and was rolled back.
+    public List<Integer> importDrivers(List<Repositories.DriverImport> rows) {
+        try (Metrics.Span m = Metrics.op("admin.importDrivers")) {
+            int[] ids = store.users().importDrivers(rows);
+            List<Integer> out = new ArrayList<>(ids.length);
+            int created = 0, first = 0, last = 0;
+            for (int id : ids) {
+                out.add(id);
+                if (id == 0) continue;
+                if (created++ == 0) first = id;
+                last = id;
+            }
+            if (created > 0) store.auditLogs().append("DRIVER_IMPORT", "Imported " + created + " drivers (user IDs " + first + " to " + last + ")");
+            m.rows(created);
+            return out;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Indexed search (db/AuditIndex), e.g. "driver:42 from:2026-09-01 to:2026-09-30"; newest first, one page
+    public AdminLogResults searchLogs(String query, int offset, int limit) {
+        try (Metrics.Span m = Metrics.op("admin.searchLogs")) {
+            AdminLogResults res = AuditIndex.of(store.auditLogs()).search(query, offset, limit);
+            m.rows(res.rows.size());
+            return res;
+        } catch (IllegalArgumentException e) {
+            AdminLogResults res = new AdminLogResults();
+            res.error = e.getMessage();
+            return res;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            AdminLogResults res = new AdminLogResults();
+            res.error = "DB Error: " + e.getMessage();
+            return res;
+        }
+    }
+
+    // Entries in [from, to), either bound optional, across the live table and the rolled-over archive
+    public List<AdminAuditLog> getLogsRange(LocalDateTime from, LocalDateTime to, String category, int limit) {
+        try (Metrics.Span m = Metrics.op("admin.getLogsRange")) {
+            return m.rows(store.auditLogs().range(from, to, category, limit));
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
+    }
+
+    // ---- Earnings ledger reconciliation (migrations/V6__earnings_ledger.sql) ----
+
+    // Verifies the rollups against the ledger; with repair, rebuilds them for every driver that was off
+    public String reconcileEarnings(boolean repair) {
+        StringBuilder sb = new StringBuilder("=== EARNINGS RECONCILIATION ===\nRun: " + LocalDateTime.now() + "\n\n");
+        Set<Integer> off = new LinkedHashSet<>();
+        try (Metrics.Span m = Metrics.op("admin.reconcileEarnings")) {
+            for (Repositories.Mismatch x : m.rows(store.earnings().mismatches())) {
+                off.add(x.driverId);
+                sb.append(String.format("Driver %d | %s | ledger %s | rollup %s\n", x.driverId,
+                        x.day == null ? "lifetime" : x.day, x.ledger, x.rollup));
+            }
+            if (off.isEmpty()) return sb.append("All rollups match the ledger.\n").toString();
+            sb.append("\n").append(off.size()).append(" driver(s) out of balance.\n");
+            if (!repair) return sb.toString();
+
+            store.earnings().rebuild(off, "Rebuilt earnings rollups for " + off.size() + " driver(s) from the ledger");
+            sb.append("Rollups rebuilt from the ledger.\n");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sb.append("DB Error: ").append(e.getMessage()).append("\n");
         }
         return sb.toString();
     }
+
+    // ---- Diagnostics: this process's numbers, which in client mode are the API server's ----
+
+    public List<Metrics.Row> getMetrics() { return Metrics.snapshot(); }
+
+    public void resetMetrics() { Metrics.reset(); }
+
+    // Only a JdbcStore has a connection pool; asking AdminDBConfig for it would open one against MySQL
+    public String getPoolStats() {
+        String pool = store instanceof JdbcStore ? "Pool: " + AdminDBConfig.pool().stats() : "Store: in memory, no connection pool";
+        return pool + "   Cache: " + QueryCache.shared().stats();
+    }
+
+    // Whole report as one string; large exports should stream through ReportEngine.export instead
+    public String generateReport(String type) {
+        StringWriter sw = new StringWriter();
+        try (Metrics.Span m = Metrics.op("admin.generateReport")) {
+            m.rows(new ReportEngine().write(type, ReportEngine.Format.TEXT, sw, 0, 0, null));
+        } catch (SQLException | IOException e) { e.printStackTrace(); }
+        return sw.toString();
+    }
 }
\ No newline at end of file
@@ -1,22 +1,52 @@
 package com.minilogistics.view;
 
+import com.minilogistics.api.ApiClient;
 import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.controller.AsyncControllers;
+import com.minilogistics.controller.AutoDispatcher;
+import com.minilogistics.controller.DeliveryIngest;
+import com.minilogistics.controller.DriverImporter;
+import com.minilogistics.controller.ReportEngine;
+import com.minilogistics.db.Metrics;
 import com.minilogistics.model.AdminEntities.*;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.FileWriter;
-import java.io.PrintWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class AdminViews {
 
     public static class MainFrame extends JFrame {
-        AdminPortalController ctrl = new AdminPortalController();
+        AdminPortalController ctrl = ApiClient.admin();
 
         public MainFrame() {
-            setTitle("Admin Console - DB Connected");
+            setTitle(ApiClient.isEnabled() ? "Admin Console - API Connected" : "Admin Console - DB Connected");
             setSize(1000, 700);
             setDefaultCloseOperation(EXIT_ON_CLOSE);
             setLocationRelativeTo(null);
@@ -25,10 +55,33 @@ public class AdminViews {
             tabs.addTab("Assignments", new AssignPanel(ctrl));
             tabs.addTab("Logs", new LogPanel(ctrl));
             tabs.addTab("Reports", new ReportPanel(ctrl));
+            tabs.addTab("Diagnostics", new DiagnosticsPanel(ctrl));
             add(tabs);
         }
     }
 
+    // Upserts rows keyed by the ID in column 0 and drops deleted IDs, leaving untouched rows (and the selection) alone
+    static void applyDelta(DefaultTableModel model, List<Object[]> rows, List<Integer> deleted) {
+        if (rows.isEmpty() && deleted.isEmpty())
+            return;
+        Map<Object, Integer> index = new HashMap<>();
+        for (int r = 0; r < model.getRowCount(); r++)
+            index.put(model.getValueAt(r, 0), r);
+        for (Object[] row : rows) {
+            Integer r = index.get(row[0]);
+            if (r == null) {
+                model.addRow(row);
+                continue;
+            }
+            for (int c = 0; c < row.length; c++)
+                if (!Objects.equals(model.getValueAt(r, c), row[c]))
+                    model.setValueAt(row[c], r, c);
+        }
+        for (int r = model.getRowCount() - 1; r >= 0; r--)
+            if (deleted.contains(model.getValueAt(r, 0)))
+                model.removeRow(r);
+    }
+
     public static class DriverPanel extends JPanel {
         public DriverPanel(AdminPortalController ctrl) {
             setLayout(new BorderLayout());
@@ -42,84 +95,391 @@ public class AdminViews {
             add(new JScrollPane(table), BorderLayout.CENTER);
             JPanel bot = new JPanel();
             JButton ref = new JButton("Refresh"), act = new JButton("Activate"), susp = new JButton("Suspend");
+            JButton imp = new JButton("Import Drivers...");
             bot.add(ref);
             bot.add(act);
             bot.add(susp);
+            bot.add(imp);
             add(bot, BorderLayout.SOUTH);
 
-            ref.addActionListener(e -> {
+            AsyncControllers.Admin api = new AsyncControllers.Admin(ctrl);
+            AsyncControllers.Refresher refresher = new AsyncControllers.Refresher();
+            ref.addActionListener(e -> refresher.refresh(() -> {
+                // Mark taken first so nothing written during the load is missed
+                AdminDelta<AdminDriverEntity> d = new AdminDelta<>(ctrl.getChangeMark());
+                d.rows = ctrl.getDrivers();
+                return d;
+            }, d -> {
                 model.setRowCount(0);
-                for (AdminDriverEntity d : ctrl.getDrivers())
-                    model.addRow(
-                            new Object[] { d.id, d.name, d.status, d.activeJobs, d.rating, d.vehicle.getDetails() });
+                for (AdminDriverEntity de : d.rows)
+                    model.addRow(toRow(de));
+                mark = d.mark;
+            }));
+
+            // Partner fleet onboarding from CSV/JSON; rejected rows go to <file>.errors.csv next to it
+            imp.addActionListener(e -> {
+                JFileChooser fc = new JFileChooser();
+                fc.setFileFilter(new FileNameExtensionFilter("Drivers (CSV, JSON)", "csv", "json", "jsonl"));
+                if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+                    return;
+                Path file = fc.getSelectedFile().toPath();
+                imp.setEnabled(false);
+                DriverImporter.Listener progress = new DriverImporter.Listener() {
+                    public void progress(long rows, long imported, long rejected) {
+                        SwingUtilities.invokeLater(() -> imp.setText("Importing... " + imported + " / " + rows));
+                    }
+                };
+                AsyncControllers.submit(() -> {
+                    try {
+                        return new DriverImporter(ctrl).importFile(file, progress);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }).whenCompleteAsync((sum, ex) -> {
+                    imp.setText("Import Drivers...");
+                    imp.setEnabled(true);
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(this, "Import failed: " + cause.getMessage());
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(this, sum + (sum.rejected > 0 ? "\nErrors: " + DriverImporter.reportFile(file).toAbsolutePath() : ""));
+                    ref.doClick();
+                }, AsyncControllers.EDT);
             });
 
             JTable finalTable = table;
-            act.addActionListener(e -> update(finalTable, ctrl, "Active"));
-            susp.addActionListener(e -> update(finalTable, ctrl, "Suspended"));
+            act.addActionListener(e -> update(finalTable, api, "Active"));
+            susp.addActionListener(e -> update(finalTable, api, "Suspended"));
             ref.doClick();
 
-            // Auto-refresh every 5 seconds
-            new Timer(5000, e -> ref.doClick()).start();
+            // Auto-refresh every 5 seconds, fetching only drivers changed since the last poll
+            new Timer(5000, e -> {
+                long since = mark;
+                refresher.tick(() -> ctrl.getDriverChanges(since), d -> {
+                    if (d.expired) {
+                        ref.doClick();
+                        return;
+                    }
+                    List<Object[]> rows = new ArrayList<>();
+                    for (AdminDriverEntity de : d.rows)
+                        rows.add(toRow(de));
+                    applyDelta(model, rows, d.deleted);
+                    mark = d.mark;
+                });
+            }).start();
+        }
+
+        private long mark;
+
+        static Object[] toRow(AdminDriverEntity d) {
+            return new Object[] { d.id, d.name, d.status, d.activeJobs, d.rating, d.vehicle.getDetails() };
         }
 
-        void update(JTable t, AdminPortalController c, String s) {
+        void update(JTable t, AsyncControllers.Admin c, String s) {
             int r = t.getSelectedRow();
-            if (r >= 0 && c.updateDriverStatus((int) t.getValueAt(r, 0), s, "Manual")) {
-                // Success - no popup
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed (Active jobs?)");
+            CompletableFuture<Boolean> res = r >= 0 ? c.updateDriverStatus((int) t.getValueAt(r, 0), s, "Manual")
+                    : CompletableFuture.completedFuture(false);
+            res.thenAcceptAsync(ok -> {
+                if (!ok) {
+                    JOptionPane.showMessageDialog(this, "Failed (Active jobs?)");
+                }
+                ((JButton) ((JPanel) getComponent(1)).getComponent(0)).doClick();
+            }, AsyncControllers.EDT);
+        }
+    }
+
+    // Virtual deliveries model: holds at most MAX_PAGES keyset pages and fetches the rest as the table scrolls to them
+    public static class DeliveryPageModel extends AbstractTableModel {
+        static final int PAGE = 200, MAX_PAGES = 10, MAX_KEYS = 5000;
+        static final String[] COLS = { "ID", "Desc", "Route", "Status", "Driver", "Pri", "Deadline" };
+
+        private final AdminPortalController ctrl;
+        private final Map<Integer, List<Object[]>> pages = new LinkedHashMap<Integer, List<Object[]>>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Object[]>> e) {
+                return size() > MAX_PAGES;
+            }
+        };
+        // Keyset start (last ID of the previous page) for pages we've seen, so scrolling forward never needs OFFSET
+        private final Map<Integer, Integer> startKeys = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> e) {
+                return size() > MAX_KEYS;
+            }
+        };
+        private final Set<Integer> loading = new HashSet<>();
+        private int rows, generation;
+        private String status = "All";
+        private int driverId = -1;
+        long mark;
+
+        public DeliveryPageModel(AdminPortalController ctrl) { this.ctrl = ctrl; }
+
+        public int getRowCount() { return rows; }
+        public int getColumnCount() { return COLS.length; }
+        public String getColumnName(int c) { return COLS[c]; }
+
+        public Object getValueAt(int r, int c) {
+            List<Object[]> page = pages.get(r / PAGE);
+            if (page == null) {
+                load(r / PAGE);
+                return c == 0 ? null : "...";
             }
-            ((JButton) ((JPanel) getComponent(1)).getComponent(0)).doClick();
+            int i = r % PAGE;
+            return i < page.size() ? page.get(i)[c] : null;
+        }
+
+        public void setFilter(String status, int driverId) {
+            this.status = status;
+            this.driverId = driverId;
+            reload();
+        }
+
+        // Drops every cached page and recounts; only the pages the table asks for next get fetched
+        public void reload() {
+            int gen = ++generation;
+            String st = status;
+            int drv = driverId;
+            AsyncControllers.submit(() -> new long[] { ctrl.getChangeMark(), ctrl.countDeliveries(st, drv) })
+                    .thenAcceptAsync(res -> {
+                        if (gen != generation)
+                            return;
+                        mark = res[0];
+                        rows = (int) res[1];
+                        pages.clear();
+                        startKeys.clear();
+                        loading.clear();
+                        fireTableDataChanged();
+                    }, AsyncControllers.EDT);
+        }
+
+        private void load(int p) {
+            if (!loading.add(p))
+                return;
+            int gen = generation;
+            Integer known = p == 0 ? Integer.valueOf(0) : startKeys.get(p);
+            String st = status;
+            int drv = driverId;
+            AsyncControllers.submit(() -> {
+                int after = known != null ? known : ctrl.getDeliveryKeyBefore(p * PAGE, st, drv);
+                return ctrl.getDeliveriesPage(after, PAGE, st, drv);
+            }).whenCompleteAsync((list, ex) -> {
+                if (gen != generation)
+                    return;
+                loading.remove(p); // a failed page is fetched again the next time the table asks for it
+                if (ex != null)
+                    return;
+                List<Object[]> page = new ArrayList<>(list.size());
+                for (AdminDeliveryEntity d : list)
+                    page.add(d.toRow());
+                pages.put(p, page);
+                if (!list.isEmpty())
+                    startKeys.put(p + 1, list.get(list.size() - 1).id);
+                int first = p * PAGE;
+                if (first < rows)
+                    fireTableRowsUpdated(first, Math.min(rows, first + PAGE) - 1);
+            }, AsyncControllers.EDT);
+        }
+
+        // Patches changed rows that are already cached; anything else (new or deleted rows, a filter that a
+        // changed row may no longer match, or a mark the change log no longer reaches) falls back to a reload
+        public void apply(AdminDelta<AdminDeliveryEntity> d) {
+            mark = d.mark;
+            if (d.expired) {
+                reload();
+                return;
+            }
+            if (d.isEmpty())
+                return;
+            boolean filtered = !"All".equals(status) || driverId >= 0;
+            if (filtered || !d.deleted.isEmpty()) {
+                reload();
+                return;
+            }
+            for (AdminDeliveryEntity de : d.rows) {
+                if (!patch(de)) {
+                    reload();
+                    return;
+                }
+            }
+        }
+
+        private boolean patch(AdminDeliveryEntity de) {
+            for (Map.Entry<Integer, List<Object[]>> e : pages.entrySet()) {
+                List<Object[]> page = e.getValue();
+                for (int i = 0; i < page.size(); i++) {
+                    if (page.get(i)[0].equals(de.id)) {
+                        page.set(i, de.toRow());
+                        fireTableRowsUpdated(e.getKey() * PAGE + i, e.getKey() * PAGE + i);
+                        return true;
+                    }
+                }
+            }
+            // Not cached: fine if it sits on a page we don't hold, but a brand new ID changes the row count
+            return !startKeys.isEmpty() && de.id <= maxKnownId();
+        }
+
+        private int maxKnownId() {
+            int max = 0;
+            for (int k : startKeys.values())
+                max = Math.max(max, k);
+            return max;
+        }
+
+        public Integer getIdAt(int r) {
+            return (Integer) getValueAt(r, 0);
+        }
+
+        // Driver shown for the row: 0 when unassigned, -1 when the row isn't loaded
+        public int getDriverAt(int r) {
+            Object v = getValueAt(r, 4);
+            return v instanceof Integer ? (Integer) v : "Unassigned".equals(v) ? 0 : -1;
         }
     }
 
     public static class AssignPanel extends JPanel {
         public AssignPanel(AdminPortalController ctrl) {
             setLayout(new BorderLayout());
-            DefaultTableModel model = new DefaultTableModel(
-                    new String[] { "ID", "Desc", "Route", "Status", "Driver", "Pri", "Deadline" }, 0) {
-                public boolean isCellEditable(int r, int c) {
-                    return false;
-                }
-            };
+            DeliveryPageModel model = new DeliveryPageModel(ctrl);
             JTable table = new JTable(model);
             add(new JScrollPane(table), BorderLayout.CENTER);
+
+            JPanel top = new JPanel();
+            JComboBox<String> statusFilter = new JComboBox<>(
+                    new String[] { "All", "PENDING", "ASSIGNED", "Picked Up", "In Transit", "COMPLETED", "CANCELLED" });
+            JTextField drvFilter = new JTextField(5);
+            JButton apply = new JButton("Filter");
+            top.add(new JLabel("Status:"));
+            top.add(statusFilter);
+            top.add(new JLabel("Driver ID:"));
+            top.add(drvFilter);
+            top.add(apply);
+            add(top, BorderLayout.NORTH);
+
             JPanel bot = new JPanel();
             JTextField drvId = new JTextField(5);
-            JButton assign = new JButton("Assign Driver ID:"), ref = new JButton("Refresh");
+            JButton assign = new JButton("Assign Driver ID:"), ref = new JButton("Refresh"), auto = new JButton("Auto Dispatch");
+            JButton ingest = new JButton("Ingest Orders...");
             bot.add(ref);
             bot.add(assign);
             bot.add(drvId);
+            bot.add(auto);
+            bot.add(ingest);
             add(bot, BorderLayout.SOUTH);
 
-            ref.addActionListener(e -> {
-                model.setRowCount(0);
-                for (AdminDeliveryEntity d : ctrl.getDeliveries())
-                    model.addRow(d.toRow());
+            AsyncControllers.Admin api = new AsyncControllers.Admin(ctrl);
+            AsyncControllers.Refresher refresher = new AsyncControllers.Refresher();
+            ref.addActionListener(e -> model.reload());
+
+            AutoDispatcher dispatcher = new AutoDispatcher();
+            auto.addActionListener(e -> {
+                auto.setEnabled(false);
+                AsyncControllers.submit(() -> dispatcher.dispatch(ctrl)).whenCompleteAsync((msg, ex) -> {
+                    auto.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, msg != null ? msg : "Dispatch failed: " + ex.getMessage());
+                    model.reload();
+                }, AsyncControllers.EDT);
+            });
+            // Order files (CSV, JSON Lines); a second click cancels, and picking the same file again resumes it
+            // unless "Restart from the top" is ticked. Rejected lines go to <file>.rejects.csv next to it.
+            DeliveryIngest[] running = new DeliveryIngest[1];
+            ingest.addActionListener(e -> {
+                if (running[0] != null) {
+                    running[0].cancel();
+                    ingest.setEnabled(false);
+                    return;
+                }
+                JFileChooser fc = new JFileChooser();
+                fc.setFileFilter(new FileNameExtensionFilter("Orders (CSV, JSON Lines)", "csv", "jsonl", "ndjson", "json"));
+                JCheckBox restart = new JCheckBox("Restart from the top");
+                fc.setAccessory(restart);
+                if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+                    return;
+                Path file = fc.getSelectedFile().toPath();
+                boolean fromTop = restart.isSelected();
+                DeliveryIngest job = running[0] = new DeliveryIngest(ctrl);
+                DeliveryIngest.Listener progress = new DeliveryIngest.Listener() {
+                    public void progress(long bytes, long totalBytes, long loaded, long rejected) {
+                        long pct = totalBytes == 0 ? 100 : bytes * 100 / totalBytes;
+                        SwingUtilities.invokeLater(() -> ingest.setText("Cancel (" + pct + "%, " + loaded + " loaded)"));
+                    }
+                };
+                ingest.setText("Cancel");
+                AsyncControllers.submit(() -> {
+                    try {
+                        return job.ingestFile(file, fromTop, progress);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }).whenCompleteAsync((sum, ex) -> {
+                    running[0] = null;
+                    ingest.setText("Ingest Orders...");
+                    ingest.setEnabled(true);
+                    model.reload();
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(this, "Ingest stopped: " + cause.getMessage());
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(this, sum + (sum.rejected > 0 ? "\nRejected lines: " + DeliveryIngest.rejectFile(file).toAbsolutePath() : ""));
+                }, AsyncControllers.EDT);
+            });
+            apply.addActionListener(e -> {
+                String txt = drvFilter.getText().trim();
+                try {
+                    model.setFilter((String) statusFilter.getSelectedItem(), txt.isEmpty() ? -1 : Integer.parseInt(txt));
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid Driver ID format.");
+                }
             });
 
             JTable finalTable = table;
             ref.doClick();
 
-            // Auto-refresh every 5 seconds
-            new Timer(5000, e -> ref.doClick()).start();
+            // Auto-refresh every 5 seconds, fetching only deliveries changed since the last poll
+            Runnable poll = () -> {
+                long since = model.mark;
+                refresher.tick(() -> ctrl.getDeliveryChanges(since), model::apply);
+            };
+            new Timer(5000, e -> poll.run()).start();
 
+            // Bulk assignment: every selected (loaded) row goes to the driver in one transaction
+            table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
             assign.addActionListener(e -> {
-                int r = finalTable.getSelectedRow();
-                if (r >= 0) {
-                    try {
-                        String res = ctrl.assignDriver((int) model.getValueAt(r, 0), Integer.parseInt(drvId.getText()),
-                                "High", 24);
-                        if (!"Success".equals(res))
-                            JOptionPane.showMessageDialog(this, res);
-                        ref.doClick();
-                    } catch (NumberFormatException ex) {
-                        JOptionPane.showMessageDialog(this, "Invalid Driver ID format.");
-                    }
-                } else {
+                List<AdminAssignment> reqs = new ArrayList<>();
+                int drv;
+                try {
+                    drv = Integer.parseInt(drvId.getText());
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid Driver ID format.");
+                    return;
+                }
+                for (int r : finalTable.getSelectedRows()) {
+                    Integer delId = model.getIdAt(r);
+                    if (delId != null)
+                        reqs.add(new AdminAssignment(delId, drv, "High", 24, model.getDriverAt(r)));
+                }
+                if (reqs.isEmpty()) {
                     JOptionPane.showMessageDialog(this, "Select a delivery first.");
+                    return;
                 }
+                assign.setEnabled(false);
+                api.assignMany(reqs).thenAcceptAsync(res -> {
+                    assign.setEnabled(true);
+                    StringBuilder failed = new StringBuilder();
+                    int failures = 0;
+                    for (int i = 0; i < res.size(); i++) {
+                        if (!"Success".equals(res.get(i))) {
+                            failures++;
+                            if (failures <= 20)
+                                failed.append("Delivery ").append(reqs.get(i).deliveryId).append(": ").append(res.get(i)).append("\n");
+                        }
+                    }
+                    if (failures == 1 && reqs.size() == 1)
+                        JOptionPane.showMessageDialog(this, res.get(0));
+                    else if (failures > 0)
+                        JOptionPane.showMessageDialog(this, failures + " of " + reqs.size() + " assignments failed:\n" + failed);
+                    poll.run();
+                }, AsyncControllers.EDT);
             });
         }
     }
@@ -135,40 +495,379 @@ public class AdminViews {
             add(new JScrollPane(new JTable(model)));
             JButton ref = new JButton("Refresh");
             add(ref, BorderLayout.SOUTH);
-            ref.addActionListener(e -> {
+
+            // Date range (yyyy-MM-dd, "To" inclusive) also searches days already rolled into the archive
+            JPanel top = new JPanel();
+            JTextField from = new JTextField(8), to = new JTextField(8);
+            JComboBox<String> cat = new JComboBox<>(new String[] { "All", "SECURITY", "DELIVERY_ASSIGN", "DRIVER_STATUS", "EARNINGS" });
+            cat.setEditable(true);
+            JButton show = new JButton("Show Range");
+            JButton latest = new JButton("Latest");
+            top.add(new JLabel("From:"));
+            top.add(from);
+            top.add(new JLabel("To:"));
+            top.add(to);
+            top.add(cat);
+            top.add(show);
+            top.add(latest);
+
+            // Indexed search over the live table, e.g. driver:42 from:2026-09-01 to:2026-09-30; results update as you type
+            JPanel find = new JPanel();
+            JTextField query = new JTextField(28);
+            JButton prev = new JButton("<"), next = new JButton(">");
+            JLabel found = new JLabel(" ");
+            find.add(new JLabel("Search:"));
+            find.add(query);
+            find.add(prev);
+            find.add(next);
+            find.add(found);
+            JPanel north = new JPanel(new GridLayout(2, 1));
+            north.add(top);
+            north.add(find);
+            add(north, BorderLayout.NORTH);
+
+            AsyncControllers.Refresher refresher = new AsyncControllers.Refresher();
+            ref.addActionListener(e -> refresher.refresh(ctrl::getLogs, logs -> {
+                ranged = false;
+                search = null;
+                found.setText(" ");
                 model.setRowCount(0);
-                for (AdminAuditLog l : ctrl.getLogs())
+                shown.clear();
+                tops.clear();
+                for (AdminAuditLog l : logs) {
                     model.addRow(new Object[] { l.time, l.cat, l.det });
+                    shown.add(l.id);
+                }
+                tops.addLast(logs.isEmpty() ? 0 : logs.get(logs.size() - 1).id - 1); // re-read what is shown for a while
+            }));
+            latest.addActionListener(e -> {
+                query.setText("");
+                ref.doClick();
             });
+            show.addActionListener(e -> {
+                LocalDateTime f, t;
+                try {
+                    f = from.getText().isBlank() ? null : LocalDate.parse(from.getText().trim()).atStartOfDay();
+                    t = to.getText().isBlank() ? null : LocalDate.parse(to.getText().trim()).plusDays(1).atStartOfDay();
+                } catch (DateTimeParseException ex) {
+                    JOptionPane.showMessageDialog(this, "Dates must look like 2026-01-31");
+                    return;
+                }
+                String c = Objects.toString(cat.getSelectedItem(), "").trim();
+                String category = c.isEmpty() || c.equals("All") ? null : c;
+                refresher.refresh(() -> ctrl.getLogsRange(f, t, category, RANGE_ROWS), logs -> {
+                    ranged = true; // the live tail below would mix unrelated rows into the range
+                    search = null;
+                    found.setText(" ");
+                    model.setRowCount(0);
+                    for (AdminAuditLog l : logs)
+                        model.addRow(new Object[] { l.time, l.cat, l.det });
+                });
+            });
+
+            // live: a background re-run that yields to anything the admin started
+            Consumer<Boolean> runSearch = live -> {
+                String q = search;
+                int off = page * PAGE_ROWS;
+                Supplier<AdminLogResults> work = () -> ctrl.searchLogs(q, off, PAGE_ROWS);
+                Consumer<AdminLogResults> apply = res -> {
+                    if (!Objects.equals(q, search) || (live && res.error != null))
+                        return;
+                    model.setRowCount(0);
+                    for (AdminAuditLog l : res.rows)
+                        model.addRow(new Object[] { l.time, l.cat, l.det });
+                    int shown = Math.min(res.total, off + res.rows.size());
+                    if (res.error != null)
+                        found.setText(res.error);
+                    else
+                        found.setText(res.total == 0 ? "No matches" : (off + 1) + "-" + shown + " of " + res.total
+                                + String.format(" (%.1f ms)", res.micros / 1000.0));
+                    prev.setEnabled(page > 0);
+                    next.setEnabled(shown < res.total);
+                };
+                if (live)
+                    refresher.tick(work, apply);
+                else
+                    refresher.refresh(work, apply);
+            };
+            Timer typing = new Timer(250, e -> {
+                String q = query.getText().trim();
+                if (q.isEmpty()) {
+                    ref.doClick();
+                    return;
+                }
+                search = q;
+                ranged = false;
+                page = 0;
+                runSearch.accept(false);
+            });
+            typing.setRepeats(false);
+            query.getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent e) { typing.restart(); }
+                public void removeUpdate(DocumentEvent e) { typing.restart(); }
+                public void changedUpdate(DocumentEvent e) { typing.restart(); }
+            });
+            prev.addActionListener(e -> {
+                if (search == null || page == 0)
+                    return;
+                page--;
+                runSearch.accept(false);
+            });
+            next.addActionListener(e -> {
+                if (search == null)
+                    return;
+                page++;
+                runSearch.accept(false);
+            });
+            prev.setEnabled(false);
+            next.setEnabled(false);
+
             ref.doClick();
-            // Auto-refresh every 5 seconds
-            new Timer(5000, e -> ref.doClick()).start();
+            // Auto-refresh every 5 seconds: only entries not shown yet, newest first, capped at 100.
+            // While a search is shown its current page is re-run instead, so new matches appear on their own.
+            // log_id is taken at insert but visible at commit, so a write still in a transaction can show up
+            // under an id already passed: each poll re-reads from the top id seen OVERLAP_POLLS polls ago.
+            new Timer(5000, e -> {
+                if (search != null) {
+                    runSearch.accept(true);
+                    return;
+                }
+                if (ranged)
+                    return;
+                int since = tops.isEmpty() ? 0 : tops.peekFirst();
+                refresher.tick(() -> ctrl.getLogsSince(since), logs -> {
+                    if (ranged || search != null)
+                        return;
+                    int seen = tops.isEmpty() ? 0 : tops.peekLast();
+                    for (int i = logs.size() - 1; i >= 0; i--) {
+                        AdminAuditLog l = logs.get(i);
+                        if (shown.add(l.id))
+                            model.insertRow(0, new Object[] { l.time, l.cat, l.det });
+                        seen = Math.max(seen, l.id);
+                    }
+                    tops.addLast(seen);
+                    while (tops.size() > OVERLAP_POLLS)
+                        tops.removeFirst();
+                    int floor = tops.peekFirst();
+                    shown.removeIf(id -> id <= floor); // never returned again
+                    while (model.getRowCount() > 100)
+                        model.removeRow(model.getRowCount() - 1);
+                });
+            }).start();
         }
+
+        static final int RANGE_ROWS = 1000;
+        static final int PAGE_ROWS = 50;
+        private boolean ranged;
+        private String search; // shown query, or null
+        private int page;
+        static final int OVERLAP_POLLS = 6;
+        private final ArrayDeque<Integer> tops = new ArrayDeque<>(); // top id seen per recent poll, oldest first
+        private final Set<Integer> shown = new HashSet<>(); // ids above tops.peekFirst() already in the table
     }
 
     public static class ReportPanel extends JPanel {
+        static final int PREVIEW_ROWS = 200;
+        private ReportEngine running;
+
         public ReportPanel(AdminPortalController ctrl) {
             setLayout(new BorderLayout());
             JTextArea area = new JTextArea();
+            area.setEditable(false);
             add(new JScrollPane(area));
             JPanel top = new JPanel();
-            JButton gen = new JButton("Generate Driver Report");
+            JComboBox<String> type = new JComboBox<>(new String[] { "Drivers", "Deliveries", "Earnings" });
+            JComboBox<ReportEngine.Format> fmt = new JComboBox<>(ReportEngine.Format.values());
+            JCheckBox gzip = new JCheckBox("gzip");
+            JButton gen = new JButton("Generate Report");
             JButton exp = new JButton("Export Report");
+            JButton rec = new JButton("Reconcile Earnings");
 
+            top.add(type);
+            top.add(fmt);
+            top.add(gzip);
             top.add(gen);
             top.add(exp);
+            top.add(rec);
             add(top, BorderLayout.NORTH);
 
-            gen.addActionListener(e -> area.setText(ctrl.generateReport("Drivers")));
+            JPanel bot = new JPanel(new BorderLayout());
+            JProgressBar bar = new JProgressBar(0, 100);
+            bar.setStringPainted(true);
+            bar.setString("");
+            JButton cancel = new JButton("Cancel");
+            cancel.setEnabled(false);
+            bot.add(bar, BorderLayout.CENTER);
+            bot.add(cancel, BorderLayout.EAST);
+            add(bot, BorderLayout.SOUTH);
+
+            // Generate only previews: the server returns the first PREVIEW_ROWS rows, whatever the table size
+            gen.addActionListener(e -> {
+                gen.setEnabled(false);
+                String t = (String) type.getSelectedItem();
+                ReportEngine.Format f = (ReportEngine.Format) fmt.getSelectedItem();
+                AsyncControllers.submit(() -> {
+                    StringWriter sw = new StringWriter();
+                    try {
+                        long rows = new ReportEngine().write(t, f, sw, PREVIEW_ROWS, 0, null);
+                        if (rows == PREVIEW_ROWS)
+                            sw.append("\n... first ").append(String.valueOf(PREVIEW_ROWS)).append(" rows only; Export Report writes the full report.\n");
+                    } catch (SQLException | IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                    return sw.toString();
+                }).whenCompleteAsync((text, ex) -> {
+                    if (text != null)
+                        area.setText(text);
+                    gen.setEnabled(true);
+                }, AsyncControllers.EDT);
+            });
 
+            // Export streams the full report to disk; the text area only shows the first PREVIEW_ROWS lines
             exp.addActionListener(e -> {
-                try (PrintWriter w = new PrintWriter(new FileWriter("admin_report.txt"))) {
-                    w.print(area.getText());
-                    // No success popup
+                String t = (String) type.getSelectedItem();
+                ReportEngine.Format f = (ReportEngine.Format) fmt.getSelectedItem();
+                boolean gz = gzip.isSelected();
+                Path target = Paths.get(ReportEngine.fileName(t, f, gz));
+                ReportEngine engine = new ReportEngine();
+                running = engine;
+                area.setText("");
+                bar.setValue(0);
+                bar.setString("Exporting...");
+                exp.setEnabled(false);
+                cancel.setEnabled(true);
+                ReportEngine.Listener progress = new ReportEngine.Listener() {
+                    public void preview(String line) {
+                        SwingUtilities.invokeLater(() -> area.append(line + "\n"));
+                    }
+
+                    public void progress(long rows, long total) {
+                        SwingUtilities.invokeLater(() -> {
+                            bar.setValue(total > 0 ? (int) (rows * 100 / total) : 100);
+                            bar.setString(rows + " / " + total + " rows");
+                        });
+                    }
+                };
+                AsyncControllers.submit(() -> {
+                    try {
+                        return engine.export(t, f, gz, target, PREVIEW_ROWS, progress);
+                    } catch (SQLException | IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }).whenCompleteAsync((rows, ex) -> {
+                    running = null;
+                    exp.setEnabled(true);
+                    cancel.setEnabled(false);
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (ex == null) {
+                        bar.setString(rows + " rows written to " + target.toAbsolutePath());
+                    } else if (cause instanceof CancellationException) {
+                        bar.setString("Export cancelled");
+                    } else {
+                        bar.setString("");
+                        JOptionPane.showMessageDialog(this, "Error saving file.");
+                    }
+                }, AsyncControllers.EDT);
+            });
+
+            AsyncControllers.Admin api = new AsyncControllers.Admin(ctrl);
+            rec.addActionListener(e -> {
+                rec.setEnabled(false);
+                api.reconcileEarnings(false).thenComposeAsync(text -> {
+                    area.setText(text);
+                    if (text.contains("out of balance") && JOptionPane.showConfirmDialog(this,
+                            "Rebuild the out-of-balance rollups from the ledger?", "Reconcile", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION)
+                        return api.reconcileEarnings(true);
+                    return CompletableFuture.completedFuture(null);
+                }, AsyncControllers.EDT).whenCompleteAsync((text, ex) -> {
+                    if (text != null)
+                        area.setText(text);
+                    rec.setEnabled(true);
+                }, AsyncControllers.EDT);
+            });
+
+            cancel.addActionListener(e -> {
+                if (running != null)
+                    running.cancel();
+            });
+        }
+    }
+
+    // Live view of Metrics for this process: latency percentiles, calls, errors and rows per
+    // controller operation and SQL statement. Refreshes every 2 seconds while the tab is showing.
+    // The numbers come through the controller, so in client mode they are the API server's, not this desktop's
+    public static class DiagnosticsPanel extends JPanel {
+        private List<Metrics.Row> shown = new ArrayList<>();
+
+        public DiagnosticsPanel(AdminPortalController ctrl) {
+            setLayout(new BorderLayout());
+            DefaultTableModel model = new DefaultTableModel(new String[] { "Name", "Calls", "Errors", "Rows", "Mean ms",
+                    "p50 ms", "p90 ms", "p99 ms", "Max ms", "Last Error" }, 0) {
+                public boolean isCellEditable(int r, int c) {
+                    return false;
+                }
+
+                // Typed columns so the row sorter orders numbers numerically
+                public Class<?> getColumnClass(int c) {
+                    return c == 0 || c == 9 ? String.class : c <= 3 ? Long.class : Double.class;
+                }
+            };
+            JTable table = new JTable(model);
+            table.setAutoCreateRowSorter(true);
+            table.getColumnModel().getColumn(0).setPreferredWidth(320);
+            table.getColumnModel().getColumn(9).setPreferredWidth(200);
+            add(new JScrollPane(table), BorderLayout.CENTER);
+
+            JPanel top = new JPanel();
+            JComboBox<String> show = new JComboBox<>(new String[] { "All", "Operations", "SQL" });
+            JButton ref = new JButton("Refresh"), reset = new JButton("Reset"), dump = new JButton("Dump to File");
+            top.add(show);
+            top.add(ref);
+            top.add(reset);
+            top.add(dump);
+            add(top, BorderLayout.NORTH);
+            JLabel pool = new JLabel(" ");
+            add(pool, BorderLayout.SOUTH);
+
+            AsyncControllers.Refresher refresher = new AsyncControllers.Refresher();
+            Supplier<Object[]> fetch = () -> new Object[] { ctrl.getMetrics(), ctrl.getPoolStats() };
+            Consumer<Object[]> apply = res -> {
+                @SuppressWarnings("unchecked")
+                List<Metrics.Row> rows = (List<Metrics.Row>) res[0];
+                shown = rows;
+                String filter = (String) show.getSelectedItem();
+                model.setRowCount(0);
+                for (Metrics.Row r : rows) {
+                    boolean sql = r.name.startsWith("sql: ");
+                    if ("Operations".equals(filter) && sql || "SQL".equals(filter) && !sql)
+                        continue;
+                    model.addRow(new Object[] { r.name, r.calls, r.errors, r.rows, ms(r.mean), ms(r.p50), ms(r.p90), ms(r.p99),
+                            ms(r.max), r.lastError == null ? "" : r.lastError });
+                }
+                pool.setText(" " + res[1]);
+            };
+            Runnable refresh = () -> refresher.refresh(fetch, apply);
+            ref.addActionListener(e -> refresh.run());
+            show.addActionListener(e -> refresh.run());
+            reset.addActionListener(e -> AsyncControllers.submit(() -> { ctrl.resetMetrics(); return null; })
+                    .thenRunAsync(refresh, AsyncControllers.EDT));
+            dump.addActionListener(e -> {
+                Path file = Paths.get(System.getProperty("minilogistics.metrics.dumpFile", "metrics.txt"));
+                try {
+                    Metrics.dump(file, shown); // the table as last fetched
+                    JOptionPane.showMessageDialog(this, "Appended to " + file.toAbsolutePath());
                 } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(this, "Error saving file.");
+                    JOptionPane.showMessageDialog(this, "Dump failed: " + ex.getMessage());
                 }
             });
+            new Timer(2000, e -> {
+                if (isShowing())
+                    refresher.tick(fetch, apply);
+            }).start();
+        }
+
+        static Double ms(double v) {
+            return Math.round(v * 100) / 100.0;
         }
     }
-}
\ No newline at end of file
+}
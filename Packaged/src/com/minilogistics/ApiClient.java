@@ -0,0 +1,425 @@
+package com.minilogistics.api;
+
+import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.controller.ReportEngine;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.Repositories;
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+// Client mode for the Swing apps: with -Dminilogistics.api.url=http://host:8080 the views get controllers
+// that call ApiServer instead of JDBC, so desktops no longer need database credentials.
+// Without the property, admin()/driver() return the ordinary JDBC controllers.
+public class ApiClient {
+    static final String URL = System.getProperty("minilogistics.api.url");
+
+    public static boolean isEnabled() { return URL != null; }
+
+    public static AdminPortalController admin() {
+        if (!isEnabled()) return new AdminPortalController();
+        ApiClient api = new ApiClient(URL);
+        ReportEngine.remote = (type, fmt, limit) -> new InputStreamReader(api.stream("/api/admin/reports/" + enc(type)
+                + "?format=" + fmt.name() + "&limit=" + limit), StandardCharsets.UTF_8);
+        return new RemoteAdmin(api);
+    }
+
+    public static DriverAppController driver() {
+        return isEnabled() ? new RemoteDriver(new ApiClient(URL)) : new DriverAppController();
+    }
+
+    private final String base;
+    private final HttpClient http;
+    private final String adminToken = System.getProperty("minilogistics.api.adminToken");
+    volatile String session;
+
+    public ApiClient(String base) {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    static String enc(String s) { return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8); }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(60))
+                .header("Accept-Encoding", "gzip");
+        if (adminToken != null) b.header(ApiServer.ADMIN_HEADER, adminToken);
+        if (session != null) b.header(ApiServer.SESSION_HEADER, session);
+        return b;
+    }
+
+    public Object get(String path) { return send(request(path).GET().build()); }
+
+    public Object post(String path, Object body) {
+        return send(request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8)).build());
+    }
+
+    // Failures surface as UncheckedIOException; the Remote* controllers turn them into their usual error results
+    private Object send(HttpRequest req) {
+        try {
+            HttpResponse<InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+            String body;
+            try (InputStream in = body(res)) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Object v = Json.parse(body);
+            if (res.statusCode() != 200) {
+                String msg = v instanceof Map ? Json.s(Json.obj(v), "error") : body;
+                throw new IOException("HTTP " + res.statusCode() + " " + req.uri().getPath() + ": " + msg);
+            }
+            return v;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted", e));
+        }
+    }
+
+    InputStream stream(String path) throws IOException {
+        try {
+            HttpResponse<InputStream> res = http.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (res.statusCode() != 200) {
+                res.body().close();
+                throw new IOException("HTTP " + res.statusCode() + " " + path);
+            }
+            return body(res);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static InputStream body(HttpResponse<InputStream> res) throws IOException {
+        boolean gz = res.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+        return gz ? new GZIPInputStream(res.body()) : res.body();
+    }
+
+    static Object result(Object v) { return Json.obj(v).get("result"); }
+
+    static Map<String, Object> map(Object... kv) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) m.put((String) kv[i], kv[i + 1]);
+        return m;
+    }
+
+    static String filter(String status, int driverId) {
+        return (status == null ? "" : "&status=" + enc(status)) + "&driver=" + driverId;
+    }
+
+    // ---- Model mapping ----
+
+    static AdminDriverEntity driverEntity(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        AdminVehicle v = null;
+        if (m.get("vehicle") != null) {
+            Map<String, Object> vm = Json.obj(m.get("vehicle"));
+            v = new AdminVehicle(Json.s(vm, "model"), Json.s(vm, "plate"), Json.d(vm, "capacity"));
+        }
+        return new AdminDriverEntity(Json.i(m, "id"), Json.s(m, "name"), Json.s(m, "status"), Json.d(m, "rating"), Json.i(m, "activeJobs"), v);
+    }
+
+    static AdminDeliveryEntity deliveryEntity(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        return new AdminDeliveryEntity(Json.i(m, "id"), Json.s(m, "desc"), Json.s(m, "route"), Json.s(m, "status"),
+                Json.i(m, "assignedDriverId"), Json.s(m, "priority"), Json.s(m, "deadline"));
+    }
+
+    static AdminAuditLog auditLog(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        return new AdminAuditLog(Json.i(m, "id"), Json.s(m, "time"), Json.s(m, "cat"), Json.s(m, "det"));
+    }
+
+    static AdminLogResults logResults(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        AdminLogResults r = new AdminLogResults();
+        r.total = Json.i(m, "total");
+        r.rows = list(m.get("rows"), ApiClient::auditLog);
+        r.micros = Json.l(m, "micros");
+        r.error = Json.s(m, "error");
+        return r;
+    }
+
+    interface Mapper<T> { T map(Object o); }
+
+    static <T> List<T> list(Object o, Mapper<T> mapper) {
+        List<Object> in = Json.arr(o);
+        List<T> out = new ArrayList<>(in.size());
+        for (Object x : in) out.add(mapper.map(x));
+        return out;
+    }
+
+    static <T> AdminDelta<T> delta(Object o, Mapper<T> mapper) {
+        Map<String, Object> m = Json.obj(o);
+        AdminDelta<T> d = new AdminDelta<>(Json.l(m, "mark"));
+        d.expired = Json.b(m, "expired");
+        d.rows = list(m.get("rows"), mapper);
+        for (Object id : Json.arr(m.get("deleted"))) d.deleted.add(((Number) id).intValue());
+        return d;
+    }
+
+    static DriverSession session(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        DriverSession s = new DriverSession(Json.i(m, "id"), Json.s(m, "name"), Json.s(m, "status"), Json.d(m, "earnings"), Json.s(m, "email"), Json.s(m, "phone"));
+        s.todayEarnings = Json.d(m, "todayEarnings");
+        return s;
+    }
+
+    static DriverJob job(Object o) {
+        Map<String, Object> m = Json.obj(o);
+        return new DriverJob(Json.i(m, "id"), Json.s(m, "desc"), Json.s(m, "pickup"), Json.s(m, "dropoff"), Json.s(m, "status"), Json.d(m, "fee"), Json.s(m, "contact"));
+    }
+
+    // ---- Remote controllers: same contracts as the JDBC ones ----
+    // A network or server failure is logged and comes back the way a SQLException does locally ("DB Error", an
+    // empty list, false), so the views' completion callbacks still run and re-enable their controls.
+
+    static <T> T orElse(Supplier<T> call, T failed) {
+        try {
+            return call.get();
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+            return failed;
+        }
+    }
+
+    static String error(UncheckedIOException e) {
+        e.printStackTrace();
+        return "DB Error: " + reason(e);
+    }
+
+    // A refused connection has no message of its own
+    static String reason(UncheckedIOException e) {
+        IOException c = e.getCause();
+        return c.getMessage() != null ? c.getMessage() : c.toString();
+    }
+
+    static class RemoteAdmin extends AdminPortalController {
+        private final ApiClient api;
+        RemoteAdmin(ApiClient api) { this.api = api; }
+
+        public List<AdminDriverEntity> getDrivers() { return orElse(() -> list(api.get("/api/admin/drivers"), ApiClient::driverEntity), new ArrayList<>()); }
+        public boolean updateDriverStatus(int id, String status, String reason) {
+            return orElse(() -> Boolean.TRUE.equals(result(api.post("/api/admin/drivers/" + id + "/status", map("status", status, "reason", reason)))), false);
+        }
+        public List<AdminDeliveryEntity> getDeliveries() { return orElse(() -> list(api.get("/api/admin/deliveries"), ApiClient::deliveryEntity), new ArrayList<>()); }
+        public List<AdminDeliveryEntity> getDeliveriesPage(int afterId, int limit, String status, int driverId) {
+            return orElse(() -> list(api.get("/api/admin/deliveries/page?after=" + afterId + "&limit=" + limit + filter(status, driverId)), ApiClient::deliveryEntity),
+                    new ArrayList<>());
+        }
+        public int countDeliveries(String status, int driverId) {
+            return orElse(() -> ((Number) result(api.get("/api/admin/deliveries/count?" + filter(status, driverId).substring(1)))).intValue(), 0);
+        }
+        public int getDeliveryKeyBefore(int offset, String status, int driverId) {
+            if (offset <= 0) return 0;
+            return orElse(() -> ((Number) result(api.get("/api/admin/deliveries/keyBefore?offset=" + offset + filter(status, driverId)))).intValue(),
+                    Integer.MAX_VALUE);
+        }
+        public long getChangeMark() { return orElse(() -> ((Number) result(api.get("/api/admin/changes/mark"))).longValue(), 0L); }
+        // On failure the mark stays put, so the next poll asks for the same range again
+        public AdminDelta<AdminDriverEntity> getDriverChanges(long since) {
+            return orElse(() -> delta(api.get("/api/admin/changes/drivers?since=" + since), ApiClient::driverEntity), new AdminDelta<>(since));
+        }
+        public AdminDelta<AdminDeliveryEntity> getDeliveryChanges(long since) {
+            return orElse(() -> delta(api.get("/api/admin/changes/deliveries?since=" + since), ApiClient::deliveryEntity), new AdminDelta<>(since));
+        }
+        public List<String> assignMany(List<AdminAssignment> reqs) {
+            try {
+                return list(api.post("/api/admin/assignments", reqs), String::valueOf);
+            } catch (UncheckedIOException e) {
+                return new ArrayList<>(Collections.nCopies(reqs.size(), error(e)));
+            }
+        }
+        public List<AdminAuditLog> getLogs() { return orElse(() -> list(api.get("/api/admin/logs"), ApiClient::auditLog), new ArrayList<>()); }
+        public List<AdminAuditLog> getLogsSince(int lastLogId) {
+            return orElse(() -> list(api.get("/api/admin/logs?since=" + lastLogId), ApiClient::auditLog), new ArrayList<>());
+        }
+        public List<Integer> importDrivers(List<Repositories.DriverImport> rows) {
+            try {
+                return list(api.post("/api/admin/drivers/import", map("rows", rows)), o -> ((Number) o).intValue());
+            } catch (UncheckedIOException e) {
+                return null;
+            }
+        }
+        public List<Integer> ingestDeliveries(String source, long offset, long rowsLoaded, long prefixHash, List<Repositories.NewDelivery> rows) {
+            List<Map<String, Object>> body = new ArrayList<>(rows.size());
+            for (Repositories.NewDelivery d : rows) { // Json doesn't write LocalDateTime
+                body.add(map("desc", d.desc, "pickup", d.pickup, "dropoff", d.dropoff, "fee", d.fee, "contact", d.contact,
+                        "driverId", d.driverId, "priority", d.priority, "deadline", d.deadline == null ? null : d.deadline.toString()));
+            }
+            try {
+                return list(api.post("/api/admin/deliveries/ingest", map("source", source, "offset", offset, "rowsLoaded", rowsLoaded, "prefixHash", prefixHash, "rows", body)),
+                        o -> ((Number) o).intValue());
+            } catch (UncheckedIOException e) {
+                return null;
+            }
+        }
+        public long[] getIngestCheckpoint(String source) {
+            try {
+                List<Long> cp = list(api.get("/api/admin/deliveries/ingest/checkpoint?source=" + enc(source)), o -> ((Number) o).longValue());
+                return new long[] { cp.get(0), cp.get(1), cp.get(2) };
+            } catch (UncheckedIOException e) {
+                return null;
+            }
+        }
+        public AdminLogResults searchLogs(String query, int offset, int limit) {
+            try {
+                return logResults(api.get("/api/admin/logs/search?q=" + enc(query) + "&offset=" + offset + "&limit=" + limit));
+            } catch (UncheckedIOException e) {
+                AdminLogResults res = new AdminLogResults();
+                res.error = error(e);
+                return res;
+            }
+        }
+        public List<AdminAuditLog> getLogsRange(LocalDateTime from, LocalDateTime to, String category, int limit) {
+            return orElse(() -> list(api.get("/api/admin/logs/range?limit=" + limit + (from == null ? "" : "&from=" + from) + (to == null ? "" : "&to=" + to)
+                    + (category == null ? "" : "&category=" + enc(category))), ApiClient::auditLog), new ArrayList<>());
+        }
+        public String reconcileEarnings(boolean repair) {
+            try {
+                return String.valueOf(result(api.post("/api/admin/earnings/reconcile", map("repair", repair))));
+            } catch (UncheckedIOException e) {
+                return error(e);
+            }
+        }
+        public List<Metrics.Row> getMetrics() {
+            return orElse(() -> list(api.get("/api/admin/metrics"), o -> {
+                Map<String, Object> m = Json.obj(o);
+                return new Metrics.Row(Json.s(m, "name"), Json.l(m, "calls"), Json.l(m, "errors"), Json.l(m, "rows"), Json.d(m, "mean"),
+                        Json.d(m, "p50"), Json.d(m, "p90"), Json.d(m, "p99"), Json.d(m, "max"), Json.s(m, "lastError"));
+            }), new ArrayList<>());
+        }
+        public void resetMetrics() { orElse(() -> api.post("/api/admin/metrics/reset", map()), null); }
+        public String getPoolStats() {
+            try {
+                return "Server " + result(api.get("/api/admin/stats"));
+            } catch (UncheckedIOException e) {
+                return "Server unreachable: " + reason(e);
+            }
+        }
+        // generateReport goes through ReportEngine, which reads from ReportEngine.remote in client mode
+    }
+
+    static class RemoteDriver extends DriverAppController {
+        private final ApiClient api;
+        private volatile DriverSession current;
+        private volatile String notifyKey;
+        RemoteDriver(ApiClient api) { this.api = api; }
+
+        public String login(String email, String pass) {
+            try {
+                Map<String, Object> res = Json.obj(api.post("/api/driver/login", map("email", email, "pass", pass)));
+                if ("Success".equals(res.get("result"))) {
+                    api.session = Json.s(res, "token");
+                    current = session(res.get("session"));
+                    notifyKey = Json.s(res, "notifyKey");
+                }
+                return Json.s(res, "result");
+            } catch (UncheckedIOException e) {
+                return error(e);
+            }
+        }
+        public String register(String name, String email, String pass, String phone, String model, String plate) {
+            try {
+                return String.valueOf(result(api.post("/api/driver/register", map("name", name, "email", email, "pass", pass, "phone", phone, "model", model, "plate", plate))));
+            } catch (UncheckedIOException e) {
+                return error(e);
+            }
+        }
+        public List<DriverJob> getMyJobs() { return orElse(() -> list(api.get("/api/driver/jobs"), ApiClient::job), new ArrayList<>()); }
+        // A refused change comes back as 403/404/409 with the controller's message; shown like a local result
+        public String updateStatus(int jobId, String status) {
+            try {
+                Map<String, Object> res = Json.obj(api.post("/api/driver/jobs/" + jobId + "/status", map("status", status)));
+                apply(res.get("session"));
+                return Json.s(res, "result");
+            } catch (UncheckedIOException e) {
+                return reason(e);
+            }
+        }
+        public boolean completeJob(int jobId) {
+            try {
+                Map<String, Object> res = Json.obj(api.post("/api/driver/jobs/" + jobId + "/complete", map()));
+                apply(res.get("session"));
+                return Json.b(res, "result");
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        // A network failure is what the journal is for: report "retry later" instead of throwing
+        public List<String> syncStatus(List<Repositories.StatusUpdate> updates) {
+            try {
+                Map<String, Object> res = Json.obj(api.post("/api/driver/status-batch", map("updates", updates)));
+                apply(res.get("session"));
+                List<String> results = new ArrayList<>();
+                for (Object o : Json.arr(res.get("results"))) results.add(String.valueOf(o));
+                return results;
+            } catch (UncheckedIOException e) {
+                return null;
+            }
+        }
+        public void refreshEarnings() {
+            try {
+                apply(api.post("/api/driver/earnings/refresh", map()));
+            } catch (UncheckedIOException e) { e.printStackTrace(); }
+        }
+        public DriverVehicleInfo getVehicleInfo() {
+            try {
+                Map<String, Object> m = Json.obj(api.get("/api/driver/vehicle"));
+                return new DriverVehicleInfo(Json.s(m, "model"), Json.s(m, "plate"));
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+                return new DriverVehicleInfo("Unknown", "Unknown");
+            }
+        }
+        public boolean updateProfile(String name, String phone, String email) {
+            boolean ok = orElse(() -> Boolean.TRUE.equals(result(api.post("/api/driver/profile", map("name", name, "phone", phone, "email", email)))), false);
+            DriverSession s = current;
+            if (ok && s != null) { s.name = name; s.phone = phone; s.email = email; }
+            return ok;
+        }
+        public DriverSession getSession() { return current; }
+        public String getNotifyKey() { return notifyKey; }
+        public void logout() {
+            current = null;
+            notifyKey = null;
+            if (api.session != null) {
+                try { api.post("/api/driver/logout", map()); } catch (UncheckedIOException e) { e.printStackTrace(); }
+            }
+            api.session = null;
+            super.logout();
+        }
+
+        // Copies the server's view of the session into the one the views hold
+        private void apply(Object o) {
+            DriverSession s = current;
+            if (s == null || o == null) return;
+            DriverSession fresh = session(o);
+            s.earnings = fresh.earnings;
+            s.todayEarnings = fresh.todayEarnings;
+            s.status = fresh.status;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.minilogistics.api;
+
+import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.controller.AsyncControllers;
+import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.controller.ReportEngine;
+import com.minilogistics.db.Repositories;
+import com.minilogistics.model.AdminEntities.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+// Headless JSON API over the two controllers, on the JDK's built-in HTTP server. Every request runs on
+// its own virtual thread when the runtime has them (JDK 21+), otherwise on a bounded platform pool;
+// either way the shared ConnectionPool is what bounds concurrent DB work, and QueryCache is shared
+// by every client. Settings: minilogistics.api.port, .bind, .threads (fallback pool), .adminToken, .sessionIdleMs
+// Without an admin token the admin endpoints are open, so the server then only listens on loopback.
+public class ApiServer {
+
+    interface Handler { Object handle(Request r) throws Exception; }
+    interface Streamer { void stream(Request r, HttpExchange ex) throws Exception; }
+
+    static final class Route {
+        final String method;
+        final String[] segments;
+        final Handler handler;
+        final Streamer streamer;
+        Route(String method, String path, Handler handler, Streamer streamer) {
+            this.method = method; this.segments = path.substring(1).split("/"); this.handler = handler; this.streamer = streamer;
+        }
+    }
+
+    static final class Session {
+        final DriverAppController ctrl = new DriverAppController();
+        volatile long lastUsed = System.currentTimeMillis();
+    }
+
+    // Parsed request: path variables, query string and (lazily) the JSON body
+    static final class Request {
+        final HttpExchange ex;
+        final Map<String, String> vars = new HashMap<>(), query = new HashMap<>();
+        Session session;
+        private Object body;
+
+        Request(HttpExchange ex) {
+            this.ex = ex;
+            String q = ex.getRequestURI().getRawQuery();
+            if (q != null) {
+                for (String kv : q.split("&")) {
+                    int eq = kv.indexOf('=');
+                    if (eq > 0) query.put(decode(kv.substring(0, eq)), decode(kv.substring(eq + 1)));
+                }
+            }
+        }
+
+        Map<String, Object> body() throws IOException { return Json.obj(bodyValue()); }
+
+        Object bodyValue() throws IOException {
+            if (body == null) {
+                try (InputStream in = ex.getRequestBody()) {
+                    body = Json.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            return body;
+        }
+
+        int id() { return Integer.parseInt(vars.get("id")); }
+        String q(String k, String def) { return query.getOrDefault(k, def); }
+        int qi(String k, int def) { String v = query.get(k); return v == null ? def : Integer.parseInt(v); }
+        long ql(String k, long def) { String v = query.get(k); return v == null ? def : Long.parseLong(v); }
+
+        static String decode(String s) { return URLDecoder.decode(s, StandardCharsets.UTF_8); }
+    }
+
+    // ISO-8601 local date-time, e.g. 2026-10-18T00:00; absent means unbounded
+    static LocalDateTime time(String s) {
+        if (s == null || s.isEmpty()) return null;
+        try {
+            return LocalDateTime.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, "Bad date-time: " + s);
+        }
+    }
+
+    static final class HttpError extends RuntimeException {
+        final int status;
+        HttpError(int status, String msg) { super(msg); this.status = status; }
+    }
+
+    static final String SESSION_HEADER = "X-Session", ADMIN_HEADER = "X-Admin-Token";
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final List<Route> routes = new ArrayList<>();
+    private final AdminPortalController admin = new AdminPortalController();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final String adminToken = System.getProperty("minilogistics.api.adminToken");
+    private final long sessionIdleMs = Long.getLong("minilogistics.api.sessionIdleMs", 12 * 3600_000L);
+    private final AtomicLong requests = new AtomicLong(), errors = new AtomicLong();
+
+    public ApiServer(int port) throws IOException {
+        // Interface to listen on: loopback unless set, e.g. to 0.0.0.0 for desktops on other machines
+        String bind = System.getProperty("minilogistics.api.bind");
+        InetSocketAddress addr = bind == null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : new InetSocketAddress(bind, port);
+        if (adminToken == null && (addr.isUnresolved() || !addr.getAddress().isLoopbackAddress()))
+            throw new IllegalStateException("Refusing to serve the admin API on " + bind + " without -Dminilogistics.api.adminToken");
+        http = HttpServer.create(addr, 1024);
+        executor = AsyncControllers.newExecutor("api-", "minilogistics.api.threads", 200);
+        http.setExecutor(executor);
+        http.createContext("/api/", this::dispatch);
+        adminRoutes();
+        driverRoutes();
+    }
+
+    public void start() { http.start(); }
+
+    public void stop() {
+        http.stop(1);
+        executor.shutdown();
+    }
+
+    public String stats() {
+        return String.format("requests=%d errors=%d sessions=%d", requests.get(), errors.get(), sessions.size());
+    }
+
+    private void on(String method, String path, Handler h) { routes.add(new Route(method, path, h, null)); }
+    private void stream(String method, String path, Streamer s) { routes.add(new Route(method, path, null, s)); }
+
+    private void adminRoutes() {
+        on("GET", "/api/admin/drivers", r -> admin.getDrivers());
+        on("POST", "/api/admin/drivers/{id}/status", r -> {
+            Map<String, Object> b = r.body();
+            return result(admin.updateDriverStatus(r.id(), Json.s(b, "status"), Json.s(b, "reason")));
+        });
+        on("GET", "/api/admin/deliveries", r -> admin.getDeliveries());
+        on("GET", "/api/admin/deliveries/page", r -> admin.getDeliveriesPage(r.qi("after", 0), Math.min(r.qi("limit", 200), 5000), r.q("status", null), r.qi("driver", -1)));
+        on("GET", "/api/admin/deliveries/count", r -> result(admin.countDeliveries(r.q("status", null), r.qi("driver", -1))));
+        on("GET", "/api/admin/deliveries/keyBefore", r -> result(admin.getDeliveryKeyBefore(r.qi("offset", 0), r.q("status", null), r.qi("driver", -1))));
+        on("GET", "/api/admin/changes/mark", r -> result(admin.getChangeMark()));
+        on("GET", "/api/admin/changes/drivers", r -> admin.getDriverChanges(r.ql("since", 0)));
+        on("GET", "/api/admin/changes/deliveries", r -> admin.getDeliveryChanges(r.ql("since", 0)));
+        on("POST", "/api/admin/assignments", r -> {
+            List<AdminAssignment> reqs = new ArrayList<>();
+            for (Object o : Json.arr(r.bodyValue())) {
+                Map<String, Object> a = Json.obj(o);
+                reqs.add(new AdminAssignment(Json.i(a, "deliveryId"), Json.i(a, "driverId"), Json.s(a, "priority"), Json.i(a, "hours"),
+                        a.get("seenDriverId") instanceof Number ? Json.i(a, "seenDriverId") : -1));
+            }
+            return admin.assignMany(reqs);
+        });
+        on("GET", "/api/admin/logs", r -> r.query.containsKey("since") ? admin.getLogsSince(r.qi("since", 0)) : admin.getLogs());
+        on("POST", "/api/admin/drivers/import", r -> {
+            List<Repositories.DriverImport> rows = new ArrayList<>();
+            for (Object o : Json.arr(r.body().get("rows"))) {
+                Map<String, Object> d = Json.obj(o);
+                rows.add(new Repositories.DriverImport(Json.s(d, "name"), Json.s(d, "email"), Json.s(d, "pass"), Json.s(d, "phone"),
+                        Json.s(d, "model"), Json.s(d, "plate")));
+            }
+            List<Integer> ids = admin.importDrivers(rows);
+            if (ids == null) throw new HttpError(503, "Import chunk failed and was rolled back");
+            return ids;
+        });
+        on("POST", "/api/admin/deliveries/ingest", r -> {
+            Map<String, Object> b = r.body();
+            List<Repositories.NewDelivery> rows = new ArrayList<>();
+            for (Object o : Json.arr(b.get("rows"))) {
+                Map<String, Object> d = Json.obj(o);
+                rows.add(new Repositories.NewDelivery(Json.s(d, "desc"), Json.s(d, "pickup"), Json.s(d, "dropoff"), Json.d(d, "fee"),
+                        Json.s(d, "contact"), Json.i(d, "driverId"), Json.s(d, "priority"), time(Json.s(d, "deadline"))));
+            }
+            List<Integer> ids = admin.ingestDeliveries(Json.s(b, "source"), Json.l(b, "offset"), Json.l(b, "rowsLoaded"), Json.l(b, "prefixHash"), rows);
+            if (ids == null) throw new HttpError(503, "Ingest batch failed and was rolled back");
+            return ids;
+        });
+        on("GET", "/api/admin/deliveries/ingest/checkpoint", r -> {
+            long[] cp = admin.getIngestCheckpoint(r.q("source", ""));
+            if (cp == null) throw new HttpError(503, "Database unavailable");
+            return List.of(cp[0], cp[1], cp[2]);
+        });
+        on("GET", "/api/admin/logs/search", r -> admin.searchLogs(r.q("q", ""), r.qi("offset", 0), Math.min(r.qi("limit", 50), 1000)));
+        on("GET", "/api/admin/logs/range", r -> admin.getLogsRange(time(r.q("from", null)), time(r.q("to", null)), r.q("category", null),
+                Math.min(r.qi("limit", 100), 5000)));
+        on("GET", "/api/admin/metrics", r -> admin.getMetrics());
+        on("POST", "/api/admin/metrics/reset", r -> { admin.resetMetrics(); return result(true); });
+        on("GET", "/api/admin/stats", r -> result(admin.getPoolStats() + "   API: " + stats()));
+        on("POST", "/api/admin/earnings/reconcile", r -> result(admin.reconcileEarnings(Json.b(r.body(), "repair"))));
+        // Streams the report engine's output as text; limit > 0 asks for a preview
+        stream("GET", "/api/admin/reports/{type}", (r, ex) -> {
+            ReportEngine.Format fmt = ReportEngine.Format.valueOf(r.q("format", "TEXT"));
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            boolean gz = accepts(ex);
+            if (gz) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            ex.sendResponseHeaders(200, 0);
+            OutputStream os = gz ? new GZIPOutputStream(ex.getResponseBody(), 1 << 16) : ex.getResponseBody();
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16)) {
+                new ReportEngine().write(r.vars.get("type"), fmt, w, r.qi("limit", 0), 0, null);
+            }
+        });
+    }
+
+    private void driverRoutes() {
+        on("POST", "/api/driver/login", r -> {
+            Map<String, Object> b = r.body();
+            Session s = new Session();
+            String res = s.ctrl.login(Json.s(b, "email"), Json.s(b, "pass"));
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("result", res);
+            if ("Success".equals(res)) {
+                String token = newToken();
+                sessions.put(token, s);
+                out.put("token", token);
+                out.put("session", s.ctrl.getSession());
+                out.put("notifyKey", s.ctrl.getNotifyKey()); // the secret behind it stays on the server
+            }
+            sweepSessions();
+            return out;
+        });
+        on("POST", "/api/driver/register", r -> {
+            Map<String, Object> b = r.body();
+            return result(new DriverAppController().register(Json.s(b, "name"), Json.s(b, "email"), Json.s(b, "pass"),
+                    Json.s(b, "phone"), Json.s(b, "model"), Json.s(b, "plate")));
+        });
+        on("GET", "/api/driver/session", r -> r.session.ctrl.getSession());
+        on("GET", "/api/driver/jobs", r -> r.session.ctrl.getMyJobs());
+        on("POST", "/api/driver/jobs/{id}/status", r -> {
+            String res = r.session.ctrl.updateStatus(r.id(), Json.s(r.body(), "status"));
+            if (Repositories.GONE.equals(res)) throw new HttpError(404, res);
+            if (Repositories.REASSIGNED.equals(res)) throw new HttpError(403, res);
+            if (res.startsWith("Conflict")) throw new HttpError(409, res);
+            if (!"Success".equals(res)) throw new HttpError(503, res);
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("result", res);
+            out.put("session", r.session.ctrl.getSession());
+            return out;
+        });
+        on("POST", "/api/driver/status-batch", r -> {
+            List<Repositories.StatusUpdate> ups = new ArrayList<>();
+            for (Object o : Json.arr(r.body().get("updates"))) {
+                Map<String, Object> u = Json.obj(o);
+                ups.add(new Repositories.StatusUpdate(Json.s(u, "key"), Json.i(u, "deliveryId"), Json.s(u, "status"), Json.l(u, "at")));
+            }
+            List<String> results = r.session.ctrl.syncStatus(ups);
+            if (results == null) throw new HttpError(503, "Database unavailable"); // client keeps the batch and retries
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("results", results);
+            out.put("session", r.session.ctrl.getSession());
+            return out;
+        });
+        on("POST", "/api/driver/jobs/{id}/complete", r -> {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("result", r.session.ctrl.completeJob(r.id()));
+            out.put("session", r.session.ctrl.getSession());
+            return out;
+        });
+        on("POST", "/api/driver/earnings/refresh", r -> {
+            r.session.ctrl.refreshEarnings();
+            return r.session.ctrl.getSession();
+        });
+        on("GET", "/api/driver/vehicle", r -> r.session.ctrl.getVehicleInfo());
+        on("POST", "/api/driver/profile", r -> {
+            Map<String, Object> b = r.body();
+            return result(r.session.ctrl.updateProfile(Json.s(b, "name"), Json.s(b, "phone"), Json.s(b, "email")));
+        });
+        on("POST", "/api/driver/logout", r -> {
+            sessions.remove(r.ex.getRequestHeaders().getFirst(SESSION_HEADER));
+            return result(true);
+        });
+    }
+
+    static Map<String, Object> result(Object v) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("result", v);
+        return m;
+    }
+
+    private String newToken() {
+        byte[] b = new byte[16];
+        random.nextBytes(b);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte x : b) sb.append(String.format("%02x", x));
+        return sb.toString();
+    }
+
+    private void sweepSessions() {
+        long cutoff = System.currentTimeMillis() - sessionIdleMs;
+        sessions.values().removeIf(s -> s.lastUsed < cutoff);
+    }
+
+    private void dispatch(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Request r = new Request(ex);
+            Route route = match(ex.getRequestMethod(), ex.getRequestURI().getPath(), r);
+            if (route == null) throw new HttpError(404, "No such endpoint");
+            authorize(r);
+            if (route.streamer != null) {
+                route.streamer.stream(r, ex);
+            } else {
+                send(ex, 200, Json.write(route.handler.handle(r)));
+            }
+        } catch (HttpError e) {
+            fail(ex, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) { // includes NumberFormatException and bad JSON
+            fail(ex, 400, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(ex, 500, String.valueOf(e.getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void fail(HttpExchange ex, int status, String msg) throws IOException {
+        errors.incrementAndGet();
+        if (ex.getResponseCode() == -1) send(ex, status, Json.write(error(msg)));
+        // else a streamed response already started; closing the exchange cuts it short
+    }
+
+    private void authorize(Request r) {
+        String path = r.ex.getRequestURI().getPath();
+        if (path.startsWith("/api/admin/")) {
+            if (adminToken != null && !adminToken.equals(r.ex.getRequestHeaders().getFirst(ADMIN_HEADER)))
+                throw new HttpError(401, "Admin token required");
+        } else if (!path.equals("/api/driver/login") && !path.equals("/api/driver/register")) {
+            String token = r.ex.getRequestHeaders().getFirst(SESSION_HEADER);
+            Session s = token == null ? null : sessions.get(token);
+            if (s == null) throw new HttpError(401, "Not logged in");
+            s.lastUsed = System.currentTimeMillis();
+            r.session = s;
+        }
+    }
+
+    private Route match(String method, String path, Request r) {
+        String[] parts = path.substring(1).split("/");
+        for (Route route : routes) {
+            if (!route.method.equals(method) || route.segments.length != parts.length) continue;
+            boolean ok = true;
+            for (int i = 0; i < parts.length && ok; i++) {
+                String seg = route.segments[i];
+                if (seg.startsWith("{")) r.vars.put(seg.substring(1, seg.length() - 1), Request.decode(parts[i]));
+                else ok = seg.equals(parts[i]);
+            }
+            if (ok) return route;
+            r.vars.clear();
+        }
+        return null;
+    }
+
+    static Map<String, Object> error(String msg) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("error", msg);
+        return m;
+    }
+
+    static boolean accepts(HttpExchange ex) {
+        String ae = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        return ae != null && ae.contains("gzip");
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (body.length > 2048 && accepts(ex)) {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            ex.sendResponseHeaders(status, 0);
+            try (OutputStream os = new GZIPOutputStream(ex.getResponseBody())) {
+                os.write(body);
+            }
+        } else {
+            ex.sendResponseHeaders(status, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.minilogistics.main;
+
+import com.minilogistics.api.ApiServer;
+import com.minilogistics.controller.Notifications;
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.AuditArchive;
+import com.minilogistics.db.ChangeLog;
+import com.minilogistics.db.JdbcStore;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.Repositories;
+
+// Headless server: the JSON API plus the notification server, for desktops running in client mode
+//   java -Dminilogistics.api.bind=0.0.0.0 -Dminilogistics.api.adminToken=SECRET -Dminilogistics.notify.bind=0.0.0.0 -cp ... com.minilogistics.main.ApiServerApp
+public class ApiServerApp {
+    public static void main(String[] args) throws Exception {
+        Metrics.startDumps(); // no-op unless minilogistics.metrics.dumpFile is set
+        // Many requests share one process now, so give the pool more room than a single desktop needs
+        if (System.getProperty("minilogistics.pool.max") == null) System.setProperty("minilogistics.pool.max", "32");
+        int port = Integer.getInteger("minilogistics.api.port", 8080);
+
+        ApiServer api = new ApiServer(port); // first: refuses an unprotected non-loopback bind before anything starts
+        Notifications.Server notify = Notifications.startServer();
+        AuditArchive.startMaintenance();
+        ChangeLog.startPruning();
+        api.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(api::stop));
+        System.out.println("API server listening on port " + port);
+
+        while (true) {
+            Thread.sleep(60000);
+            System.out.println("API: " + api.stats() + (Repositories.shared() instanceof JdbcStore ? " | Pool: " + AdminDBConfig.pool().stats() : "")
+                    + (notify != null ? " | Notify: " + notify.stats() : ""));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import javax.swing.SwingUtilities;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Async wrappers around both controllers so JDBC never runs on the Swing event thread.
+// Work runs on DB_EXECUTOR; views hop back with thenAcceptAsync(..., AsyncControllers.EDT).
+public class AsyncControllers {
+
+    public static final Executor EDT = SwingUtilities::invokeLater;
+    // Either way the connection pool is what bounds concurrent DB work
+    public static final ExecutorService DB_EXECUTOR = newExecutor("db-worker-", "minilogistics.async.threads", 8);
+
+    // Virtual threads when the runtime has them (JDK 21+, looked up reflectively so this still builds on
+    // older JDKs), otherwise a fixed pool of daemon threads named threadPrefix + n, sized by the
+    // threadsProperty system property (defaultThreads when unset, or when threadsProperty is null)
+    public static ExecutorService newExecutor(String threadPrefix, String threadsProperty, int defaultThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            int threads = threadsProperty == null ? defaultThreads : Integer.getInteger(threadsProperty, defaultThreads);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, threadPrefix + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> f = CompletableFuture.supplyAsync(work, DB_EXECUTOR);
+        f.whenComplete((v, ex) -> { if (ex != null) ex.printStackTrace(); });
+        return f;
+    }
+
+    // One per auto-refreshing view, only touched from the EDT.
+    // tick(): skipped while the previous fetch is still running, so slow queries never pile up behind a Timer.
+    // refresh(): supersedes whatever is in flight. The superseded work is not interrupted, its result is just dropped.
+    public static class Refresher {
+        private CompletableFuture<?> inFlight;
+        private int generation;
+
+        public <T> void tick(Supplier<T> work, Consumer<T> apply) {
+            if (isBusy()) return;
+            start(work, apply);
+        }
+
+        public <T> void refresh(Supplier<T> work, Consumer<T> apply) {
+            // Only marks the old future done so tick() stops waiting on it; the query itself still runs to the end
+            if (inFlight != null) inFlight.cancel(false);
+            start(work, apply);
+        }
+
+        public boolean isBusy() { return inFlight != null && !inFlight.isDone(); }
+
+        private <T> void start(Supplier<T> work, Consumer<T> apply) {
+            int gen = ++generation;
+            CompletableFuture<T> f = submit(work);
+            inFlight = f;
+            f.thenAcceptAsync(v -> { if (gen == generation) apply.accept(v); }, EDT);
+        }
+    }
+
+    public static class Admin {
+        private final AdminPortalController ctrl;
+        public Admin(AdminPortalController ctrl) { this.ctrl = ctrl; }
+
+        public CompletableFuture<List<AdminDriverEntity>> getDrivers() { return submit(ctrl::getDrivers); }
+        public CompletableFuture<Boolean> updateDriverStatus(int id, String status, String reason) { return submit(() -> ctrl.updateDriverStatus(id, status, reason)); }
+        public CompletableFuture<List<AdminDeliveryEntity>> getDeliveries() { return submit(ctrl::getDeliveries); }
+        public CompletableFuture<List<AdminDeliveryEntity>> getDeliveriesPage(int afterId, int limit, String status, int driverId) { return submit(() -> ctrl.getDeliveriesPage(afterId, limit, status, driverId)); }
+        public CompletableFuture<Integer> countDeliveries(String status, int driverId) { return submit(() -> ctrl.countDeliveries(status, driverId)); }
+        public CompletableFuture<Long> getChangeMark() { return submit(ctrl::getChangeMark); }
+        public CompletableFuture<AdminDelta<AdminDriverEntity>> getDriverChanges(long since) { return submit(() -> ctrl.getDriverChanges(since)); }
+        public CompletableFuture<AdminDelta<AdminDeliveryEntity>> getDeliveryChanges(long since) { return submit(() -> ctrl.getDeliveryChanges(since)); }
+        public CompletableFuture<String> assignDriver(int delId, int drvId, String pri, int hours) { return submit(() -> ctrl.assignDriver(delId, drvId, pri, hours)); }
+        public CompletableFuture<List<String>> assignMany(List<AdminAssignment> reqs) { return submit(() -> ctrl.assignMany(reqs)); }
+        public CompletableFuture<List<AdminAuditLog>> getLogs() { return submit(ctrl::getLogs); }
+        public CompletableFuture<List<AdminAuditLog>> getLogsSince(int lastLogId) { return submit(() -> ctrl.getLogsSince(lastLogId)); }
+        public CompletableFuture<AdminLogResults> searchLogs(String query, int offset, int limit) { return submit(() -> ctrl.searchLogs(query, offset, limit)); }
+        public CompletableFuture<List<AdminAuditLog>> getLogsRange(LocalDateTime from, LocalDateTime to, String category, int limit) {
+            return submit(() -> ctrl.getLogsRange(from, to, category, limit));
+        }
+        public CompletableFuture<String> generateReport(String type) { return submit(() -> ctrl.generateReport(type)); }
+        public CompletableFuture<String> reconcileEarnings(boolean repair) { return submit(() -> ctrl.reconcileEarnings(repair)); }
+    }
+
+    public static class Driver {
+        private final DriverAppController ctrl;
+        public Driver(DriverAppController ctrl) { this.ctrl = ctrl; }
+
+        public CompletableFuture<String> login(String email, String pass) { return submit(() -> ctrl.login(email, pass)); }
+        public CompletableFuture<String> register(String name, String email, String pass, String phone, String model, String plate) {
+            return submit(() -> ctrl.register(name, email, pass, phone, model, plate));
+        }
+        public CompletableFuture<List<DriverJob>> getMyJobs() { return submit(ctrl::getMyJobs); }
+        public CompletableFuture<String> updateStatus(int jobId, String status) { return submit(() -> ctrl.updateStatus(jobId, status)); }
+        public CompletableFuture<Boolean> completeJob(int jobId) { return submit(() -> ctrl.completeJob(jobId)); }
+        public CompletableFuture<DriverVehicleInfo> getVehicleInfo() { return submit(ctrl::getVehicleInfo); }
+        public CompletableFuture<Boolean> updateProfile(String name, String phone, String email) { return submit(() -> ctrl.updateProfile(name, phone, email)); }
+    }
+}
@@ -0,0 +1,491 @@
+package com.minilogistics.db;
+
+import com.minilogistics.model.AdminEntities.AdminAuditLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Keeps audit_logs small: the table is RANGE-partitioned by day (migrations/V8__audit_partitions.sql) and
+// maintain() rolls every partition older than the retention window into a compressed segment file, then
+// drops the partition (a metadata operation, no DELETE). Segments are written once and never modified.
+// Segment layout: deflated blocks of up to BLOCK entries in (timestamp, log_id) order, then a footer with
+// the segment's category dictionary and, per block, its offset, time range and category bitmask, so a
+// range query only inflates blocks that can match. Times are stored as the DATETIME's own wall-clock value.
+// Settings: minilogistics.audit.archiveDir (audit-archive), .retentionDays (30), .partitionDaysAhead (7),
+// .archiveEveryMin (60), .archiveRetentionDays (0 = keep segments forever), .maintain (true)
+// Every process that talks to the database may schedule maintenance, but a run only proceeds under the
+// MySQL named lock LOCK, so one process at a time archives and the others skip that round. The segments
+// are read by every such process, so archiveDir has to be the same shared location for all of them;
+// readers pick up segments another process wrote by watching the directory.
+public class AuditArchive {
+    static final int BLOCK = 2048;
+    static final long MAGIC = 0x4D4C415544495431L; // "MLAUDIT1"
+    static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    static final long TO_DAYS_EPOCH = 719528; // MySQL TO_DAYS('1970-01-01')
+    static final String LOCK = "minilogistics.audit_maintenance";
+
+    private static volatile AuditArchive shared;
+    private static ScheduledExecutorService maintainer;
+
+    public static AuditArchive shared() {
+        if (shared == null) {
+            synchronized (AuditArchive.class) {
+                if (shared == null) {
+                    shared = new AuditArchive(Paths.get(System.getProperty("minilogistics.audit.archiveDir", "audit-archive")),
+                            Integer.getInteger("minilogistics.audit.retentionDays", 30),
+                            Integer.getInteger("minilogistics.audit.partitionDaysAhead", 7),
+                            Integer.getInteger("minilogistics.audit.archiveRetentionDays", 0));
+                }
+            }
+        }
+        return shared;
+    }
+
+    // Runs maintain() now and every archiveEveryMin minutes, unless -Dminilogistics.audit.maintain=false
+    public static synchronized void startMaintenance() {
+        if (maintainer != null || !(Repositories.shared() instanceof JdbcStore)) return;
+        if (!Boolean.parseBoolean(System.getProperty("minilogistics.audit.maintain", "true"))) return;
+        long every = Long.getLong("minilogistics.audit.archiveEveryMin", 60L);
+        maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-archive");
+            t.setDaemon(true);
+            return t;
+        });
+        maintainer.scheduleWithFixedDelay(() -> {
+            try {
+                System.out.println("Audit archive: " + shared().maintain());
+            } catch (SQLException | IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, every, TimeUnit.MINUTES);
+    }
+
+    private final Path dir;
+    private final int retentionDays, daysAhead, archiveRetentionDays;
+    private List<Segment> segments; // newest first; loaded on first use
+    private FileTime listed; // dir's modification time when segments was loaded
+
+    public AuditArchive(Path dir, int retentionDays, int daysAhead, int archiveRetentionDays) {
+        this.dir = dir; this.retentionDays = retentionDays; this.daysAhead = daysAhead; this.archiveRetentionDays = archiveRetentionDays;
+    }
+
+    // Days an entry stays in audit_logs; anything dated before today minus this is archived on the next run
+    public int retentionDays() { return retentionDays; }
+
+    // ---- Partition maintenance ----
+
+    static String partitionName(LocalDate bound) { return "p" + DAY.format(bound); }
+
+    // Adds partitions for the coming days, rolls expired ones into segments and drops them. Returns a summary.
+    // Skipped while another process holds LOCK; the lock is tied to the connection, so a crash releases it.
+    public String maintain() throws SQLException, IOException {
+        try (Metrics.Span m = Metrics.op("audit.maintain"); Connection c = AdminDBConfig.getConnection()) {
+            Integer got = Sql.one(c, "SELECT GET_LOCK(?, 0)", rs -> rs.getInt(1), LOCK);
+            if (got == null || got != 1) return "skipped, another process is maintaining audit_logs";
+            try {
+                return maintain(c, m);
+            } finally {
+                Sql.one(c, "SELECT RELEASE_LOCK(?)", rs -> rs.getInt(1), LOCK);
+            }
+        }
+    }
+
+    private String maintain(Connection c, Metrics.Span m) throws SQLException, IOException {
+        Map<String, LocalDate> parts = new HashMap<>(); // name -> exclusive upper bound (p_future: null)
+        Sql.each(c, "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'audit_logs' AND PARTITION_NAME IS NOT NULL", rs -> {
+            String bound = rs.getString(2);
+            parts.put(rs.getString(1), "MAXVALUE".equals(bound) ? null : LocalDate.ofEpochDay(Long.parseLong(bound) - TO_DAYS_EPOCH));
+        });
+        if (!parts.containsKey("p_future")) return "audit_logs is not partitioned (run migrations/V8__audit_partitions.sql)";
+
+        LocalDate today = LocalDate.now(), cutoff = today.minusDays(retentionDays), last = null;
+        for (LocalDate b : parts.values()) if (b != null && (last == null || b.isAfter(last))) last = b;
+        if (last == null) {
+            // First run: one partition per day from the oldest entry, except that everything already past
+            // the retention window shares the first partition (so it is archived right away, as one segment)
+            LocalDateTime oldest = Sql.one(c, "SELECT MIN(timestamp) FROM audit_logs", rs -> {
+                Timestamp t = rs.getTimestamp(1);
+                return t == null ? null : t.toLocalDateTime();
+            });
+            last = oldest == null ? today : oldest.toLocalDate();
+            if (last.isBefore(cutoff.minusDays(1))) last = cutoff.minusDays(1);
+            if (last.isAfter(today)) last = today;
+        }
+        StringBuilder add = new StringBuilder();
+        int added = 0;
+        for (LocalDate b = last.plusDays(1); !b.isAfter(today.plusDays(daysAhead + 1)); b = b.plusDays(1), added++) {
+            add.append("PARTITION ").append(partitionName(b)).append(" VALUES LESS THAN (TO_DAYS('").append(b).append("')), ");
+            parts.put(partitionName(b), b);
+        }
+        if (added > 0) {
+            Sql.update(c, "ALTER TABLE audit_logs REORGANIZE PARTITION p_future INTO (" + add + "PARTITION p_future VALUES LESS THAN MAXVALUE)");
+        }
+
+        List<Map.Entry<String, LocalDate>> expired = new ArrayList<>();
+        for (Map.Entry<String, LocalDate> p : parts.entrySet()) {
+            if (p.getValue() != null && !p.getValue().isAfter(cutoff)) expired.add(p);
+        }
+        expired.sort(Map.Entry.comparingByValue());
+        long rows = 0;
+        for (Map.Entry<String, LocalDate> p : expired) {
+            rows += rollover(c, p.getKey());
+            // Only once the segment and its rename are durable; a crash before this rewrites the same segment next run
+            Sql.update(c, "ALTER TABLE audit_logs DROP PARTITION " + p.getKey());
+        }
+        int pruned = pruneSegments(today);
+        m.rows(rows);
+        return added + " partition(s) added, " + expired.size() + " archived (" + rows + " rows), " + pruned + " old segment(s) removed";
+    }
+
+    private long rollover(Connection c, String partition) throws SQLException, IOException {
+        String sql = "SELECT log_id, timestamp, category, details FROM audit_logs PARTITION (" + partition + ") ORDER BY timestamp, log_id";
+        Metrics.Span m = Metrics.sql(sql);
+        // Three-arg prepare bypasses the statement cache: this SQL names one partition and never runs twice
+        try (PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            SegmentWriter w = new SegmentWriter(dir.resolve("audit-" + partition + ".seg"));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp t = rs.getTimestamp(2);
+                    w.add(rs.getInt(1), t.toLocalDateTime().toEpochSecond(ZoneOffset.UTC), rs.getString(3), rs.getString(4));
+                }
+            } catch (SQLException | RuntimeException e) {
+                w.abort();
+                throw e;
+            }
+            if (w.rows == 0) { // nothing to keep
+                w.abort();
+                return 0;
+            }
+            Segment s = w.finish();
+            synchronized (this) {
+                if (segments != null) {
+                    segments.removeIf(old -> old.file.equals(s.file));
+                    segments.add(s);
+                    segments.sort(NEWEST_FIRST);
+                }
+            }
+            m.rows(s.count);
+            return s.count;
+        } catch (SQLException | IOException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    private int pruneSegments(LocalDate today) throws IOException {
+        if (archiveRetentionDays <= 0) return 0;
+        long cutoff = today.minusDays(archiveRetentionDays).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        int n = 0;
+        synchronized (this) {
+            for (Segment s : new ArrayList<>(segments())) {
+                if (s.maxTs < cutoff) {
+                    Files.deleteIfExists(s.file);
+                    segments.remove(s);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    // ---- Queries ----
+
+    static final Comparator<Segment> NEWEST_FIRST = Comparator.comparingLong((Segment s) -> s.maxTs).reversed();
+
+    // Re-lists the directory whenever it changed, which is how segments written or pruned by the process
+    // holding LOCK show up here; segments already open are kept rather than read again
+    private synchronized List<Segment> segments() throws IOException {
+        FileTime modified = Files.isDirectory(dir) ? Files.getLastModifiedTime(dir) : null;
+        if (segments == null || !Objects.equals(modified, listed)) {
+            Map<Path, Segment> open = new HashMap<>();
+            if (segments != null) for (Segment s : segments) open.put(s.file, s);
+            List<Segment> found = new ArrayList<>();
+            if (modified != null) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path p : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".seg"))::iterator) {
+                        Segment s = open.get(p);
+                        found.add(s != null ? s : Segment.open(p));
+                    }
+                }
+            }
+            found.sort(NEWEST_FIRST);
+            segments = found;
+            listed = modified;
+        }
+        return segments;
+    }
+
+    // Archived entries in [from, to) (either may be null), optionally of one category, newest first
+    public List<AdminAuditLog> query(LocalDateTime from, LocalDateTime to, String category, int limit) throws IOException {
+        long lo = from == null ? Long.MIN_VALUE : from.toEpochSecond(ZoneOffset.UTC);
+        long hi = to == null ? Long.MAX_VALUE : to.toEpochSecond(ZoneOffset.UTC);
+        List<AdminAuditLog> out = new ArrayList<>();
+        List<Segment> segs;
+        synchronized (this) { segs = new ArrayList<>(segments()); }
+        for (Segment s : segs) {
+            if (out.size() >= limit) break;
+            if (s.maxTs < lo || s.minTs >= hi) continue;
+            s.scan(lo, hi, category, limit - out.size(), out);
+        }
+        return out;
+    }
+
+    public synchronized int segmentCount() throws IOException { return segments().size(); }
+
+    // ---- Segment files ----
+
+    static final class Block {
+        final long offset, minTs, maxTs, catMask;
+        final int length, count;
+        Block(long offset, int length, int count, long minTs, long maxTs, long catMask) {
+            this.offset = offset; this.length = length; this.count = count; this.minTs = minTs; this.maxTs = maxTs; this.catMask = catMask;
+        }
+    }
+
+    // Category bits: one per dictionary entry, with the top bit shared by every category past the 63rd
+    static long catBit(int idx) { return 1L << Math.min(idx, 63); }
+
+    static final class Segment {
+        final Path file;
+        final List<String> cats;
+        final List<Block> blocks;
+        final long minTs, maxTs, count;
+
+        Segment(Path file, List<String> cats, List<Block> blocks) {
+            this.file = file; this.cats = cats; this.blocks = blocks;
+            long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE, n = 0;
+            for (Block b : blocks) { lo = Math.min(lo, b.minTs); hi = Math.max(hi, b.maxTs); n += b.count; }
+            minTs = lo; maxTs = hi; count = n;
+        }
+
+        // Reads the footer only; blocks are inflated by scan
+        static Segment open(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                ByteBuffer tail = ByteBuffer.allocate(16);
+                if (size < 16 || ch.read(tail, size - 16) != 16) throw new IOException("Truncated segment " + file);
+                tail.flip();
+                long footerAt = tail.getLong();
+                if (tail.getLong() != MAGIC) throw new IOException("Not an audit segment: " + file);
+                ByteBuffer footer = ByteBuffer.allocate((int) (size - 16 - footerAt));
+                ch.read(footer, footerAt);
+                footer.flip();
+                try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(footer.array()))) {
+                    int nc = in.readInt();
+                    List<String> cats = new ArrayList<>(nc);
+                    for (int i = 0; i < nc; i++) cats.add(in.readUTF());
+                    int nb = in.readInt();
+                    List<Block> blocks = new ArrayList<>(nb);
+                    for (int i = 0; i < nb; i++) {
+                        blocks.add(new Block(in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong()));
+                    }
+                    return new Segment(file, cats, blocks);
+                }
+            }
+        }
+
+        void scan(long lo, long hi, String category, int limit, List<AdminAuditLog> out) throws IOException {
+            long want = -1;
+            if (category != null) {
+                int idx = cats.indexOf(category);
+                if (idx < 0) return;
+                want = catBit(idx);
+            }
+            int added = 0;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int b = blocks.size() - 1; b >= 0 && added < limit; b--) {
+                    Block blk = blocks.get(b);
+                    if (blk.maxTs < lo || blk.minTs >= hi || (blk.catMask & want) == 0) continue;
+                    List<AdminAuditLog> rows = inflate(ch, blk);
+                    for (int i = rows.size() - 1; i >= 0 && added < limit; i--) {
+                        AdminAuditLog r = rows.get(i);
+                        long ts = LocalDateTime.parse(r.time, TS).toEpochSecond(ZoneOffset.UTC);
+                        if (ts < lo || ts >= hi || (category != null && !category.equals(r.cat))) continue;
+                        out.add(r);
+                        added++;
+                    }
+                }
+            }
+        }
+
+        private List<AdminAuditLog> inflate(FileChannel ch, Block blk) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(blk.length);
+            ch.read(buf, blk.offset);
+            Inflater inf = new Inflater();
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(blk.length * 4);
+            try {
+                inf.setInput(buf.array());
+                byte[] chunk = new byte[1 << 16];
+                while (!inf.finished()) {
+                    int n = inf.inflate(chunk);
+                    if (n == 0 && (inf.needsInput() || inf.needsDictionary())) throw new IOException("Corrupt block in " + file);
+                    raw.write(chunk, 0, n);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in " + file, e);
+            } finally {
+                inf.end();
+            }
+            List<AdminAuditLog> rows = new ArrayList<>(blk.count);
+            try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(raw.toByteArray()))) {
+                for (int i = 0; i < blk.count; i++) {
+                    int id = in.readInt();
+                    long ts = in.readLong();
+                    String cat = cats.get(in.readUnsignedShort());
+                    byte[] det = new byte[in.readInt()];
+                    in.readFully(det);
+                    rows.add(new AdminAuditLog(id, TS.format(LocalDateTime.ofEpochSecond(ts, 0, ZoneOffset.UTC)), cat,
+                            new String(det, StandardCharsets.UTF_8)));
+                }
+            }
+            return rows;
+        }
+    }
+
+    // Writes to <name>.part and renames on finish, so a segment file is either complete or absent
+    static final class SegmentWriter {
+        private final Path target, part;
+        private final FileChannel ch;
+        private final Map<String, Integer> catIdx = new HashMap<>();
+        private final List<String> cats = new ArrayList<>();
+        private final List<Block> blocks = new ArrayList<>();
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream(1 << 18);
+        private final DataOutputStream data = new DataOutputStream(raw);
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private long offset, minTs = Long.MAX_VALUE, maxTs = Long.MIN_VALUE, mask, rows;
+        private int inBlock;
+
+        SegmentWriter(Path target) throws IOException {
+            Files.createDirectories(target.getParent());
+            this.target = target;
+            this.part = target.resolveSibling(target.getFileName() + ".part");
+            this.ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void add(int id, long ts, String cat, String det) throws IOException {
+            String c = cat == null ? "" : cat;
+            Integer idx = catIdx.get(c);
+            if (idx == null) {
+                if (cats.size() == 0xFFFF) throw new IOException("Too many categories for one segment");
+                catIdx.put(c, idx = cats.size());
+                cats.add(c);
+            }
+            byte[] d = (det == null ? "" : det).getBytes(StandardCharsets.UTF_8);
+            data.writeInt(id);
+            data.writeLong(ts);
+            data.writeShort(idx);
+            data.writeInt(d.length);
+            data.write(d);
+            minTs = Math.min(minTs, ts);
+            maxTs = Math.max(maxTs, ts);
+            mask |= catBit(idx);
+            rows++;
+            if (++inBlock == BLOCK) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (inBlock == 0) return;
+            deflater.reset();
+            deflater.setInput(raw.toByteArray());
+            deflater.finish();
+            ByteArrayOutputStream packed = new ByteArrayOutputStream(raw.size() / 4 + 64);
+            byte[] chunk = new byte[1 << 16];
+            while (!deflater.finished()) packed.write(chunk, 0, deflater.deflate(chunk));
+            byte[] bytes = packed.toByteArray();
+            writeFully(ByteBuffer.wrap(bytes));
+            blocks.add(new Block(offset, bytes.length, inBlock, minTs, maxTs, mask));
+            offset += bytes.length;
+            raw.reset();
+            inBlock = 0;
+            minTs = Long.MAX_VALUE; maxTs = Long.MIN_VALUE; mask = 0;
+        }
+
+        private void writeFully(ByteBuffer b) throws IOException {
+            while (b.hasRemaining()) ch.write(b);
+        }
+
+        Segment finish() throws IOException {
+            try {
+                flushBlock();
+                ByteArrayOutputStream f = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(f)) {
+                    out.writeInt(cats.size());
+                    for (String c : cats) out.writeUTF(c);
+                    out.writeInt(blocks.size());
+                    for (Block b : blocks) {
+                        out.writeLong(b.offset); out.writeInt(b.length); out.writeInt(b.count);
+                        out.writeLong(b.minTs); out.writeLong(b.maxTs); out.writeLong(b.catMask);
+                    }
+                    out.writeLong(offset);
+                    out.writeLong(MAGIC);
+                }
+                writeFully(ByteBuffer.wrap(f.toByteArray()));
+                ch.force(true);
+            } finally {
+                ch.close();
+                deflater.end();
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDir(target.getParent());
+            return new Segment(target, cats, blocks);
+        }
+
+        // The rename lives in the directory, so it is only durable once the directory is flushed too.
+        // Windows cannot open a directory as a channel and commits the rename with its metadata instead.
+        static void syncDir(Path dir) throws IOException {
+            if (System.getProperty("os.name", "").startsWith("Windows")) return;
+            try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+                d.force(true);
+            }
+        }
+
+        void abort() {
+            try {
+                ch.close();
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.minilogistics.db;
+
+import com.minilogistics.db.Repositories.AuditLogs;
+import com.minilogistics.model.AdminEntities.*;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over the audit log, for the Audit Logs search box. Every entry is a document
+// numbered in the order it was indexed (log_id order); each term maps to the ascending list of documents
+// containing it. Terms: "cat:<category>", every word and number in the details, and "<word>:<number>" for
+// entity references ("Driver ID 42" also indexes driver:42). Hour buckets record the first and last document
+// of each hour, so a date range narrows the document span before any posting list is read.
+// A search intersects the posting lists rarest first, walking backwards so matches come out newest first.
+// Kept current by catching up from the highest indexed log_id before each search. log_id is taken at insert
+// but visible at commit, so an entry can appear below ids already indexed: ids skipped over by a catch-up are
+// remembered as gaps, and later catch-ups start below the lowest one until it shows up or is older than
+// ChangeLog.SETTLE_SEC (then taken as a rolled-back insert), the same rule as ChangeLog.scan.
+// Covers the live table only: once a day, entries dated before AuditArchive's retention cutoff (the days it
+// moves out of audit_logs) are dropped and the rest renumbered. Archived days are searched by date range.
+public class AuditIndex {
+    static final int CATCH_UP = 10000;
+    static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<AuditLogs, AuditIndex> INDEXES = new IdentityHashMap<>();
+
+    // One index per store, shared by every controller on it
+    public static synchronized AuditIndex of(AuditLogs logs) {
+        return INDEXES.computeIfAbsent(logs, AuditIndex::new);
+    }
+
+    // Growable ascending int list
+    static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return; // term repeated within one entry
+            if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+
+        // Largest index i < hi with docs[i] <= doc, or -1. Gallops back from hi first: when walking a dense
+        // list downwards the answer is usually just below the previous one.
+        int floor(int doc, int hi) {
+            int lo = hi - 1, step = 1;
+            while (lo >= 0 && docs[lo] > doc) {
+                hi = lo;
+                lo -= step;
+                step <<= 1;
+            }
+            if (lo < 0) lo = 0;
+            else if (docs[lo] <= doc && (lo + 1 >= hi || docs[lo + 1] > doc)) return lo;
+            hi--;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (docs[mid] <= doc) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return hi;
+        }
+    }
+
+    private final AuditLogs logs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object catchUp = new Object();
+    private final Map<String, Postings> terms = new HashMap<>();
+    private IntMap<int[]> hours = new IntMap<>(); // epoch hour -> { first doc, last doc }
+    private final BitSet indexed = new BitSet(); // by log_id
+    private final TreeMap<Integer, Long> gaps = new TreeMap<>(); // log_id not seen yet -> nanoTime it was skipped
+    private final Map<String, String> catNames = new HashMap<>();
+    private int[] logIds = new int[1024];
+    private long[] times = new long[1024]; // wall-clock seconds, as AuditArchive stores them
+    private String[] cats = new String[1024], details = new String[1024];
+    private int docs, maxLogId;
+    private long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+    private long evictedBefore = Long.MIN_VALUE;
+
+    AuditIndex(AuditLogs logs) { this.logs = logs; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Indexes everything written since the last call; the first call indexes the whole table
+    public void refresh() throws SQLException {
+        synchronized (catchUp) {
+            long now = System.nanoTime(), settle = ChangeLog.SETTLE_SEC * 1_000_000_000L;
+            gaps.values().removeIf(skipped -> now - skipped >= settle);
+            int top, after;
+            lock.readLock().lock();
+            try {
+                top = maxLogId;
+            } finally {
+                lock.readLock().unlock();
+            }
+            after = gaps.isEmpty() ? top : gaps.firstKey() - 1;
+            while (true) {
+                List<AdminAuditLog> batch = logs.scan(after, CATCH_UP);
+                lock.writeLock().lock();
+                try {
+                    for (AdminAuditLog l : batch) {
+                        if (!indexed.get(l.id)) add(l);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (batch.size() < CATCH_UP) break;
+                after = batch.get(batch.size() - 1).id;
+            }
+
+            long cutoff = LocalDate.now().minusDays(AuditArchive.shared().retentionDays()).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            lock.writeLock().lock();
+            try {
+                gaps.keySet().removeIf(indexed::get);
+                // Only ids passed over just now; on the first load, only the newest CATCH_UP can still be in flight
+                for (int id = indexed.nextClearBit(Math.max(top + 1, maxLogId - CATCH_UP)); id < maxLogId; id = indexed.nextClearBit(id + 1)) {
+                    gaps.put(id, now);
+                }
+                if (cutoff > evictedBefore && minTime < cutoff) evict(cutoff);
+                evictedBefore = cutoff;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Drops every document older than cutoff and renumbers the rest in order, so postings stay ascending
+    private void evict(long cutoff) { // caller holds the write lock
+        int[] remap = new int[docs];
+        int kept = 0;
+        long min = Long.MAX_VALUE;
+        for (int doc = 0; doc < docs; doc++) {
+            if (times[doc] < cutoff) {
+                remap[doc] = -1;
+                continue;
+            }
+            remap[doc] = kept;
+            logIds[kept] = logIds[doc];
+            times[kept] = times[doc];
+            cats[kept] = cats[doc];
+            details[kept] = details[doc];
+            min = Math.min(min, times[doc]);
+            kept++;
+        }
+        int cap = Math.max(1024, Integer.highestOneBit(Math.max(1, kept)) << 1);
+        logIds = Arrays.copyOf(logIds, cap);
+        times = Arrays.copyOf(times, cap);
+        cats = Arrays.copyOf(Arrays.copyOf(cats, kept), cap);
+        details = Arrays.copyOf(Arrays.copyOf(details, kept), cap);
+        for (Iterator<Postings> it = terms.values().iterator(); it.hasNext(); ) {
+            Postings p = it.next();
+            int n = 0;
+            for (int i = 0; i < p.size; i++) if (remap[p.docs[i]] >= 0) p.docs[n++] = remap[p.docs[i]];
+            p.size = n;
+            if (n == 0) it.remove();
+            else if (n < p.docs.length / 4) p.docs = Arrays.copyOf(p.docs, Math.max(4, n * 2));
+        }
+        hours = new IntMap<>();
+        for (int doc = 0; doc < kept; doc++) {
+            int hour = (int) Math.floorDiv(times[doc], 3600);
+            int[] span = hours.get(hour);
+            if (span == null) hours.put(hour, new int[] { doc, doc });
+            else span[1] = doc;
+        }
+        docs = kept;
+        minTime = min;
+        if (kept == 0) maxTime = Long.MIN_VALUE;
+    }
+
+    private void add(AdminAuditLog l) { // caller holds the write lock
+        if (docs == logIds.length) {
+            int n = docs * 2;
+            logIds = Arrays.copyOf(logIds, n);
+            times = Arrays.copyOf(times, n);
+            cats = Arrays.copyOf(cats, n);
+            details = Arrays.copyOf(details, n);
+        }
+        int doc = docs++;
+        long t = seconds(l.time);
+        String cat = l.cat == null ? "" : catNames.computeIfAbsent(l.cat, c -> c);
+        logIds[doc] = l.id;
+        times[doc] = t;
+        cats[doc] = cat;
+        details[doc] = l.det;
+        indexed.set(l.id);
+        maxLogId = Math.max(maxLogId, l.id);
+        minTime = Math.min(minTime, t);
+        maxTime = Math.max(maxTime, t);
+
+        int hour = (int) Math.floorDiv(t, 3600);
+        int[] span = hours.get(hour);
+        if (span == null) hours.put(hour, new int[] { doc, doc });
+        else span[1] = doc;
+
+        term("cat:" + cat.toLowerCase()).add(doc);
+        for (String term : tokens(l.det)) term(term).add(doc);
+    }
+
+    private Postings term(String t) {
+        Postings p = terms.get(t);
+        if (p == null) terms.put(t, p = new Postings());
+        return p;
+    }
+
+    static long seconds(String time) {
+        if (time == null || time.length() < 19) return 0;
+        return LocalDateTime.parse(time.substring(0, 19), TS).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Words and numbers, lowercased, plus word:number for "Word 42" and "Word ID 42"
+    static List<String> tokens(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String prevWord = null;
+        int n = text.length();
+        for (int i = 0; i < n; ) {
+            char ch = text.charAt(i);
+            if (!Character.isLetterOrDigit(ch) && ch != '_') { i++; continue; }
+            int start = i;
+            boolean number = true;
+            while (i < n && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                if (!Character.isDigit(text.charAt(i))) number = false;
+                i++;
+            }
+            if (i - start > 40) continue;
+            String tok = text.substring(start, i).toLowerCase();
+            out.add(tok);
+            if (number) {
+                if (prevWord != null) out.add(prevWord + ":" + tok);
+                prevWord = null;
+            } else if (!tok.equals("id") || prevWord == null) {
+                prevWord = tok;
+            }
+        }
+        return out;
+    }
+
+    // Query: words/numbers (all required), cat:NAME, driver:42-style references, from:yyyy-MM-dd and
+    // to:yyyy-MM-dd (inclusive). Results newest first; offset/limit page through them.
+    // Throws IllegalArgumentException for a malformed date.
+    public AdminLogResults search(String query, int offset, int limit) throws SQLException {
+        long start = System.nanoTime();
+        refresh();
+        List<String> want = new ArrayList<>();
+        long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+        for (String part : query.trim().split("\\s+")) {
+            if (part.isEmpty()) continue;
+            String lower = part.toLowerCase();
+            if (lower.startsWith("from:") || lower.startsWith("to:")) {
+                boolean from = lower.startsWith("from:");
+                LocalDateTime day;
+                try {
+                    day = LocalDate.parse(part.substring(from ? 5 : 3)).atStartOfDay();
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Dates look like from:2026-01-31");
+                }
+                if (from) lo = day.toEpochSecond(ZoneOffset.UTC);
+                else hi = day.plusDays(1).toEpochSecond(ZoneOffset.UTC);
+            } else if (lower.startsWith("cat:")) {
+                want.add(lower);
+            } else if (lower.matches("[\\p{L}\\p{N}_]+:\\d+")) {
+                want.add(lower);
+            } else {
+                want.addAll(tokens(part));
+            }
+        }
+
+        AdminLogResults res = new AdminLogResults();
+        lock.readLock().lock();
+        try {
+            int[] span = docSpan(lo, hi);
+            List<Postings> lists = new ArrayList<>();
+            for (String t : want) {
+                Postings p = terms.get(t);
+                if (p == null) { span = null; break; }
+                if (!lists.contains(p)) lists.add(p);
+            }
+            if (span != null) {
+                lists.sort((a, b) -> Integer.compare(a.size, b.size));
+                collect(lists, span, lo, hi, offset, limit, res);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        res.micros = (System.nanoTime() - start) / 1000;
+        return res;
+    }
+
+    // First and last document that can hold entries in [lo, hi), or null
+    private int[] docSpan(long lo, long hi) {
+        if (docs == 0) return null;
+        long from = Math.max(lo, minTime), to = Math.min(hi - 1, maxTime);
+        if (from > to) return null;
+        if (from == minTime && to == maxTime) return new int[] { 0, docs - 1 };
+        int first = Integer.MAX_VALUE, last = -1;
+        for (long h = Math.floorDiv(from, 3600); h <= Math.floorDiv(to, 3600); h++) {
+            int[] s = hours.get((int) h);
+            if (s == null) continue;
+            first = Math.min(first, s[0]);
+            last = Math.max(last, s[1]);
+        }
+        return last < 0 ? null : new int[] { first, last };
+    }
+
+    private void collect(List<Postings> lists, int[] span, long lo, long hi, int offset, int limit, AdminLogResults res) {
+        int total = 0;
+        if (lists.isEmpty()) {
+            for (int doc = span[1]; doc >= span[0]; doc--) {
+                if (times[doc] < lo || times[doc] >= hi) continue;
+                if (total++ >= offset && res.rows.size() < limit) res.rows.add(row(doc));
+            }
+            res.total = total;
+            return;
+        }
+        Postings rare = lists.get(0);
+        int[] bound = new int[lists.size()]; // per list, search only below the last match (we walk downwards)
+        for (int k = 1; k < bound.length; k++) bound[k] = lists.get(k).size;
+        next:
+        for (int i = rare.floor(span[1], rare.size); i >= 0; i--) {
+            int doc = rare.docs[i];
+            if (doc < span[0]) break;
+            if (times[doc] < lo || times[doc] >= hi) continue;
+            for (int k = 1; k < bound.length; k++) {
+                Postings p = lists.get(k);
+                int j = p.floor(doc, bound[k]);
+                if (j < 0) break next; // nothing this old in a required list
+                bound[k] = j + 1;
+                if (p.docs[j] != doc) continue next;
+            }
+            if (total++ >= offset && res.rows.size() < limit) res.rows.add(row(doc));
+        }
+        res.total = total;
+    }
+
+    private AdminAuditLog row(int doc) {
+        return new AdminAuditLog(logIds[doc], TS.format(LocalDateTime.ofEpochSecond(times[doc], 0, ZoneOffset.UTC)), cats[doc], details[doc]);
+    }
+}
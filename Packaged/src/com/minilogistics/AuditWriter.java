@@ -0,0 +1,170 @@
+package com.minilogistics.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Background audit pipeline: entries go into a bounded queue and a single writer thread
+// group-commits them as multi-row INSERTs, flushing every batchSize entries or maxDelayMs.
+// Entries that must commit with a business write still go through the controller's log(conn, ...).
+// Settings: minilogistics.audit.batch, .maxDelayMs, .capacity, .blockMs, .coalesceMs
+public class AuditWriter {
+
+    private static volatile AuditWriter shared;
+
+    public static AuditWriter shared() {
+        if (shared == null) {
+            synchronized (AuditWriter.class) {
+                if (shared == null) {
+                    shared = new AuditWriter(
+                            Integer.getInteger("minilogistics.audit.batch", 100),
+                            Long.getLong("minilogistics.audit.maxDelayMs", 500L),
+                            Integer.getInteger("minilogistics.audit.capacity", 10000),
+                            Long.getLong("minilogistics.audit.blockMs", 200L),
+                            Long.getLong("minilogistics.audit.coalesceMs", 60000L));
+                    // Flush before the pool's own shutdown hook closes the connections
+                    AdminDBConfig.pool().beforeClose(shared::close);
+                }
+            }
+        }
+        return shared;
+    }
+
+    // The row's timestamp comes from the column default, i.e. the server clock like every other write;
+    // queuedAt is only for the dump of entries that could not be written
+    static final class Entry {
+        final String cat, det;
+        final Timestamp queuedAt;
+        Entry(String cat, String det) { this.cat = cat; this.det = det; this.queuedAt = new Timestamp(System.currentTimeMillis()); }
+    }
+
+    private static final String INSERT_PREFIX = "INSERT INTO audit_logs (category, details)";
+
+    private final int batchSize;
+    // Statement shapes, largest first: batchSize rows, a quarter of that, ... 1. A flush is split greedily
+    // across them so the server keeps a handful of prepared INSERTs instead of one per batch length
+    private final int[] shapes;
+    private final long maxDelayMs, blockMs, coalesceMs;
+    private final ArrayBlockingQueue<Entry> queue;
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong written = new AtomicLong(), batches = new AtomicLong(), coalesced = new AtomicLong(),
+            callerWrites = new AtomicLong(), failed = new AtomicLong();
+
+    public AuditWriter(int batchSize, long maxDelayMs, int capacity, long blockMs, long coalesceMs) {
+        this.batchSize = batchSize; this.maxDelayMs = maxDelayMs; this.blockMs = blockMs; this.coalesceMs = coalesceMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        List<Integer> sizes = new ArrayList<>();
+        for (int n = Math.max(batchSize, 1); n > 1; n /= 4) sizes.add(n);
+        sizes.add(1);
+        this.shapes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        worker = new Thread(this::run, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void submit(String cat, String det) {
+        Entry e = new Entry(cat, det);
+        try {
+            // Backpressure: wait a little for room, then write on the caller's thread rather than drop the entry
+            if (running && queue.offer(e, blockMs, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        callerWrites.incrementAndGet();
+        List<Entry> one = new ArrayList<>(1);
+        one.add(e);
+        write(one);
+    }
+
+    // For repetitive access events: identical entries inside the coalesce window are recorded once
+    public void submitCoalesced(String cat, String det) {
+        long now = System.currentTimeMillis();
+        String key = cat + '\u0000' + det;
+        Long prev = lastSeen.get(key);
+        if (prev != null && now - prev < coalesceMs) {
+            coalesced.incrementAndGet();
+            return;
+        }
+        if (lastSeen.size() > 10000) lastSeen.clear();
+        lastSeen.put(key, now);
+        submit(cat, det);
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(maxDelayMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    long left = deadline - System.nanoTime();
+                    Entry next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        Metrics.Span m = Metrics.op("audit.flush");
+        try (Connection c = AdminDBConfig.getConnection()) {
+            c.setAutoCommit(false); // one commit per flush, however many statements it takes
+            int done = 0, rows = 0;
+            for (int shape : shapes) {
+                for (; batch.size() - done >= shape; done += shape) {
+                    List<Object[]> chunk = new ArrayList<>(shape);
+                    for (Entry e : batch.subList(done, done + shape)) chunk.add(new Object[] { e.cat, e.det });
+                    rows += Sql.insertAll(c, INSERT_PREFIX, chunk);
+                }
+            }
+            c.commit();
+            m.rows(rows);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (SQLException e) {
+            m.fail(e);
+            failed.addAndGet(batch.size());
+            e.printStackTrace();
+            for (Entry en : batch) System.err.println("AUDIT (unwritten) " + en.queuedAt + " " + en.cat + ": " + en.det);
+        } finally {
+            m.close();
+        }
+    }
+
+    // Stops accepting queued work and flushes whatever is left
+    public void close() {
+        running = false; // the worker notices within maxDelayMs; no interrupt so an in-flight INSERT completes
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) write(rest);
+    }
+
+    public String stats() {
+        return String.format("written=%d batches=%d queued=%d coalesced=%d callerWrites=%d failed=%d",
+                written.get(), batches.get(), queue.size(), coalesced.get(), callerWrites.get(), failed.get());
+    }
+}
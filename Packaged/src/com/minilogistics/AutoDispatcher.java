@@ -0,0 +1,115 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.model.AdminEntities.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Matches PENDING deliveries to Active drivers in memory, then commits the result through
+// AdminPortalController.assignMany in batches. Deliveries are taken most urgent first
+// (priority, then deadline, then age); each goes to the least-loaded driver, where a driver's
+// job slots scale with vehicles.capacity (capacityPerJob units per concurrent job).
+public class AutoDispatcher {
+    public int capacityPerJob = Integer.getInteger("minilogistics.dispatch.capacityPerJob", 100);
+    public int batchSize = Integer.getInteger("minilogistics.dispatch.batch", 500);
+    public String defaultPriority = "Medium";
+    public int defaultHours = 24;
+
+    static int rank(String priority) {
+        if ("High".equalsIgnoreCase(priority)) return 0;
+        if ("Low".equalsIgnoreCase(priority)) return 2;
+        return 1;
+    }
+
+    static long dueMillis(String deadline) {
+        if (deadline == null) return Long.MAX_VALUE;
+        try {
+            return Timestamp.valueOf(deadline.length() > 19 ? deadline.substring(0, 19) : deadline).getTime();
+        } catch (IllegalArgumentException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    // Pure planning step, no DB access: returns the assignments in dispatch order
+    public List<AdminAssignment> plan(List<AdminDriverEntity> drivers, List<AdminDeliveryEntity> pending) {
+        int n = drivers.size();
+        int[] ids = new int[n], load = new int[n], slots = new int[n];
+        double[] cap = new double[n];
+        for (int i = 0; i < n; i++) {
+            AdminDriverEntity d = drivers.get(i);
+            ids[i] = d.id;
+            load[i] = d.activeJobs;
+            cap[i] = d.vehicle == null ? 0 : d.vehicle.capacity;
+            slots[i] = Math.max(1, (int) (cap[i] / capacityPerJob));
+        }
+        // Least loaded (relative to its slots) first, bigger vehicles break ties
+        PriorityQueue<Integer> free = new PriorityQueue<>(Math.max(1, n), (a, b) -> {
+            int c = Long.compare((long) load[a] * slots[b], (long) load[b] * slots[a]);
+            if (c != 0) return c;
+            c = Double.compare(cap[b], cap[a]);
+            return c != 0 ? c : Integer.compare(ids[a], ids[b]);
+        });
+        for (int i = 0; i < n; i++) if (load[i] < slots[i]) free.add(i);
+
+        int m = pending.size();
+        int[] pri = new int[m];
+        long[] due = new long[m];
+        for (int i = 0; i < m; i++) {
+            AdminDeliveryEntity d = pending.get(i);
+            pri[i] = rank(d.priority);
+            due[i] = dueMillis(d.deadline);
+        }
+        PriorityQueue<Integer> urgent = new PriorityQueue<>(Math.max(1, m), (a, b) -> {
+            int c = Integer.compare(pri[a], pri[b]);
+            if (c != 0) return c;
+            c = Long.compare(due[a], due[b]);
+            return c != 0 ? c : Integer.compare(pending.get(a).id, pending.get(b).id);
+        });
+        for (int i = 0; i < m; i++) urgent.add(i);
+
+        List<AdminAssignment> out = new ArrayList<>(Math.min(m, n * 4 + 16));
+        long now = System.currentTimeMillis();
+        while (!urgent.isEmpty() && !free.isEmpty()) {
+            int j = urgent.poll();
+            int d = free.poll();
+            AdminDeliveryEntity del = pending.get(j);
+            int hours = defaultHours;
+            if (due[j] != Long.MAX_VALUE) {
+                hours = (int) Math.max(1, (due[j] - now) / 3_600_000L);
+            }
+            out.add(new AdminAssignment(del.id, ids[d], del.priority != null ? del.priority : defaultPriority, hours, del.assignedDriverId));
+            if (++load[d] < slots[d]) free.add(d);
+        }
+        return out;
+    }
+
+    // One full round against the database: snapshot, plan, commit in batches
+    public String dispatch(AdminPortalController ctrl) {
+        List<AdminDriverEntity> active = new ArrayList<>();
+        for (AdminDriverEntity d : ctrl.getDrivers()) if ("Active".equals(d.status)) active.add(d);
+
+        List<AdminDeliveryEntity> pending = new ArrayList<>();
+        int after = 0;
+        while (true) {
+            List<AdminDeliveryEntity> page = ctrl.getDeliveriesPage(after, 5000, "PENDING", -1);
+            pending.addAll(page);
+            if (page.size() < 5000) break;
+            after = page.get(page.size() - 1).id;
+        }
+
+        long start = System.nanoTime();
+        List<AdminAssignment> plan = plan(active, pending);
+        long planMs = (System.nanoTime() - start) / 1_000_000;
+
+        int ok = 0;
+        for (int from = 0; from < plan.size(); from += batchSize) {
+            for (String r : ctrl.assignMany(plan.subList(from, Math.min(plan.size(), from + batchSize)))) {
+                if ("Success".equals(r)) ok++;
+            }
+        }
+        return "Dispatched " + ok + " of " + pending.size() + " pending deliveries to " + active.size()
+                + " active drivers (planned in " + planMs + " ms" + (ok < plan.size() ? ", " + (plan.size() - ok) + " rejected" : "") + ").";
+    }
+}
@@ -0,0 +1,163 @@
+package com.minilogistics.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Schema setup and seeding for the benchmarks. They wipe and refill tables, so they run
+// against a scratch database (logistics_bench) unless explicitly pointed elsewhere.
+public class BenchData {
+    public static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/logistics_bench?createDatabaseIfNotExist=true&rewriteBatchedStatements=true&useServerPrepStmts=true&cacheCallableStmts=true";
+
+    static final String[] STATUSES = { "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED",
+            "ASSIGNED", "ASSIGNED", "In Transit", "PENDING" };
+
+    // Must run before anything touches AdminDBConfig/DriverDB, which read the URL once
+    public static void useBenchDatabase() {
+        String url = System.getProperty("minilogistics.db.url");
+        if (url == null) {
+            System.setProperty("minilogistics.db.url", DEFAULT_URL);
+        } else if (url.contains("/logistics_db") && !Boolean.getBoolean("bench.allowMainDb")) {
+            throw new IllegalStateException("Refusing to benchmark against logistics_db; use a scratch database or -Dbench.allowMainDb=true");
+        }
+    }
+
+    // Recreates SqlScript.sql plus migrations/ in version order. Paths are relative to bench.root (the repository root).
+    public static void createSchema(Connection c) throws SQLException, IOException {
+        Path root = Paths.get(System.getProperty("bench.root", "."));
+        dropAllTables(c);
+        runScript(c, root.resolve("SqlScript.sql"));
+        Path dir = root.resolve("migrations");
+        if (Files.isDirectory(dir)) {
+            List<Path> scripts;
+            try (Stream<Path> s = Files.list(dir)) {
+                scripts = s.filter(p -> p.getFileName().toString().matches("V\\d+__.*\\.sql"))
+                        .sorted(Comparator.comparingInt(BenchData::version)).collect(Collectors.toList());
+            }
+            for (Path p : scripts) runScript(c, p);
+        }
+        truncateAll(c);
+    }
+
+    static int version(Path p) {
+        String n = p.getFileName().toString();
+        return Integer.parseInt(n.substring(1, n.indexOf("__")));
+    }
+
+    // Minimal script runner: honours DELIMITER, skips CREATE DATABASE/USE so the connection's own schema is used
+    public static void runScript(Connection c, Path file) throws SQLException, IOException {
+        String delimiter = ";";
+        StringBuilder stmt = new StringBuilder();
+        try (Statement st = c.createStatement()) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String t = line.trim();
+                if (stmt.length() == 0 && (t.isEmpty() || t.startsWith("--"))) continue;
+                if (t.toUpperCase().startsWith("DELIMITER ")) {
+                    delimiter = t.substring(10).trim();
+                    continue;
+                }
+                stmt.append(line).append('\n');
+                if (t.endsWith(delimiter)) {
+                    String sql = stmt.toString().trim();
+                    sql = sql.substring(0, sql.length() - delimiter.length()).trim();
+                    stmt.setLength(0);
+                    String head = sql.toUpperCase();
+                    if (head.startsWith("CREATE DATABASE") || head.startsWith("USE ")) continue;
+                    st.execute(sql);
+                }
+            }
+        }
+    }
+
+    public static void dropAllTables(Connection c) throws SQLException {
+        List<String> tables = listTables(c);
+        try (Statement st = c.createStatement()) {
+            st.execute("SET FOREIGN_KEY_CHECKS=0");
+            for (String t : tables) st.execute("DROP TABLE IF EXISTS `" + t + "`");
+            st.execute("SET FOREIGN_KEY_CHECKS=1");
+        }
+    }
+
+    public static void truncateAll(Connection c) throws SQLException {
+        List<String> tables = listTables(c);
+        try (Statement st = c.createStatement()) {
+            st.execute("SET FOREIGN_KEY_CHECKS=0");
+            for (String t : tables) if (!t.equals("schema_version")) st.execute("TRUNCATE TABLE `" + t + "`");
+            st.execute("SET FOREIGN_KEY_CHECKS=1");
+        }
+    }
+
+    static List<String> listTables(Connection c) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SHOW FULL TABLES WHERE Table_type = 'BASE TABLE'")) {
+            while (rs.next()) tables.add(rs.getString(1));
+        }
+        return tables;
+    }
+
+    // Drivers get user/vehicle IDs 1..drivers (emails drv<i>@bench, password "pass"); deliveries are spread
+    // round-robin over them with a mostly-completed status mix, PENDING ones left unassigned.
+    public static void seed(Connection c, int drivers, int deliveries) throws SQLException {
+        boolean auto = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (PreparedStatement u = c.prepareStatement("INSERT INTO users (user_id, name, email, password, phone, role) VALUES (?,?,?,'pass',?,'DRIVER')");
+             PreparedStatement v = c.prepareStatement("INSERT INTO vehicles (vehicle_id, model, plate_no, capacity, insurance_info) VALUES (?,?,?,500,'INS')");
+             PreparedStatement d = c.prepareStatement("INSERT INTO drivers (user_id, license_no, status, rating, vehicle_id) VALUES (?,?,'Active',4.5,?)")) {
+            for (int i = 1; i <= drivers; i++) {
+                u.setInt(1, i); u.setString(2, "Driver " + i); u.setString(3, "drv" + i + "@bench"); u.setString(4, "555-" + i);
+                u.addBatch();
+                v.setInt(1, i); v.setString(2, "Van " + (i % 7)); v.setString(3, "BN-" + i);
+                v.addBatch();
+                d.setInt(1, i); d.setString(2, "LIC-" + i); d.setInt(3, i);
+                d.addBatch();
+                if (i % 5000 == 0 || i == drivers) {
+                    u.executeBatch(); v.executeBatch(); d.executeBatch();
+                    c.commit();
+                }
+            }
+        }
+        try (PreparedStatement p = c.prepareStatement("INSERT INTO deliveries (delivery_id, description, pickup, dropoff, status, assigned_driver_id, fee, customer_contact) VALUES (?,?,?,?,?,?,?,?)")) {
+            for (int i = 1; i <= deliveries; i++) {
+                String status = STATUSES[i % STATUSES.length];
+                p.setInt(1, i); p.setString(2, "Parcel " + i); p.setString(3, "Depot " + (i % 50)); p.setString(4, "Stop " + (i % 997));
+                p.setString(5, status); p.setInt(6, "PENDING".equals(status) || drivers == 0 ? 0 : 1 + i % drivers);
+                p.setDouble(7, 10 + i % 90); p.setString(8, "Customer " + i);
+                p.addBatch();
+                if (i % 5000 == 0 || i == deliveries) {
+                    p.executeBatch();
+                    c.commit();
+                }
+            }
+        }
+        c.setAutoCommit(auto);
+    }
+
+    // IDs seed() leaves PENDING and unassigned, in order: the pool the assignment benchmark draws from
+    public static int[] pendingIds(int deliveries) {
+        return IntStream.rangeClosed(1, deliveries).filter(i -> "PENDING".equals(STATUSES[i % STATUSES.length])).toArray();
+    }
+
+    // Puts the given deliveries back to PENDING/unassigned so they can be assigned again
+    public static void resetPending(Connection c, int[] ids) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            for (int from = 0; from < ids.length; from += 1000) {
+                String in = Arrays.stream(ids, from, Math.min(ids.length, from + 1000)).mapToObj(String::valueOf).collect(Collectors.joining(","));
+                st.executeUpdate("UPDATE deliveries SET status='PENDING', assigned_driver_id=0 WHERE delivery_id IN (" + in + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.minilogistics.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Small JMH-style harness (no build tool here to pull in JMH): timed warm-up and measurement
+// iterations on one thread, reporting throughput, average latency and allocation per operation.
+// Settings: bench.warmup (iterations), bench.iterations, bench.iterMs
+public class BenchHarness {
+    public interface Op { void run() throws Exception; }
+
+    public static class Result {
+        public final String name, param;
+        public final long ops;
+        public final double opsPerSec, avgUs, allocBytesPerOp;
+
+        Result(String name, String param, long ops, long nanos, long allocBytes) {
+            this.name = name; this.param = param; this.ops = ops;
+            this.opsPerSec = ops * 1e9 / nanos;
+            this.avgUs = nanos / 1e3 / Math.max(1, ops);
+            this.allocBytesPerOp = allocBytes < 0 ? -1 : (double) allocBytes / Math.max(1, ops);
+        }
+
+        String key() { return name + "@" + param; }
+    }
+
+    final int warmup = Integer.getInteger("bench.warmup", 3);
+    final int iterations = Integer.getInteger("bench.iterations", 5);
+    final long iterMs = Long.getLong("bench.iterMs", 2000L);
+
+    public Result run(String name, String param, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) iterate(op);
+        long ops = 0, nanos = 0, alloc = 0;
+        for (int i = 0; i < iterations; i++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            ops += iterate(op);
+            nanos += System.nanoTime() - start;
+            long after = allocatedBytes();
+            alloc = before < 0 || alloc < 0 ? -1 : alloc + (after - before);
+        }
+        return new Result(name, param, ops, nanos, alloc);
+    }
+
+    private long iterate(Op op) throws Exception {
+        long end = System.nanoTime() + iterMs * 1_000_000L, n = 0;
+        do {
+            op.run();
+            n++;
+        } while (System.nanoTime() < end);
+        return n;
+    }
+
+    // HotSpot exposes per-thread allocation counters; -1 where it doesn't
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static void print(List<Result> results, Map<String, Result> baseline) {
+        System.out.printf("%-28s %12s %12s %14s %14s %10s%n", "benchmark", "param", "ops/s", "avg us/op", "alloc B/op", "vs base");
+        for (Result r : results) {
+            Result b = baseline.get(r.key());
+            String delta = b == null ? "" : String.format("%+.1f%%", (r.opsPerSec / b.opsPerSec - 1) * 100);
+            System.out.printf("%-28s %12s %12.1f %14.1f %14.0f %10s%n", r.name, r.param, r.opsPerSec, r.avgUs, r.allocBytesPerOp, delta);
+        }
+    }
+
+    public static void writeCsv(Path file, List<Result> results) throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            w.println("benchmark,param,ops,ops_per_sec,avg_us,alloc_bytes_per_op");
+            for (Result r : results) {
+                w.printf("%s,%s,%d,%.3f,%.3f,%.1f%n", r.name, r.param, r.ops, r.opsPerSec, r.avgUs, r.allocBytesPerOp);
+            }
+        }
+    }
+
+    public static Map<String, Result> readCsv(Path file) throws IOException {
+        Map<String, Result> map = new HashMap<>();
+        if (file == null || !Files.exists(file)) return map;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            long ops = Long.parseLong(f[2]);
+            double opsPerSec = Double.parseDouble(f[3]);
+            Result r = new Result(f[0], f[1], ops, (long) (ops * 1e9 / opsPerSec), (long) (Double.parseDouble(f[5]) * ops));
+            map.put(r.key(), r);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,124 @@
+package com.minilogistics.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Shared by both controllers: every write path records which rows it touched so the
+// admin panels can fetch only what changed since their last poll (see migrations/V2__change_log.sql)
+public class ChangeLog {
+    public static final String DRIVERS = "drivers";
+    public static final String DELIVERIES = "deliveries";
+
+    // Runs on the caller's connection so the entry commits or rolls back with the write itself
+    private static final String INSERT_SQL = "INSERT INTO change_log (table_name, row_id, op) VALUES (?,?,?)";
+
+    public static void record(Connection c, String table, int rowId, char op) throws SQLException {
+        Sql.update(c, INSERT_SQL, table, rowId, String.valueOf(op));
+    }
+
+    public static void recordAll(Connection c, String table, Collection<Integer> rowIds, char op) throws SQLException {
+        if (rowIds.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(rowIds.size());
+        for (int id : rowIds) rows.add(new Object[] { table, id, String.valueOf(op) });
+        Sql.batch(c, INSERT_SQL, rows);
+    }
+
+    // change_id is taken when a transaction inserts its row but only becomes visible at commit, so ids can
+    // appear out of order: a reader that saw 7 may later find 5. A missing id just below a recent row is
+    // treated as still in flight and marks stop short of it; once the rows above it are older than
+    // SETTLE_SEC it is taken as a rolled-back insert. Setting: minilogistics.changes.settleSec
+    public static final int SETTLE_SEC = Integer.getInteger("minilogistics.changes.settleSec", 30);
+
+    // Entries are kept RETENTION_MIN minutes plus SETTLE_SEC, then pruned. A reader whose mark is older than
+    // the oldest entry left may have missed changes; scan returns EXPIRED and the reader has to reload.
+    // Settings: minilogistics.changes.retentionMin (60), .pruneEveryMin (5)
+    public static final int RETENTION_MIN = Integer.getInteger("minilogistics.changes.retentionMin", 60);
+    public static final long EXPIRED = -1;
+
+    private static ScheduledExecutorService pruner;
+
+    public static long retentionSec() { return RETENTION_MIN * 60L + SETTLE_SEC; }
+
+    // Prunes the shared store's change log now and every pruneEveryMin minutes
+    public static synchronized void startPruning() {
+        if (pruner != null) return;
+        long every = Long.getLong("minilogistics.changes.pruneEveryMin", 5L);
+        pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-log-prune");
+            t.setDaemon(true);
+            return t;
+        });
+        pruner.scheduleWithFixedDelay(() -> {
+            try (Metrics.Span m = Metrics.op("changes.prune")) {
+                m.rows(Repositories.shared().changes().prune());
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, every, TimeUnit.MINUTES);
+    }
+
+    // Deletes everything below the first entry still inside the retention window, in primary-key chunks.
+    // The newest row always stays, so currentMark() never drops back to 0. Returns the rows removed.
+    public static long prune(Connection c) throws SQLException {
+        Long keep = Sql.one(c, "SELECT change_id FROM change_log WHERE changed_at >= NOW() - INTERVAL ? SECOND ORDER BY change_id LIMIT 1",
+                rs -> rs.getLong(1), retentionSec());
+        if (keep == null) keep = Sql.one(c, "SELECT MAX(change_id) FROM change_log", rs -> rs.getLong(1));
+        long removed = 0;
+        int n;
+        do {
+            n = Sql.update(c, "DELETE FROM change_log WHERE change_id < ? LIMIT 10000", keep);
+            removed += n;
+        } while (n == 10000);
+        return removed;
+    }
+
+    public interface Visitor { void change(long id, String table, int rowId); }
+
+    private static final String SCAN_SQL = "SELECT change_id, table_name, row_id, changed_at >= NOW() - INTERVAL ? SECOND"
+            + " FROM change_log WHERE change_id > ? ORDER BY change_id";
+
+    // Visits every visible change after the given mark in id order and returns the new mark: the last id
+    // before the first open gap. Changes above that gap are visited now and again on the next scan.
+    // EXPIRED (nothing visited) when entries just after the mark have already been pruned.
+    public static long scan(Connection c, long after, Visitor v) throws SQLException {
+        if (after > 0) {
+            Long oldest = Sql.one(c, "SELECT MIN(change_id) FROM change_log", rs -> rs.getLong(1));
+            if (oldest != null && oldest > after + 1) return EXPIRED;
+        }
+        long[] st = { after, after + 1, 0 }; // mark, next id expected, open gap seen
+        Sql.each(c, SCAN_SQL, rs -> {
+            long id = rs.getLong(1);
+            if (st[2] == 0) {
+                if (id != st[1] && rs.getBoolean(4)) st[2] = 1;
+                else st[0] = id;
+            }
+            st[1] = id + 1;
+            v.change(id, rs.getString(2), rs.getInt(3));
+        }, SETTLE_SEC, after);
+        return st[0];
+    }
+
+    // Starting mark for a new reader: the newest id, or the row just below the lowest open gap.
+    // Walks back from the top through the last SETTLE_SEC of changes only.
+    public static long currentMark(Connection c) throws SQLException {
+        long mark = -1, above = -1, before = Long.MAX_VALUE;
+        while (true) {
+            List<long[]> page = Sql.list(c, "SELECT change_id, changed_at >= NOW() - INTERVAL ? SECOND FROM change_log"
+                    + " WHERE change_id < ? ORDER BY change_id DESC LIMIT 1000",
+                    rs -> new long[] { rs.getLong(1), rs.getBoolean(2) ? 1 : 0 }, SETTLE_SEC, before);
+            for (long[] r : page) {
+                if (mark < 0 || above - r[0] > 1) mark = r[0];
+                if (r[1] == 0) return mark; // everything older has settled
+                above = r[0];
+            }
+            if (page.size() < 1000) return Math.max(mark, 0);
+            before = page.get(page.size() - 1)[0];
+        }
+    }
+}
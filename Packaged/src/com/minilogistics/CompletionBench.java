@@ -0,0 +1,107 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.Sql;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Completes every assigned job under concurrent driver load, twice each: two threads per driver walk
+// the same job list, so every COMPLETED is double-tapped. Compares the old three-statement auto-commit
+// path with DriverAppController.completeJob and checks that no fee was credited twice.
+//   java -cp ".;Packaged;Packaged/mysql-connector-j-9.5.0.jar" com.minilogistics.bench.CompletionBench [drivers] [jobsPerDriver]
+public class CompletionBench {
+
+    interface Completion { void complete(DriverAppController ctrl, int jobId) throws Exception; }
+
+    // What updateStatus(jobId, "COMPLETED") used to do: three round trips, no transaction, no idempotency
+    static void legacy(DriverAppController ctrl, int jobId) throws Exception {
+        int me = ctrl.getSession().id;
+        try (Connection c = AdminDBConfig.getConnection()) {
+            Sql.update(c, "UPDATE deliveries SET status=? WHERE delivery_id=?", "COMPLETED", jobId);
+            Sql.update(c, "UPDATE drivers SET earnings = earnings + (SELECT fee FROM deliveries WHERE delivery_id=?) WHERE user_id=?", jobId, me);
+            ctrl.getSession().earnings = Sql.one(c, "SELECT earnings FROM drivers WHERE user_id=?", rs -> rs.getDouble(1), me);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchData.useBenchDatabase();
+        int drivers = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int perDriver = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        try (Connection c = AdminDBConfig.getConnection()) {
+            BenchData.createSchema(c);
+        }
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %14s%n", "path", "threads", "calls", "ops/s", "p50 us", "p99 us", "over-credited");
+        run("legacy", drivers, perDriver, CompletionBench::legacy);
+        run("procedure", drivers, perDriver, (ctrl, id) -> ctrl.completeJob(id));
+        System.out.println("Pool: " + AdminDBConfig.pool().stats());
+        System.exit(0);
+    }
+
+    static void run(String name, int drivers, int perDriver, Completion op) throws Exception {
+        int[][] jobs = new int[drivers + 1][];
+        try (Connection c = AdminDBConfig.getConnection()) {
+            BenchData.truncateAll(c);
+            BenchData.seed(c, drivers, drivers * perDriver);
+            Sql.update(c, "UPDATE deliveries SET status='ASSIGNED', assigned_driver_id = 1 + delivery_id % ?", drivers);
+            for (int d = 1; d <= drivers; d++) {
+                jobs[d] = Sql.list(c, "SELECT delivery_id FROM deliveries WHERE assigned_driver_id=? ORDER BY delivery_id", rs -> rs.getInt(1), d)
+                        .stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        int threads = drivers * 2;
+        long[][] latencies = new long[threads][];
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int driver = 1 + t / 2, slot = t;
+            DriverAppController ctrl = new DriverAppController();
+            if (!"Success".equals(ctrl.login("drv" + driver + "@bench", "pass"))) throw new IllegalStateException("Seeded driver cannot log in");
+            workers.add(new Thread(() -> {
+                int[] mine = jobs[driver];
+                long[] lat = new long[mine.length];
+                try {
+                    start.await();
+                    for (int i = 0; i < mine.length; i++) {
+                        long t0 = System.nanoTime();
+                        try {
+                            op.complete(ctrl, mine[i]);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        lat[i] = System.nanoTime() - t0;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latencies[slot] = lat;
+                done.countDown();
+            }, "complete-" + t));
+        }
+        workers.forEach(Thread::start);
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double over;
+        try (Connection c = AdminDBConfig.getConnection()) {
+            // The legacy path credits drivers.earnings, completeJob the ledger rollups; both start at zero after seeding
+            double credited = Sql.one(c, "SELECT (SELECT COALESCE(SUM(earnings), 0) FROM drivers) + (SELECT COALESCE(SUM(total), 0) FROM earnings_total)", rs -> rs.getDouble(1));
+            double owed = Sql.one(c, "SELECT COALESCE(SUM(fee), 0) FROM deliveries WHERE status='COMPLETED'", rs -> rs.getDouble(1));
+            over = credited - owed;
+        }
+        System.out.printf("%-10s %8d %10d %10.0f %10.1f %10.1f %14.2f%s%n", name, threads, all.length, all.length / secs,
+                all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3, over,
+                failures.get() > 0 ? "  (" + failures.get() + " failed)" : "");
+    }
+}
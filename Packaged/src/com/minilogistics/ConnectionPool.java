@@ -0,0 +1,422 @@
+package com.minilogistics.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// Bounded JDBC connection pool shared by the admin and driver apps.
+// Settings come from system properties so both apps can be tuned without a rebuild:
+//   minilogistics.pool.min, .max, .waitMs, .idleMs, .validateSec, .stmtCache (prepared statements kept per connection),
+//   .validateIdleMs (only connections idle longer than this are pinged on borrow)
+public class ConnectionPool implements DataSource {
+
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // One pool per url/user so AdminDBConfig and DriverDB share connections inside one JVM
+    public static ConnectionPool shared(String url, String user, String pass) {
+        return POOLS.computeIfAbsent(url + "|" + user, k -> new ConnectionPool(url, user, pass,
+                Integer.getInteger("minilogistics.pool.min", 1),
+                Integer.getInteger("minilogistics.pool.max", 10),
+                Long.getLong("minilogistics.pool.waitMs", 5000L),
+                Long.getLong("minilogistics.pool.idleMs", 60000L),
+                Integer.getInteger("minilogistics.pool.validateSec", 2)));
+    }
+
+    private final String url, user, pass;
+    private final int minSize, maxSize, validateSec;
+    private final long waitMs, idleMs;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private final List<Runnable> beforeClose = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong borrows = new AtomicLong(), created = new AtomicLong(), evicted = new AtomicLong(),
+            invalid = new AtomicLong(), timeouts = new AtomicLong(), waitNanos = new AtomicLong(),
+            maxWaitNanos = new AtomicLong(), stmtHits = new AtomicLong(), stmtMisses = new AtomicLong();
+    private final int stmtCacheSize = Integer.getInteger("minilogistics.pool.stmtCache", 64);
+    private final long validateIdleMs = Long.getLong("minilogistics.pool.validateIdleMs", 5000L);
+
+    public ConnectionPool(String url, String user, String pass, int minSize, int maxSize, long waitMs, long idleMs, int validateSec) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) throw new IllegalArgumentException("Invalid pool size " + minSize + ".." + maxSize);
+        this.url = url; this.user = user; this.pass = pass;
+        this.minSize = minSize; this.maxSize = maxSize;
+        this.waitMs = waitMs; this.idleMs = idleMs; this.validateSec = validateSec;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, idleMs / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable r : beforeClose) {
+                try {
+                    r.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            close();
+        }, "db-pool-shutdown"));
+    }
+
+    // Timed as "pool.acquire"; a failed checkout also marks the caller's open Metrics spans as failed
+    @Override
+    public Connection getConnection() throws SQLException {
+        Metrics.Span m = Metrics.op("pool.acquire");
+        try {
+            return acquire();
+        } catch (SQLException | RuntimeException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    private Connection acquire() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + waitMs + "ms waiting for a database connection (pool max " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+        borrows.incrementAndGet();
+        try {
+            PooledConnection pc;
+            // Validate on borrow; discard broken connections until we find a good one or open a new one.
+            // A connection returned moments ago is only checked locally, saving a round trip on hot checkouts.
+            while ((pc = idle.pollFirst()) != null) {
+                if (pc.isUsable(validateSec, System.currentTimeMillis() - pc.lastUsed > validateIdleMs)) return pc.lease();
+                invalid.incrementAndGet();
+                pc.closePhysical();
+            }
+            return open().lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed at construction");
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, pass);
+        created.incrementAndGet();
+        return new PooledConnection(raw);
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void release(PooledConnection pc, boolean broken) {
+        try {
+            if (broken || closed) {
+                pc.closePhysical();
+            } else {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pc); // LIFO keeps the hot connections hot and lets the rest age out
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Drops connections idle past idleMs, keeping at least minSize warm
+    private void evictIdle() {
+        try {
+            long cutoff = System.currentTimeMillis() - idleMs;
+            PooledConnection pc;
+            while (idle.size() > minSize && (pc = idle.peekLast()) != null && pc.lastUsed < cutoff) {
+                if (idle.removeLastOccurrence(pc)) {
+                    evicted.incrementAndGet();
+                    pc.closePhysical();
+                }
+            }
+            // Each connection opened here holds a permit meanwhile, so refilling never takes the pool past maxSize
+            while (!closed && idle.size() < minSize && permits.tryAcquire()) {
+                try {
+                    if (idle.size() >= minSize || idle.size() > permits.availablePermits()) break;
+                    idle.offerLast(open());
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            // DB unreachable; the next borrow will report it
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Shutdown work that still needs connections (e.g. flushing buffered writes) runs before the pool closes
+    public void beforeClose(Runnable r) {
+        beforeClose.add(r);
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) pc.closePhysical();
+    }
+
+    public String stats() {
+        long b = borrows.get();
+        return String.format("borrows=%d created=%d idle=%d inUse=%d evicted=%d invalid=%d timeouts=%d avgWait=%.3fms maxWait=%.3fms stmtHits=%d stmtMisses=%d",
+                b, created.get(), idle.size(), maxSize - permits.availablePermits(), evicted.get(), invalid.get(), timeouts.get(),
+                b == 0 ? 0.0 : waitNanos.get() / 1e6 / b, maxWaitNanos.get() / 1e6, stmtHits.get(), stmtMisses.get());
+    }
+
+    public long getBorrowCount() { return borrows.get(); }
+    public long getTimeoutCount() { return timeouts.get(); }
+    public double getAverageWaitMillis() { long b = borrows.get(); return b == 0 ? 0.0 : waitNanos.get() / 1e6 / b; }
+    public double getMaxWaitMillis() { return maxWaitNanos.get() / 1e6; }
+    public int getIdleCount() { return idle.size(); }
+    public int getActiveCount() { return maxSize - permits.availablePermits(); }
+    public long getStatementHits() { return stmtHits.get(); }
+    public long getStatementMisses() { return stmtMisses.get(); }
+
+    // DataSource boilerplate
+    @Override public PrintWriter getLogWriter() { return DriverManager.getLogWriter(); }
+    @Override public void setLogWriter(PrintWriter out) { DriverManager.setLogWriter(out); }
+    @Override public void setLoginTimeout(int seconds) { DriverManager.setLoginTimeout(seconds); }
+    @Override public int getLoginTimeout() { return DriverManager.getLoginTimeout(); }
+    @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
+    @Override public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+    @Override public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+
+    // A physical connection plus the bookkeeping the pool needs for it, including its statement cache.
+    // Only the current lease holder touches the cache, so it needs no locking.
+    final class PooledConnection {
+        final Connection raw;
+        volatile long lastUsed = System.currentTimeMillis();
+        final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> e) {
+                if (size() <= stmtCacheSize) return false;
+                e.getValue().evict();
+                return true;
+            }
+        };
+
+        PooledConnection(Connection raw) { this.raw = raw; }
+
+        // Reuses an idle cached statement for the same SQL; a second concurrent use of the same SQL gets a private one
+        PreparedStatement prepare(String sql, Integer keys) throws SQLException {
+            String key = keys == null ? sql : keys + "|" + sql;
+            CachedStatement cs = statements.get(key);
+            if (cs != null && !cs.inUse) {
+                stmtHits.incrementAndGet();
+                cs.inUse = true;
+                return cs.proxy;
+            }
+            stmtMisses.incrementAndGet();
+            PreparedStatement ps = keys == null ? raw.prepareStatement(sql) : raw.prepareStatement(sql, keys);
+            CachedStatement fresh = new CachedStatement(ps);
+            fresh.inUse = true;
+            if (cs == null) statements.put(key, fresh);
+            else fresh.evicted = true;
+            return fresh.proxy;
+        }
+
+        boolean isUsable(int timeoutSec, boolean ping) {
+            try {
+                return !raw.isClosed() && (!ping || raw.isValid(timeoutSec));
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Hands out a proxy whose close() returns the connection to the pool instead of closing the socket
+        Connection lease() {
+            Lease handler = new Lease(this);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+
+        void closePhysical() {
+            try {
+                raw.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    // close() hands the statement back to its connection's cache instead of closing it on the server
+    private static final class CachedStatement implements InvocationHandler {
+        final PreparedStatement ps;
+        final PreparedStatement proxy;
+        boolean inUse, evicted;
+        ResultSet open;
+
+        CachedStatement(PreparedStatement ps) {
+            this.ps = ps;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) closeQuietly();
+        }
+
+        void closeQuietly() {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        if (evicted) {
+                            closeQuietly();
+                        } else {
+                            if (open != null) open.close();
+                            ps.clearParameters();
+                            ps.clearBatch();
+                            // Per-use settings (a report's streaming fetch size, a row cap) don't carry over to the next borrower
+                            if (ps.getFetchSize() != 0) ps.setFetchSize(0);
+                            if (ps.getMaxRows() != 0) ps.setMaxRows(0);
+                            if (ps.getQueryTimeout() != 0) ps.setQueryTimeout(0);
+                        }
+                        open = null;
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || ps.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            if (!inUse) throw new SQLException("Statement is closed");
+            try {
+                Object result = m.invoke(ps, args);
+                if (result instanceof ResultSet) open = (ResultSet) result;
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pc;
+        private final List<Statement> opened = new ArrayList<>();
+        private boolean returned;
+
+        Lease(PooledConnection pc) { this.pc = pc; }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        closeStatements();
+                        release(pc, !reset());
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.raw.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(pc.raw)) return pc.raw;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pc.raw + "]";
+            }
+            if (returned) throw new SQLException("Connection already returned to the pool");
+            if (m.getName().equals("prepareStatement") && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer))) {
+                PreparedStatement ps = pc.prepare((String) args[0], args.length == 2 ? (Integer) args[1] : null);
+                opened.add(ps);
+                return ps;
+            }
+            try {
+                Object result = m.invoke(pc.raw, args);
+                // Closing a physical connection used to close its statements; keep that guarantee per lease
+                if (result instanceof Statement) opened.add((Statement) result);
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void closeStatements() {
+            for (Statement st : opened) {
+                try {
+                    st.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            opened.clear();
+        }
+
+        // Leaves the connection the way the next borrower expects it: auto-commit on, nothing pending
+        private boolean reset() {
+            try {
+                if (pc.raw.isClosed()) return false;
+                if (!pc.raw.getAutoCommit()) {
+                    pc.raw.rollback();
+                    pc.raw.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+}
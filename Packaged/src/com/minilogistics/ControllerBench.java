@@ -0,0 +1,88 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.QueryCache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Controller hot paths against a freshly seeded scratch database, one size at a time.
+// Run from the repository root with MySQL running locally:
+//   java -cp ".;Packaged;Packaged/mysql-connector-j-9.5.0.jar" com.minilogistics.bench.ControllerBench [deliveries...]
+// Defaults to 1k/100k/1M deliveries (drivers = deliveries / 100, at least 10). Results go to
+// bench-results.csv; pass -Dbench.baseline=<csv> to print the change against an earlier run.
+public class ControllerBench {
+
+    public static void main(String[] args) throws Exception {
+        BenchData.useBenchDatabase();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] { 1000, 100000, 1000000 };
+        String baseline = System.getProperty("bench.baseline");
+        Path out = Paths.get(System.getProperty("bench.out", "bench-results.csv"));
+        BenchHarness h = new BenchHarness();
+        List<BenchHarness.Result> results = new ArrayList<>();
+
+        try (Connection c = AdminDBConfig.getConnection()) {
+            BenchData.createSchema(c);
+        }
+        for (int deliveries : sizes) {
+            int drivers = Math.max(10, deliveries / 100);
+            try (Connection c = AdminDBConfig.getConnection()) {
+                BenchData.truncateAll(c);
+                BenchData.seed(c, drivers, deliveries);
+                try (Statement st = c.createStatement()) { st.execute("ANALYZE TABLE deliveries, drivers, users, vehicles"); }
+            }
+            String p = deliveries + "dl";
+            AdminPortalController admin = new AdminPortalController();
+            DriverAppController driver = new DriverAppController();
+            if (!"Success".equals(driver.login("drv1@bench", "pass"))) throw new IllegalStateException("Seeded driver cannot log in");
+            // Only open jobs: a COMPLETED one would just measure the conflict path
+            int[] myJobs = driver.getMyJobs().stream().filter(j -> "ASSIGNED".equals(j.status) || "In Transit".equals(j.status))
+                    .mapToInt(j -> j.id).toArray();
+            int[] pending = BenchData.pendingIds(deliveries);
+
+            results.add(h.run("admin.getDrivers", p, () -> {
+                QueryCache.shared().clear();
+                admin.getDrivers();
+            }));
+            results.add(h.run("admin.getDrivers.cached", p, admin::getDrivers));
+            if (deliveries <= 100000 || Boolean.getBoolean("bench.fullScans")) {
+                results.add(h.run("admin.getDeliveries", p, admin::getDeliveries));
+            }
+            results.add(h.run("admin.getDeliveriesPage", p, () -> admin.getDeliveriesPage(deliveries / 2, 200, "All", -1)));
+            // Draws from the seeded PENDING pool; once it is used up the pool is put back to PENDING (one bulk
+            // UPDATE per pass, inside the timing) so every call is a first assignment rather than a reassignment
+            int[] next = { 0 };
+            results.add(h.run("admin.assignDriver", p, () -> {
+                if (next[0] == pending.length) {
+                    try (Connection c = AdminDBConfig.getConnection()) { BenchData.resetPending(c, pending); }
+                    next[0] = 0;
+                }
+                int del = pending[next[0]++];
+                expect("admin.assignDriver", admin.assignDriver(del, 1 + del % drivers, "High", 24));
+            }));
+            results.add(h.run("driver.login", p, () -> expect("driver.login", driver.login("drv1@bench", "pass"))));
+            results.add(h.run("driver.getMyJobs", p, driver::getMyJobs));
+            int[] k = { 0 };
+            if (myJobs.length > 0) {
+                results.add(h.run("driver.updateStatus", p, () -> expect("driver.updateStatus", driver.updateStatus(myJobs[k[0]++ % myJobs.length], "In Transit"))));
+            }
+        }
+        BenchHarness.print(results, BenchHarness.readCsv(baseline == null ? null : Paths.get(baseline)));
+        BenchHarness.writeCsv(out, results);
+        System.out.println("Pool: " + AdminDBConfig.pool().stats());
+        System.out.println("Cache: " + QueryCache.shared().stats());
+        System.exit(0);
+    }
+
+    // A benchmark that quietly measures its error path is worse than none
+    static void expect(String op, String result) {
+        if (!"Success".equals(result)) throw new IllegalStateException(op + " returned: " + result);
+    }
+}
@@ -0,0 +1,407 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.api.Json;
+import com.minilogistics.db.Repositories.NewDelivery;
+import com.minilogistics.model.AdminEntities.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Loads new deliveries from large order files: CSV with a header row, or JSON Lines. Three stages:
+//  - a reader thread maps the file in MAP_WINDOW windows and cuts them into line-aligned blocks of ~BLOCK_BYTES;
+//  - a pool parses and validates blocks in parallel;
+//  - the calling thread commits results in file order, BATCH rows per transaction, through
+//    AdminPortalController.ingestDeliveries, moving the file's checkpoint in the same transaction.
+// Parsed blocks wait in a queue of IN_FLIGHT futures; when the database falls behind the reader blocks on it, so
+// memory stays bounded whatever the file size. A rerun of the same file resumes at its checkpoint, unless the
+// bytes the checkpoint covers have changed (prefixHash): a new file saved under the same name loads from the top.
+// Columns / keys: description, pickup, dropoff (required), fee, contact, driver_id, priority (High/Medium/Low),
+// deadline (yyyy-MM-dd HH:mm[:ss]). A row with an Active driver_id is created ASSIGNED with an assignment (default
+// Medium, due in 24 hours); otherwise PENDING. CSV records must fit on one line (quotes may hold commas and "").
+// Rejected lines go to <file>.rejects.csv as "offset,error,line", offset being the line's first byte. Drivers are
+// checked against a snapshot taken at the start and again inside each batch's transaction, so a row whose driver
+// was deactivated mid-run is rejected too rather than assigned.
+// Settings: minilogistics.ingest.threads (cores - 1), .blockKb (512), .batch (10000), .inFlight (threads * 4)
+public class DeliveryIngest {
+    static final int THREADS = Integer.getInteger("minilogistics.ingest.threads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    static final int BLOCK_BYTES = Integer.getInteger("minilogistics.ingest.blockKb", 512) * 1024;
+    static final int BATCH = Integer.getInteger("minilogistics.ingest.batch", 10000);
+    static final int IN_FLIGHT = Integer.getInteger("minilogistics.ingest.inFlight", THREADS * 4);
+    static final long MAP_WINDOW = 256L << 20;
+    static final DateTimeFormatter DEADLINE = DateTimeFormatter.ofPattern("yyyy-MM-dd[' ']['T']HH:mm[:ss]");
+    static final int PREFIX_BYTES = 64 * 1024;
+    static final String[] COLUMNS = { "description", "pickup", "dropoff", "fee", "contact", "driver_id", "priority", "deadline" };
+
+    // Called from the ingest thread after every committed batch
+    public interface Listener { default void progress(long bytes, long totalBytes, long loaded, long rejected) {} }
+
+    public static final class Summary {
+        public long loaded, rejected, resumedAt, millis;
+        public boolean changed; // a checkpoint existed, but for different contents
+        public String toString() {
+            return loaded + " deliveries loaded, " + rejected + " lines rejected in " + millis + " ms"
+                    + (millis > 0 ? " (" + loaded * 1000 / millis + "/s)" : "") + (resumedAt > 0 ? ", resumed at byte " + resumedAt : "")
+                    + (changed ? ", loaded from the top (the file changed since its last ingest)" : "");
+        }
+    }
+
+    private static final class Parsed {
+        final long end;
+        final List<NewDelivery> rows = new ArrayList<>();
+        final List<String> late = new ArrayList<>(); // per row: its reject line should the driver be gone at commit
+        final List<String> rejects = new ArrayList<>();
+        Parsed(long end) { this.end = end; }
+    }
+
+    private static final Future<Parsed> END = CompletableFuture.completedFuture(null);
+
+    private final AdminPortalController ctrl;
+    private volatile boolean cancelled;
+
+    public DeliveryIngest(AdminPortalController ctrl) { this.ctrl = ctrl; }
+
+    // Stops after the batch being committed; the next run resumes from there
+    public void cancel() { cancelled = true; }
+
+    public static Path rejectFile(Path input) { return input.resolveSibling(input.getFileName() + ".rejects.csv"); }
+
+    // restart ignores the file's checkpoint and loads it from the top again
+    public Summary ingestFile(Path file, boolean restart, Listener l) throws IOException {
+        if (l == null) l = new Listener() {};
+        long started = System.nanoTime();
+        String source = file.toAbsolutePath().normalize().toString();
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json") || name.endsWith(".ndjson");
+
+        long[] cp = restart ? new long[] { 0, 0, 0 } : ctrl.getIngestCheckpoint(source);
+        if (cp == null) throw new IOException("Database unavailable; could not read the ingest checkpoint");
+        Map<Integer, String> drivers = new HashMap<>();
+        for (AdminDriverEntity d : ctrl.getDrivers()) drivers.put(d.id, d.status);
+
+        long size = Files.size(file);
+        Summary sum = new Summary();
+        if (cp[0] > 0 && (cp[0] > size || (cp[2] != 0 && cp[2] != prefixHash(file, cp[0])))) {
+            cp = new long[] { 0, 0, 0 };
+            sum.changed = true;
+        }
+        boolean fresh = cp[0] == 0;
+        sum.resumedAt = cp[0];
+        long start = cp[0];
+        int[] cols = null;
+        if (!json) {
+            byte[] header = firstLine(file);
+            cols = columns(new String(header, StandardCharsets.UTF_8));
+            start = Math.max(start, header.length);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "ingest-parse");
+            t.setDaemon(true);
+            return t;
+        });
+        BlockingQueue<Future<Parsed>> queue = new ArrayBlockingQueue<>(IN_FLIGHT);
+        IOException[] readFailure = new IOException[1];
+        int[] columns = cols;
+        long from = start;
+        Thread reader = new Thread(() -> {
+            try {
+                split(file, from, size, queue, pool, columns, drivers);
+            } catch (IOException e) {
+                readFailure[0] = e;
+            } catch (InterruptedException e) {
+                return; // the committer gave up and stopped reading the queue
+            }
+            try { queue.put(END); } catch (InterruptedException ignored) {}
+        }, "ingest-read");
+        reader.setDaemon(true);
+        reader.start();
+
+        long loaded = cp[1];
+        long hash = cp[2], hashedTo = cp[2] == 0 ? 0 : cp[0]; // prefix hash sent with each batch, and the offset it covers
+        try (Writer rejects = Files.newBufferedWriter(rejectFile(file), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, fresh ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND)) {
+            List<NewDelivery> batch = new ArrayList<>(BATCH + BLOCK_BYTES / 64);
+            List<String> batchLate = new ArrayList<>(BATCH + BLOCK_BYTES / 64);
+            List<String> batchRejects = new ArrayList<>();
+            long batchEnd = start;
+            while (true) {
+                Future<Parsed> f = queue.take();
+                Parsed p = f == END ? null : f.get();
+                if (p != null) {
+                    batch.addAll(p.rows);
+                    batchLate.addAll(p.late);
+                    batchRejects.addAll(p.rejects);
+                    batchEnd = p.end;
+                }
+                boolean last = p == null || cancelled;
+                if (batch.size() >= BATCH || (last && batchEnd > start)) {
+                    if (hashedTo < PREFIX_BYTES && hashedTo < batchEnd) {
+                        hash = prefixHash(file, batchEnd);
+                        hashedTo = batchEnd;
+                    }
+                    List<Integer> ids = ctrl.ingestDeliveries(source, batchEnd, loaded + batch.size(), hash, batch);
+                    if (ids == null) throw new IOException("Database error; " + sum.loaded + " deliveries loaded, rerun to resume at byte " + start);
+                    // Written once their batch is committed, so a resumed run doesn't report the same lines twice
+                    int dropped = 0;
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (ids.get(i) != 0) continue;
+                        batchRejects.add(batchLate.get(i));
+                        dropped++;
+                    }
+                    for (String r : batchRejects) rejects.write(r);
+                    rejects.flush();
+                    loaded += batch.size() - dropped;
+                    sum.loaded += batch.size() - dropped;
+                    sum.rejected += batchRejects.size();
+                    start = batchEnd;
+                    batch.clear();
+                    batchLate.clear();
+                    batchRejects.clear();
+                    l.progress(start, size, sum.loaded, sum.rejected);
+                }
+                if (p == null) break;
+                if (cancelled) throw new CancellationException("Ingest cancelled at byte " + start + "; rerun to resume");
+            }
+            if (readFailure[0] != null) throw readFailure[0];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Parse failed: " + e.getCause(), e.getCause());
+        } finally {
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+        sum.millis = (System.nanoTime() - started) / 1_000_000;
+        return sum;
+    }
+
+    // Reader thread: cuts [from, size) into line-aligned blocks and queues their parses in file order
+    private static void split(Path file, long from, long size, BlockingQueue<Future<Parsed>> queue, ExecutorService pool,
+                              int[] cols, Map<Integer, String> drivers) throws IOException, InterruptedException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long pos = from;
+            while (pos < size) {
+                int len = (int) Math.min(MAP_WINDOW, size - pos);
+                boolean tail = pos + len == size;
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int p = 0;
+                while (p < len) {
+                    int end = Math.min(p + BLOCK_BYTES, len);
+                    if (end < len || !tail) {
+                        int nl = lastNewline(map, p, end);
+                        if (nl < 0) nl = nextNewline(map, end, len); // a line longer than a block
+                        if (nl < 0) {
+                            if (p == 0) throw new IOException("Line longer than " + MAP_WINDOW + " bytes at byte " + pos);
+                            break; // the rest of this window starts the next one
+                        }
+                        end = nl + 1;
+                    }
+                    ByteBuffer block = map.slice(p, end - p);
+                    long base = pos + p, stop = pos + end;
+                    queue.put(pool.submit(() -> parse(block, base, stop, cols, drivers)));
+                    p = end;
+                }
+                pos += p;
+            }
+        }
+    }
+
+    private static int lastNewline(ByteBuffer b, int from, int to) {
+        for (int i = to - 1; i >= from; i--) if (b.get(i) == '\n') return i;
+        return -1;
+    }
+
+    private static int nextNewline(ByteBuffer b, int from, int to) {
+        for (int i = from; i < to; i++) if (b.get(i) == '\n') return i;
+        return -1;
+    }
+
+    // Parser thread: one block of whole lines
+    static Parsed parse(ByteBuffer block, long base, long end, int[] cols, Map<Integer, String> drivers) {
+        Parsed out = new Parsed(end);
+        byte[] buf = new byte[256];
+        LocalDateTime defaultDeadline = LocalDateTime.now().plusHours(24);
+        int n = block.limit(), lineStart = 0;
+        for (int i = 0; i <= n; i++) {
+            if (i < n && block.get(i) != '\n') continue;
+            int len = i - lineStart;
+            if (len > 0 && block.get(lineStart + len - 1) == '\r') len--;
+            if (len > buf.length) buf = new byte[Math.max(len, buf.length * 2)];
+            block.get(lineStart, buf, 0, len);
+            String line = new String(buf, 0, len, StandardCharsets.UTF_8);
+            long offset = base + lineStart;
+            lineStart = i + 1;
+            if (line.isBlank()) continue;
+            String[] f;
+            try {
+                f = cols == null ? jsonFields(line) : csvFields(line, cols);
+            } catch (IllegalArgumentException e) {
+                out.rejects.add(reject(offset, "Unreadable: " + e.getMessage(), line));
+                continue;
+            }
+            Object row = validate(f, drivers, defaultDeadline);
+            if (row instanceof String) {
+                out.rejects.add(reject(offset, (String) row, line));
+                continue;
+            }
+            NewDelivery d = (NewDelivery) row;
+            out.rows.add(d);
+            out.late.add(d.driverId > 0 ? reject(offset, "Driver " + d.driverId + " is no longer active", line) : null);
+        }
+        return out;
+    }
+
+    // NewDelivery, or the reason the row is rejected. Lengths match the deliveries columns (SqlScript.sql).
+    static Object validate(String[] f, Map<Integer, String> drivers, LocalDateTime defaultDeadline) {
+        String desc = f[0], pickup = f[1], dropoff = f[2], contact = f[4];
+        if (desc == null || desc.isEmpty()) return "Description is required";
+        if (pickup == null || pickup.isEmpty()) return "Pickup is required";
+        if (dropoff == null || dropoff.isEmpty()) return "Dropoff is required";
+        if (desc.length() > 200) return "Description longer than 200 characters";
+        if (pickup.length() > 100 || dropoff.length() > 100) return "Pickup/dropoff longer than 100 characters";
+        if (contact != null && contact.length() > 100) return "Contact longer than 100 characters";
+        double fee = 0;
+        int driver = 0;
+        try {
+            if (f[3] != null && !f[3].isEmpty()) fee = Double.parseDouble(f[3]);
+            if (f[5] != null && !f[5].isEmpty()) driver = Integer.parseInt(f[5]);
+        } catch (NumberFormatException e) {
+            return "Fee and driver_id must be numbers";
+        }
+        if (fee < 0 || Double.isNaN(fee) || Double.isInfinite(fee)) return "Invalid fee";
+        if (driver == 0) return new NewDelivery(desc, pickup, dropoff, fee, contact, 0, null, null);
+        if (!"Active".equals(drivers.get(driver))) return "Driver " + driver + " not found or not active";
+        String pri = f[6] == null || f[6].isEmpty() ? "Medium" : f[6];
+        if (pri.equalsIgnoreCase("High")) pri = "High";
+        else if (pri.equalsIgnoreCase("Medium")) pri = "Medium";
+        else if (pri.equalsIgnoreCase("Low")) pri = "Low";
+        else return "Priority must be High, Medium or Low";
+        LocalDateTime deadline = defaultDeadline;
+        if (f[7] != null && !f[7].isEmpty()) {
+            try {
+                deadline = LocalDateTime.parse(f[7], DEADLINE);
+            } catch (DateTimeParseException e) {
+                return "Deadline must look like 2026-01-31 17:00";
+            }
+        }
+        return new NewDelivery(desc, pickup, dropoff, fee, contact, driver, pri, deadline);
+    }
+
+    private static String reject(long offset, String error, String line) {
+        if (line.length() > 200) line = line.substring(0, 200) + "...";
+        return offset + "," + csv(error) + "," + csv(line) + "\n";
+    }
+
+    private static String csv(String v) {
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
+    }
+
+    // Header position of each of COLUMNS, -1 where absent
+    static int[] columns(String header) throws IOException {
+        List<String> names = csvSplit(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        int[] idx = new int[COLUMNS.length];
+        for (int k = 0; k < COLUMNS.length; k++) {
+            idx[k] = -1;
+            for (int i = 0; i < names.size(); i++) if (names.get(i).trim().equalsIgnoreCase(COLUMNS[k])) idx[k] = i;
+        }
+        for (int k = 0; k < 3; k++) if (idx[k] < 0) throw new IOException("CSV header has no \"" + COLUMNS[k] + "\" column");
+        return idx;
+    }
+
+    static String[] csvFields(String line, int[] cols) {
+        List<String> f = csvSplit(line);
+        String[] out = new String[COLUMNS.length];
+        for (int k = 0; k < cols.length; k++) if (cols[k] >= 0 && cols[k] < f.size()) out[k] = f.get(cols[k]).trim();
+        return out;
+    }
+
+    static String[] jsonFields(String line) {
+        Map<String, Object> m = Json.obj(Json.parse(line));
+        String[] out = new String[COLUMNS.length];
+        for (int k = 0; k < COLUMNS.length; k++) {
+            Object v = m.get(COLUMNS[k]);
+            if (v instanceof Double && (Double) v == Math.rint((Double) v) && k == 5) v = ((Double) v).longValue();
+            out[k] = v == null ? null : v.toString().trim();
+        }
+        return out;
+    }
+
+    private static List<String> csvSplit(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder f = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') f.append(ch);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') { f.append('"'); i++; }
+                else quoted = false;
+            } else if (ch == '"' && f.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                out.add(f.toString());
+                f.setLength(0);
+            } else {
+                f.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        out.add(f.toString());
+        return out;
+    }
+
+    // Fingerprint of the first min(offset, PREFIX_BYTES) bytes: the part of the file a checkpoint at offset has
+    // loaded. Another file under the same name won't match it; the same file with rows appended still does.
+    static long prefixHash(Path file, long offset) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate((int) Math.min(Math.min(offset, ch.size()), PREFIX_BYTES));
+            while (b.hasRemaining() && ch.read(b, b.position()) > 0) {}
+            b.flip();
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(b);
+            return ByteBuffer.wrap(sha.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has SHA-256
+        }
+    }
+
+    private static byte[] firstLine(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate((int) Math.min(ch.size(), 1 << 16));
+            ch.read(b, 0);
+            b.flip();
+            int nl = nextNewline(b, 0, b.limit());
+            if (nl < 0 && b.limit() == 0) throw new IOException("Empty file");
+            byte[] line = new byte[nl < 0 ? b.limit() : nl + 1];
+            b.get(line);
+            return line;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.AutoDispatcher;
+import com.minilogistics.model.AdminEntities.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Times AutoDispatcher.plan on synthetic fleets; no database needed.
+//   java -cp Packaged com.minilogistics.bench.DispatchBench [pendingDeliveries] [drivers]
+public class DispatchBench {
+    public static void main(String[] args) {
+        int pendingCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int driverCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        Random rnd = new Random(42);
+        String[] pris = { "High", null, null, "Low", "Medium" };
+        double[] caps = { 100, 300, 500, 1000, 2500 };
+
+        List<AdminDriverEntity> drivers = new ArrayList<>(driverCount);
+        for (int i = 1; i <= driverCount; i++) {
+            AdminVehicle v = new AdminVehicle("Van", "BN-" + i, caps[rnd.nextInt(caps.length)]);
+            drivers.add(new AdminDriverEntity(i, "Driver " + i, "Active", 4.5, rnd.nextInt(3), v));
+        }
+        List<AdminDeliveryEntity> pending = new ArrayList<>(pendingCount);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 1; i <= pendingCount; i++) {
+            String due = rnd.nextInt(4) == 0 ? now.plusHours(1 + rnd.nextInt(72)).withNano(0).toString().replace('T', ' ') : null;
+            pending.add(new AdminDeliveryEntity(i, "Parcel " + i, "A -> B", "PENDING", 0, pris[rnd.nextInt(pris.length)], due));
+        }
+
+        AutoDispatcher dispatcher = new AutoDispatcher();
+        int runs = 10, assigned = 0;
+        for (int i = 0; i < 3; i++) dispatcher.plan(drivers, pending); // warm-up
+        double[] ms = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            assigned = dispatcher.plan(drivers, pending).size();
+            ms[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(ms);
+        System.out.printf("pending=%d drivers=%d assigned=%d  plan ms: min=%.1f median=%.1f max=%.1f%n",
+                pendingCount, driverCount, assigned, ms[0], ms[runs / 2], ms[runs - 1]);
+    }
+}
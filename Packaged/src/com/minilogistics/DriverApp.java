@@ -1,11 +1,13 @@
 package com.minilogistics.main;
 
+import com.minilogistics.db.Metrics;
 import com.minilogistics.view.DriverViews;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 public class DriverApp {
     public static void main(String[] args) {
+        Metrics.startDumps(); // no-op unless minilogistics.metrics.dumpFile is set
         SwingUtilities.invokeLater(() -> {
             try { 
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); 
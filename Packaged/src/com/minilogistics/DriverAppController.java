@@ -1,34 +1,41 @@
 package com.minilogistics.controller;
 
-import com.minilogistics.db.DriverDB;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.Repositories;
+import com.minilogistics.model.AdminEntities.AdminDeliveryEntity;
 import com.minilogistics.model.DriverEntities.*;
 
-import java.sql.*;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DriverAppController {
-    private DriverSession current;
+    // Written by login/logout on a worker thread, read by the views on the EDT
+    private volatile DriverSession current;
+    private final Repositories.Store store;
+
+    public DriverAppController() { this(Repositories.shared()); }
+    public DriverAppController(Repositories.Store store) { this.store = store; }
 
     public String login(String email, String pass) {
-        try (Connection c = DriverDB.getConnection()) {
-            String sql = "SELECT u.user_id, u.name, u.email, u.phone, d.status, d.earnings " +
-                         "FROM users u JOIN drivers d ON u.user_id = d.user_id " +
-                         "WHERE u.email=? AND u.password=? AND u.role='DRIVER'";
-            
-            PreparedStatement ps = c.prepareStatement(sql);
-            ps.setString(1, email); ps.setString(2, pass);
-            
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                String status = rs.getString("status");
-                if("Pending".equals(status)) return "Account Pending Approval";
-                if("Suspended".equals(status)) return "Account Suspended";
-                
-                current = new DriverSession(rs.getInt("user_id"), rs.getString("name"), status, rs.getDouble("earnings"), rs.getString("email"), rs.getString("phone"));
-                return "Success";
-            }
-            return "Invalid Credentials";
+        try {
+            return Metrics.timed("driver.login", () -> {
+                DriverSession s = store.users().findDriver(email, pass);
+                if (s != null) {
+                    if("Pending".equals(s.status)) return "Account Pending Approval";
+                    if("Suspended".equals(s.status)) return "Account Suspended";
+
+                    current = s;
+                    return "Success";
+                }
+                return "Invalid Credentials";
+            });
         } catch (SQLException e) { 
             e.printStackTrace(); 
             return "DB Error: " + e.getMessage(); 
@@ -36,37 +43,15 @@ public class DriverAppController {
     }
 
     public String register(String name, String email, String pass, String phone, String model, String plate) {
-        try (Connection c = DriverDB.getConnection()) {
-            PreparedStatement check = c.prepareStatement("SELECT count(*) FROM users WHERE email = ?");
-            check.setString(1, email);
-            ResultSet rsCheck = check.executeQuery();
-            if(rsCheck.next() && rsCheck.getInt(1) > 0) {
-                return "Email address '" + email + "' is already registered.";
-            }
+        try {
+            return Metrics.timed("driver.register", () -> {
+                if(store.users().emailTaken(email)) {
+                    return "Email address '" + email + "' is already registered.";
+                }
 
-            c.setAutoCommit(false); // Start Transaction
-
-            String userSql = "INSERT INTO users (name, email, password, phone, role) VALUES (?,?,?,?,'DRIVER')";
-            PreparedStatement p1 = c.prepareStatement(userSql, Statement.RETURN_GENERATED_KEYS);
-            p1.setString(1, name); p1.setString(2, email); p1.setString(3, pass); p1.setString(4, phone);
-            p1.executeUpdate();
-            
-            ResultSet rs1 = p1.getGeneratedKeys(); rs1.next(); int uid = rs1.getInt(1); 
-
-            String vehSql = "INSERT INTO vehicles (model, plate_no, capacity, insurance_info) VALUES (?,?,500,'Pending')";
-            PreparedStatement p2 = c.prepareStatement(vehSql, Statement.RETURN_GENERATED_KEYS);
-            p2.setString(1, model); p2.setString(2, plate);
-            p2.executeUpdate();
-            
-            ResultSet rs2 = p2.getGeneratedKeys(); rs2.next(); int vid = rs2.getInt(1); 
-
-            String driverSql = "INSERT INTO drivers (user_id, license_no, status, vehicle_id) VALUES (?, 'PENDING', 'Pending', ?)";
-            PreparedStatement p3 = c.prepareStatement(driverSql);
-            p3.setInt(1, uid); p3.setInt(2, vid);
-            p3.executeUpdate();
-            
-            c.commit(); 
-            return "Success";
+                store.users().registerDriver(name, email, pass, phone, model, plate);
+                return "Success";
+            });
         } catch (SQLException e) { 
             e.printStackTrace(); 
             return "Database Error: " + e.getMessage(); 
@@ -74,65 +59,195 @@ public class DriverAppController {
     }
 
     public List<DriverJob> getMyJobs() {
-        List<DriverJob> list = new ArrayList<>();
-        try (Connection c = DriverDB.getConnection()) {
-            String sql = "SELECT * FROM deliveries WHERE assigned_driver_id=?";
-            PreparedStatement ps = c.prepareStatement(sql);
-            ps.setInt(1, current.id);
-            
-            ResultSet rs = ps.executeQuery();
-            while(rs.next()) {
-                list.add(new DriverJob(rs.getInt("delivery_id"), rs.getString("description"), rs.getString("pickup")+" -> "+rs.getString("dropoff"), rs.getString("status"), rs.getDouble("fee"), rs.getString("customer_contact")));
+        try (Metrics.Span m = Metrics.op("driver.getMyJobs")) {
+            return m.rows(store.deliveries().forDriver(current.id));
+        } catch (SQLException e) { e.printStackTrace(); return new ArrayList<>(); }
+    }
+
+    // "Success", or why the job can't take the status (Repositories.statusConflict): it is gone, another
+    // driver's, or already closed. The write itself is scoped to this driver too, in case the job moves in between.
+    public String updateStatus(int jobId, String status) {
+        DriverSession s = current;
+        boolean completing = "COMPLETED".equalsIgnoreCase(status);
+        try {
+            return Metrics.timed(completing ? "driver.completeJob" : "driver.updateStatus", () -> {
+                String conflict = conflict(jobId, s.id, status);
+                if (conflict != null) return conflict;
+                if (completing) {
+                    // Not credited: either completed already (a double tap) or it moved since the check
+                    if (!complete(s, jobId) && (conflict = conflict(jobId, s.id, status)) != null) return conflict;
+                } else if (!store.deliveries().updateStatus(jobId, status, s.id)) {
+                    conflict = conflict(jobId, s.id, status);
+                    return conflict != null ? conflict : "Conflict: Job changed on the server";
+                } else {
+                    Notifications.publish(s.id, Notifications.STATUS, jobId);
+                }
+                return "Success";
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "DB Error: " + e.getMessage();
+        }
+    }
+
+    // Status change, fee credit and refreshed balance in one transaction (complete_delivery, currently defined
+    // by migrations/V10__complete_skips_cancelled.sql, on MySQL). Completing an already completed job credits nothing, so a double-tapped COMPLETED is harmless.
+    // A job that was cancelled or reassigned is refused like a replayed COMPLETED (Repositories.statusConflict);
+    // the procedure re-checks under its row lock. Returns true only for the call that credited the fee.
+    public boolean completeJob(int jobId) {
+        DriverSession s = current;
+        try {
+            return Metrics.timed("driver.completeJob", () -> {
+                String conflict = conflict(jobId, s.id, "COMPLETED");
+                if (conflict != null) {
+                    System.err.println("Job " + jobId + " not completed: " + conflict);
+                    return false;
+                }
+                return complete(s, jobId);
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private boolean complete(DriverSession s, int jobId) throws SQLException {
+        Repositories.Completion done = store.earnings().complete(jobId, s.id);
+        s.earnings = done.earnings;
+        if (done.credited) Notifications.publish(s.id, Notifications.STATUS, jobId);
+        return done.credited;
+    }
+
+    private String conflict(int jobId, int driverId, String status) throws SQLException {
+        List<AdminDeliveryEntity> found = store.deliveries().findByIds(List.of(jobId));
+        return found.isEmpty() ? Repositories.statusConflict(false, 0, null, driverId, status)
+                : Repositories.statusConflict(true, found.get(0).assignedDriverId, found.get(0).status, driverId, status);
+    }
+
+    // A journal entry queued more than REQUEST_RETENTION_DAYS ago is refused, since its key may be gone and it
+    // could otherwise apply twice. status_requests keeps keys one day longer than that (slack for device
+    // clocks), pruned at most once per PRUNE_EVERY_MS per process. Setting: minilogistics.statusRequests.retentionDays
+    static final int REQUEST_RETENTION_DAYS = Integer.getInteger("minilogistics.statusRequests.retentionDays", 30);
+    static final long PRUNE_EVERY_MS = 3_600_000L;
+    private static final AtomicLong nextPrune = new AtomicLong();
+
+    // Applies a batch replayed from the offline journal (StatusJournal). Results line up with updates;
+    // null means the server couldn't be reached or failed transiently (connection, timeout, deadlock), and
+    // the whole batch should be retried as is. A permanent database error fails the entry that caused it
+    // with "Error: ...", reported like a conflict, so one bad entry can't hold up the journal forever.
+    public List<String> syncStatus(List<Repositories.StatusUpdate> updates) {
+        DriverSession s = current;
+        if (s == null) return null;
+        try (Metrics.Span m = Metrics.op("driver.syncStatus")) {
+            long oldest = System.currentTimeMillis() - REQUEST_RETENTION_DAYS * 86_400_000L;
+            String[] results = new String[updates.size()];
+            List<Repositories.StatusUpdate> live = new ArrayList<>(updates.size());
+            for (int i = 0; i < results.length; i++) {
+                Repositories.StatusUpdate u = updates.get(i);
+                if (u.at > 0 && u.at < oldest) results[i] = "Error: Queued more than " + REQUEST_RETENTION_DAYS + " days ago";
+                else live.add(u);
             }
-        } catch (SQLException e) { e.printStackTrace(); }
-        return list;
-    }
-
-    public void updateStatus(int jobId, String status) {
-        try (Connection c = DriverDB.getConnection()) {
-            String sql = "UPDATE deliveries SET status=? WHERE delivery_id=?";
-            PreparedStatement ps = c.prepareStatement(sql);
-            ps.setString(1, status); ps.setInt(2, jobId);
-            ps.executeUpdate();
-            
-            if("COMPLETED".equalsIgnoreCase(status)) {
-                String earnSql = "UPDATE drivers SET earnings = earnings + (SELECT fee FROM deliveries WHERE delivery_id=?) WHERE user_id=?";
-                PreparedStatement p2 = c.prepareStatement(earnSql);
-                p2.setInt(1, jobId); p2.setInt(2, current.id);
-                p2.executeUpdate();
-                
-                String refreshSql = "SELECT earnings FROM drivers WHERE user_id=?";
-                PreparedStatement p3 = c.prepareStatement(refreshSql);
-                p3.setInt(1, current.id);
-                ResultSet rs = p3.executeQuery();
-                if(rs.next()) current.earnings = rs.getDouble(1);
+            List<String> applied = live.isEmpty() ? new ArrayList<>() : apply(s, live);
+            boolean completed = false;
+            for (int i = 0, k = 0; i < results.length; i++) {
+                if (results[i] != null) continue;
+                results[i] = applied.get(k++);
+                if (!"Success".equals(results[i])) continue;
+                Notifications.publish(s.id, Notifications.STATUS, updates.get(i).deliveryId);
+                completed |= "COMPLETED".equalsIgnoreCase(updates.get(i).status);
             }
+            if (completed) s.earnings = store.earnings().totals(s.id)[0];
+            pruneRequests();
+            return m.rows(Arrays.asList(results));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // The batch in one go; if it fails permanently, entry by entry so only the culprit is refused. Entries
+    // applied before a transient failure are safe to send again: their keys are already recorded.
+    private List<String> apply(DriverSession s, List<Repositories.StatusUpdate> updates) throws SQLException {
+        try {
+            return store.deliveries().applyStatus(s.id, updates);
+        } catch (SQLException e) {
+            if (isTransient(e)) throw e;
+            if (updates.size() == 1) return List.of(refused(e));
+            e.printStackTrace();
+        }
+        List<String> results = new ArrayList<>(updates.size());
+        for (Repositories.StatusUpdate u : updates) {
+            try {
+                results.addAll(store.deliveries().applyStatus(s.id, List.of(u)));
+            } catch (SQLException e) {
+                if (isTransient(e)) throw e;
+                results.add(refused(e));
+            }
+        }
+        return results;
+    }
+
+    private static String refused(SQLException e) {
+        e.printStackTrace();
+        return "Error: The server could not apply this change (" + e.getMessage() + ")";
+    }
+
+    // Worth retrying unchanged: lost connections, timeouts, deadlocks and lock waits, and the pool's own
+    // errors (no SQLState). Anything else, e.g. bad data or a constraint, fails the same way every time.
+    static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException || e instanceof SQLNonTransientConnectionException) return true;
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("40") || e.getErrorCode() == 1205 || e.getErrorCode() == 1213;
+    }
+
+    // Retention for status_requests, piggybacked on replays (where keys are written) instead of a scheduler
+    private void pruneRequests() {
+        long now = System.currentTimeMillis(), next = nextPrune.get();
+        if (now < next || !nextPrune.compareAndSet(next, now + PRUNE_EVERY_MS)) return;
+        try (Metrics.Span m = Metrics.op("driver.pruneRequests")) {
+            m.rows(store.deliveries().pruneRequests(LocalDateTime.now().minusDays(REQUEST_RETENTION_DAYS + 1)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void refreshEarnings() {
+        DriverSession s = current;
+        if (s == null) return;
+        try {
+            double[] t = Metrics.timed("driver.refreshEarnings", () -> store.earnings().totals(s.id));
+            s.earnings = t[0]; s.todayEarnings = t[1];
         } catch (SQLException e) { e.printStackTrace(); }
     }
-    
+
     public DriverVehicleInfo getVehicleInfo() {
-        try (Connection c = DriverDB.getConnection()) {
-            String sql = "SELECT v.model, v.plate_no FROM vehicles v JOIN drivers d ON d.vehicle_id = v.vehicle_id WHERE d.user_id=?";
-            PreparedStatement ps = c.prepareStatement(sql);
-            ps.setInt(1, current.id);
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()) return new DriverVehicleInfo(rs.getString(1), rs.getString(2));
-        } catch(SQLException e) {}
+        try {
+            DriverVehicleInfo v = Metrics.timed("driver.getVehicleInfo", () -> store.vehicles().forDriver(current.id));
+            if(v != null) return v;
+        } catch(SQLException e) { e.printStackTrace(); }
         return new DriverVehicleInfo("Unknown", "Unknown");
     }
 
     public boolean updateProfile(String name, String phone, String email) {
-        try (Connection c = DriverDB.getConnection()) {
-            String sql = "UPDATE users SET name=?, phone=?, email=? WHERE user_id=?";
-            PreparedStatement ps = c.prepareStatement(sql);
-            ps.setString(1, name); ps.setString(2, phone); ps.setString(3, email); ps.setInt(4, current.id);
-            ps.executeUpdate();
-            
-            current.name = name; current.phone = phone; current.email = email;
-            return true;
+        try {
+            return Metrics.timed("driver.updateProfile", () -> {
+                store.users().updateProfile(current.id, name, phone, email);
+
+                current.name = name; current.phone = phone; current.email = email;
+                return true;
+            });
         } catch(SQLException e) { return false; }
     }
     
     public DriverSession getSession() { return current; }
-    public void logout() { current = null; }
+
+    // What the logged-in driver presents to the notification server (Notifications.keyFor); null when logged out
+    public String getNotifyKey() {
+        DriverSession s = current;
+        return s == null ? null : Notifications.keyFor(String.valueOf(s.id));
+    }
+    public void logout() {
+        current = null;
+        Notifications.unsubscribe();
+    }
 }
\ No newline at end of file
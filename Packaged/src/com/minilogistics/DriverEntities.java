@@ -6,7 +6,7 @@ public class DriverEntities {
     public static class DriverSession {
         public int id;
         public String name, status, email, phone;
-        public double earnings;
+        public double earnings, todayEarnings; // from the earnings rollups, refreshed by refreshEarnings()
         
         public DriverSession(int id, String name, String status, double earnings, String email, String phone) {
             this.id = id; this.name = name; this.status = status; 
@@ -17,10 +17,11 @@ public class DriverEntities {
     public static class DriverJob {
         public int id;
         public String desc, route, status, contact;
+        public String pickup, dropoff; // route is "pickup -> dropoff"; kept apart for the route planner
         public double fee;
         
-        public DriverJob(int id, String desc, String route, String status, double fee, String contact) {
-            this.id = id; this.desc = desc; this.route = route; 
+        public DriverJob(int id, String desc, String pickup, String dropoff, String status, double fee, String contact) {
+            this.id = id; this.desc = desc; this.pickup = pickup; this.dropoff = dropoff; this.route = pickup + " -> " + dropoff;
             this.status = status; this.fee = fee; this.contact = contact;
         }
     }
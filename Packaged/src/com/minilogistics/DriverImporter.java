@@ -0,0 +1,237 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.api.Json;
+import com.minilogistics.db.Repositories.DriverImport;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+// Bulk driver onboarding: streams drivers (with their vehicles) from a CSV or JSON file and registers them
+// CHUNK at a time through AdminPortalController.importDrivers, one transaction per chunk. Only the current
+// chunk is held in memory, so file size doesn't matter. Rows that fail validation, whose email is already
+// registered, or whose chunk failed are written to the error report as "row,email,error"; row numbers count
+// data rows (CSV: after the header) from 1.
+// CSV: a header row naming the columns name, email, password, phone, model, plate (any order; extra columns
+// ignored). JSON: an array of objects with those keys, or one object per line.
+// Settings: minilogistics.import.chunk (1000)
+public class DriverImporter {
+    static final int CHUNK = Integer.getInteger("minilogistics.import.chunk", 1000);
+    static final int PROGRESS_EVERY = 5000;
+
+    // Called from the import thread
+    public interface Listener { default void progress(long rows, long imported, long rejected) {} }
+
+    public static final class Summary {
+        public long rows, imported, rejected;
+        public String toString() { return "Read " + rows + " rows: " + imported + " drivers imported, " + rejected + " rejected"; }
+    }
+
+    private final AdminPortalController ctrl;
+    private volatile boolean cancelled;
+
+    public DriverImporter(AdminPortalController ctrl) { this.ctrl = ctrl; }
+
+    // Stops after the chunk in progress; chunks already written stay imported
+    public void cancel() { cancelled = true; }
+
+    public static Path reportFile(Path input) { return input.resolveSibling(input.getFileName() + ".errors.csv"); }
+
+    // JSON when the file name ends in .json or .jsonl, CSV otherwise; errors go to reportFile(file)
+    public Summary importFile(Path file, Listener l) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".json") || name.endsWith(".jsonl");
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             Writer report = Files.newBufferedWriter(reportFile(file), StandardCharsets.UTF_8)) {
+            return run(in, json, report, l);
+        }
+    }
+
+    public Summary run(Reader in, boolean json, Writer report, Listener l) throws IOException {
+        if (l == null) l = new Listener() {};
+        BufferedReader r = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        Writer out = report instanceof BufferedWriter ? report : new BufferedWriter(report, 1 << 16);
+        out.write("row,email,error\n");
+        Summary sum = new Summary();
+        List<DriverImport> chunk = new ArrayList<>(CHUNK);
+        List<Long> chunkRows = new ArrayList<>(CHUNK);
+
+        Map<String, Integer> cols = null;
+        if (!json) {
+            List<String> header = csvRecord(r);
+            if (header == null) throw new IOException("Empty file");
+            cols = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) cols.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            for (String c : new String[] { "name", "email", "password" }) {
+                if (!cols.containsKey(c)) throw new IOException("CSV header has no \"" + c + "\" column");
+            }
+        }
+
+        try {
+            readRows(r, json, cols, out, sum, chunk, chunkRows, l);
+        } finally {
+            flush(chunk, chunkRows, out, sum, l); // rows read before a cancel or a broken file still go in
+            out.flush();
+        }
+        l.progress(sum.rows, sum.imported, sum.rejected);
+        return sum;
+    }
+
+    private void readRows(BufferedReader r, boolean json, Map<String, Integer> cols, Writer out, Summary sum,
+                          List<DriverImport> chunk, List<Long> chunkRows, Listener l) throws IOException {
+        while (true) {
+            if (cancelled) throw new CancellationException("Import cancelled after " + sum.rows + " rows");
+            DriverImport d;
+            long row = sum.rows + 1;
+            try {
+                if (json) {
+                    String obj = jsonObject(r);
+                    if (obj == null) break;
+                    Map<String, Object> m = Json.obj(Json.parse(obj));
+                    d = new DriverImport(str(m.get("name")), str(m.get("email")), str(m.containsKey("password") ? m.get("password") : m.get("pass")),
+                            str(m.get("phone")), str(m.get("model")), str(m.get("plate")));
+                } else {
+                    List<String> f = csvRecord(r);
+                    if (f == null) break;
+                    if (f.size() == 1 && f.get(0).isBlank()) continue; // blank line
+                    d = new DriverImport(col(f, cols, "name"), col(f, cols, "email"), col(f, cols, "password"),
+                            col(f, cols, "phone"), col(f, cols, "model"), col(f, cols, "plate"));
+                }
+            } catch (IllegalArgumentException e) { // malformed JSON object
+                sum.rows++;
+                reject(out, sum, row, "", "Unreadable: " + e.getMessage());
+                continue;
+            }
+            sum.rows++;
+            String error = validate(d);
+            if (error != null) {
+                reject(out, sum, row, d.email, error);
+                continue;
+            }
+            chunk.add(d);
+            chunkRows.add(row);
+            if (chunk.size() == CHUNK) flush(chunk, chunkRows, out, sum, l);
+            if (sum.rows % PROGRESS_EVERY == 0) l.progress(sum.rows, sum.imported, sum.rejected);
+        }
+    }
+
+    private void flush(List<DriverImport> chunk, List<Long> rows, Writer out, Summary sum, Listener l) throws IOException {
+        if (chunk.isEmpty()) return;
+        List<Integer> ids = ctrl.importDrivers(chunk);
+        for (int i = 0; i < chunk.size(); i++) {
+            if (ids == null) reject(out, sum, rows.get(i), chunk.get(i).email, "Database error; chunk rolled back");
+            else if (ids.get(i) == 0) reject(out, sum, rows.get(i), chunk.get(i).email, "Email address already registered");
+            else sum.imported++;
+        }
+        chunk.clear();
+        rows.clear();
+        l.progress(sum.rows, sum.imported, sum.rejected);
+    }
+
+    private static void reject(Writer out, Summary sum, long row, String email, String error) throws IOException {
+        sum.rejected++;
+        out.write(row + "," + csv(email) + "," + csv(error) + "\n");
+    }
+
+    // Same limits as the users and vehicles columns (SqlScript.sql), so one bad row can't fail its chunk
+    static String validate(DriverImport d) {
+        if (d.name == null || d.name.isBlank()) return "Name is required";
+        if (d.email == null || d.email.isBlank()) return "Email is required";
+        if (d.pass == null || d.pass.isEmpty()) return "Password is required";
+        if (d.email.indexOf('@') < 1 || d.email.indexOf('@') == d.email.length() - 1 || d.email.chars().anyMatch(Character::isWhitespace))
+            return "Invalid email address";
+        if (d.name.length() > 100) return "Name longer than 100 characters";
+        if (d.email.length() > 100) return "Email longer than 100 characters";
+        if (d.pass.length() > 100) return "Password longer than 100 characters";
+        if (d.phone != null && d.phone.length() > 20) return "Phone longer than 20 characters";
+        if (d.model != null && d.model.length() > 50) return "Vehicle model longer than 50 characters";
+        if (d.plate != null && d.plate.length() > 20) return "Plate longer than 20 characters";
+        return null;
+    }
+
+    private static String str(Object v) { return v == null ? null : v.toString().trim(); }
+
+    private static String col(List<String> f, Map<String, Integer> cols, String name) {
+        Integer i = cols.get(name);
+        return i == null || i >= f.size() ? null : f.get(i).trim();
+    }
+
+    private static String csv(String v) {
+        if (v == null) return "";
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
+    }
+
+    // Next RFC 4180 record (quoted fields may contain commas, quotes and line breaks), or null at end of input
+    static List<String> csvRecord(BufferedReader r) throws IOException {
+        int ch = r.read();
+        if (ch < 0) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder f = new StringBuilder();
+        boolean quoted = false;
+        for (; ch >= 0; ch = r.read()) {
+            if (quoted) {
+                if (ch != '"') { f.append((char) ch); continue; }
+                r.mark(1);
+                if (r.read() == '"') { f.append('"'); continue; }
+                r.reset();
+                quoted = false;
+            } else if (ch == '"' && f.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(f.toString());
+                f.setLength(0);
+            } else if (ch == '\n') {
+                break;
+            } else if (ch == '\r') {
+                r.mark(1);
+                if (r.read() != '\n') r.reset();
+                break;
+            } else {
+                f.append((char) ch);
+            }
+        }
+        fields.add(f.toString());
+        return fields;
+    }
+
+    // Text of the next top-level {...} object, skipping array brackets, commas and whitespace between them,
+    // or null at end of input
+    static String jsonObject(BufferedReader r) throws IOException {
+        int ch;
+        while ((ch = r.read()) >= 0 && ch != '{') {
+            if (!Character.isWhitespace(ch) && ch != '[' && ch != ']' && ch != ',') throw new IOException("Expected a JSON object, found '" + (char) ch + "'");
+        }
+        if (ch < 0) return null;
+        StringBuilder sb = new StringBuilder("{");
+        int depth = 1;
+        boolean str = false, esc = false;
+        while (depth > 0 && (ch = r.read()) >= 0) {
+            sb.append((char) ch);
+            if (str) {
+                if (esc) esc = false;
+                else if (ch == '\\') esc = true;
+                else if (ch == '"') str = false;
+            } else if (ch == '"') {
+                str = true;
+            } else if (ch == '{') {
+                depth++;
+            } else if (ch == '}') {
+                depth--;
+            }
+        }
+        if (depth > 0) throw new IOException("Truncated JSON object at end of file");
+        return sb.toString();
+    }
+}
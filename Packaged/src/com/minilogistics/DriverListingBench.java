@@ -0,0 +1,65 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.QueryCache;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+// Compares the old correlated active_jobs subquery with the grouped join getDrivers now uses,
+// from 10 to 100k drivers (3 deliveries each). Run from the repository root against a scratch DB:
+//   java -cp ".;Packaged;Packaged/mysql-connector-j-9.5.0.jar" com.minilogistics.bench.DriverListingBench [sizes...]
+public class DriverListingBench {
+
+    static final String CORRELATED_SQL = "SELECT u.user_id, u.name, d.status, d.rating, " +
+            "(SELECT COUNT(*) FROM deliveries del WHERE del.assigned_driver_id = d.user_id AND del.status != 'COMPLETED' AND del.status != 'CANCELLED') as active_jobs, " +
+            "v.model, v.plate_no, v.capacity " +
+            "FROM drivers d JOIN users u ON d.user_id = u.user_id " +
+            "JOIN vehicles v ON d.vehicle_id = v.vehicle_id";
+
+    public static void main(String[] args) throws Exception {
+        BenchData.useBenchDatabase();
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] { 10, 100, 1000, 10000, 100000 };
+        AdminPortalController ctrl = new AdminPortalController();
+
+        try (Connection c = AdminDBConfig.getConnection()) {
+            BenchData.createSchema(c);
+        }
+        System.out.printf("%10s %16s %16s %14s %14s%n", "drivers", "correlated ms", "grouped ms", "corr us/drv", "group us/drv");
+        for (int n : sizes) {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                BenchData.truncateAll(c);
+                BenchData.seed(c, n, n * 3);
+                try (Statement st = c.createStatement()) { st.execute("ANALYZE TABLE deliveries, drivers, users, vehicles"); }
+            }
+            int runs = n >= 100000 ? 5 : 20;
+            double corr = medianMillis(runs, () -> {
+                try (Connection c = AdminDBConfig.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery(CORRELATED_SQL)) {
+                    while (rs.next()) rs.getInt("active_jobs");
+                }
+            });
+            double grouped = medianMillis(runs, () -> {
+                QueryCache.shared().clear(); // time the query, not a cache hit
+                if (ctrl.getDrivers().size() != n) throw new IllegalStateException("getDrivers returned the wrong row count");
+            });
+            System.out.printf("%10d %16.2f %16.2f %14.2f %14.2f%n", n, corr, grouped, corr * 1000 / n, grouped * 1000 / n);
+        }
+    }
+
+    interface Task { void run() throws Exception; }
+
+    static double medianMillis(int runs, Task task) throws Exception {
+        for (int i = 0; i < 3; i++) task.run(); // warm-up
+        double[] t = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            task.run();
+            t[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(t);
+        return t[runs / 2];
+    }
+}
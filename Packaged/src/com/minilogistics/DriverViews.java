@@ -1,22 +1,32 @@
 package com.minilogistics.view;
 
+import com.minilogistics.api.ApiClient;
+import com.minilogistics.controller.AsyncControllers;
 import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.controller.Notifications;
+import com.minilogistics.controller.RoutePlanner;
+import com.minilogistics.controller.StatusJournal;
 import com.minilogistics.model.DriverEntities.*;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 public class DriverViews {
 
     public static class MainDriverFrame extends JFrame {
         CardLayout cards = new CardLayout();
         JPanel main = new JPanel(cards);
-        DriverAppController ctrl = new DriverAppController();
+        DriverAppController ctrl = ApiClient.driver();
+        AsyncControllers.Driver api = new AsyncControllers.Driver(ctrl);
+        StatusJournal journal; // open while logged in; null falls back to direct updates
 
         public MainDriverFrame() {
-            setTitle("Driver App - DB Connected");
+            setTitle(ApiClient.isEnabled() ? "Driver App - API Connected" : "Driver App - DB Connected");
             setSize(400, 700);
             setDefaultCloseOperation(EXIT_ON_CLOSE);
             setLocationRelativeTo(null);
@@ -80,11 +90,14 @@ public class DriverViews {
             add(reg, gbc);
 
             log.addActionListener(e -> {
-                String res = f.ctrl.login(em.getText(), new String(pw.getPassword()));
-                if ("Success".equals(res))
-                    f.goDash();
-                else
-                    JOptionPane.showMessageDialog(this, res);
+                log.setEnabled(false);
+                f.api.login(em.getText(), new String(pw.getPassword())).thenAcceptAsync(res -> {
+                    log.setEnabled(true);
+                    if ("Success".equals(res))
+                        f.goDash();
+                    else
+                        JOptionPane.showMessageDialog(this, res);
+                }, AsyncControllers.EDT);
             });
             reg.addActionListener(e -> f.goReg());
         }
@@ -131,14 +144,17 @@ public class DriverViews {
             add(back, gbc);
 
             sub.addActionListener(e -> {
-                String result = f.ctrl.register(nm.getText(), em.getText(), new String(pw.getPassword()), ph.getText(),
-                        md.getText(), pl.getText());
-                if ("Success".equals(result)) {
-                    // No success popup, just redirect
-                    f.goLog();
-                } else {
-                    JOptionPane.showMessageDialog(this, "Registration Failed:\n" + result);
-                }
+                sub.setEnabled(false);
+                f.api.register(nm.getText(), em.getText(), new String(pw.getPassword()), ph.getText(),
+                        md.getText(), pl.getText()).thenAcceptAsync(result -> {
+                            sub.setEnabled(true);
+                            if ("Success".equals(result)) {
+                                // No success popup, just redirect
+                                f.goLog();
+                            } else {
+                                JOptionPane.showMessageDialog(this, "Registration Failed:\n" + result);
+                            }
+                        }, AsyncControllers.EDT);
             });
             back.addActionListener(e -> f.goLog());
         }
@@ -162,6 +178,8 @@ public class DriverViews {
 
             JButton logout = new JButton("Logout");
             logout.addActionListener(e -> {
+                if (f.journal != null) f.journal.close(); // unsent changes stay on disk for the next login
+                f.journal = null;
                 f.ctrl.logout();
                 f.goLog();
             });
@@ -170,6 +188,8 @@ public class DriverViews {
     }
 
     public static class JobsTab extends JPanel {
+        static final int FALLBACK_POLL_MS = Integer.getInteger("minilogistics.notify.fallbackPollMs", 15000);
+
         public JobsTab(MainDriverFrame f) {
             setLayout(new BorderLayout());
             String[] cols = { "ID", "Route", "Status", "Fee" };
@@ -179,7 +199,24 @@ public class DriverViews {
                 }
             };
             JTable table = new JTable(model);
-            add(new JScrollPane(table), BorderLayout.CENTER);
+
+            // Suggested order for the open stops (RoutePlanner), replanned on every refresh
+            DefaultTableModel stops = new DefaultTableModel(new String[] { "#", "Job", "Stop", "Location" }, 0) {
+                public boolean isCellEditable(int r, int c) {
+                    return false;
+                }
+            };
+            JTable stopTable = new JTable(stops);
+            stopTable.getColumnModel().getColumn(0).setMaxWidth(40);
+            stopTable.getColumnModel().getColumn(1).setMaxWidth(60);
+            JLabel routeInfo = new JLabel(" Route");
+            JPanel routePanel = new JPanel(new BorderLayout());
+            routePanel.add(routeInfo, BorderLayout.NORTH);
+            routePanel.add(new JScrollPane(stopTable), BorderLayout.CENTER);
+            JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), routePanel);
+            split.setResizeWeight(0.5);
+            add(split, BorderLayout.CENTER);
+            RoutePlanner planner = new RoutePlanner();
 
             JPanel bot = new JPanel();
             JButton ref = new JButton("Refresh"), upd = new JButton("Update Status");
@@ -192,14 +229,25 @@ public class DriverViews {
             info.setBorder(new EmptyBorder(10, 0, 10, 0));
             add(info, BorderLayout.NORTH);
 
-            ref.addActionListener(e -> {
-                model.setRowCount(0);
-                DriverSession s = f.ctrl.getSession();
-                info.setText("<html>Driver: <b>" + s.name + "</b> | Earnings: <b>$" + String.format("%.2f", s.earnings)
-                        + "</b></html>");
-                for (DriverJob j : f.ctrl.getMyJobs())
-                    model.addRow(new Object[] { j.id, j.route, j.status, j.fee });
-            });
+            AsyncControllers.Refresher refresher = new AsyncControllers.Refresher();
+            ref.addActionListener(e -> refresher.refresh(() -> loadJobs(f, planner), loaded -> showJobs(f, info, model, loaded, routeInfo, stops)));
+
+            // Pushed events trigger the refresh; a burst (e.g. an auto-dispatch wave) collapses into one reload
+            Timer debounce = new Timer(250, e -> ref.doClick());
+            debounce.setRepeats(false);
+            DriverSession me = f.ctrl.getSession();
+            if (me != null) {
+                openJournal(f, me, debounce);
+                Notifications.subscribe(me.id, f.ctrl.getNotifyKey(), new Notifications.Listener() {
+                    public void event(int driverId, String type, int deliveryId) {
+                        SwingUtilities.invokeLater(debounce::restart);
+                    }
+
+                    public void connected() {
+                        SwingUtilities.invokeLater(debounce::restart); // catch up on anything missed while disconnected
+                    }
+                });
+            }
 
             upd.addActionListener(e -> {
                 int r = table.getSelectedRow();
@@ -211,15 +259,89 @@ public class DriverViews {
                 String[] ops = { "Picked Up", "In Transit", "COMPLETED", "CANCELLED" };
                 String s = (String) JOptionPane.showInputDialog(this, "Set Status:", "Update",
                         JOptionPane.QUESTION_MESSAGE, null, ops, ops[0]);
-                if (s != null) {
-                    f.ctrl.updateStatus(id, s);
-                    ref.doClick();
+                if (s == null) return;
+                if (f.journal == null) {
+                    f.api.updateStatus(id, s).thenAcceptAsync(res -> {
+                        if (!"Success".equals(res))
+                            JOptionPane.showMessageDialog(this, res);
+                        ref.doClick();
+                    }, AsyncControllers.EDT);
+                    return;
+                }
+                // Journaled: shown at once, sent in the background
+                try {
+                    f.journal.submit(id, s);
+                    model.setValueAt(s + PENDING, r, 2);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this, "Could not save the update: " + ex.getMessage());
                 }
             });
             ref.doClick();
 
-            // Auto-refresh every 5 seconds
-            new Timer(5000, e -> ref.doClick()).start();
+            // Slow fallback polling, only while the notification server is unreachable;
+            // a tick is skipped while the previous fetch is still running
+            new Timer(FALLBACK_POLL_MS, e -> {
+                if (f.ctrl.getSession() != null && !Notifications.isSubscribed())
+                    refresher.tick(() -> loadJobs(f, planner), loaded -> showJobs(f, info, model, loaded, routeInfo, stops));
+            }).start();
+        }
+
+        static final String PENDING = " (pending)";
+
+        private void openJournal(MainDriverFrame f, DriverSession me, Timer debounce) {
+            try {
+                f.journal = StatusJournal.open(f.ctrl, me.id, new StatusJournal.Listener() {
+                    public void conflict(int deliveryId, String status, String reason) {
+                        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(JobsTab.this,
+                                "Job " + deliveryId + " was not set to '" + status + "':\n" + reason));
+                    }
+
+                    public void synced(int pending) {
+                        SwingUtilities.invokeLater(debounce::restart);
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace(); // no journal: updates go straight to the server as before
+            }
+        }
+
+        static final class Loaded {
+            List<DriverJob> jobs;
+            RoutePlanner.Plan route;
+        }
+
+        // Planned here, off the EDT; statuses still in the journal count as already made
+        private static Loaded loadJobs(MainDriverFrame f, RoutePlanner planner) {
+            Loaded l = new Loaded();
+            l.jobs = f.ctrl.getMyJobs();
+            f.ctrl.refreshEarnings();
+            l.route = planner.plan(l.jobs, f.journal == null ? Map.of() : f.journal.pendingStatuses());
+            return l;
+        }
+
+        private void showJobs(MainDriverFrame f, JLabel info, DefaultTableModel model, Loaded loaded, JLabel routeInfo, DefaultTableModel stops) {
+            List<DriverJob> jobs = loaded.jobs;
+            DriverSession s = f.ctrl.getSession();
+            if (s == null)
+                return; // logged out while the fetch was running
+            model.setRowCount(0);
+            // Changes still in the journal override what the server returned
+            Map<Integer, String> queued = f.journal == null ? Map.of() : f.journal.pendingStatuses();
+            info.setText("<html>Driver: <b>" + s.name + "</b> | Earnings: <b>$" + String.format("%.2f", s.earnings)
+                    + "</b> | Today: <b>$" + String.format("%.2f", s.todayEarnings) + "</b>"
+                    + (queued.isEmpty() ? "" : "<br>" + queued.size() + " update(s) waiting to sync") + "</html>");
+            for (DriverJob j : jobs)
+                model.addRow(new Object[] { j.id, j.route, queued.containsKey(j.id) ? queued.get(j.id) + PENDING : j.status, j.fee });
+
+            RoutePlanner.Plan r = loaded.route;
+            stops.setRowCount(0);
+            for (int i = 0; i < r.stops.size(); i++) {
+                RoutePlanner.Stop st = r.stops.get(i);
+                stops.addRow(new Object[] { i + 1, st.jobId, st.pickup ? "Pickup" : "Dropoff", st.located ? st.place : st.place + " (not on map)" });
+            }
+            routeInfo.setText(r.stops.isEmpty() ? " Route: no open stops"
+                    : String.format(" Route: %d stops, %.1f km%s", r.stops.size(), r.km,
+                            r.unlocated > 0 ? ", " + r.unlocated + " unplaced at the end" : ""));
         }
     }
 
@@ -253,17 +375,18 @@ public class DriverViews {
                 nm.setText(s.name);
                 ph.setText(s.phone);
                 em.setText(s.email);
-                DriverVehicleInfo v = f.ctrl.getVehicleInfo();
-                car.setText(v.model);
-                pl.setText(v.plate);
+                f.api.getVehicleInfo().thenAcceptAsync(v -> {
+                    car.setText(v.model);
+                    pl.setText(v.plate);
+                }, AsyncControllers.EDT);
             });
 
-            save.addActionListener(e -> {
-                if (f.ctrl.updateProfile(nm.getText(), ph.getText(), em.getText())) {
+            save.addActionListener(e -> f.api.updateProfile(nm.getText(), ph.getText(), em.getText()).thenAcceptAsync(ok -> {
+                if (ok) {
                     // Success - no popup
                 } else
                     JOptionPane.showMessageDialog(this, "Update Failed (Email might be duplicate).");
-            });
+            }, AsyncControllers.EDT));
             load.doClick();
         }
     }
@@ -0,0 +1,107 @@
+package com.minilogistics.db;
+
+import java.util.Arrays;
+
+// Open-addressing hash map from int keys to non-null values: no boxing of keys and no entry objects,
+// so a few million rows cost two arrays. Linear probing with backward-shift deletion (no tombstones).
+// Not thread-safe; MemoryStore guards each instance with its segment's lock.
+public final class IntMap<V> {
+    private int[] keys;
+    private Object[] vals;
+    private int size, mask, shift;
+
+    public interface Visitor<V> { void visit(int key, V value); }
+
+    public IntMap() { this(16); }
+
+    public IntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        vals = new Object[cap];
+        mask = cap - 1;
+        shift = Integer.numberOfLeadingZeros(cap) + 1;
+    }
+
+    // Fibonacci hashing spreads sequential IDs across the table
+    private int slot(int key) { return (key * 0x9E3779B9) >>> shift; }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int i = slot(key); vals[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return (V) vals[i];
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) { return get(key) != null; }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException("null value");
+        int i = slot(key);
+        for (; vals[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) vals[i];
+                vals[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        vals[i] = value;
+        if (++size * 2 > keys.length) grow();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = slot(key);
+        for (; vals[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) break;
+        }
+        if (vals[i] == null) return null;
+        V old = (V) vals[i];
+        vals[i] = null;
+        size--;
+        // Shift later entries of the probe run back so lookups never stop at the hole
+        for (int j = (i + 1) & mask; vals[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                vals[i] = vals[j];
+                vals[j] = null;
+                i = j;
+            }
+        }
+        return old;
+    }
+
+    public int size() { return size; }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<V> v) {
+        for (int i = 0; i < vals.length; i++) {
+            if (vals[i] != null) v.visit(keys[i], (V) vals[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(vals, null);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldVals = vals;
+        keys = new int[oldKeys.length * 2];
+        vals = new Object[oldVals.length * 2];
+        mask = keys.length - 1;
+        shift--;
+        for (int i = 0; i < oldVals.length; i++) {
+            if (oldVals[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (vals[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            vals[j] = oldVals[i];
+        }
+    }
+}
@@ -0,0 +1,717 @@
+package com.minilogistics.db;
+
+import com.minilogistics.db.Repositories.*;
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.io.IOException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// MySQL backend: the statements the controllers used to run inline, with the same pooling,
+// QueryCache tagging and change_log bookkeeping. Admin-side reads use AdminDBConfig, driver-side DriverDB
+// (both hand out connections from the same shared pool).
+public class JdbcStore implements Store {
+    private final Users users = new JdbcUsers();
+    private final Drivers drivers = new JdbcDrivers();
+    private final Vehicles vehicles = new JdbcVehicles();
+    private final Deliveries deliveries = new JdbcDeliveries();
+    private final Assignments assignments = new JdbcAssignments();
+    private final AuditLogs auditLogs = new JdbcAuditLogs();
+    private final Changes changes = new JdbcChanges();
+    private final Earnings earnings = new JdbcEarnings();
+
+    public Users users() { return users; }
+    public Drivers drivers() { return drivers; }
+    public Vehicles vehicles() { return vehicles; }
+    public Deliveries deliveries() { return deliveries; }
+    public Assignments assignments() { return assignments; }
+    public AuditLogs auditLogs() { return auditLogs; }
+    public Changes changes() { return changes; }
+    public Earnings earnings() { return earnings; }
+
+    // Note: We calculate active_jobs dynamically now as it was removed from drivers table.
+    // The full listing does one grouped pass over idx_deliveries_driver_status joined back to drivers,
+    // instead of a correlated COUNT(*) per driver row (see migrations/V3__delivery_indexes.sql).
+    public static final String DRIVER_SQL = "SELECT u.user_id, u.name, d.status, d.rating, " +
+                     "COALESCE(j.active_jobs, 0) as active_jobs, " +
+                     "v.model, v.plate_no, v.capacity " +
+                     "FROM drivers d JOIN users u ON d.user_id = u.user_id " +
+                     "JOIN vehicles v ON d.vehicle_id = v.vehicle_id " +
+                     "LEFT JOIN (SELECT assigned_driver_id, COUNT(*) as active_jobs FROM deliveries " +
+                     "WHERE status != 'COMPLETED' AND status != 'CANCELLED' GROUP BY assigned_driver_id) j ON j.assigned_driver_id = d.user_id";
+
+    // Delta polls touch a handful of drivers, where a per-row index lookup beats grouping every delivery
+    private static final String DRIVER_BY_ID_SQL = "SELECT u.user_id, u.name, d.status, d.rating, " +
+                     "(SELECT COUNT(*) FROM deliveries del WHERE del.assigned_driver_id = d.user_id AND del.status != 'COMPLETED' AND del.status != 'CANCELLED') as active_jobs, " +
+                     "v.model, v.plate_no, v.capacity " +
+                     "FROM drivers d JOIN users u ON d.user_id = u.user_id " +
+                     "JOIN vehicles v ON d.vehicle_id = v.vehicle_id";
+
+    public static final String DELIVERY_SQL = "SELECT d.*, a.priority, a.deadline FROM deliveries d LEFT JOIN assignments a ON d.delivery_id = a.delivery_id";
+
+    // One row per delivery (latest assignment only), so row counts line up with count() and a changed
+    // delivery patches exactly one cached row
+    private static final String DELIVERY_PAGE_SQL = "SELECT d.*, a.priority, a.deadline FROM deliveries d " +
+            "LEFT JOIN assignments a ON a.assignment_id = (SELECT MAX(a2.assignment_id) FROM assignments a2 WHERE a2.delivery_id = d.delivery_id)";
+
+    private static final String LOG_SQL = "INSERT INTO audit_logs (category, details, timestamp) VALUES (?, ?, CURRENT_TIMESTAMP)";
+
+    static AdminDriverEntity readDriver(ResultSet rs) throws SQLException {
+        AdminVehicle v = new AdminVehicle(rs.getString("model"), rs.getString("plate_no"), rs.getDouble("capacity"));
+        return new AdminDriverEntity(rs.getInt("user_id"), rs.getString("name"), rs.getString("status"), rs.getDouble("rating"), rs.getInt("active_jobs"), v);
+    }
+
+    static AdminDeliveryEntity readDelivery(ResultSet rs) throws SQLException {
+        return new AdminDeliveryEntity(rs.getInt("delivery_id"), rs.getString("description"), rs.getString("pickup")+" -> "+rs.getString("dropoff"), rs.getString("status"), rs.getInt("assigned_driver_id"), rs.getString("priority"), rs.getString("deadline"));
+    }
+
+    static AdminAuditLog readLog(ResultSet rs) throws SQLException {
+        return new AdminAuditLog(rs.getInt("log_id"), rs.getString("timestamp"), rs.getString("category"), rs.getString("details"));
+    }
+
+    static final class JdbcUsers implements Users {
+        public DriverSession findDriver(String email, String pass) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                String sql = "SELECT u.user_id, u.name, u.email, u.phone, d.status, COALESCE(t.total, 0) AS earnings " +
+                             "FROM users u JOIN drivers d ON u.user_id = d.user_id " +
+                             "LEFT JOIN earnings_total t ON t.driver_id = u.user_id " +
+                             "WHERE u.email=? AND u.password=? AND u.role='DRIVER'";
+                return Sql.one(c, sql, rs -> new DriverSession(rs.getInt("user_id"), rs.getString("name"), rs.getString("status"), rs.getDouble("earnings"), rs.getString("email"), rs.getString("phone")), email, pass);
+            }
+        }
+
+        public boolean emailTaken(String email) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                return Sql.one(c, "SELECT count(*) FROM users WHERE email = ?", rs -> rs.getInt(1), email) > 0;
+            }
+        }
+
+        public int registerDriver(String name, String email, String pass, String phone, String model, String plate) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                c.setAutoCommit(false); // Start Transaction
+
+                String userSql = "INSERT INTO users (name, email, password, phone, role) VALUES (?,?,?,?,'DRIVER')";
+                int uid = Sql.insert(c, userSql, name, email, pass, phone);
+
+                String vehSql = "INSERT INTO vehicles (model, plate_no, capacity, insurance_info) VALUES (?,?,500,'Pending')";
+                int vid = Sql.insert(c, vehSql, model, plate);
+
+                String driverSql = "INSERT INTO drivers (user_id, license_no, status, vehicle_id) VALUES (?, 'PENDING', 'Pending', ?)";
+                Sql.update(c, driverSql, uid, vid);
+                ChangeLog.record(c, ChangeLog.DRIVERS, uid, 'I');
+
+                c.commit();
+                QueryCache.shared().invalidate(QueryCache.USERS, QueryCache.VEHICLES, ChangeLog.DRIVERS);
+                return uid;
+            }
+        }
+
+        // A handful of round trips per chunk instead of four per driver: one IN-list email check, then one
+        // multi-row INSERT each for users, vehicles and drivers, all in one transaction. Keys come back in row
+        // order (a multi-row INSERT gets consecutive AUTO_INCREMENT values). If a sign-up takes one of the
+        // emails between the check and the insert, the chunk rolls back and is checked again once.
+        public int[] importDrivers(List<DriverImport> rows) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                c.setAutoCommit(false);
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        int[] ids = importChunk(c, rows);
+                        c.commit();
+                        QueryCache.shared().invalidate(QueryCache.USERS, QueryCache.VEHICLES, ChangeLog.DRIVERS);
+                        return ids;
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        c.rollback();
+                        if (attempt == 2) throw e;
+                    } catch (SQLException | RuntimeException e) {
+                        c.rollback();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private int[] importChunk(Connection c, List<DriverImport> rows) throws SQLException {
+            Set<String> taken = new HashSet<>();
+            List<String> emails = new ArrayList<>(rows.size());
+            for (DriverImport r : rows) emails.add(r.email);
+            for (int from = 0; from < emails.size(); from += 1000) {
+                List<String> part = emails.subList(from, Math.min(emails.size(), from + 1000));
+                Sql.each(c, "SELECT email FROM users WHERE email IN " + Sql.placeholders(part.size()),
+                        rs -> taken.add(rs.getString(1).toLowerCase()), part.toArray());
+            }
+
+            int[] ids = new int[rows.size()];
+            List<Integer> fresh = new ArrayList<>();
+            List<Object[]> users = new ArrayList<>(), vehicles = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                DriverImport r = rows.get(i);
+                if (!taken.add(r.email.toLowerCase())) continue; // the default collation compares emails case-insensitively
+                fresh.add(i);
+                users.add(new Object[] { r.name, r.email, r.pass, r.phone, "DRIVER" });
+                vehicles.add(new Object[] { r.model, r.plate, 500, "Pending" });
+            }
+            if (fresh.isEmpty()) return ids;
+
+            int[] uids = Sql.insertRows(c, "INSERT INTO users (name, email, password, phone, role)", users);
+            int[] vids = Sql.insertRows(c, "INSERT INTO vehicles (model, plate_no, capacity, insurance_info)", vehicles);
+            List<Object[]> drivers = new ArrayList<>(uids.length);
+            List<Integer> created = new ArrayList<>(uids.length);
+            for (int k = 0; k < uids.length; k++) {
+                drivers.add(new Object[] { uids[k], "PENDING", "Pending", vids[k] });
+                created.add(uids[k]);
+                ids[fresh.get(k)] = uids[k];
+            }
+            Sql.insertAll(c, "INSERT INTO drivers (user_id, license_no, status, vehicle_id)", drivers);
+            ChangeLog.recordAll(c, ChangeLog.DRIVERS, created, 'I');
+            return ids;
+        }
+
+        public void updateProfile(int userId, String name, String phone, String email) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                Sql.update(c, "UPDATE users SET name=?, phone=?, email=? WHERE user_id=?", name, phone, email, userId);
+                ChangeLog.record(c, ChangeLog.DRIVERS, userId, 'U');
+                QueryCache.shared().invalidate(QueryCache.USERS, ChangeLog.DRIVERS);
+            }
+        }
+    }
+
+    // Served from QueryCache until a write touches drivers, users, vehicles or deliveries (active_jobs)
+    private static final String[] DRIVER_TAGS = { ChangeLog.DRIVERS, QueryCache.USERS, QueryCache.VEHICLES, ChangeLog.DELIVERIES };
+
+    static final class JdbcDrivers implements Drivers {
+        public List<AdminDriverEntity> listAll() throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                QueryCache cache = QueryCache.shared();
+                cache.observeChanges(conn); // picks up the driver app's writes
+                return new ArrayList<>(cache.get(DRIVER_SQL, DRIVER_TAGS,
+                        () -> Collections.unmodifiableList(Sql.list(conn, DRIVER_SQL, JdbcStore::readDriver))));
+            }
+        }
+
+        public List<AdminDriverEntity> findByIds(Collection<Integer> ids) throws SQLException {
+            List<AdminDriverEntity> out = new ArrayList<>();
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Sql.eachIn(conn, DRIVER_BY_ID_SQL + " WHERE d.user_id IN ", ids, rs -> out.add(readDriver(rs)));
+            }
+            return out;
+        }
+
+        public Map<Integer, String> statuses(Collection<Integer> ids) throws SQLException {
+            Map<Integer, String> status = new HashMap<>();
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Sql.eachIn(conn, "SELECT user_id, status FROM drivers WHERE user_id IN ", ids, rs -> status.put(rs.getInt(1), rs.getString(2)));
+            }
+            return status;
+        }
+
+        public void updateStatus(int driverId, String status) throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Sql.update(conn, "UPDATE drivers SET status=? WHERE user_id=?", status, driverId);
+                ChangeLog.record(conn, ChangeLog.DRIVERS, driverId, 'U');
+                QueryCache.shared().invalidate(ChangeLog.DRIVERS);
+            }
+        }
+    }
+
+    private static final String[] VEHICLE_TAGS = { QueryCache.VEHICLES, ChangeLog.DRIVERS };
+
+    static final class JdbcVehicles implements Vehicles {
+        public DriverVehicleInfo forDriver(int driverId) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                String sql = "SELECT v.model, v.plate_no FROM vehicles v JOIN drivers d ON d.vehicle_id = v.vehicle_id WHERE d.user_id=?";
+                return QueryCache.shared().get(QueryCache.key(sql, driverId), VEHICLE_TAGS,
+                        () -> Sql.one(c, sql, rs -> new DriverVehicleInfo(rs.getString(1), rs.getString(2)), driverId));
+            }
+        }
+    }
+
+    // ---- Keyset paging for the deliveries table: memory stays at one page whatever the table size ----
+
+    private static String deliveryFilter(String status, int driverId) {
+        StringBuilder where = new StringBuilder();
+        if (status != null && !"All".equals(status)) where.append(" AND d.status = ?");
+        if (driverId >= 0) where.append(" AND d.assigned_driver_id = ?");
+        return where.toString();
+    }
+
+    // Parameters for deliveryFilter, with any leading/trailing values the statement needs
+    private static Object[] filterParams(Object before, String status, int driverId, Object after) {
+        List<Object> p = new ArrayList<>(4);
+        if (before != null) p.add(before);
+        if (status != null && !"All".equals(status)) p.add(status);
+        if (driverId >= 0) p.add(driverId);
+        if (after != null) p.add(after);
+        return p.toArray();
+    }
+
+    final class JdbcDeliveries implements Deliveries {
+        public List<AdminDeliveryEntity> listAll() throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                return Sql.list(conn, DELIVERY_SQL, JdbcStore::readDelivery);
+            }
+        }
+
+        public List<AdminDeliveryEntity> page(int afterId, int limit, String status, int driverId) throws SQLException {
+            String sql = DELIVERY_PAGE_SQL + " WHERE d.delivery_id > ?" + deliveryFilter(status, driverId) + " ORDER BY d.delivery_id LIMIT ?";
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                return Sql.list(conn, sql, JdbcStore::readDelivery, filterParams(afterId, status, driverId, limit));
+            }
+        }
+
+        public int count(String status, int driverId) throws SQLException {
+            String sql = "SELECT COUNT(*) FROM deliveries d WHERE 1=1" + deliveryFilter(status, driverId);
+            Object[] params = filterParams(null, status, driverId, null);
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                QueryCache cache = QueryCache.shared();
+                cache.observeChanges(conn);
+                return cache.get(QueryCache.key(sql, params), new String[] { ChangeLog.DELIVERIES }, () -> Sql.one(conn, sql, rs -> rs.getInt(1), params));
+            }
+        }
+
+        // Only used when jumping to a page whose predecessor isn't loaded; walks the index, not the rows
+        public int keyBefore(int offset, String status, int driverId) throws SQLException {
+            if (offset <= 0) return 0;
+            String sql = "SELECT d.delivery_id FROM deliveries d WHERE 1=1" + deliveryFilter(status, driverId) + " ORDER BY d.delivery_id LIMIT 1 OFFSET ?";
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Integer id = Sql.one(conn, sql, rs -> rs.getInt(1), filterParams(null, status, driverId, offset - 1));
+                return id != null ? id : Integer.MAX_VALUE;
+            }
+        }
+
+        public List<AdminDeliveryEntity> findByIds(Collection<Integer> ids) throws SQLException {
+            List<AdminDeliveryEntity> out = new ArrayList<>();
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Sql.eachIn(conn, DELIVERY_PAGE_SQL + " WHERE d.delivery_id IN ", ids, rs -> out.add(readDelivery(rs)));
+            }
+            return out;
+        }
+
+        public Set<Integer> existing(Collection<Integer> ids) throws SQLException {
+            Set<Integer> found = new HashSet<>();
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                Sql.eachIn(conn, "SELECT delivery_id FROM deliveries WHERE delivery_id IN ", ids, rs -> found.add(rs.getInt(1)));
+            }
+            return found;
+        }
+
+        public List<DriverJob> forDriver(int driverId) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                String sql = "SELECT * FROM deliveries WHERE assigned_driver_id=?";
+                return Sql.list(c, sql, rs -> new DriverJob(rs.getInt("delivery_id"), rs.getString("description"), rs.getString("pickup"), rs.getString("dropoff"), rs.getString("status"), rs.getDouble("fee"), rs.getString("customer_contact")), driverId);
+            }
+        }
+
+        public int countActive(int driverId) throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                String checkSql = "SELECT COUNT(*) FROM deliveries WHERE assigned_driver_id=? AND status != 'COMPLETED' AND status != 'CANCELLED'";
+                return Sql.one(conn, checkSql, rs -> rs.getInt(1), driverId);
+            }
+        }
+
+        // Matched rows, not changed ones (Connector/J's default), so re-sending the current status still counts
+        public boolean updateStatus(int deliveryId, String status, int driverId) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                if (Sql.update(c, "UPDATE deliveries SET status=? WHERE delivery_id=? AND assigned_driver_id=?", status, deliveryId, driverId) == 0)
+                    return false;
+                ChangeLog.record(c, ChangeLog.DELIVERIES, deliveryId, 'U');
+                ChangeLog.record(c, ChangeLog.DRIVERS, driverId, 'U'); // active job count may have moved
+                QueryCache.shared().invalidate(ChangeLog.DELIVERIES, ChangeLog.DRIVERS);
+                return true;
+            }
+        }
+
+        // Rows per multi-row INSERT during ingest: 7 columns stays well under MySQL's 65535 placeholders
+        static final int INGEST_ROWS = 2000;
+
+        // Multi-row INSERTs of INGEST_ROWS rows for deliveries, assignments and change_log; the checkpoint upsert
+        // commits with them, so a resumed ingest never loads a row twice or skips one. The drivers are re-read
+        // under shared locks first: a row whose driver stopped being Active since the file was parsed is dropped.
+        public int[] ingest(String source, long offset, long rowsLoaded, long prefixHash, List<NewDelivery> rows) throws SQLException {
+            int[] ids = new int[rows.size()];
+            Set<Integer> drivers = new LinkedHashSet<>();
+            for (NewDelivery d : rows) if (d.driverId > 0) drivers.add(d.driverId);
+            try (Connection c = AdminDBConfig.getConnection()) {
+                c.setAutoCommit(false);
+                try {
+                    Set<Integer> active = new HashSet<>();
+                    Sql.eachIn(c, "SELECT user_id FROM drivers WHERE status = 'Active' AND user_id IN ", drivers, " FOR SHARE",
+                            rs -> active.add(rs.getInt(1)));
+                    drivers.retainAll(active);
+                    List<Integer> keep = new ArrayList<>(rows.size());
+                    for (int i = 0; i < rows.size(); i++) if (rows.get(i).driverId <= 0 || active.contains(rows.get(i).driverId)) keep.add(i);
+
+                    for (int from = 0; from < keep.size(); from += INGEST_ROWS) {
+                        List<Integer> part = keep.subList(from, Math.min(keep.size(), from + INGEST_ROWS));
+                        List<Object[]> values = new ArrayList<>(part.size());
+                        for (int i : part) {
+                            NewDelivery d = rows.get(i);
+                            values.add(new Object[] { d.desc, d.pickup, d.dropoff, d.driverId > 0 ? "ASSIGNED" : "PENDING", d.driverId, d.fee, d.contact });
+                        }
+                        int[] keys = Sql.insertRows(c, "INSERT INTO deliveries (description, pickup, dropoff, status, assigned_driver_id, fee, customer_contact)", values);
+
+                        List<Object[]> assigns = new ArrayList<>();
+                        List<Object[]> changes = new ArrayList<>(part.size());
+                        for (int k = 0; k < part.size(); k++) {
+                            NewDelivery d = rows.get(part.get(k));
+                            ids[part.get(k)] = keys[k];
+                            changes.add(new Object[] { ChangeLog.DELIVERIES, keys[k], "I" });
+                            if (d.driverId > 0) assigns.add(new Object[] { keys[k], d.priority, d.deadline });
+                        }
+                        Sql.insertAll(c, "INSERT INTO assignments (delivery_id, priority, deadline)", assigns);
+                        Sql.insertAll(c, "INSERT INTO change_log (table_name, row_id, op)", changes);
+                    }
+                    ChangeLog.recordAll(c, ChangeLog.DRIVERS, drivers, 'U'); // active job counts moved
+                    long loaded = rowsLoaded - (rows.size() - keep.size());
+                    Sql.update(c, "INSERT INTO ingest_checkpoints (source, byte_offset, rows_loaded, prefix_hash) VALUES (?,?,?,?) " +
+                            "ON DUPLICATE KEY UPDATE byte_offset = VALUES(byte_offset), rows_loaded = VALUES(rows_loaded), prefix_hash = VALUES(prefix_hash)",
+                            source, offset, loaded, prefixHash);
+                    c.commit();
+                } catch (SQLException | RuntimeException e) {
+                    c.rollback();
+                    throw e;
+                }
+            }
+            QueryCache.shared().invalidate(ChangeLog.DELIVERIES, ChangeLog.DRIVERS);
+            return ids;
+        }
+
+        public long[] ingestCheckpoint(String source) throws SQLException {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                // By the primary key (migrations/V11__ingest_checkpoint_hash.sql); the upsert above matches it the same way
+                return Sql.one(c, "SELECT byte_offset, rows_loaded, prefix_hash FROM ingest_checkpoints WHERE source_hash = UNHEX(SHA2(?, 256))",
+                        rs -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) }, source);
+            }
+        }
+
+        // Runs of ordinary changes apply in one transaction each; COMPLETED goes through complete_delivery
+        public List<String> applyStatus(int driverId, List<StatusUpdate> updates) throws SQLException {
+            List<String> results = new ArrayList<>(updates.size());
+            int from = 0;
+            while (from < updates.size()) {
+                if ("COMPLETED".equalsIgnoreCase(updates.get(from).status)) {
+                    results.add(completeOnce(driverId, updates.get(from++)));
+                    continue;
+                }
+                int to = from;
+                while (to < updates.size() && !"COMPLETED".equalsIgnoreCase(updates.get(to).status)) to++;
+                results.addAll(applyRun(driverId, updates.subList(from, to)));
+                from = to;
+            }
+            return results;
+        }
+
+        // In chunks by applied_at (migrations/V14__status_requests_retention.sql), outside any replay's transaction
+        public int pruneRequests(LocalDateTime before) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                int removed = 0, n;
+                do {
+                    n = Sql.update(c, "DELETE FROM status_requests WHERE applied_at < ? LIMIT 10000", before);
+                    removed += n;
+                } while (n == 10000);
+                return removed;
+            }
+        }
+
+        private List<String> applyRun(int driverId, List<StatusUpdate> run) throws SQLException {
+            List<String> results = new ArrayList<>(run.size());
+            Map<String, String> seen = new HashMap<>();
+            Map<Integer, Object[]> rows = new HashMap<>(); // delivery_id -> {status, assigned_driver_id}
+            Set<Integer> ids = new LinkedHashSet<>();
+            List<Object> keys = new ArrayList<>();
+            for (StatusUpdate u : run) { ids.add(u.deliveryId); keys.add(u.key); }
+            List<Object[]> changes = new ArrayList<>(), requests = new ArrayList<>();
+            Set<Integer> touched = new LinkedHashSet<>();
+            try (Connection c = DriverDB.getConnection()) {
+                c.setAutoCommit(false);
+                Sql.each(c, "SELECT request_key, result FROM status_requests WHERE request_key IN " + Sql.placeholders(keys.size()),
+                        rs -> seen.put(rs.getString(1), rs.getString(2)), keys.toArray());
+                // Locked until commit, so the checks below still hold when the updates land
+                Sql.each(c, "SELECT delivery_id, status, assigned_driver_id FROM deliveries WHERE delivery_id IN " + Sql.placeholders(ids.size()) + " FOR UPDATE",
+                        rs -> rows.put(rs.getInt(1), new Object[] { rs.getString(2), rs.getInt(3) }), ids.toArray());
+                for (StatusUpdate u : run) {
+                    String r = seen.get(u.key);
+                    if (r == null) {
+                        Object[] row = rows.get(u.deliveryId);
+                        r = row == null ? Repositories.statusConflict(false, 0, null, driverId, u.status)
+                                : Repositories.statusConflict(true, (Integer) row[1], (String) row[0], driverId, u.status);
+                        if (r == null) {
+                            r = "Success";
+                            if (!u.status.equals(row[0])) {
+                                changes.add(new Object[] { u.status, u.deliveryId });
+                                touched.add(u.deliveryId);
+                                row[0] = u.status; // later entries in the run see this one
+                            }
+                        }
+                        requests.add(new Object[] { u.key, driverId, u.deliveryId, u.status, r, queuedAt(u) });
+                        seen.put(u.key, r);
+                    }
+                    results.add(r);
+                }
+                Sql.batch(c, "UPDATE deliveries SET status=? WHERE delivery_id=?", changes);
+                if (!touched.isEmpty()) {
+                    ChangeLog.recordAll(c, ChangeLog.DELIVERIES, touched, 'U');
+                    ChangeLog.record(c, ChangeLog.DRIVERS, driverId, 'U'); // active job count may have moved
+                }
+                Sql.batch(c, REQUEST_SQL, requests);
+                c.commit();
+            }
+            if (!touched.isEmpty()) QueryCache.shared().invalidate(ChangeLog.DELIVERIES, ChangeLog.DRIVERS);
+            return results;
+        }
+
+        private String completeOnce(int driverId, StatusUpdate u) throws SQLException {
+            try (Connection c = DriverDB.getConnection()) {
+                String prev = Sql.one(c, "SELECT result FROM status_requests WHERE request_key=?", rs -> rs.getString(1), u.key);
+                if (prev != null) return prev;
+                Object[] row = Sql.one(c, "SELECT status, assigned_driver_id FROM deliveries WHERE delivery_id=?",
+                        rs -> new Object[] { rs.getString(1), rs.getInt(2) }, u.deliveryId);
+                String r = row == null ? Repositories.statusConflict(false, 0, null, driverId, u.status)
+                        : Repositories.statusConflict(true, (Integer) row[1], (String) row[0], driverId, u.status);
+                if (r == null) {
+                    // complete_delivery re-checks under its row lock; a job that moved in between credits nothing
+                    boolean credited = earnings.complete(u.deliveryId, driverId).credited;
+                    r = credited || "COMPLETED".equals(row[0]) ? "Success" : "Conflict: Job changed on the server";
+                }
+                // IGNORE: a concurrent replay of the same key may have recorded it first; either result is the same
+                Sql.update(c, REQUEST_IGNORE_SQL, u.key, driverId, u.deliveryId, u.status, r, queuedAt(u));
+                return r;
+            }
+        }
+    }
+
+    // migrations/V7__status_requests.sql
+    private static final String REQUEST_SQL = "INSERT INTO status_requests (request_key, driver_id, delivery_id, status, result, queued_at) VALUES (?,?,?,?,?,?)";
+    private static final String REQUEST_IGNORE_SQL = REQUEST_SQL.replace("INSERT INTO", "INSERT IGNORE INTO");
+
+    private static LocalDateTime queuedAt(StatusUpdate u) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(u.at), ZoneId.systemDefault());
+    }
+
+    static final class JdbcAssignments implements Assignments {
+        // One transaction: the drivers and deliveries are re-read under lock, then batched
+        // assignment/delivery/audit/change-log writes for the requests that still hold
+        public String[] assignAll(List<AdminAssignment> reqs, LocalDateTime now, List<String> auditDetails) throws SQLException {
+            String[] errors = new String[reqs.size()];
+            if (reqs.isEmpty()) return errors;
+            Set<Integer> driverIds = new LinkedHashSet<>();
+            List<Integer> deliveryIds = new ArrayList<>(reqs.size());
+            for (AdminAssignment a : reqs) { driverIds.add(a.driverId); deliveryIds.add(a.deliveryId); }
+            boolean any = false;
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                // Shared locks keep the drivers' status from changing until commit; deliveries are locked for the update
+                Map<Integer, String> drivers = new HashMap<>();
+                Sql.eachIn(conn, "SELECT user_id, status FROM drivers WHERE user_id IN ", driverIds, " FOR SHARE",
+                        rs -> drivers.put(rs.getInt(1), rs.getString(2)));
+                Map<Integer, String> deliveries = new HashMap<>();
+                Map<Integer, Integer> current = new HashMap<>(); // delivery -> assigned driver, 0 when none
+                Sql.eachIn(conn, "SELECT delivery_id, status, assigned_driver_id FROM deliveries WHERE delivery_id IN ", deliveryIds, " FOR UPDATE",
+                        rs -> {
+                            deliveries.put(rs.getInt(1), rs.getString(2));
+                            current.put(rs.getInt(1), rs.getInt(3));
+                        });
+
+                Set<Integer> touchedDrivers = new LinkedHashSet<>();
+                List<Integer> touchedDeliveries = new ArrayList<>();
+                List<Object[]> inserts = new ArrayList<>(reqs.size()), updates = new ArrayList<>(reqs.size()), audit = new ArrayList<>(reqs.size());
+                for (int i = 0; i < errors.length; i++) {
+                    AdminAssignment a = reqs.get(i);
+                    String delStatus = deliveries.get(a.deliveryId);
+                    if (!"Active".equals(drivers.get(a.driverId))) errors[i] = "Error: Driver not active";
+                    else if (delStatus == null) errors[i] = "Error: Delivery not found";
+                    else errors[i] = Repositories.assignConflict(delStatus, current.get(a.deliveryId), a.seenDriverId);
+                    if (errors[i] != null) continue;
+                    inserts.add(new Object[] { a.deliveryId, a.priority, now.plusHours(a.hours) });
+                    updates.add(new Object[] { a.driverId, a.deliveryId });
+                    audit.add(new Object[] { "DELIVERY_ASSIGN", auditDetails.get(i) });
+                    touchedDeliveries.add(a.deliveryId);
+                    if (current.get(a.deliveryId) != 0) touchedDrivers.add(current.get(a.deliveryId)); // reassigned away
+                    touchedDrivers.add(a.driverId); // active job count moved
+                }
+                any = !inserts.isEmpty();
+                if (any) {
+                    Sql.batch(conn, "INSERT INTO assignments (delivery_id, priority, deadline) VALUES (?,?,?)", inserts);
+                    Sql.batch(conn, "UPDATE deliveries SET status='ASSIGNED', assigned_driver_id=? WHERE delivery_id=?", updates);
+                    ChangeLog.recordAll(conn, ChangeLog.DELIVERIES, touchedDeliveries, 'U');
+                    ChangeLog.recordAll(conn, ChangeLog.DRIVERS, touchedDrivers, 'U');
+                    Sql.batch(conn, LOG_SQL, audit);
+                }
+                conn.commit();
+            }
+            if (any) QueryCache.shared().invalidate(ChangeLog.DELIVERIES, ChangeLog.DRIVERS);
+            return errors;
+        }
+    }
+
+    // Standalone entries go through the batched AuditWriter; reads hit audit_logs directly
+    static final class JdbcAuditLogs implements AuditLogs {
+        public void append(String category, String details) { AuditWriter.shared().submit(category, details); }
+        public void appendCoalesced(String category, String details) { AuditWriter.shared().submitCoalesced(category, details); }
+
+        public List<AdminAuditLog> latest(int limit) throws SQLException {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                return Sql.list(c, "SELECT * FROM audit_logs ORDER BY log_id DESC LIMIT ?", JdbcStore::readLog, limit);
+            }
+        }
+
+        public List<AdminAuditLog> since(int lastId, int limit) throws SQLException {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                return Sql.list(c, "SELECT * FROM audit_logs WHERE log_id > ? ORDER BY log_id DESC LIMIT ?", JdbcStore::readLog, lastId, limit);
+            }
+        }
+
+        public List<AdminAuditLog> scan(int lastId, int limit) throws SQLException {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                return Sql.list(c, "SELECT * FROM audit_logs WHERE log_id > ? ORDER BY log_id LIMIT ?", JdbcStore::readLog, lastId, limit);
+            }
+        }
+
+        // Live partitions first (idx_audit_time), then the archive: every archived day is older than every live one
+        public List<AdminAuditLog> range(LocalDateTime from, LocalDateTime to, String category, int limit) throws SQLException {
+            StringBuilder sql = new StringBuilder("SELECT * FROM audit_logs WHERE 1=1");
+            List<Object> params = new ArrayList<>();
+            if (from != null) { sql.append(" AND timestamp >= ?"); params.add(from); }
+            if (to != null) { sql.append(" AND timestamp < ?"); params.add(to); }
+            if (category != null) { sql.append(" AND category = ?"); params.add(category); }
+            sql.append(" ORDER BY timestamp DESC, log_id DESC LIMIT ?");
+            params.add(limit);
+            List<AdminAuditLog> out;
+            try (Connection c = AdminDBConfig.getConnection()) {
+                out = Sql.list(c, sql.toString(), JdbcStore::readLog, params.toArray());
+            }
+            if (out.size() >= limit) return out;
+            try {
+                // A partition being rolled over is briefly in both places
+                Set<Integer> live = new HashSet<>();
+                for (AdminAuditLog l : out) live.add(l.id);
+                for (AdminAuditLog l : AuditArchive.shared().query(from, to, category, limit - out.size() + live.size())) {
+                    if (out.size() >= limit) break;
+                    if (!live.contains(l.id)) out.add(l);
+                }
+            } catch (IOException e) {
+                e.printStackTrace(); // the live rows are still a valid answer
+            }
+            return out;
+        }
+    }
+
+    static final class JdbcChanges implements Changes {
+        public long mark() throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                return ChangeLog.currentMark(conn);
+            }
+        }
+
+        // Primary-key range over all tables, since an open gap can sit under another table's id;
+        // normally returns only what changed since the last poll
+        public long since(String table, long since, Set<Integer> touched) throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                return ChangeLog.scan(conn, since, (id, t, rowId) -> { if (t.equals(table)) touched.add(rowId); });
+            }
+        }
+
+        public long prune() throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                return ChangeLog.prune(conn);
+            }
+        }
+    }
+
+    // ---- Earnings ledger (migrations/V5__complete_delivery.sql, V6__earnings_ledger.sql) ----
+
+    private static final String COMPLETE_SQL = "{call complete_delivery(?, ?, ?, ?)}";
+
+    // Lifetime and today's earnings straight from the rollups: two primary-key lookups, however long the history
+    private static final String EARNINGS_SQL = "SELECT COALESCE(MAX(t.total), 0), " +
+            "COALESCE((SELECT dd.total FROM earnings_daily dd WHERE dd.driver_id = ? AND dd.day = CURRENT_DATE), 0) " +
+            "FROM earnings_total t WHERE t.driver_id = ?";
+
+    // Ledger sums per driver vs earnings_total, and FEE sums per driver/day vs earnings_daily, in both
+    // directions (MySQL has no FULL OUTER JOIN). Each row: driver_id, day (null for lifetime), ledger, rollup.
+    private static final String LEDGER_TOTALS = "(SELECT driver_id, SUM(amount) AS total, SUM(kind = 'FEE') AS jobs FROM earnings_ledger GROUP BY driver_id)";
+    private static final String LEDGER_DAYS = "(SELECT driver_id, DATE(created_at) AS day, SUM(amount) AS total, COUNT(*) AS jobs FROM earnings_ledger WHERE kind = 'FEE' GROUP BY driver_id, DATE(created_at))";
+    private static final String[] RECONCILE_SQL = {
+        "SELECT l.driver_id, NULL, l.total, t.total FROM " + LEDGER_TOTALS + " l LEFT JOIN earnings_total t ON t.driver_id = l.driver_id " +
+            "WHERE t.driver_id IS NULL OR ABS(t.total - l.total) > 0.005 OR t.jobs <> l.jobs",
+        "SELECT t.driver_id, NULL, NULL, t.total FROM earnings_total t LEFT JOIN " + LEDGER_TOTALS + " l ON l.driver_id = t.driver_id " +
+            "WHERE l.driver_id IS NULL AND (t.total <> 0 OR t.jobs <> 0)",
+        "SELECT l.driver_id, l.day, l.total, dd.total FROM " + LEDGER_DAYS + " l LEFT JOIN earnings_daily dd ON dd.driver_id = l.driver_id AND dd.day = l.day " +
+            "WHERE dd.driver_id IS NULL OR ABS(dd.total - l.total) > 0.005 OR dd.jobs <> l.jobs",
+        "SELECT dd.driver_id, dd.day, NULL, dd.total FROM earnings_daily dd LEFT JOIN " + LEDGER_DAYS + " l ON l.driver_id = dd.driver_id AND l.day = dd.day " +
+            "WHERE l.driver_id IS NULL AND (dd.total <> 0 OR dd.jobs <> 0)"
+    };
+
+    static final class JdbcEarnings implements Earnings {
+        public double[] totals(int driverId) throws SQLException {
+            double[] t = new double[2];
+            try (Connection c = DriverDB.getConnection()) {
+                Sql.each(c, EARNINGS_SQL, rs -> { t[0] = rs.getDouble(1); t[1] = rs.getDouble(2); }, driverId, driverId);
+            }
+            return t;
+        }
+
+        // Status change, fee credit, change log and refreshed balance in one transaction and one round trip
+        public Completion complete(int deliveryId, int driverId) throws SQLException {
+            try (Connection c = DriverDB.getConnection(); CallableStatement cs = c.prepareCall(COMPLETE_SQL)) {
+                cs.setInt(1, deliveryId);
+                cs.setInt(2, driverId);
+                cs.registerOutParameter(3, Types.TINYINT);
+                cs.registerOutParameter(4, Types.DOUBLE);
+                Metrics.Span call = Metrics.sql(COMPLETE_SQL);
+                try {
+                    cs.execute();
+                } catch (SQLException e) {
+                    call.fail(e);
+                    throw e;
+                } finally {
+                    call.close();
+                }
+                QueryCache.shared().invalidate(ChangeLog.DELIVERIES, ChangeLog.DRIVERS);
+                return new Completion(cs.getInt(3) == 1, cs.getDouble(4));
+            }
+        }
+
+        public List<Mismatch> mismatches() throws SQLException {
+            List<Mismatch> out = new ArrayList<>();
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                for (String sql : RECONCILE_SQL) {
+                    Sql.each(conn, sql, rs -> out.add(new Mismatch(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4))));
+                }
+            }
+            return out;
+        }
+
+        // The rebuild reads the ledger with INSERT ... SELECT (a locking read), so it waits for in-flight completions
+        public void rebuild(Set<Integer> driverIds, String auditDetail) throws SQLException {
+            try (Connection conn = AdminDBConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                for (int id : driverIds) {
+                    Sql.update(conn, "DELETE FROM earnings_total WHERE driver_id=?", id);
+                    Sql.update(conn, "INSERT INTO earnings_total (driver_id, total, jobs) SELECT driver_id, SUM(amount), SUM(kind = 'FEE') FROM earnings_ledger WHERE driver_id=? GROUP BY driver_id", id);
+                    Sql.update(conn, "DELETE FROM earnings_daily WHERE driver_id=?", id);
+                    Sql.update(conn, "INSERT INTO earnings_daily (driver_id, day, total, jobs) SELECT driver_id, DATE(created_at), SUM(amount), COUNT(*) FROM earnings_ledger WHERE driver_id=? AND kind = 'FEE' GROUP BY driver_id, DATE(created_at)", id);
+                }
+                ChangeLog.recordAll(conn, ChangeLog.DRIVERS, driverIds, 'U');
+                Sql.update(conn, LOG_SQL, "EARNINGS", auditDetail);
+                conn.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.minilogistics.api;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Minimal JSON for the HTTP API, so neither side needs a library. Writes strings, numbers, booleans,
+// maps, collections, int[] and the model classes (their public fields); parses into
+// Map/List/String/Long/Double/Boolean/null.
+public final class Json {
+    private Json() {}
+
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    public static String write(Object v) {
+        StringBuilder sb = new StringBuilder(256);
+        write(sb, v);
+        return sb.toString();
+    }
+
+    public static void write(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("null");
+        } else if (v instanceof String) {
+            string(sb, (String) v);
+        } else if (v instanceof Number || v instanceof Boolean) {
+            sb.append(v);
+        } else if (v instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                string(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (v instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (Object o : (Collection<?>) v) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, o);
+            }
+            sb.append(']');
+        } else if (v instanceof int[]) {
+            int[] a = (int[]) v;
+            sb.append('[');
+            for (int i = 0; i < a.length; i++) sb.append(i == 0 ? "" : ",").append(a[i]);
+            sb.append(']');
+        } else {
+            sb.append('{');
+            boolean first = true;
+            for (Field f : fields(v.getClass())) {
+                if (!first) sb.append(',');
+                first = false;
+                string(sb, f.getName());
+                sb.append(':');
+                try {
+                    write(sb, f.get(v));
+                } catch (IllegalAccessException e) {
+                    sb.append("null");
+                }
+            }
+            sb.append('}');
+        }
+    }
+
+    private static Field[] fields(Class<?> c) {
+        return FIELDS.computeIfAbsent(c, k -> {
+            List<Field> out = new ArrayList<>();
+            for (Field f : k.getFields()) if (!Modifier.isStatic(f.getModifiers())) out.add(f);
+            return out.toArray(new Field[0]);
+        });
+    }
+
+    static void string(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    public static Object parse(String s) {
+        Parser p = new Parser(s);
+        Object v = p.value();
+        p.ws();
+        if (p.i != s.length()) throw new IllegalArgumentException("Trailing characters in JSON at " + p.i);
+        return v;
+    }
+
+    // ---- Typed accessors for parsed objects ----
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> obj(Object o) {
+        if (!(o instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) o;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<Object> arr(Object o) {
+        if (!(o instanceof List)) throw new IllegalArgumentException("Expected a JSON array");
+        return (List<Object>) o;
+    }
+
+    public static int i(Map<String, Object> m, String k) { return num(m, k).intValue(); }
+    public static long l(Map<String, Object> m, String k) { return num(m, k).longValue(); }
+    public static double d(Map<String, Object> m, String k) { return num(m, k).doubleValue(); }
+    public static boolean b(Map<String, Object> m, String k) { return Boolean.TRUE.equals(m.get(k)); }
+
+    public static String s(Map<String, Object> m, String k) {
+        Object v = m.get(k);
+        return v == null ? null : v.toString();
+    }
+
+    private static Number num(Map<String, Object> m, String k) {
+        Object v = m.get(k);
+        if (v instanceof Number) return (Number) v;
+        throw new IllegalArgumentException("Expected a number for \"" + k + "\"");
+    }
+
+    private static final class Parser {
+        final String s;
+        int i;
+        Parser(String s) { this.s = s; }
+
+        void ws() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+
+        IllegalArgumentException err(String what) {
+            return new IllegalArgumentException("Bad JSON at " + i + ": " + what);
+        }
+
+        Object value() {
+            ws();
+            if (i >= s.length()) throw err("unexpected end");
+            char c = s.charAt(i);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return str();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+
+        Object literal(String word, Object v) {
+            if (!s.startsWith(word, i)) throw err("expected " + word);
+            i += word.length();
+            return v;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            i++;
+            ws();
+            if (i < s.length() && s.charAt(i) == '}') { i++; return m; }
+            while (true) {
+                ws();
+                if (i >= s.length() || s.charAt(i) != '"') throw err("expected key");
+                String k = str();
+                ws();
+                if (i >= s.length() || s.charAt(i) != ':') throw err("expected ':'");
+                i++;
+                m.put(k, value());
+                ws();
+                if (i >= s.length()) throw err("unexpected end");
+                char c = s.charAt(i++);
+                if (c == '}') return m;
+                if (c != ',') throw err("expected ',' or '}'");
+            }
+        }
+
+        List<Object> array() {
+            List<Object> a = new ArrayList<>();
+            i++;
+            ws();
+            if (i < s.length() && s.charAt(i) == ']') { i++; return a; }
+            while (true) {
+                a.add(value());
+                ws();
+                if (i >= s.length()) throw err("unexpected end");
+                char c = s.charAt(i++);
+                if (c == ']') return a;
+                if (c != ',') throw err("expected ',' or ']'");
+            }
+        }
+
+        String str() {
+            StringBuilder sb = new StringBuilder();
+            i++;
+            while (i < s.length()) {
+                char c = s.charAt(i++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (i >= s.length()) break;
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 > s.length()) throw err("bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        i += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+            throw err("unterminated string");
+        }
+
+        Object number() {
+            int start = i;
+            boolean frac = false;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                if (c == '.' || c == 'e' || c == 'E') frac = true;
+                else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) break;
+                i++;
+            }
+            if (start == i) throw err("unexpected character");
+            String n = s.substring(start, i);
+            return frac ? (Object) Double.valueOf(n) : (Object) Long.valueOf(n);
+        }
+    }
+}
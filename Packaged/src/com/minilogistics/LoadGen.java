@@ -0,0 +1,308 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.AdminPortalController;
+import com.minilogistics.controller.AsyncControllers;
+import com.minilogistics.controller.DriverAppController;
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.QueryCache;
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless load generator: a fleet of simulated drivers (the JobsTab loop: poll jobs, complete some) and a few
+// admins (dispatch, read logs) driving the real controllers against the bench database. Each virtual user
+// thinks for an exponentially distributed time between actions. Reports per-operation throughput, error rate
+// and latency percentiles for the measured window, to stdout and a summary file. Errors include failures the
+// controllers only print, as seen by Metrics spans, so leave minilogistics.metrics on.
+//   java -Dload.drivers=1000 -Dload.admins=4 -cp ".;Packaged;Packaged/mysql-connector-j-9.5.0.jar" com.minilogistics.bench.LoadGen
+// Settings (system properties):
+//   load.drivers (1000), load.admins (4), load.deliveries (drivers * 20), load.reuse (false: recreate and seed)
+//   load.rampSec (10, also the warm-up: nothing is recorded before it ends), load.durationSec (60)
+//   load.driverThinkMs (2000), load.adminThinkMs (1000)
+//   load.driverMix ("getMyJobs=85,updateStatus=10,login=5"), load.adminMix ("assignDriver=50,getLogs=50")
+//   load.report (loadgen-report.txt)
+public class LoadGen {
+    static final String[] OPS = { "login", "getMyJobs", "updateStatus", "assignDriver", "getLogs" };
+    static final String[] PRIORITIES = { "High", "Medium", "Low" };
+
+    // Per-operation samples for one virtual user; merged once at the end, so recording never contends
+    static final class Samples {
+        final long[][] lat = new long[OPS.length][];
+        final int[] n = new int[OPS.length];
+        final long[] errors = new long[OPS.length];
+
+        void add(int op, long nanos, boolean ok) {
+            if (!ok) errors[op]++;
+            long[] a = lat[op];
+            if (a == null) a = lat[op] = new long[256];
+            else if (n[op] == a.length) a = lat[op] = Arrays.copyOf(a, a.length * 2);
+            a[n[op]++] = nanos;
+        }
+    }
+
+    // true/false for success/failure; null when there was nothing to do (not recorded)
+    interface Action { Boolean run() throws Exception; }
+
+    final int drivers = Integer.getInteger("load.drivers", 1000);
+    final int admins = Integer.getInteger("load.admins", 4);
+    final int deliveries = Integer.getInteger("load.deliveries", drivers * 20);
+    final long rampMs = Long.getLong("load.rampSec", 10L) * 1000, durationMs = Long.getLong("load.durationSec", 60L) * 1000;
+    final long driverThinkMs = Long.getLong("load.driverThinkMs", 2000L), adminThinkMs = Long.getLong("load.adminThinkMs", 1000L);
+    final String driverMixSpec = System.getProperty("load.driverMix", "getMyJobs=85,updateStatus=10,login=5");
+    final String adminMixSpec = System.getProperty("load.adminMix", "assignDriver=50,getLogs=50");
+    final int[] driverMix = mix(driverMixSpec, "login", "getMyJobs", "updateStatus");
+    final int[] adminMix = mix(adminMixSpec, "assignDriver", "getLogs");
+
+    final List<Samples> all = new ArrayList<>();
+    final AtomicInteger active = new AtomicInteger();
+    volatile long measureFrom, measureTo;
+
+    public static void main(String[] args) throws Exception {
+        BenchData.useBenchDatabase();
+        new LoadGen().run();
+        System.exit(0);
+    }
+
+    // "op=weight,..." -> cumulative weights indexed like OPS
+    static int[] mix(String spec, String... allowed) {
+        int[] w = new int[OPS.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            int op = Arrays.asList(OPS).indexOf(kv[0].trim());
+            if (op < 0 || kv.length != 2 || !Arrays.asList(allowed).contains(kv[0].trim()))
+                throw new IllegalArgumentException("Unknown operation in mix (expected " + String.join("/", allowed) + "): " + part);
+            w[op] = Integer.parseInt(kv[1].trim());
+        }
+        for (int i = 1; i < w.length; i++) w[i] += w[i - 1];
+        if (w[w.length - 1] <= 0) throw new IllegalArgumentException("Empty mix: " + spec);
+        return w;
+    }
+
+    static int pick(int[] cumulative, Random rnd) {
+        int r = rnd.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) if (r < cumulative[i]) return i;
+        return cumulative.length - 1;
+    }
+
+    void run() throws Exception {
+        if (!Boolean.getBoolean("load.reuse")) {
+            try (Connection c = AdminDBConfig.getConnection()) {
+                BenchData.createSchema(c);
+                BenchData.seed(c, drivers, deliveries);
+            }
+        }
+        QueryCache.shared().clear();
+
+        long start = System.currentTimeMillis();
+        measureFrom = start + rampMs;
+        measureTo = measureFrom + durationMs;
+        // One thread per virtual user, each one blocks for its whole run
+        ExecutorService exec = AsyncControllers.newExecutor("vu-", null, drivers + admins);
+        for (int i = 0; i < drivers; i++) {
+            int id = 1 + i;
+            long delay = i * rampMs / drivers;
+            exec.execute(() -> user(delay, new DriverUser(id)));
+        }
+        for (int i = 0; i < admins; i++) {
+            int id = i;
+            long delay = i * rampMs / admins;
+            exec.execute(() -> user(delay, new AdminUser(id)));
+        }
+        while (System.currentTimeMillis() < measureTo) {
+            Thread.sleep(5000);
+            long now = System.currentTimeMillis();
+            System.out.printf("t=%3ds users=%d %s | Pool: %s%n", (now - start) / 1000, active.get(),
+                    now < measureFrom ? "(ramp-up)" : "", AdminDBConfig.pool().stats());
+        }
+        exec.shutdown();
+        exec.awaitTermination(60, TimeUnit.SECONDS);
+
+        String report = report();
+        System.out.print(report);
+        Path file = Paths.get(System.getProperty("load.report", "loadgen-report.txt"));
+        Files.write(file, report.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Report written to " + file.toAbsolutePath());
+    }
+
+    abstract class User {
+        final Samples samples = new Samples();
+        final Random rnd;
+        User(long seed) { rnd = new Random(seed); }
+        abstract long thinkMs();
+        abstract int next();
+        abstract Action action(int op);
+
+        // Exponential think time, the usual model for independent users
+        long think() { return (long) (-Math.log(1 - rnd.nextDouble()) * thinkMs()); }
+
+        // The controllers swallow most failures after e.printStackTrace(), but a failed statement or pool checkout
+        // still marks every open span on the thread, so this one says whether the operation really worked
+        void time(int op, Action a) {
+            long t0 = System.nanoTime();
+            Boolean ok;
+            try (Metrics.Span m = Metrics.op("load." + OPS[op])) {
+                try {
+                    ok = a.run();
+                } catch (Exception e) {
+                    m.fail(e);
+                    ok = false;
+                }
+                if (ok == null) return;
+                ok = ok && !m.failed();
+            }
+            long nanos = System.nanoTime() - t0;
+            long now = System.currentTimeMillis();
+            if (now >= measureFrom && now < measureTo) samples.add(op, nanos, ok);
+        }
+    }
+
+    void user(long delayMs, User u) {
+        synchronized (all) { all.add(u.samples); }
+        active.incrementAndGet();
+        try {
+            Thread.sleep(delayMs);
+            if (u instanceof DriverUser) u.time(0, ((DriverUser) u)::login);
+            while (System.currentTimeMillis() < measureTo) {
+                Thread.sleep(Math.min(u.think(), Math.max(1, measureTo - System.currentTimeMillis())));
+                if (System.currentTimeMillis() >= measureTo) break;
+                int op = u.next();
+                u.time(op, u.action(op));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    // Mirrors JobsTab: poll the job list, complete one of the open jobs now and then, occasionally re-login
+    final class DriverUser extends User {
+        final int id;
+        final DriverAppController ctrl = new DriverAppController();
+        List<DriverJob> jobs = new ArrayList<>();
+
+        DriverUser(int id) { super(id); this.id = id; }
+        long thinkMs() { return driverThinkMs; }
+        int next() { return pick(driverMix, rnd); }
+
+        Boolean login() {
+            ctrl.logout();
+            return "Success".equals(ctrl.login("drv" + id + "@bench", "pass"));
+        }
+
+        Action action(int op) {
+            switch (OPS[op]) {
+                case "login": return this::login;
+                case "getMyJobs": return () -> { jobs = ctrl.getMyJobs(); return true; };
+                case "updateStatus": return () -> {
+                    DriverJob open = null;
+                    for (DriverJob j : jobs) if (!"COMPLETED".equals(j.status) && !"CANCELLED".equals(j.status)) { open = j; break; }
+                    if (open == null) return null; // nothing open: the app would not make this call
+                    String res = ctrl.updateStatus(open.id, "COMPLETED");
+                    open.status = "COMPLETED";
+                    return "Success".equals(res);
+                };
+                default: throw new IllegalArgumentException("Not a driver operation: " + OPS[op]);
+            }
+        }
+    }
+
+    // Dispatches PENDING deliveries to random drivers and reads the audit log like the LogPanel does
+    final class AdminUser extends User {
+        final AdminPortalController ctrl = new AdminPortalController();
+        final ArrayDeque<Integer> pending = new ArrayDeque<>();
+        int lastPendingId;
+
+        AdminUser(int id) { super(1_000_000L + id); }
+        long thinkMs() { return adminThinkMs; }
+        int next() { return pick(adminMix, rnd); }
+
+        Action action(int op) {
+            switch (OPS[op]) {
+                case "assignDriver": return () -> {
+                    Integer del = nextPending();
+                    if (del == null) return null;
+                    String res = ctrl.assignDriver(del, 1 + rnd.nextInt(drivers), PRIORITIES[rnd.nextInt(PRIORITIES.length)], 24);
+                    return "Success".equals(res);
+                };
+                case "getLogs": return () -> { ctrl.getLogs(); return true; };
+                default: throw new IllegalArgumentException("Not an admin operation: " + OPS[op]);
+            }
+        }
+
+        // Admins each walk the PENDING rows in ID order; two admins may race for one delivery, as in real use
+        Integer nextPending() {
+            if (pending.isEmpty()) {
+                List<AdminDeliveryEntity> page = ctrl.getDeliveriesPage(lastPendingId, 200, "PENDING", -1);
+                if (page.isEmpty()) { lastPendingId = 0; return null; }
+                for (AdminDeliveryEntity d : page) pending.add(d.id);
+                lastPendingId = page.get(page.size() - 1).id;
+            }
+            return pending.poll();
+        }
+    }
+
+    String report() {
+        long[][] merged = new long[OPS.length][];
+        long[] errors = new long[OPS.length];
+        synchronized (all) {
+            for (int op = 0; op < OPS.length; op++) {
+                int total = 0;
+                for (Samples s : all) { total += s.n[op]; errors[op] += s.errors[op]; }
+                long[] m = new long[total];
+                int k = 0;
+                for (Samples s : all) if (s.n[op] > 0) { System.arraycopy(s.lat[op], 0, m, k, s.n[op]); k += s.n[op]; }
+                Arrays.sort(m);
+                merged[op] = m;
+            }
+        }
+        double secs = durationMs / 1000.0;
+        StringWriter sw = new StringWriter();
+        PrintWriter w = new PrintWriter(sw);
+        w.println("MiniLogistics load test - " + LocalDateTime.now().withNano(0));
+        w.printf("drivers=%d admins=%d deliveries=%d ramp=%ds measured=%ds driverThink=%dms adminThink=%dms%n",
+                drivers, admins, deliveries, rampMs / 1000, durationMs / 1000, driverThinkMs, adminThinkMs);
+        w.printf("driverMix=%s adminMix=%s%n", driverMixSpec, adminMixSpec);
+        w.println();
+        w.printf("%-14s %9s %9s %8s %9s %9s %9s %9s %9s%n", "operation", "calls", "ops/s", "err %", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long calls = 0, errs = 0;
+        for (int op = 0; op < OPS.length; op++) {
+            long[] m = merged[op];
+            if (m.length == 0) continue;
+            calls += m.length;
+            errs += errors[op];
+            w.printf("%-14s %9d %9.1f %8.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", OPS[op], m.length, m.length / secs,
+                    100.0 * errors[op] / m.length, pct(m, 0.50), pct(m, 0.90), pct(m, 0.99), pct(m, 0.999), m[m.length - 1] / 1e6);
+        }
+        w.printf("%-14s %9d %9.1f %8.2f%n", "total", calls, calls / secs, calls == 0 ? 0 : 100.0 * errs / calls);
+        w.println();
+        for (Metrics.Row r : Metrics.snapshot()) {
+            if (r.name.startsWith("load.") && r.lastError != null) w.println("Last error in " + r.name.substring(5) + ": " + r.lastError);
+        }
+        w.println("Pool: " + AdminDBConfig.pool().stats());
+        w.println("Cache: " + QueryCache.shared().stats());
+        w.flush();
+        return sw.toString();
+    }
+
+    static double pct(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
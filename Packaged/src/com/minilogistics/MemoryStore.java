@@ -0,0 +1,1008 @@
+package com.minilogistics.db;
+
+import com.minilogistics.db.Repositories.*;
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process storage engine with the same observable behaviour as JdbcStore, for tests, demos and
+// benchmarks without MySQL. Tables are striped IntMaps (one read/write lock per segment) holding
+// immutable rows that writers replace; deliveries also have secondary indexes (per-status BitSets,
+// sorted ID lists per assigned driver, active job counts) behind one index lock.
+// Lock order: status replays -> delivery segments (ascending) -> index -> earnings; audit and change log
+// locks are leaves.
+// Readers take ID candidates from the index, release it, then fetch rows and re-check the filter, so a
+// row that moved in between is skipped rather than returned stale.
+// Settings: minilogistics.store.segments (16), minilogistics.store.seed ("sample", or "drivers,deliveries"
+// in BenchData's shape: drv<i>@bench / pass)
+public class MemoryStore implements Store {
+    static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // ---- Rows: immutable, replaced wholesale by writers ----
+
+    static final class UserRow {
+        final int id;
+        final String name, email, password, phone, role;
+        UserRow(int id, String name, String email, String password, String phone, String role) {
+            this.id = id; this.name = name; this.email = email; this.password = password; this.phone = phone; this.role = role;
+        }
+    }
+
+    static final class DriverRow {
+        final int userId, vehicleId;
+        final String license, status;
+        final double rating;
+        DriverRow(int userId, String license, String status, double rating, int vehicleId) {
+            this.userId = userId; this.license = license; this.status = status; this.rating = rating; this.vehicleId = vehicleId;
+        }
+        DriverRow withStatus(String s) { return new DriverRow(userId, license, s, rating, vehicleId); }
+    }
+
+    static final class VehicleRow {
+        final int id;
+        final String model, plate;
+        final double capacity;
+        VehicleRow(int id, String model, String plate, double capacity) { this.id = id; this.model = model; this.plate = plate; this.capacity = capacity; }
+    }
+
+    static final class AssignRow {
+        final String priority, deadline;
+        AssignRow(String priority, String deadline) { this.priority = priority; this.deadline = deadline; }
+    }
+
+    static final class DeliveryRow {
+        static final AssignRow[] NONE = new AssignRow[0];
+        final int id, driverId;
+        final String desc, pickup, dropoff, status, contact;
+        final double fee;
+        final AssignRow[] assigns; // oldest first, like assignment_id order
+        DeliveryRow(int id, String desc, String pickup, String dropoff, String status, int driverId, double fee, String contact, AssignRow[] assigns) {
+            this.id = id; this.desc = desc; this.pickup = pickup; this.dropoff = dropoff; this.status = status;
+            this.driverId = driverId; this.fee = fee; this.contact = contact; this.assigns = assigns;
+        }
+        DeliveryRow withStatus(String s) { return new DeliveryRow(id, desc, pickup, dropoff, s, driverId, fee, contact, assigns); }
+        DeliveryRow assigned(int driver, AssignRow a) {
+            AssignRow[] next = Arrays.copyOf(assigns, assigns.length + 1);
+            next[assigns.length] = a;
+            return new DeliveryRow(id, desc, pickup, dropoff, "ASSIGNED", driver, fee, contact, next);
+        }
+        boolean active() { return !"COMPLETED".equals(status) && !"CANCELLED".equals(status); }
+    }
+
+    // ---- Striped table ----
+
+    static final class Segment<V> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final IntMap<V> map = new IntMap<>();
+    }
+
+    static final class Table<V> {
+        private final Segment<V>[] segs;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        Table(int segments) {
+            int n = Integer.highestOneBit(Math.max(1, segments - 1)) << 1;
+            segs = (Segment<V>[]) new Segment<?>[n];
+            for (int i = 0; i < n; i++) segs[i] = new Segment<>();
+            mask = n - 1;
+        }
+
+        int segOf(int id) { return (id ^ (id >>> 16)) & mask; }
+
+        V get(int id) {
+            Segment<V> s = segs[segOf(id)];
+            s.lock.readLock().lock();
+            try { return s.map.get(id); } finally { s.lock.readLock().unlock(); }
+        }
+
+        void put(int id, V row) {
+            Segment<V> s = segs[segOf(id)];
+            s.lock.writeLock().lock();
+            try { s.map.put(id, row); } finally { s.lock.writeLock().unlock(); }
+        }
+
+        List<V> all() {
+            List<V> out = new ArrayList<>();
+            for (Segment<V> s : segs) {
+                s.lock.readLock().lock();
+                try { s.map.forEach((k, v) -> out.add(v)); } finally { s.lock.readLock().unlock(); }
+            }
+            return out;
+        }
+
+        // Write-locks the segments holding these IDs in ascending order (so two multi-row writers can't
+        // deadlock); the caller reads and replaces rows through getLocked/putLocked, then unlocks
+        int[] lockAll(Collection<Integer> ids) {
+            TreeSet<Integer> order = new TreeSet<>();
+            for (int id : ids) order.add(segOf(id));
+            int[] held = new int[order.size()];
+            int i = 0;
+            for (int s : order) {
+                segs[s].lock.writeLock().lock();
+                held[i++] = s;
+            }
+            return held;
+        }
+
+        void unlockAll(int[] held) {
+            for (int i = held.length - 1; i >= 0; i--) segs[held[i]].lock.writeLock().unlock();
+        }
+
+        V getLocked(int id) { return segs[segOf(id)].map.get(id); }
+        void putLocked(int id, V row) { segs[segOf(id)].map.put(id, row); }
+    }
+
+    // Sorted, growable int array: delivery IDs per driver, ascending like the keyset pages want them
+    static final class IntList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+
+        // Position of the first ID greater than id
+        int after(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            return at >= 0 ? at + 1 : -at - 1;
+        }
+    }
+
+    private final Table<UserRow> users;
+    private final Table<DriverRow> drivers;
+    private final Table<VehicleRow> vehicles;
+    private final Table<DeliveryRow> deliveries;
+    private final Map<String, Integer> emails = new ConcurrentHashMap<>(); // emailKey -> user id
+    private final Map<String, Object[]> statusRequests = new LinkedHashMap<>(); // idempotency key -> { first result, applied at }, oldest first
+    private final Map<String, long[]> ingestCheckpoints = new ConcurrentHashMap<>(); // source -> { offset, rows, prefix hash }
+    private final AtomicInteger nextUser = new AtomicInteger(), nextVehicle = new AtomicInteger(), nextDelivery = new AtomicInteger();
+
+    // Delivery indexes, all guarded by index
+    private final ReentrantReadWriteLock index = new ReentrantReadWriteLock();
+    private final BitSet allDeliveries = new BitSet();
+    private final Map<String, BitSet> byStatus = new HashMap<>();
+    private final IntMap<IntList> byDriver = new IntMap<>();
+    private final IntMap<int[]> activeJobs = new IntMap<>();
+
+    private final Users userRepo = new MemUsers();
+    private final Drivers driverRepo = new MemDrivers();
+    private final Vehicles vehicleRepo = new MemVehicles();
+    private final Deliveries deliveryRepo = new MemDeliveries();
+    private final Assignments assignmentRepo = new MemAssignments();
+    private final MemAuditLogs auditRepo = new MemAuditLogs(Long.getLong("minilogistics.audit.coalesceMs", 60000L));
+    private final MemChanges changeRepo = new MemChanges();
+    private final MemEarnings earningsRepo = new MemEarnings();
+
+    public MemoryStore() { this(Integer.getInteger("minilogistics.store.segments", 16)); }
+
+    public MemoryStore(int segments) {
+        users = new Table<>(segments);
+        drivers = new Table<>(segments);
+        vehicles = new Table<>(segments);
+        deliveries = new Table<>(segments);
+    }
+
+    public static MemoryStore fromProperties() {
+        MemoryStore s = new MemoryStore();
+        String seed = System.getProperty("minilogistics.store.seed", "sample");
+        if ("sample".equals(seed)) {
+            s.seedSample();
+        } else if (!seed.isEmpty() && !"none".equals(seed)) {
+            String[] n = seed.split(",");
+            s.seed(Integer.parseInt(n[0].trim()), n.length > 1 ? Integer.parseInt(n[1].trim()) : 0);
+        }
+        return s;
+    }
+
+    public Users users() { return userRepo; }
+    public Drivers drivers() { return driverRepo; }
+    public Vehicles vehicles() { return vehicleRepo; }
+    public Deliveries deliveries() { return deliveryRepo; }
+    public Assignments assignments() { return assignmentRepo; }
+    public AuditLogs auditLogs() { return auditRepo; }
+    public Changes changes() { return changeRepo; }
+    public Earnings earnings() { return earningsRepo; }
+
+    // ---- Seeding ----
+
+    // The rows SqlScript.sql and V6 start a fresh database with
+    public void seedSample() {
+        addUser(new UserRow(nextUser.incrementAndGet(), "SuperAdmin", "admin", "admin123", null, "ADMIN"));
+        int bob = nextUser.incrementAndGet();
+        addUser(new UserRow(bob, "Bob Driver", "bob", "pass", "555-0101", "DRIVER"));
+        int vid = nextVehicle.incrementAndGet();
+        vehicles.put(vid, new VehicleRow(vid, "Toyota Van", "ABC-123", 500.0));
+        drivers.put(bob, new DriverRow(bob, "LIC-999", "Active", 4.8, vid));
+        earningsRepo.opening(bob, 150.0);
+        addDelivery("Medical Supplies", "Hospital A", "Clinic B", "ASSIGNED", bob, 50.0, "Dr. Smith");
+        addDelivery("Office Chairs", "Warehouse", "Office 5", "PENDING", 0, 75.0, "Manager John");
+    }
+
+    private static final String[] SEED_STATUSES = { "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED",
+            "ASSIGNED", "ASSIGNED", "In Transit", "PENDING" };
+
+    // Same shape as BenchData.seed, so a benchmark can compare backends on identical data
+    public void seed(int driverCount, int deliveryCount) {
+        for (int i = 0; i < driverCount; i++) {
+            int uid = nextUser.incrementAndGet(), vid = nextVehicle.incrementAndGet();
+            addUser(new UserRow(uid, "Driver " + uid, "drv" + uid + "@bench", "pass", "555-" + uid, "DRIVER"));
+            vehicles.put(vid, new VehicleRow(vid, "Van " + (vid % 7), "BN-" + vid, 500));
+            drivers.put(uid, new DriverRow(uid, "LIC-" + uid, "Active", 4.5, vid));
+        }
+        for (int i = 0; i < deliveryCount; i++) {
+            int id = nextDelivery.get() + 1;
+            String status = SEED_STATUSES[id % SEED_STATUSES.length];
+            addDelivery("Parcel " + id, "Depot " + (id % 50), "Stop " + (id % 997), status,
+                    "PENDING".equals(status) || driverCount == 0 ? 0 : 1 + id % driverCount, 10 + id % 90, "Customer " + id);
+        }
+    }
+
+    private void addUser(UserRow u) {
+        emails.put(emailKey(u.email), u.id);
+        users.put(u.id, u);
+    }
+
+    // users.email is unique under MySQL's case-insensitive collation, so Bob@x and bob@x are one address here too
+    private static String emailKey(String email) { return email.toLowerCase(Locale.ROOT); }
+
+    // Inserts a new delivery and indexes it; returns its ID
+    public int addDelivery(String desc, String pickup, String dropoff, String status, int driverId, double fee, String contact) {
+        int id = nextDelivery.incrementAndGet();
+        DeliveryRow row = new DeliveryRow(id, desc, pickup, dropoff, status, driverId, fee, contact, DeliveryRow.NONE);
+        int[] held = deliveries.lockAll(List.of(id));
+        try {
+            deliveries.putLocked(id, row);
+            index.writeLock().lock();
+            try { indexAdd(row); } finally { index.writeLock().unlock(); }
+        } finally {
+            deliveries.unlockAll(held);
+        }
+        changeRepo.record(ChangeLog.DELIVERIES, id);
+        return id;
+    }
+
+    // ---- Index maintenance (caller holds index write lock) ----
+
+    private void indexAdd(DeliveryRow r) {
+        allDeliveries.set(r.id);
+        byStatus.computeIfAbsent(r.status, k -> new BitSet()).set(r.id);
+        IntList list = byDriver.get(r.driverId);
+        if (list == null) byDriver.put(r.driverId, list = new IntList());
+        list.add(r.id);
+        if (r.active() && r.driverId != 0) {
+            int[] n = activeJobs.get(r.driverId);
+            if (n == null) activeJobs.put(r.driverId, n = new int[1]);
+            n[0]++;
+        }
+    }
+
+    private void indexRemove(DeliveryRow r) {
+        allDeliveries.clear(r.id);
+        BitSet bits = byStatus.get(r.status);
+        if (bits != null) bits.clear(r.id);
+        IntList list = byDriver.get(r.driverId);
+        if (list != null) list.remove(r.id);
+        if (r.active() && r.driverId != 0) {
+            int[] n = activeJobs.get(r.driverId);
+            if (n != null) n[0]--;
+        }
+    }
+
+    private void reindex(DeliveryRow before, DeliveryRow after) {
+        indexRemove(before);
+        indexAdd(after);
+    }
+
+    private int active(int driverId) {
+        int[] n = activeJobs.get(driverId);
+        return n == null ? 0 : n[0];
+    }
+
+    private static boolean filtered(String status) { return status != null && !"All".equals(status); }
+
+    private static boolean matches(DeliveryRow r, String status, int driverId) {
+        return (!filtered(status) || status.equals(r.status)) && (driverId < 0 || r.driverId == driverId);
+    }
+
+    interface IdSink { boolean accept(int id); } // false stops the walk
+
+    // Delivery IDs > afterId matching the filter, ascending, under the index read lock
+    private void walk(int afterId, String status, int driverId, IdSink sink) {
+        if (afterId == Integer.MAX_VALUE) return;
+        int from = Math.max(afterId, 0);
+        index.readLock().lock();
+        try {
+            BitSet bits = filtered(status) ? byStatus.get(status) : allDeliveries;
+            if (bits == null) return;
+            if (driverId >= 0) {
+                IntList list = byDriver.get(driverId);
+                if (list == null) return;
+                for (int i = list.after(from); i < list.size; i++) {
+                    if (bits.get(list.ids[i]) && !sink.accept(list.ids[i])) return;
+                }
+            } else {
+                for (int id = bits.nextSetBit(from + 1); id >= 0; id = id == Integer.MAX_VALUE ? -1 : bits.nextSetBit(id + 1)) {
+                    if (!sink.accept(id)) return;
+                }
+            }
+        } finally {
+            index.readLock().unlock();
+        }
+    }
+
+    private static AdminDeliveryEntity toAdmin(DeliveryRow r, AssignRow a) {
+        return new AdminDeliveryEntity(r.id, r.desc, r.pickup + " -> " + r.dropoff, r.status, r.driverId,
+                a == null ? null : a.priority, a == null ? null : a.deadline);
+    }
+
+    // One entity per assignment (or one bare row), like the LEFT JOIN in JdbcStore.DELIVERY_SQL
+    private static void addJoined(List<AdminDeliveryEntity> out, DeliveryRow r) {
+        if (r.assigns.length == 0) out.add(toAdmin(r, null));
+        for (AssignRow a : r.assigns) out.add(toAdmin(r, a));
+    }
+
+    // One entity per delivery with its latest assignment, like JdbcStore.DELIVERY_PAGE_SQL
+    private static AdminDeliveryEntity toLatest(DeliveryRow r) {
+        return toAdmin(r, r.assigns.length == 0 ? null : r.assigns[r.assigns.length - 1]);
+    }
+
+    private AdminDriverEntity toAdmin(DriverRow d, int activeJobs) {
+        UserRow u = users.get(d.userId);
+        VehicleRow v = vehicles.get(d.vehicleId);
+        if (u == null || v == null) return null; // the JDBC listing inner-joins users and vehicles
+        return new AdminDriverEntity(d.userId, u.name, d.status, d.rating, activeJobs, new AdminVehicle(v.model, v.plate, v.capacity));
+    }
+
+    private List<AdminDriverEntity> driverEntities(List<DriverRow> rows) {
+        int[] jobs = new int[rows.size()];
+        index.readLock().lock();
+        try {
+            for (int i = 0; i < jobs.length; i++) jobs[i] = active(rows.get(i).userId);
+        } finally {
+            index.readLock().unlock();
+        }
+        List<AdminDriverEntity> out = new ArrayList<>(rows.size());
+        for (int i = 0; i < jobs.length; i++) {
+            AdminDriverEntity e = toAdmin(rows.get(i), jobs[i]);
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+
+    final class MemUsers implements Users {
+        public DriverSession findDriver(String email, String pass) {
+            Integer id = email == null ? null : emails.get(emailKey(email));
+            UserRow u = id == null ? null : users.get(id);
+            if (u == null || !u.password.equals(pass) || !"DRIVER".equals(u.role)) return null;
+            DriverRow d = drivers.get(u.id);
+            if (d == null) return null;
+            return new DriverSession(u.id, u.name, d.status, earningsRepo.totals(u.id)[0], u.email, u.phone);
+        }
+
+        public boolean emailTaken(String email) { return emails.containsKey(emailKey(email)); }
+
+        public int registerDriver(String name, String email, String pass, String phone, String model, String plate) throws SQLException {
+            int uid = nextUser.incrementAndGet();
+            // The map is the unique key: the loser of a race gets the same error MySQL would raise
+            if (emails.putIfAbsent(emailKey(email), uid) != null) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + email + "' for key 'users.email'");
+            }
+            int vid = nextVehicle.incrementAndGet();
+            vehicles.put(vid, new VehicleRow(vid, model, plate, 500));
+            users.put(uid, new UserRow(uid, name, email, pass, phone, "DRIVER"));
+            drivers.put(uid, new DriverRow(uid, "PENDING", "Pending", 5.0, vid)); // visible once this row exists
+            changeRepo.record(ChangeLog.DRIVERS, uid);
+            return uid;
+        }
+
+        // Row by row: there are no round trips to save here, and the email map already rejects duplicates
+        public int[] importDrivers(List<DriverImport> rows) {
+            int[] ids = new int[rows.size()];
+            for (int i = 0; i < ids.length; i++) {
+                DriverImport r = rows.get(i);
+                try {
+                    ids[i] = registerDriver(r.name, r.email, r.pass, r.phone, r.model, r.plate);
+                } catch (SQLException e) {
+                    ids[i] = 0; // email already registered
+                }
+            }
+            return ids;
+        }
+
+        public void updateProfile(int userId, String name, String phone, String email) throws SQLException {
+            UserRow u = users.get(userId);
+            if (u == null) return;
+            if (!emailKey(u.email).equals(emailKey(email))) {
+                if (emails.putIfAbsent(emailKey(email), userId) != null) {
+                    throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + email + "' for key 'users.email'");
+                }
+                emails.remove(emailKey(u.email), userId);
+            }
+            users.put(userId, new UserRow(userId, name, email, u.password, phone, u.role));
+            changeRepo.record(ChangeLog.DRIVERS, userId);
+        }
+    }
+
+    final class MemDrivers implements Drivers {
+        public List<AdminDriverEntity> listAll() {
+            List<DriverRow> rows = drivers.all();
+            rows.sort(Comparator.comparingInt(d -> d.userId));
+            return driverEntities(rows);
+        }
+
+        public List<AdminDriverEntity> findByIds(Collection<Integer> ids) {
+            List<DriverRow> rows = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                DriverRow d = drivers.get(id);
+                if (d != null) rows.add(d);
+            }
+            return driverEntities(rows);
+        }
+
+        public Map<Integer, String> statuses(Collection<Integer> ids) {
+            Map<Integer, String> out = new HashMap<>();
+            for (int id : ids) {
+                DriverRow d = drivers.get(id);
+                if (d != null) out.put(id, d.status);
+            }
+            return out;
+        }
+
+        public void updateStatus(int driverId, String status) {
+            int[] held = drivers.lockAll(List.of(driverId));
+            try {
+                DriverRow d = drivers.getLocked(driverId);
+                if (d == null) return;
+                drivers.putLocked(driverId, d.withStatus(status));
+            } finally {
+                drivers.unlockAll(held);
+            }
+            changeRepo.record(ChangeLog.DRIVERS, driverId);
+        }
+    }
+
+    final class MemVehicles implements Vehicles {
+        public DriverVehicleInfo forDriver(int driverId) {
+            DriverRow d = drivers.get(driverId);
+            VehicleRow v = d == null ? null : vehicles.get(d.vehicleId);
+            return v == null ? null : new DriverVehicleInfo(v.model, v.plate);
+        }
+    }
+
+    final class MemDeliveries implements Deliveries {
+        public List<AdminDeliveryEntity> listAll() {
+            List<DeliveryRow> rows = deliveries.all();
+            rows.sort(Comparator.comparingInt(r -> r.id));
+            List<AdminDeliveryEntity> out = new ArrayList<>(rows.size());
+            for (DeliveryRow r : rows) addJoined(out, r);
+            return out;
+        }
+
+        public List<AdminDeliveryEntity> page(int afterId, int limit, String status, int driverId) {
+            List<AdminDeliveryEntity> out = new ArrayList<>(Math.max(0, limit));
+            int[] cursor = { afterId };
+            while (out.size() < limit) {
+                int want = limit - out.size();
+                List<Integer> ids = new ArrayList<>(want);
+                walk(cursor[0], status, driverId, id -> { ids.add(id); return ids.size() < want; });
+                for (int id : ids) {
+                    DeliveryRow r = deliveries.get(id);
+                    if (r != null && matches(r, status, driverId)) out.add(toLatest(r));
+                }
+                if (ids.size() < want) break; // index exhausted
+                cursor[0] = ids.get(ids.size() - 1);
+            }
+            return out;
+        }
+
+        public int count(String status, int driverId) {
+            if (driverId < 0) {
+                index.readLock().lock();
+                try {
+                    BitSet bits = filtered(status) ? byStatus.get(status) : allDeliveries;
+                    return bits == null ? 0 : bits.cardinality();
+                } finally {
+                    index.readLock().unlock();
+                }
+            }
+            int[] n = { 0 };
+            walk(0, status, driverId, id -> { n[0]++; return true; });
+            return n[0];
+        }
+
+        public int keyBefore(int offset, String status, int driverId) {
+            if (offset <= 0) return 0;
+            int[] seen = { 0, Integer.MAX_VALUE };
+            walk(0, status, driverId, id -> {
+                if (++seen[0] < offset) return true;
+                seen[1] = id;
+                return false;
+            });
+            return seen[1];
+        }
+
+        public List<AdminDeliveryEntity> findByIds(Collection<Integer> ids) {
+            List<AdminDeliveryEntity> out = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                DeliveryRow r = deliveries.get(id);
+                if (r != null) out.add(toLatest(r));
+            }
+            return out;
+        }
+
+        public Set<Integer> existing(Collection<Integer> ids) {
+            Set<Integer> found = new HashSet<>();
+            for (int id : ids) if (deliveries.get(id) != null) found.add(id);
+            return found;
+        }
+
+        public List<DriverJob> forDriver(int driverId) {
+            List<DriverJob> out = new ArrayList<>();
+            List<Integer> ids = new ArrayList<>();
+            walk(0, null, driverId, id -> ids.add(id));
+            for (int id : ids) {
+                DeliveryRow r = deliveries.get(id);
+                if (r != null && r.driverId == driverId) out.add(new DriverJob(r.id, r.desc, r.pickup, r.dropoff, r.status, r.fee, r.contact));
+            }
+            return out;
+        }
+
+        public int countActive(int driverId) {
+            index.readLock().lock();
+            try { return active(driverId); } finally { index.readLock().unlock(); }
+        }
+
+        public boolean updateStatus(int deliveryId, String status, int driverId) {
+            int[] held = deliveries.lockAll(List.of(deliveryId));
+            try {
+                DeliveryRow r = deliveries.getLocked(deliveryId);
+                if (r == null || r.driverId != driverId) return false;
+                DeliveryRow next = r.withStatus(status);
+                deliveries.putLocked(deliveryId, next);
+                index.writeLock().lock();
+                try { reindex(r, next); } finally { index.writeLock().unlock(); }
+            } finally {
+                deliveries.unlockAll(held);
+            }
+            changeRepo.record(ChangeLog.DELIVERIES, deliveryId);
+            changeRepo.record(ChangeLog.DRIVERS, driverId); // active job count may have moved
+            return true;
+        }
+
+        // All rows become visible together: every segment and the index are held while they go in
+        public int[] ingest(String source, long offset, long rowsLoaded, long prefixHash, List<NewDelivery> rows) {
+            int[] ids = new int[rows.size()];
+            List<Integer> idList = new ArrayList<>(ids.length);
+            Set<Integer> driverIds = new LinkedHashSet<>();
+            for (int i = 0; i < ids.length; i++) {
+                int driver = rows.get(i).driverId;
+                DriverRow d = driver > 0 ? drivers.get(driver) : null;
+                if (driver > 0 && (d == null || !"Active".equals(d.status))) continue; // left at 0: not loaded
+                ids[i] = nextDelivery.incrementAndGet();
+                idList.add(ids[i]);
+            }
+            int[] held = deliveries.lockAll(idList);
+            try {
+                index.writeLock().lock();
+                try {
+                    for (int i = 0; i < ids.length; i++) {
+                        if (ids[i] == 0) continue;
+                        NewDelivery d = rows.get(i);
+                        DeliveryRow row = new DeliveryRow(ids[i], d.desc, d.pickup, d.dropoff, "PENDING", 0, d.fee, d.contact, DeliveryRow.NONE);
+                        if (d.driverId > 0) {
+                            row = row.assigned(d.driverId, new AssignRow(d.priority, d.deadline == null ? null : TS.format(d.deadline)));
+                            driverIds.add(d.driverId);
+                        }
+                        deliveries.putLocked(ids[i], row);
+                        indexAdd(row);
+                    }
+                } finally {
+                    index.writeLock().unlock();
+                }
+            } finally {
+                deliveries.unlockAll(held);
+            }
+            changeRepo.recordAll(ChangeLog.DELIVERIES, idList);
+            changeRepo.recordAll(ChangeLog.DRIVERS, driverIds);
+            ingestCheckpoints.put(source, new long[] { offset, rowsLoaded - (ids.length - idList.size()), prefixHash });
+            return ids;
+        }
+
+        public long[] ingestCheckpoint(String source) { return ingestCheckpoints.get(source); }
+
+        public List<String> applyStatus(int driverId, List<StatusUpdate> updates) {
+            List<String> results = new ArrayList<>(updates.size());
+            synchronized (statusRequests) { // one replay at a time, so no key is applied twice
+                for (StatusUpdate u : updates) {
+                    Object[] seen = statusRequests.get(u.key);
+                    String r = seen == null ? null : (String) seen[0];
+                    if (r == null) {
+                        r = applyOne(driverId, u);
+                        statusRequests.put(u.key, new Object[] { r, LocalDateTime.now() });
+                    }
+                    results.add(r);
+                }
+            }
+            return results;
+        }
+
+        public int pruneRequests(LocalDateTime before) {
+            int removed = 0;
+            synchronized (statusRequests) {
+                for (Iterator<Object[]> it = statusRequests.values().iterator(); it.hasNext(); removed++) {
+                    if (!((LocalDateTime) it.next()[1]).isBefore(before)) break;
+                    it.remove();
+                }
+            }
+            return removed;
+        }
+
+        private String conflict(DeliveryRow r, int driverId, String status) {
+            return r == null ? Repositories.statusConflict(false, 0, null, driverId, status)
+                    : Repositories.statusConflict(true, r.driverId, r.status, driverId, status);
+        }
+
+        private String applyOne(int driverId, StatusUpdate u) {
+            if ("COMPLETED".equalsIgnoreCase(u.status)) {
+                DeliveryRow r = deliveries.get(u.deliveryId);
+                String c = conflict(r, driverId, u.status);
+                if (c != null) return c;
+                boolean credited = earningsRepo.complete(u.deliveryId, driverId).credited;
+                return credited || "COMPLETED".equals(r.status) ? "Success" : "Conflict: Job changed on the server";
+            }
+            boolean changed = false;
+            int[] held = deliveries.lockAll(List.of(u.deliveryId));
+            try {
+                DeliveryRow r = deliveries.getLocked(u.deliveryId);
+                String c = conflict(r, driverId, u.status);
+                if (c != null) return c;
+                if (!u.status.equals(r.status)) {
+                    DeliveryRow next = r.withStatus(u.status);
+                    deliveries.putLocked(u.deliveryId, next);
+                    index.writeLock().lock();
+                    try { reindex(r, next); } finally { index.writeLock().unlock(); }
+                    changed = true;
+                }
+            } finally {
+                deliveries.unlockAll(held);
+            }
+            if (changed) {
+                changeRepo.record(ChangeLog.DELIVERIES, u.deliveryId);
+                changeRepo.record(ChangeLog.DRIVERS, driverId);
+            }
+            return "Success";
+        }
+    }
+
+    final class MemAssignments implements Assignments {
+        public String[] assignAll(List<AdminAssignment> reqs, LocalDateTime now, List<String> auditDetails) {
+            String[] errors = new String[reqs.size()];
+            if (reqs.isEmpty()) return errors;
+            List<Integer> ids = new ArrayList<>(reqs.size()), assigned = new ArrayList<>(reqs.size());
+            Set<Integer> touchedDrivers = new LinkedHashSet<>();
+            for (AdminAssignment a : reqs) ids.add(a.deliveryId);
+            // Everything the wave touches is locked before the first row changes, so readers see all or none of it
+            int[] held = deliveries.lockAll(ids);
+            try {
+                index.writeLock().lock();
+                try {
+                    for (int i = 0; i < errors.length; i++) {
+                        AdminAssignment a = reqs.get(i);
+                        DriverRow d = drivers.get(a.driverId);
+                        DeliveryRow r = deliveries.getLocked(a.deliveryId);
+                        if (d == null || !"Active".equals(d.status)) errors[i] = "Error: Driver not active";
+                        else if (r == null) errors[i] = "Error: Delivery not found";
+                        else errors[i] = Repositories.assignConflict(r.status, r.driverId, a.seenDriverId);
+                        if (errors[i] != null) continue;
+                        DeliveryRow next = r.assigned(a.driverId, new AssignRow(a.priority, TS.format(now.plusHours(a.hours))));
+                        deliveries.putLocked(a.deliveryId, next);
+                        reindex(r, next);
+                        assigned.add(a.deliveryId);
+                        if (r.driverId != 0) touchedDrivers.add(r.driverId); // reassigned away
+                        touchedDrivers.add(a.driverId); // active job count moved
+                    }
+                } finally {
+                    index.writeLock().unlock();
+                }
+            } finally {
+                deliveries.unlockAll(held);
+            }
+            for (int i = 0; i < errors.length; i++) if (errors[i] == null) auditRepo.append("DELIVERY_ASSIGN", auditDetails.get(i));
+            changeRepo.recordAll(ChangeLog.DELIVERIES, assigned);
+            changeRepo.recordAll(ChangeLog.DRIVERS, touchedDrivers);
+            return errors;
+        }
+    }
+
+    // Appended synchronously: there is no round trip worth batching
+    static final class MemAuditLogs implements AuditLogs {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<AdminAuditLog> entries = new ArrayList<>(); // log_id = position + 1
+        private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+        private final long coalesceMs;
+
+        MemAuditLogs(long coalesceMs) { this.coalesceMs = coalesceMs; }
+
+        public void append(String category, String details) {
+            String now = TS.format(LocalDateTime.now());
+            lock.writeLock().lock();
+            try {
+                entries.add(new AdminAuditLog(entries.size() + 1, now, category, details));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public void appendCoalesced(String category, String details) {
+            long now = System.currentTimeMillis();
+            Long prev = lastSeen.put(category + '\n' + details, now);
+            if (prev != null && now - prev < coalesceMs) return;
+            append(category, details);
+        }
+
+        public List<AdminAuditLog> latest(int limit) { return since(0, limit); }
+
+        public List<AdminAuditLog> since(int lastId, int limit) {
+            lock.readLock().lock();
+            try {
+                List<AdminAuditLog> out = new ArrayList<>();
+                for (int i = entries.size() - 1; i >= Math.max(lastId, 0) && out.size() < limit; i--) out.add(entries.get(i));
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public List<AdminAuditLog> scan(int lastId, int limit) {
+            lock.readLock().lock();
+            try {
+                int from = Math.max(lastId, 0), to = Math.min(entries.size(), from + limit);
+                return from >= to ? new ArrayList<>() : new ArrayList<>(entries.subList(from, to));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // No partitions or archive here: entries live as long as the process. TS strings sort chronologically.
+        public List<AdminAuditLog> range(LocalDateTime from, LocalDateTime to, String category, int limit) {
+            String lo = from == null ? null : TS.format(from), hi = to == null ? null : TS.format(to);
+            lock.readLock().lock();
+            try {
+                List<AdminAuditLog> out = new ArrayList<>();
+                for (int i = entries.size() - 1; i >= 0 && out.size() < limit; i--) {
+                    AdminAuditLog l = entries.get(i);
+                    if (lo != null && l.time.compareTo(lo) < 0) break;
+                    if ((hi == null || l.time.compareTo(hi) < 0) && (category == null || category.equals(l.cat))) out.add(l);
+                }
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // change_log equivalent: change_id = position + 1, positions counted from the first entry ever recorded
+    static final class MemChanges implements Changes {
+        private String[] tables = new String[1024];
+        private int[] rows = new int[1024];
+        private long[] at = new long[1024]; // System.nanoTime() when recorded
+        private long base; // position of entry 0; everything before it was pruned
+        private int size;
+
+        synchronized void record(String table, int rowId) {
+            if (size == rows.length && prune() == 0) {
+                tables = Arrays.copyOf(tables, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+                at = Arrays.copyOf(at, size * 2);
+            }
+            tables[size] = table;
+            at[size] = System.nanoTime();
+            rows[size++] = rowId;
+        }
+
+        synchronized void recordAll(String table, Collection<Integer> rowIds) {
+            for (int id : rowIds) record(table, id);
+        }
+
+        public synchronized long mark() { return base + size; }
+
+        // Writes are serialized here, so there are no open gaps: the new mark is simply everything scanned
+        public synchronized long since(String table, long since, Set<Integer> touched) {
+            if (since < base) return ChangeLog.EXPIRED;
+            for (int i = (int) (since - base); i < size; i++) {
+                if (tables[i].equals(table)) touched.add(rows[i]);
+            }
+            return base + size;
+        }
+
+        // Same window as change_log; the arrays shrink back once they are mostly empty
+        public synchronized long prune() {
+            long cutoff = System.nanoTime() - ChangeLog.retentionSec() * 1_000_000_000L;
+            int n = 0;
+            while (n < size - 1 && at[n] - cutoff < 0) n++;
+            if (n == 0) return 0;
+            size -= n;
+            base += n;
+            int cap = rows.length;
+            while (cap > 1024 && size < cap / 4) cap /= 2;
+            String[] t = new String[cap];
+            int[] r = new int[cap];
+            long[] a = new long[cap];
+            System.arraycopy(tables, n, t, 0, size);
+            System.arraycopy(rows, n, r, 0, size);
+            System.arraycopy(at, n, a, 0, size);
+            tables = t; rows = r; at = a;
+            return n;
+        }
+    }
+
+    // earnings_ledger with its earnings_total / earnings_daily rollups, all under one lock
+    final class MemEarnings implements Earnings {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<Object[]> ledger = new ArrayList<>(); // {driverId, deliveryId, kind, amount, LocalDate}
+        private final IntMap<double[]> totals = new IntMap<>();   // {total, jobs}
+        private final Map<Long, double[]> daily = new HashMap<>(); // (driverId, epochDay) -> {total, jobs}
+
+        private long dayKey(int driverId, LocalDate day) { return ((long) driverId << 32) | (day.toEpochDay() & 0xFFFFFFFFL); }
+
+        void opening(int driverId, double amount) {
+            lock.writeLock().lock();
+            try {
+                ledger.add(new Object[] { driverId, null, "OPENING", amount, LocalDate.now() });
+                bump(totals, driverId, amount, 0);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void bump(IntMap<double[]> map, int id, double amount, int jobs) {
+            double[] t = map.get(id);
+            if (t == null) map.put(id, t = new double[2]);
+            t[0] += amount;
+            t[1] += jobs;
+        }
+
+        public double[] totals(int driverId) {
+            lock.readLock().lock();
+            try {
+                double[] t = totals.get(driverId), d = daily.get(dayKey(driverId, LocalDate.now()));
+                return new double[] { t == null ? 0 : t[0], d == null ? 0 : d[0] };
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public Completion complete(int deliveryId, int driverId) {
+            boolean credited = false;
+            int[] held = deliveries.lockAll(List.of(deliveryId));
+            try {
+                DeliveryRow r = deliveries.getLocked(deliveryId);
+                if (r != null && r.driverId == driverId && !"COMPLETED".equals(r.status) && !"CANCELLED".equals(r.status)) {
+                    DeliveryRow next = r.withStatus("COMPLETED");
+                    deliveries.putLocked(deliveryId, next);
+                    index.writeLock().lock();
+                    try { reindex(r, next); } finally { index.writeLock().unlock(); }
+                    LocalDate today = LocalDate.now();
+                    lock.writeLock().lock();
+                    try {
+                        ledger.add(new Object[] { driverId, deliveryId, "FEE", r.fee, today });
+                        bump(totals, driverId, r.fee, 1);
+                        double[] d = daily.computeIfAbsent(dayKey(driverId, today), k -> new double[2]);
+                        d[0] += r.fee;
+                        d[1]++;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    credited = true;
+                }
+            } finally {
+                deliveries.unlockAll(held);
+            }
+            if (credited) {
+                changeRepo.record(ChangeLog.DELIVERIES, deliveryId);
+                changeRepo.record(ChangeLog.DRIVERS, driverId);
+            }
+            return new Completion(credited, totals(driverId)[0]);
+        }
+
+        // Rollups recomputed from the ledger: {totals by driver, daily by (driver, day)}
+        private void fromLedger(IntMap<double[]> t, Map<Long, double[]> d, Set<Integer> only) {
+            for (Object[] e : ledger) {
+                int driver = (Integer) e[0];
+                if (only != null && !only.contains(driver)) continue;
+                double amount = (Double) e[3];
+                boolean fee = "FEE".equals(e[2]);
+                bump(t, driver, amount, fee ? 1 : 0);
+                if (fee) {
+                    double[] x = d.computeIfAbsent(dayKey(driver, (LocalDate) e[4]), k -> new double[2]);
+                    x[0] += amount;
+                    x[1]++;
+                }
+            }
+        }
+
+        private String amount(double[] v) { return v == null ? null : String.valueOf(v[0]); }
+
+        private boolean differs(double[] a, double[] b) {
+            return a == null || b == null ? (a == null ? b[0] != 0 || b[1] != 0 : true)
+                    : Math.abs(a[0] - b[0]) > 0.005 || a[1] != b[1];
+        }
+
+        public List<Mismatch> mismatches() {
+            List<Mismatch> out = new ArrayList<>();
+            IntMap<double[]> t = new IntMap<>();
+            Map<Long, double[]> d = new HashMap<>();
+            lock.readLock().lock();
+            try {
+                fromLedger(t, d, null);
+                t.forEach((id, l) -> { if (differs(l, totals.get(id))) out.add(new Mismatch(id, null, amount(l), amount(totals.get(id)))); });
+                totals.forEach((id, r) -> { if (t.get(id) == null && differs(null, r)) out.add(new Mismatch(id, null, null, amount(r))); });
+                d.forEach((k, l) -> { if (differs(l, daily.get(k))) out.add(mismatch(k, l, daily.get(k))); });
+                daily.forEach((k, r) -> { if (d.get(k) == null && differs(null, r)) out.add(mismatch(k, null, r)); });
+            } finally {
+                lock.readLock().unlock();
+            }
+            return out;
+        }
+
+        private Mismatch mismatch(long key, double[] ledgerSide, double[] rollup) {
+            return new Mismatch((int) (key >> 32), LocalDate.ofEpochDay((int) key).toString(), amount(ledgerSide), amount(rollup));
+        }
+
+        public void rebuild(Set<Integer> driverIds, String auditDetail) {
+            lock.writeLock().lock();
+            try {
+                IntMap<double[]> t = new IntMap<>();
+                Map<Long, double[]> d = new HashMap<>();
+                fromLedger(t, d, driverIds);
+                for (int id : driverIds) {
+                    totals.remove(id);
+                    if (t.get(id) != null) totals.put(id, t.get(id));
+                }
+                daily.keySet().removeIf(k -> driverIds.contains((int) (k >> 32)));
+                daily.putAll(d);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            changeRepo.recordAll(ChangeLog.DRIVERS, driverIds);
+            auditRepo.append("EARNINGS", auditDetail);
+        }
+    }
+}
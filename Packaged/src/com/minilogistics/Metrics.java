@@ -0,0 +1,251 @@
+package com.minilogistics.db;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Latency histograms, call/error counts and row counts per controller operation ("admin.getDrivers"),
+// per SQL statement ("sql: SELECT ...") and for pool checkouts ("pool.acquire").
+// Controllers open an op span as the first try-with-resources resource, or run through timed() when they have
+// nothing to record on it; Sql and ConnectionPool open child spans, and a failed statement or checkout marks
+// every open span on the thread as failed, so operations that swallow their SQLException still count it as an error.
+// Settings: minilogistics.metrics (true), minilogistics.metrics.dumpFile, minilogistics.metrics.dumpSec (60)
+public final class Metrics {
+    private Metrics() {}
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("minilogistics.metrics"));
+
+    private static final Map<String, Stat> STATS = new ConcurrentHashMap<>();
+    private static final Map<String, String> SQL_NAMES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP = new Span(null, 0);
+    private static volatile ScheduledExecutorService dumper;
+
+    // Log-linear buckets over nanoseconds: 16 per power of two, so any percentile is within ~6%
+    public static final class Histogram {
+        static final int SUB = 16, BUCKETS = (64 - 4) * SUB + SUB;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder(), sum = new LongAdder();
+        private volatile long max;
+
+        static int bucket(long v) {
+            if (v < SUB) return (int) Math.max(0, v);
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - 3) * SUB + (int) ((v >>> (exp - 4)) & (SUB - 1));
+        }
+
+        // Upper bound of a bucket's range
+        static long upper(int b) {
+            if (b < SUB) return b;
+            int exp = b / SUB + 3;
+            long sub = b % SUB;
+            return ((SUB + sub + 1) << (exp - 4)) - 1;
+        }
+
+        public void record(long nanos) {
+            counts.incrementAndGet(bucket(nanos));
+            total.increment();
+            sum.add(nanos);
+            if (nanos > max) max = nanos; // racy max is fine for diagnostics
+        }
+
+        public long count() { return total.sum(); }
+        public long max() { return max; }
+        public double mean() { long n = total.sum(); return n == 0 ? 0 : (double) sum.sum() / n; }
+
+        public long percentile(double p) {
+            long n = total.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(n * p), seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank) return Math.min(upper(b), max);
+            }
+            return max;
+        }
+    }
+
+    public static final class Stat {
+        public final String name;
+        final Histogram latency = new Histogram();
+        final LongAdder errors = new LongAdder(), rows = new LongAdder();
+        volatile String lastError;
+
+        Stat(String name) { this.name = name; }
+    }
+
+    // Immutable view of one Stat for display and dumps; times in milliseconds
+    public static final class Row {
+        public final String name, lastError;
+        public final long calls, errors, rows;
+        public final double mean, p50, p90, p99, max;
+
+        public Row(String name, long calls, long errors, long rows, double mean, double p50, double p90, double p99, double max, String lastError) {
+            this.name = name; this.calls = calls; this.errors = errors; this.rows = rows; this.mean = mean;
+            this.p50 = p50; this.p90 = p90; this.p99 = p99; this.max = max; this.lastError = lastError;
+        }
+
+        Row(Stat s) {
+            Histogram h = s.latency;
+            name = s.name; lastError = s.lastError;
+            calls = h.count(); errors = s.errors.sum(); rows = s.rows.sum();
+            mean = h.mean() / 1e6; p50 = h.percentile(0.50) / 1e6; p90 = h.percentile(0.90) / 1e6;
+            p99 = h.percentile(0.99) / 1e6; max = h.max() / 1e6;
+        }
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final Stat stat;
+        private final long start;
+        private Span parent;
+        private long rows = -1;
+        private boolean failed;
+
+        Span(Stat stat, long start) { this.stat = stat; this.start = start; }
+
+        // Rows returned to the caller; statements default to what they read or wrote
+        public void rows(long n) { if (stat != null) rows = n; }
+
+        public <T extends Collection<?>> T rows(T result) {
+            rows(result.size());
+            return result;
+        }
+
+        // Whether this span, or one opened inside it, has failed so far
+        public boolean failed() { return failed; }
+
+        // Marks this span and every enclosing one on the thread
+        public void fail(Throwable e) {
+            if (stat == null) return;
+            String msg = String.valueOf(e.getMessage());
+            int nl = msg.indexOf('\n');
+            String err = e.getClass().getSimpleName() + ": " + (nl < 0 ? msg : msg.substring(0, nl));
+            for (Span s = this; s != null; s = s.parent) {
+                s.failed = true;
+                s.stat.lastError = err;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (stat == null) return;
+            stat.latency.record(System.nanoTime() - start);
+            if (failed) stat.errors.increment();
+            if (rows > 0) stat.rows.add(rows);
+            if (CURRENT.get() == this) {
+                if (parent == null) CURRENT.remove();
+                else CURRENT.set(parent);
+            }
+        }
+    }
+
+    private static Span open(String name) {
+        if (!ENABLED) return NOOP;
+        Span s = new Span(STATS.computeIfAbsent(name, Stat::new), System.nanoTime());
+        s.parent = CURRENT.get();
+        CURRENT.set(s);
+        return s;
+    }
+
+    public static Span op(String name) { return open(name); }
+
+    public interface Body<T, E extends Exception> { T call() throws E; }
+
+    // An op span around body, for operations with no rows to report; what body throws also marks the span failed
+    public static <T, E extends Exception> T timed(String name, Body<T, E> body) throws E {
+        try (Span m = open(name)) {
+            try {
+                return body.call();
+            } catch (Exception e) {
+                m.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    // Statements are grouped by their text with IN-list placeholders and multi-row VALUES collapsed, so chunk sizes share a row
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\?(,\\s*\\?)+\\)");
+    private static final Pattern VALUE_ROWS = Pattern.compile("\\(\\?\\.\\.\\)(\\s*,\\s*\\(\\?\\.\\.\\))+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    public static Span sql(String sql) {
+        if (!ENABLED) return NOOP;
+        String name = SQL_NAMES.get(sql);
+        if (name == null) {
+            String grouped = VALUE_ROWS.matcher(IN_LIST.matcher(sql).replaceAll("(?..)")).replaceAll("(?..),...");
+            name = "sql: " + SPACES.matcher(grouped).replaceAll(" ").trim();
+            if (SQL_NAMES.size() < 10_000) SQL_NAMES.put(sql, name);
+        }
+        return open(name);
+    }
+
+    public static List<Row> snapshot() {
+        List<Row> rows = new ArrayList<>(STATS.size());
+        for (Stat s : STATS.values()) rows.add(new Row(s));
+        rows.sort(Comparator.comparing((Row r) -> r.name.startsWith("sql: ")).thenComparing(r -> -r.calls * r.mean));
+        return rows;
+    }
+
+    public static void reset() { STATS.clear(); }
+
+    public static String format(List<Row> rows) {
+        StringWriter sw = new StringWriter();
+        PrintWriter w = new PrintWriter(sw);
+        w.printf("%-60s %9s %7s %10s %9s %9s %9s %9s %9s%n", "name", "calls", "errors", "rows", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Row r : rows) {
+            String name = r.name.length() > 60 ? r.name.substring(0, 57) + "..." : r.name;
+            w.printf("%-60s %9d %7d %10d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, r.calls, r.errors, r.rows, r.mean, r.p50, r.p90, r.p99, r.max);
+        }
+        w.flush();
+        return sw.toString();
+    }
+
+    // Appends a timestamped table, so successive dumps in one file show how the percentiles drift
+    public static void dump(Path file) throws IOException { dump(file, snapshot()); }
+
+    public static void dump(Path file, List<Row> rows) throws IOException {
+        String block = "=== " + LocalDateTime.now().withNano(0) + " ===\n" + format(rows) + "\n";
+        Files.write(file, block.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // Starts periodic dumps when minilogistics.metrics.dumpFile is set; safe to call from every entry point
+    public static synchronized void startDumps() {
+        String file = System.getProperty("minilogistics.metrics.dumpFile");
+        if (file == null || dumper != null || !ENABLED) return;
+        long sec = Long.getLong("minilogistics.metrics.dumpSec", 60L);
+        Path path = Paths.get(file);
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, sec, sec, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try { dump(path); } catch (IOException ignored) {}
+        }, "metrics-final-dump"));
+    }
+}
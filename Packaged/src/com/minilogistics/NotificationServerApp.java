@@ -0,0 +1,19 @@
+package com.minilogistics.main;
+
+import com.minilogistics.controller.Notifications;
+
+// Hosts the driver notification server without the Admin Panel (which normally hosts it)
+public class NotificationServerApp {
+    public static void main(String[] args) throws InterruptedException {
+        Notifications.Server server = Notifications.startServer();
+        if (server == null) {
+            System.err.println("Could not start the notification server.");
+            System.exit(1);
+        }
+        System.out.println("Notification server listening on localhost:" + Integer.getInteger("minilogistics.notify.port", 5599));
+        while (true) {
+            Thread.sleep(60000);
+            System.out.println(server.stats());
+        }
+    }
+}
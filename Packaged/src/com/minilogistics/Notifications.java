@@ -0,0 +1,455 @@
+package com.minilogistics.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Push notifications for assignment and job status changes, over a plain-text line protocol on a
+// loopback socket (minilogistics.notify.host/.port, default localhost:5599). The admin app hosts the
+// server; driver apps subscribe to their own driver ID and only poll while disconnected.
+//   client -> server: "HELLO <driverId|*> <key>" first, then "SUB <driverId>" (or "SUB *"), "PUB <driverId> <type> <deliveryId>", "PING"
+//   server -> client: "EVT <driverId> <type> <deliveryId>", "PONG"
+// Events are hints to refresh, not data: anything missed while disconnected is caught by the refresh on reconnect.
+// The key is an HMAC of the driver ID (or "*") under a shared secret, so a connection can only SUB its own driver.
+// "*" (every driver) and PUB are only accepted from loopback; a driver may only PUB for itself. The secret is
+// minilogistics.notify.token, or else a random one kept in minilogistics.notify.tokenFile (default
+// ~/.minilogistics/notify.token) so apps on the same machine share it. In API mode the server hands each driver
+// its key at login.
+public class Notifications {
+    public static final String ASSIGNED = "ASSIGNED", STATUS = "STATUS", DRIVER_STATUS = "DRIVER_STATUS";
+
+    static final String HOST = System.getProperty("minilogistics.notify.host", "localhost");
+    static final int PORT = Integer.getInteger("minilogistics.notify.port", 5599);
+    // Interface the server listens on; set to 0.0.0.0 when drivers connect from other machines (API server mode)
+    static final String BIND = System.getProperty("minilogistics.notify.bind");
+
+    private static volatile byte[] secret;
+
+    private static byte[] secret() {
+        if (secret != null) return secret;
+        synchronized (Notifications.class) {
+            if (secret != null) return secret;
+            String token = System.getProperty("minilogistics.notify.token");
+            if (token == null) {
+                Path file = Paths.get(System.getProperty("minilogistics.notify.tokenFile",
+                        Paths.get(System.getProperty("user.home"), ".minilogistics", "notify.token").toString()));
+                try {
+                    token = readOrCreate(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Notification token file " + file, e);
+                }
+            }
+            secret = token.trim().getBytes(StandardCharsets.UTF_8);
+            return secret;
+        }
+    }
+
+    // Owner-only where the file system has POSIX permissions; whoever creates it first wins the race
+    private static String readOrCreate(Path file) throws IOException {
+        if (Files.exists(file)) return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        byte[] b = new byte[32];
+        new SecureRandom().nextBytes(b);
+        StringBuilder token = new StringBuilder(64);
+        for (byte x : b) token.append(String.format("%02x", x));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try {
+            if (file.getFileSystem().supportedFileAttributeViews().contains("posix"))
+                Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            else
+                Files.createFile(file);
+            Files.write(file, token.toString().getBytes(StandardCharsets.UTF_8));
+            return token.toString();
+        } catch (FileAlreadyExistsException e) {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        }
+    }
+
+    // HELLO key for a driver ID, or "*"
+    public static String keyFor(String who) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret(), "HmacSHA256"));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte x : mac.doFinal(("notify:" + who).getBytes(StandardCharsets.UTF_8))) sb.append(String.format("%02x", x));
+            return sb.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public interface Listener {
+        void event(int driverId, String type, int deliveryId);
+        default void connected() {}
+        default void disconnected() {}
+    }
+
+    private static volatile Server server;
+    private static volatile Client publisher, subscriber;
+
+    // Hosts the server in this process; if another process already has the port, publishes through it instead
+    public static synchronized Server startServer() {
+        if (server != null) return server;
+        try {
+            server = new Server(PORT);
+        } catch (BindException e) {
+            System.err.println("Notification port " + PORT + " in use; publishing to the existing server");
+            if (publisher == null) publisher = new Client(HOST, PORT, -1, keyFor("*"), null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return server;
+    }
+
+    // Called after a write commits. Never blocks the caller on the network: events are queued or dropped.
+    public static void publish(int driverId, String type, int deliveryId) {
+        String line = "EVT " + driverId + " " + type + " " + deliveryId;
+        Server s = server;
+        if (s != null) {
+            s.publish(driverId, line);
+            return;
+        }
+        Client c = subscriber != null ? subscriber : publisher;
+        if (c != null) c.send("PUB " + driverId + " " + type + " " + deliveryId);
+    }
+
+    // One subscription per process (the logged-in driver); replaces any previous one.
+    // key is the driver's HELLO key (DriverAppController.getNotifyKey)
+    public static synchronized Client subscribe(int driverId, String key, Listener l) {
+        unsubscribe();
+        subscriber = new Client(HOST, PORT, driverId, key, l);
+        return subscriber;
+    }
+
+    public static synchronized void unsubscribe() {
+        if (subscriber != null) subscriber.close();
+        subscriber = null;
+    }
+
+    public static boolean isSubscribed() {
+        Client c = subscriber;
+        return c != null && c.isConnected();
+    }
+
+    // Single-threaded NIO server: one selector thread handles every connection, so hundreds of idle
+    // driver sockets cost no threads. A client that stops reading is dropped once its backlog passes MAX_BACKLOG.
+    public static class Server {
+        static final int MAX_BACKLOG = 64 * 1024;
+        static final int ALL = Integer.MIN_VALUE;
+
+        static final class Conn {
+            final SocketChannel ch;
+            final ByteBuffer in = ByteBuffer.allocate(512);
+            final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+            final boolean local;
+            String who; // driver ID or "*" once HELLO checked out
+            int backlog;
+            Set<Integer> subs = new HashSet<>();
+            Conn(SocketChannel ch, boolean local) { this.ch = ch; this.local = local; }
+        }
+
+        private final Selector selector;
+        private final ServerSocketChannel ssc;
+        private final ConcurrentLinkedQueue<Object[]> inbox = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, Set<Conn>> subscribers = new HashMap<>(); // selector thread only
+        private final Thread loop;
+        private volatile boolean running = true;
+        private final AtomicLong published = new AtomicLong(), delivered = new AtomicLong(), dropped = new AtomicLong(), refused = new AtomicLong();
+        private volatile int connections;
+
+        public Server(int port) throws IOException {
+            selector = Selector.open();
+            ssc = ServerSocketChannel.open();
+            try {
+                ssc.bind(BIND == null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : new InetSocketAddress(BIND, port));
+            } catch (IOException e) {
+                ssc.close();
+                selector.close();
+                throw e;
+            }
+            ssc.configureBlocking(false);
+            ssc.register(selector, SelectionKey.OP_ACCEPT);
+            loop = new Thread(this::run, "notify-server");
+            loop.setDaemon(true);
+            loop.start();
+        }
+
+        public void publish(int driverId, String line) {
+            published.incrementAndGet();
+            inbox.add(new Object[] { driverId, line });
+            selector.wakeup();
+        }
+
+        private void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    Object[] ev;
+                    while ((ev = inbox.poll()) != null) route((Integer) ev[0], (String) ev[1]);
+                    for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey k = it.next();
+                        it.remove();
+                        if (!k.isValid()) continue;
+                        try {
+                            if (k.isAcceptable()) accept();
+                            else {
+                                if (k.isReadable()) read(k);
+                                if (k.isValid() && k.isWritable()) write(k);
+                            }
+                        } catch (IOException e) {
+                            drop(k);
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel ch = ssc.accept();
+            if (ch == null) return;
+            ch.configureBlocking(false);
+            InetSocketAddress peer = (InetSocketAddress) ch.getRemoteAddress();
+            ch.register(selector, SelectionKey.OP_READ, new Conn(ch, peer.getAddress().isLoopbackAddress()));
+            connections++;
+        }
+
+        private void read(SelectionKey k) throws IOException {
+            Conn c = (Conn) k.attachment();
+            if (c.ch.read(c.in) < 0) throw new IOException("closed");
+            c.in.flip();
+            int start = c.in.position();
+            for (int i = start; i < c.in.limit(); i++) {
+                if (c.in.get(i) != '\n') continue;
+                byte[] b = new byte[i - start];
+                c.in.get(b);
+                c.in.get(); // the '\n'
+                command(k, c, new String(b, StandardCharsets.UTF_8).trim());
+                if (!k.isValid()) return; // refused and dropped
+                start = i + 1;
+            }
+            c.in.compact();
+            if (!c.in.hasRemaining()) throw new IOException("line too long");
+        }
+
+        private void command(SelectionKey k, Conn c, String line) {
+            String[] p = line.split(" ");
+            try {
+                if (c.who == null) {
+                    // Anything but a valid HELLO first closes the connection
+                    boolean ok = p[0].equals("HELLO") && p.length == 3 && (p[1].equals("*") ? c.local : Integer.parseInt(p[1]) >= 0)
+                            && MessageDigest.isEqual(keyFor(p[1]).getBytes(StandardCharsets.UTF_8), p[2].getBytes(StandardCharsets.UTF_8));
+                    if (ok) c.who = p[1];
+                    else refuse(k);
+                } else if (p[0].equals("SUB") && p.length == 2) {
+                    if (!c.who.equals("*") && !c.who.equals(p[1])) {
+                        refuse(k);
+                        return;
+                    }
+                    int id = p[1].equals("*") ? ALL : Integer.parseInt(p[1]);
+                    c.subs.add(id);
+                    subscribers.computeIfAbsent(id, x -> new HashSet<>()).add(c);
+                } else if (p[0].equals("PUB") && p.length == 4) {
+                    if (!c.local || !c.who.equals("*") && !c.who.equals(p[1])) {
+                        refuse(k);
+                        return;
+                    }
+                    published.incrementAndGet();
+                    route(Integer.parseInt(p[1]), "EVT " + p[1] + " " + p[2] + " " + p[3]);
+                } else if (p[0].equals("PING")) {
+                    enqueue(k, c, "PONG");
+                }
+            } catch (NumberFormatException e) {
+                if (c.who == null) refuse(k); // else a malformed line from a client; ignore it
+            }
+        }
+
+        private void refuse(SelectionKey k) {
+            refused.incrementAndGet();
+            drop(k);
+        }
+
+        private void route(int driverId, String line) {
+            for (int id : new int[] { driverId, ALL }) {
+                Set<Conn> subs = subscribers.get(id);
+                if (subs == null) continue;
+                for (Conn c : subs.toArray(new Conn[0])) enqueue(c.ch.keyFor(selector), c, line);
+            }
+        }
+
+        private void enqueue(SelectionKey k, Conn c, String line) {
+            if (k == null || !k.isValid()) return;
+            byte[] b = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            if (c.backlog + b.length > MAX_BACKLOG) {
+                dropped.incrementAndGet();
+                drop(k); // it reconnects and refreshes, which is cheaper than buffering without bound
+                return;
+            }
+            c.out.add(ByteBuffer.wrap(b));
+            c.backlog += b.length;
+            k.interestOps(k.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        private void write(SelectionKey k) throws IOException {
+            Conn c = (Conn) k.attachment();
+            while (!c.out.isEmpty()) {
+                ByteBuffer b = c.out.peek();
+                int n = c.ch.write(b);
+                c.backlog -= n;
+                if (b.hasRemaining()) return;
+                c.out.poll();
+                delivered.incrementAndGet();
+            }
+            k.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void drop(SelectionKey k) {
+            Conn c = (Conn) k.attachment();
+            k.cancel();
+            if (c == null) return;
+            for (int id : c.subs) {
+                Set<Conn> subs = subscribers.get(id);
+                if (subs != null && subs.remove(c) && subs.isEmpty()) subscribers.remove(id);
+            }
+            try { c.ch.close(); } catch (IOException ignored) {}
+            connections--;
+        }
+
+        public void close() {
+            running = false;
+            selector.wakeup();
+            try {
+                loop.join(2000);
+                for (SelectionKey k : selector.keys()) k.channel().close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public String stats() {
+            return String.format("connections=%d published=%d delivered=%d dropped=%d refused=%d", connections, published.get(), delivered.get(),
+                    dropped.get(), refused.get());
+        }
+    }
+
+    // Blocking client on its own daemon thread; reconnects with backoff (1s doubling to 30s) and
+    // tells the listener about connect/disconnect so the view can switch between push and polling.
+    public static class Client {
+        private final String host;
+        private final int port, driverId;
+        private final String key;
+        private final Listener listener;
+        private final Thread thread;
+        private volatile Socket socket;
+        private volatile OutputStream out;
+        private volatile boolean running = true, connected;
+
+        Client(String host, int port, int driverId, String key, Listener listener) {
+            this.host = host; this.port = port; this.driverId = driverId; this.key = key; this.listener = listener;
+            thread = new Thread(this::run, "notify-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public boolean isConnected() { return connected; }
+
+        private void run() {
+            long backoff = 1000;
+            while (running) {
+                try (Socket s = new Socket()) {
+                    s.connect(new InetSocketAddress(host, port), 2000);
+                    s.setKeepAlive(true);
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    out = s.getOutputStream();
+                    send("HELLO " + (driverId >= 0 ? String.valueOf(driverId) : "*") + " " + key);
+                    if (driverId >= 0) send("SUB " + driverId);
+                    connected = true;
+                    backoff = 1000;
+                    if (listener != null) listener.connected();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        String[] p = line.split(" ");
+                        if (listener != null && p.length == 4 && p[0].equals("EVT")) {
+                            try {
+                                listener.event(Integer.parseInt(p[1]), p[2], Integer.parseInt(p[3]));
+                            } catch (NumberFormatException ignored) {}
+                        }
+                    }
+                } catch (IOException e) {
+                    // server not running or connection lost; retry below
+                } finally {
+                    boolean was = connected;
+                    connected = false;
+                    out = null;
+                    socket = null;
+                    if (was && listener != null) listener.disconnected();
+                }
+                if (!running) break;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                backoff = Math.min(30000, backoff * 2);
+            }
+        }
+
+        // Fire-and-forget; dropped while disconnected
+        public void send(String line) {
+            OutputStream o = out;
+            if (o == null) return;
+            synchronized (this) {
+                try {
+                    o.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                    o.flush();
+                } catch (IOException e) {
+                    // the reader thread notices the broken socket and reconnects
+                }
+            }
+        }
+
+        public void close() {
+            running = false;
+            thread.interrupt();
+            Socket s = socket;
+            if (s != null) {
+                try { s.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+}
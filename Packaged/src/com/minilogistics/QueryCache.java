@@ -0,0 +1,170 @@
+package com.minilogistics.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Read-through cache shared by both controllers. Entries are keyed by SQL + parameters and tagged
+// with the tables they read; a write invalidates its tables' tags. LRU-bounded, with a TTL as a
+// safety net for writes nobody told us about. Settings: minilogistics.cache.size (0 disables), .ttlMs
+public class QueryCache {
+
+    private static volatile QueryCache shared;
+
+    public static QueryCache shared() {
+        if (shared == null) {
+            synchronized (QueryCache.class) {
+                if (shared == null) {
+                    shared = new QueryCache(Integer.getInteger("minilogistics.cache.size", 1000),
+                            Long.getLong("minilogistics.cache.ttlMs", 30000L));
+                }
+            }
+        }
+        return shared;
+    }
+
+    // Tags for tables that have no change_log tracking of their own
+    public static final String USERS = "users", VEHICLES = "vehicles";
+
+    public interface Loader<T> { T load() throws SQLException; }
+
+    static final class Entry {
+        final Object value;
+        final String[] tags;
+        final long expiresAt;
+        Entry(Object value, String[] tags, long expiresAt) { this.value = value; this.tags = tags; this.expiresAt = expiresAt; }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+    // Bumped on every invalidation, so a load that raced with a write is returned but not cached
+    private final Map<String, Long> tagVersion = new HashMap<>();
+    private long lastMark = -1, lastAbove, lastTop; // see observeChanges
+
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), expired = new AtomicLong(),
+            evictions = new AtomicLong(), invalidations = new AtomicLong();
+
+    public QueryCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= QueryCache.this.maxEntries) return false;
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    public static String key(String sql, Object... params) {
+        return params.length == 0 ? sql : sql + '\u0000' + Arrays.deepToString(params);
+    }
+
+    // Cached values are shared between callers, so loaders should return something callers won't mutate
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, String[] tags, Loader<T> loader) throws SQLException {
+        if (maxEntries <= 0) return loader.load();
+        long[] versions = new long[tags.length];
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (System.currentTimeMillis() < e.expiresAt) {
+                    hits.incrementAndGet();
+                    return (T) e.value;
+                }
+                entries.remove(key);
+                unindex(key, e);
+                expired.incrementAndGet();
+            }
+            for (int i = 0; i < tags.length; i++) versions[i] = tagVersion.getOrDefault(tags[i], 0L);
+        }
+        misses.incrementAndGet();
+        T value = loader.load(); // outside the lock: concurrent misses on one key may both load, which is harmless
+        synchronized (this) {
+            for (int i = 0; i < tags.length; i++) {
+                if (tagVersion.getOrDefault(tags[i], 0L) != versions[i]) return value;
+            }
+            Entry old = entries.put(key, new Entry(value, tags, System.currentTimeMillis() + ttlMs));
+            if (old != null) unindex(key, old);
+            for (String t : tags) keysByTag.computeIfAbsent(t, x -> new HashSet<>()).add(key);
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(String... tags) {
+        for (String t : tags) {
+            tagVersion.merge(t, 1L, Long::sum);
+            Set<String> keys = keysByTag.remove(t);
+            if (keys == null) continue;
+            for (String k : keys) {
+                Entry e = entries.remove(k);
+                if (e != null) {
+                    unindex(k, e);
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Cross-process invalidation: the other app's writes only show up as new change_log rows.
+    // Callers observe before a read. The state is the settled mark (ChangeLog.scan) plus the count and top
+    // of the changes visible above it, so a change committing under an id already seen still moves it.
+    public void observeChanges(Connection c) throws SQLException {
+        long from;
+        synchronized (this) { from = lastMark; }
+        if (from < 0) from = ChangeLog.currentMark(c);
+        List<Long> ids = new ArrayList<>();
+        long mark = ChangeLog.scan(c, from, (id, table, rowId) -> ids.add(id));
+        if (mark == ChangeLog.EXPIRED) mark = ChangeLog.currentMark(c); // unseen changes were pruned: start over, invalidating all
+        long above = 0, top = mark;
+        for (long id : ids) {
+            if (id <= mark) continue;
+            above++;
+            top = id;
+        }
+        synchronized (this) {
+            if (mark == lastMark && above == lastAbove && top == lastTop) return;
+            boolean first = lastMark < 0;
+            lastMark = mark;
+            lastAbove = above;
+            lastTop = top;
+            if (first && entries.isEmpty()) return;
+        }
+        invalidate(ChangeLog.DRIVERS, ChangeLog.DELIVERIES);
+    }
+
+    public synchronized void clear() {
+        for (String t : keysByTag.keySet()) tagVersion.merge(t, 1L, Long::sum);
+        entries.clear();
+        keysByTag.clear();
+    }
+
+    private void unindex(String key, Entry e) {
+        for (String t : e.tags) {
+            Set<String> keys = keysByTag.get(t);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTag.remove(t);
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public synchronized String stats() {
+        long h = hits.get(), m = misses.get();
+        return String.format("entries=%d hits=%d misses=%d hitRate=%.1f%% expired=%d evicted=%d invalidated=%d",
+                entries.size(), h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), expired.get(), evictions.get(), invalidations.get());
+    }
+}
@@ -0,0 +1,255 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.db.AdminDBConfig;
+import com.minilogistics.db.JdbcStore;
+import com.minilogistics.db.Metrics;
+import com.minilogistics.db.Sql;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a report straight from the ResultSet to a Writer or file, one row at a time, so memory
+// use doesn't depend on the report size. Full exports use MySQL's row-by-row streaming mode
+// (fetch size Integer.MIN_VALUE); previews ask the server for the first N rows only.
+public class ReportEngine {
+
+    public enum Format {
+        TEXT("txt"), CSV("csv"), JSONL("jsonl");
+        public final String ext;
+        Format(String ext) { this.ext = ext; }
+    }
+
+    // Called from the export thread; preview() gets the first previewRows lines, progress() every PROGRESS_EVERY rows and at the end
+    public interface Listener {
+        default void preview(String line) {}
+        default void progress(long rows, long total) {}
+    }
+
+    // Set in API client mode: reports come from the server as text lines instead of from JDBC
+    public interface Source { Reader open(String type, Format fmt, int limit) throws IOException; }
+    public static volatile Source remote;
+
+    static final int PROGRESS_EVERY = 4096;
+    static final int BUFFER = 1 << 16;
+
+    interface TextLine { void append(StringBuilder sb, ResultSet rs, int[] idx) throws SQLException; }
+
+    static final class Report {
+        final String sql, countSql;
+        final String[] columns;
+        final boolean[] numeric;
+        final TextLine text;
+        Report(String sql, String countSql, String[] columns, boolean[] numeric, TextLine text) {
+            this.sql = sql; this.countSql = countSql; this.columns = columns; this.numeric = numeric; this.text = text;
+        }
+    }
+
+    // Same rows and text layout generateReport always produced
+    static final Report DRIVERS = new Report(JdbcStore.DRIVER_SQL,
+            "SELECT COUNT(*) FROM drivers d JOIN users u ON d.user_id = u.user_id JOIN vehicles v ON d.vehicle_id = v.vehicle_id",
+            new String[] { "user_id", "name", "status", "rating", "active_jobs", "model", "plate_no", "capacity" },
+            new boolean[] { true, false, false, true, true, false, false, true },
+            (sb, rs, i) -> sb.append(rs.getString(i[1])).append(" | ").append(rs.getString(i[2])).append(" | Jobs: ").append(rs.getInt(i[4])));
+
+    static final Report DELIVERIES = new Report(JdbcStore.DELIVERY_SQL,
+            "SELECT COUNT(*) FROM deliveries d LEFT JOIN assignments a ON d.delivery_id = a.delivery_id",
+            new String[] { "delivery_id", "status", "description", "pickup", "dropoff", "assigned_driver_id", "fee", "priority", "deadline" },
+            new boolean[] { true, false, false, false, false, true, true, false, false },
+            (sb, rs, i) -> sb.append("ID ").append(rs.getInt(i[0])).append(" | ").append(rs.getString(i[1])).append(" | ").append(rs.getString(i[2])));
+
+    // Reads only the rollups (migrations/V6__earnings_ledger.sql), never the ledger itself
+    static final Report EARNINGS = new Report("SELECT u.user_id, u.name, COALESCE(t.total, 0) AS total, COALESCE(t.jobs, 0) AS jobs, " +
+            "COALESCE(dd.total, 0) AS today FROM drivers d JOIN users u ON d.user_id = u.user_id " +
+            "LEFT JOIN earnings_total t ON t.driver_id = d.user_id " +
+            "LEFT JOIN earnings_daily dd ON dd.driver_id = d.user_id AND dd.day = CURRENT_DATE",
+            "SELECT COUNT(*) FROM drivers",
+            new String[] { "user_id", "name", "total", "jobs", "today" },
+            new boolean[] { true, false, true, true, true },
+            (sb, rs, i) -> sb.append(rs.getString(i[1])).append(" | Earnings: $").append(String.format("%.2f", rs.getDouble(i[2])))
+                    .append(" | Jobs: ").append(rs.getInt(i[3])).append(" | Today: $").append(String.format("%.2f", rs.getDouble(i[4]))));
+
+    static Report report(String type) {
+        if ("Drivers".equals(type)) return DRIVERS;
+        if ("Earnings".equals(type)) return EARNINGS;
+        return DELIVERIES;
+    }
+
+    private volatile boolean cancelled;
+
+    // Stops a running write/export at the next row; the export's partial file is removed
+    public void cancel() { cancelled = true; }
+
+    // Writes the report to out; limit > 0 stops after that many rows. Returns the number of rows written.
+    public long write(String type, Format fmt, Writer out, int limit, int previewRows, Listener l) throws SQLException, IOException {
+        if (l == null) l = new Listener() {};
+        if (remote != null) return copyRemote(type, fmt, out, limit, previewRows, l);
+        Metrics.Span m = Metrics.op("report.write");
+        try {
+            long rows = writeLocal(report(type), fmt, out, limit, previewRows, l);
+            m.rows(rows);
+            return rows;
+        } catch (SQLException | IOException | RuntimeException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    private long writeLocal(Report r, Format fmt, Writer out, int limit, int previewRows, Listener l) throws SQLException, IOException {
+        try (Connection c = AdminDBConfig.getConnection()) {
+            Long count = Sql.one(c, r.countSql, rs -> rs.getLong(1));
+            long total = count == null ? 0 : limit > 0 ? Math.min(limit, count) : count;
+
+            StringBuilder line = new StringBuilder(256);
+            int previewed = 0;
+            if (fmt == Format.TEXT) {
+                line.append("=== ADMIN REPORT ===\nGenerated: ").append(LocalDateTime.now()).append("\n");
+            } else if (fmt == Format.CSV) {
+                for (int k = 0; k < r.columns.length; k++) line.append(k == 0 ? "" : ",").append(r.columns[k]);
+            }
+            if (line.length() > 0) {
+                out.append(line).append('\n');
+                if (previewRows > 0) { l.preview(line.toString()); previewed++; }
+            }
+
+            String sql = limit > 0 ? r.sql + " LIMIT ?" : r.sql;
+            // Cached like any other statement; the pool resets the streaming fetch size when it comes back
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                if (limit > 0) ps.setInt(1, limit);
+                else ps.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int[] idx = new int[r.columns.length];
+                    for (int k = 0; k < idx.length; k++) idx[k] = rs.findColumn(r.columns[k]);
+                    long rows = 0;
+                    while (rs.next()) {
+                        if (cancelled) {
+                            try { ps.cancel(); } catch (SQLException ignored) {} // otherwise close() drains the remaining rows
+                            throw new CancellationException("Report cancelled after " + rows + " rows");
+                        }
+                        line.setLength(0);
+                        if (fmt == Format.TEXT) r.text.append(line, rs, idx);
+                        else if (fmt == Format.CSV) csv(line, rs, idx);
+                        else json(line, rs, idx, r);
+                        out.append(line).append('\n');
+                        if (previewed < previewRows) { l.preview(line.toString()); previewed++; }
+                        if (++rows % PROGRESS_EVERY == 0) l.progress(rows, Math.max(total, rows));
+                    }
+                    l.progress(rows, rows);
+                    return rows;
+                }
+            }
+        }
+    }
+
+    // The server already formatted the report; lines pass straight through (header lines count as rows here)
+    private long copyRemote(String type, Format fmt, Writer out, int limit, int previewRows, Listener l) throws IOException {
+        long rows = 0;
+        try (BufferedReader in = new BufferedReader(remote.open(type, fmt, limit), BUFFER)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (cancelled) throw new CancellationException("Report cancelled after " + rows + " rows");
+                out.append(line).append('\n');
+                if (rows < previewRows) l.preview(line);
+                if (++rows % PROGRESS_EVERY == 0) l.progress(rows, rows);
+            }
+        }
+        l.progress(rows, rows);
+        return rows;
+    }
+
+    // Writes to target through a buffered FileChannel (gzipped when asked). The data goes to target.part
+    // first and is renamed on success, so a failed or cancelled export never leaves a truncated report behind.
+    public long export(String type, Format fmt, boolean gzip, Path target, int previewRows, Listener l) throws SQLException, IOException {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            long rows;
+            try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                OutputStream os = Channels.newOutputStream(ch);
+                os = gzip ? new GZIPOutputStream(os, BUFFER) : new BufferedOutputStream(os, BUFFER);
+                try (Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER)) {
+                    rows = write(type, fmt, w, 0, previewRows, l);
+                }
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            return rows;
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
+
+    public static String fileName(String type, Format fmt, boolean gzip) {
+        return "admin_report_" + type.toLowerCase() + "." + fmt.ext + (gzip ? ".gz" : "");
+    }
+
+    private static void csv(StringBuilder sb, ResultSet rs, int[] idx) throws SQLException {
+        for (int k = 0; k < idx.length; k++) {
+            if (k > 0) sb.append(',');
+            String v = rs.getString(idx[k]);
+            if (v == null) continue;
+            if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) {
+                sb.append(v);
+            } else {
+                sb.append('"');
+                for (int i = 0; i < v.length(); i++) {
+                    char ch = v.charAt(i);
+                    if (ch == '"') sb.append('"');
+                    sb.append(ch);
+                }
+                sb.append('"');
+            }
+        }
+    }
+
+    private static void json(StringBuilder sb, ResultSet rs, int[] idx, Report r) throws SQLException {
+        sb.append('{');
+        for (int k = 0; k < idx.length; k++) {
+            if (k > 0) sb.append(',');
+            sb.append('"').append(r.columns[k]).append("\":");
+            String v = rs.getString(idx[k]);
+            if (v == null) sb.append("null");
+            else if (r.numeric[k]) sb.append(v);
+            else jsonString(sb, v);
+        }
+        sb.append('}');
+    }
+
+    static void jsonString(StringBuilder sb, String v) {
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,212 @@
+package com.minilogistics.db;
+
+import com.minilogistics.model.AdminEntities.*;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Storage interfaces the controllers are written against, so they hold no SQL of their own.
+// JdbcStore is the MySQL implementation; MemoryStore keeps everything in process for tests, demos and
+// benchmarks. Failures surface as SQLException from either backend so the controllers' error handling
+// (and the messages the views show) doesn't depend on which one is plugged in.
+// minilogistics.store=jdbc (default) or memory picks the shared store.
+public final class Repositories {
+    private Repositories() {}
+
+    public interface Store {
+        Users users();
+        Drivers drivers();
+        Vehicles vehicles();
+        Deliveries deliveries();
+        Assignments assignments();
+        AuditLogs auditLogs();
+        Changes changes();
+        Earnings earnings();
+    }
+
+    private static volatile Store shared;
+
+    public static Store shared() {
+        if (shared == null) {
+            synchronized (Repositories.class) {
+                if (shared == null) {
+                    shared = "memory".equals(System.getProperty("minilogistics.store")) ? MemoryStore.fromProperties() : new JdbcStore();
+                }
+            }
+        }
+        return shared;
+    }
+
+    // For tests and benchmarks that want a specific backend for every controller created afterwards
+    public static synchronized void setShared(Store store) { shared = store; }
+
+    public interface Users {
+        // Driver account for the login form, with lifetime earnings; null when the credentials don't match
+        DriverSession findDriver(String email, String pass) throws SQLException;
+        boolean emailTaken(String email) throws SQLException;
+        // User, vehicle and PENDING driver rows in one transaction; returns the new user ID
+        int registerDriver(String name, String email, String pass, String phone, String model, String plate) throws SQLException;
+        void updateProfile(int userId, String name, String phone, String email) throws SQLException;
+        // One import chunk in one transaction: new user ID per row, or 0 where the email is already registered
+        // (or appears earlier in the chunk)
+        int[] importDrivers(List<DriverImport> rows) throws SQLException;
+    }
+
+    // One driver and vehicle from a bulk import file; registered PENDING like the sign-up form does
+    public static final class DriverImport {
+        public final String name, email, pass, phone, model, plate;
+        public DriverImport(String name, String email, String pass, String phone, String model, String plate) {
+            this.name = name; this.email = email; this.pass = pass; this.phone = phone; this.model = model; this.plate = plate;
+        }
+    }
+
+    public interface Drivers {
+        List<AdminDriverEntity> listAll() throws SQLException;
+        List<AdminDriverEntity> findByIds(Collection<Integer> ids) throws SQLException;
+        Map<Integer, String> statuses(Collection<Integer> ids) throws SQLException;
+        void updateStatus(int driverId, String status) throws SQLException;
+    }
+
+    public interface Vehicles {
+        // null when the driver has no vehicle
+        DriverVehicleInfo forDriver(int driverId) throws SQLException;
+    }
+
+    // status null/"All" and driverId < 0 mean "no filter" throughout
+    public interface Deliveries {
+        // One row per delivery and assignment, as the Assignments tab has always listed them
+        List<AdminDeliveryEntity> listAll() throws SQLException;
+        // Keyset page in ID order with the latest assignment's priority/deadline
+        List<AdminDeliveryEntity> page(int afterId, int limit, String status, int driverId) throws SQLException;
+        int count(String status, int driverId) throws SQLException;
+        // ID of the row just before offset (0 for offset 0, Integer.MAX_VALUE past the end)
+        int keyBefore(int offset, String status, int driverId) throws SQLException;
+        // One entity per delivery, with its latest assignment (as in page), for the change-polling panels
+        List<AdminDeliveryEntity> findByIds(Collection<Integer> ids) throws SQLException;
+        Set<Integer> existing(Collection<Integer> ids) throws SQLException;
+        List<DriverJob> forDriver(int driverId) throws SQLException;
+        // Assigned deliveries neither COMPLETED nor CANCELLED
+        int countActive(int driverId) throws SQLException;
+        // Status change by the assigned driver; not for COMPLETED, which goes through Earnings.complete.
+        // false when the delivery is gone or assigned to someone else
+        boolean updateStatus(int deliveryId, String status, int driverId) throws SQLException;
+        // Replayed changes from a driver's offline journal, in order: "Success" or "Conflict: ...". COMPLETED
+        // credits the fee like Earnings.complete. A key seen before gets its first result back and changes nothing.
+        List<String> applyStatus(int driverId, List<StatusUpdate> updates) throws SQLException;
+        // Forgets the idempotency keys of changes applied before the cutoff (status_requests retention); returns how many
+        int pruneRequests(LocalDateTime before) throws SQLException;
+        // Bulk-loaded rows plus their assignments, and the source's checkpoint moved to (offset, rowsLoaded,
+        // prefixHash), in one transaction; returns the new delivery IDs in row order (migrations/V9, V11). A row
+        // whose driver is no longer Active is not loaded: its ID is 0 and it is not counted in rowsLoaded.
+        int[] ingest(String source, long offset, long rowsLoaded, long prefixHash, List<NewDelivery> rows) throws SQLException;
+        // { byte offset, rows loaded, prefix hash } committed for the source, or null if it was never ingested
+        long[] ingestCheckpoint(String source) throws SQLException;
+    }
+
+    // One order from an ingest file. With a driver it is created ASSIGNED with an assignment row, otherwise PENDING.
+    public static final class NewDelivery {
+        public final String desc, pickup, dropoff, contact, priority;
+        public final double fee;
+        public final int driverId;
+        public final LocalDateTime deadline;
+        public NewDelivery(String desc, String pickup, String dropoff, double fee, String contact, int driverId, String priority, LocalDateTime deadline) {
+            this.desc = desc; this.pickup = pickup; this.dropoff = dropoff; this.fee = fee; this.contact = contact;
+            this.driverId = driverId; this.priority = priority; this.deadline = deadline;
+        }
+    }
+
+    // One status change queued on a driver's device; at is when the driver made it (epoch ms)
+    public static final class StatusUpdate {
+        public final String key;
+        public final int deliveryId;
+        public final String status;
+        public final long at;
+        public StatusUpdate(String key, int deliveryId, String status, long at) {
+            this.key = key; this.deliveryId = deliveryId; this.status = status; this.at = at;
+        }
+    }
+
+    // Why a queued change can no longer apply, or null when it can: the job is gone, went to another
+    // driver, or was closed with a different status while the update sat in the journal
+    public static final String GONE = "Conflict: Job no longer exists", REASSIGNED = "Conflict: Job was reassigned";
+
+    public static String statusConflict(boolean exists, int assignedDriverId, String currentStatus, int driverId, String status) {
+        if (!exists) return GONE;
+        if (assignedDriverId != driverId) return REASSIGNED;
+        boolean closed = "COMPLETED".equals(currentStatus) || "CANCELLED".equals(currentStatus);
+        if (closed && !currentStatus.equalsIgnoreCase(status)) return "Conflict: Job already " + currentStatus;
+        return null;
+    }
+
+    // Why an existing delivery can't be (re)assigned, or null when it can: it is closed, or its driver is no
+    // longer the one the admin read (seenDriverId, -1 to skip that check)
+    public static String assignConflict(String status, int assignedDriverId, int seenDriverId) {
+        if ("COMPLETED".equals(status) || "CANCELLED".equals(status)) return "Error: Delivery is already " + status;
+        if (seenDriverId >= 0 && assignedDriverId != seenDriverId)
+            return "Error: Delivery was " + (assignedDriverId == 0 ? "unassigned" : "assigned to Driver ID " + assignedDriverId) + " since it was loaded";
+        return null;
+    }
+
+    public interface Assignments {
+        // Assignment rows, ASSIGNED deliveries, change log and one audit entry per request, all or nothing.
+        // Delivery IDs are distinct and auditDetails line up with reqs. An assigned job may be reassigned (its
+        // previous driver's row changes too). Driver and delivery are checked again under the write's locks; a
+        // request whose driver is no longer Active, whose delivery is gone, COMPLETED or CANCELLED, or whose
+        // delivery's driver is no longer the seenDriverId the admin read is skipped and gets its error at the
+        // same index. null means assigned.
+        String[] assignAll(List<AdminAssignment> reqs, LocalDateTime now, List<String> auditDetails) throws SQLException;
+    }
+
+    public interface AuditLogs {
+        // Entries that don't commit with a business write; may be batched and written shortly after
+        void append(String category, String details);
+        // Dropped if the same entry was appended within the coalescing window
+        void appendCoalesced(String category, String details);
+        List<AdminAuditLog> latest(int limit) throws SQLException;
+        // Newer than lastId, newest first
+        List<AdminAuditLog> since(int lastId, int limit) throws SQLException;
+        // In [from, to) (either may be null), optionally one category, newest first; includes archived entries
+        List<AdminAuditLog> range(LocalDateTime from, LocalDateTime to, String category, int limit) throws SQLException;
+        // Oldest first from after lastId, for indexing the table incrementally
+        List<AdminAuditLog> scan(int lastId, int limit) throws SQLException;
+    }
+
+    public interface Changes {
+        long mark() throws SQLException;
+        // Adds the IDs of table rows changed after since, in change order, to touched; returns the new mark,
+        // or ChangeLog.EXPIRED when since is older than what retention kept (the caller reloads instead)
+        long since(String table, long since, Set<Integer> touched) throws SQLException;
+        // Drops entries older than ChangeLog.retentionSec(), keeping the newest; returns how many
+        long prune() throws SQLException;
+    }
+
+    public static final class Completion {
+        public final boolean credited;
+        public final double earnings;
+        public Completion(boolean credited, double earnings) { this.credited = credited; this.earnings = earnings; }
+    }
+
+    // One rollup that disagrees with the ledger; day is null for the lifetime total, amounts null when missing
+    public static final class Mismatch {
+        public final int driverId;
+        public final String day, ledger, rollup;
+        public Mismatch(int driverId, String day, String ledger, String rollup) {
+            this.driverId = driverId; this.day = day; this.ledger = ledger; this.rollup = rollup;
+        }
+    }
+
+    public interface Earnings {
+        // {lifetime, today}
+        double[] totals(int driverId) throws SQLException;
+        // Marks the job COMPLETED and credits its fee once; a repeat completes nothing and credits nothing
+        Completion complete(int deliveryId, int driverId) throws SQLException;
+        List<Mismatch> mismatches() throws SQLException;
+        // Recomputes both rollups from the ledger for these drivers, with an audit entry, in one transaction
+        void rebuild(Set<Integer> driverIds, String auditDetail) throws SQLException;
+    }
+}
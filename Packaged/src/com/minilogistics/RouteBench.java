@@ -0,0 +1,50 @@
+package com.minilogistics.bench;
+
+import com.minilogistics.controller.RoutePlanner;
+import com.minilogistics.model.DriverEntities.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Times RoutePlanner.plan on a synthetic day of stops spread over a 30 x 30 km city; no database needed.
+// A fresh planner per run, so every run also builds its distance matrix. A tenth of the jobs are already picked up.
+// "cold" is the first plan in a fresh JVM, mostly interpreted, which is what a driver's first refresh costs;
+// the 100 ms target for 500 stops is held against it, not just against the warmed-up runs.
+//   java -cp Packaged com.minilogistics.bench.RouteBench [stops]
+public class RouteBench {
+    public static void main(String[] args) {
+        int stopCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Random rnd = new Random(42);
+        Map<String, double[]> table = new HashMap<>();
+        List<DriverJob> jobs = new ArrayList<>();
+        int stops = 0;
+        for (int i = 1; stops < stopCount; i++) {
+            boolean carried = i % 10 == 0 || stops == stopCount - 1;
+            String pickup = "Pickup " + i, dropoff = "Dropoff " + i;
+            table.put(pickup.toLowerCase(), new double[] { 31.40 + rnd.nextDouble() * 0.27, 74.20 + rnd.nextDouble() * 0.32 });
+            table.put(dropoff.toLowerCase(), new double[] { 31.40 + rnd.nextDouble() * 0.27, 74.20 + rnd.nextDouble() * 0.32 });
+            jobs.add(new DriverJob(i, "Parcel " + i, pickup, dropoff, carried ? "In Transit" : "ASSIGNED", 10, null));
+            stops += carried ? 1 : 2;
+        }
+
+        long coldStart = System.nanoTime();
+        new RoutePlanner(table).plan(jobs); // what a driver sees on the first refresh
+        double cold = (System.nanoTime() - coldStart) / 1e6;
+        for (int i = 0; i < 20; i++) new RoutePlanner(table).plan(jobs); // warm-up
+        int runs = 20;
+        double[] ms = new double[runs];
+        RoutePlanner.Plan plan = null;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            plan = new RoutePlanner(table).plan(jobs);
+            ms[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(ms);
+        System.out.printf("stops=%d jobs=%d  nearest-neighbour=%.1f km improved=%.1f km  plan ms: cold=%.1f min=%.1f median=%.1f max=%.1f%n",
+                plan.stops.size(), jobs.size(), plan.nearestNeighbourKm, plan.km, cold, ms[0], ms[runs / 2], ms[runs - 1]);
+    }
+}
@@ -0,0 +1,411 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.model.DriverEntities.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Orders a driver's open stops into one route. Each ASSIGNED job is two stops, its pickup before its dropoff;
+// a job already picked up (Picked Up / In Transit) is just its dropoff. Places resolve to coordinates through
+// the local lookup table (locations.csv: "name,lat,lon" per line, # comments; names match case-insensitively).
+// The route starts at the open stop farthest from the middle of them all, is built nearest-neighbour first,
+// then improved by 2-opt (reversing a stretch that holds no whole job) and Or-opt (moving runs of 1-3 stops)
+// until neither helps or the time budget is spent. Distances are straight-line km from a matrix over the
+// distinct places, kept between plans so a refresh only computes rows for places it hasn't seen.
+// Jobs with a place missing from the table can't be placed; they follow the route in job order.
+// Settings: minilogistics.route.locations (locations.csv), .budgetMs (60)
+public class RoutePlanner {
+    static final long BUDGET_NS = Long.getLong("minilogistics.route.budgetMs", 60) * 1_000_000;
+    static final int MAX_CACHED_PLACES = 2048; // 16 MB of floats
+    static final double EARTH_KM = 6371.0088;
+
+    public static final class Stop {
+        public int jobId;
+        public boolean pickup;
+        public String place;
+        public boolean located;
+        Stop(int jobId, boolean pickup, String place, boolean located) {
+            this.jobId = jobId; this.pickup = pickup; this.place = place; this.located = located;
+        }
+    }
+
+    public static final class Plan {
+        public List<Stop> stops = new ArrayList<>();
+        public double km, nearestNeighbourKm; // over the located stops
+        public int unlocated; // stops at the end in job order
+        public long micros;
+    }
+
+    private static Map<String, double[]> shared;
+
+    // The table from minilogistics.route.locations, read once; empty (nothing located) if the file is missing
+    public static synchronized Map<String, double[]> locations() {
+        if (shared == null) {
+            Path file = Paths.get(System.getProperty("minilogistics.route.locations", "locations.csv"));
+            try {
+                shared = readLocations(file);
+            } catch (NoSuchFileException e) {
+                shared = new HashMap<>();
+            } catch (IOException e) {
+                e.printStackTrace();
+                shared = new HashMap<>();
+            }
+        }
+        return shared;
+    }
+
+    // Names may contain commas: the last two fields are the coordinates. Lines that don't parse (a header) are skipped.
+    public static Map<String, double[]> readLocations(Path file) throws IOException {
+        Map<String, double[]> out = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int lon = line.lastIndexOf(','), lat = lon < 0 ? -1 : line.lastIndexOf(',', lon - 1);
+            if (line.startsWith("#") || lat <= 0) continue;
+            try {
+                double la = Double.parseDouble(line.substring(lat + 1, lon).trim()), lo = Double.parseDouble(line.substring(lon + 1).trim());
+                String name = line.substring(0, lat).trim();
+                if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) name = name.substring(1, name.length() - 1);
+                out.put(key(name), new double[] { la, lo });
+            } catch (NumberFormatException e) {
+                // header or malformed line
+            }
+        }
+        return out;
+    }
+
+    // Trimmed, lower case, each run of whitespace as one space. By hand rather than replaceAll, which compiles
+    // its pattern on every call: two calls per job made that the largest part of a cold plan.
+    static String key(String place) {
+        if (place == null) return "";
+        String t = place.trim();
+        StringBuilder sb = new StringBuilder(t.length());
+        boolean gap = false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B) {
+                gap = true;
+                continue;
+            }
+            if (gap) sb.append(' ');
+            gap = false;
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private final Map<String, double[]> table;
+    // Distance cache: place key -> row, dist[row * cap + col] in km
+    private final Map<String, Integer> rows = new HashMap<>();
+    private double[] lat = new double[0], lon = new double[0], cosLat = new double[0]; // by row, radians
+    private float[] dist = new float[0];
+    private int cap;
+
+    public RoutePlanner() { this(locations()); }
+    public RoutePlanner(Map<String, double[]> table) { this.table = table; }
+
+    public synchronized Plan plan(List<DriverJob> jobs) { return plan(jobs, Map.of()); }
+
+    // overrides: statuses not yet on the server (the driver app's journal), by job ID
+    public synchronized Plan plan(List<DriverJob> jobs, Map<Integer, String> overrides) {
+        long start = System.nanoTime();
+        Plan plan = new Plan();
+        List<Stop> stops = new ArrayList<>();
+        List<Stop> rest = new ArrayList<>();
+        List<String> keys = new ArrayList<>(); // of stops
+        for (DriverJob j : jobs) {
+            String status = overrides.getOrDefault(j.id, j.status);
+            boolean open = "ASSIGNED".equalsIgnoreCase(status), carried = "Picked Up".equals(status) || "In Transit".equals(status);
+            if (!open && !carried) continue; // PENDING, COMPLETED, CANCELLED
+            String pk = open ? key(j.pickup) : null, dk = key(j.dropoff);
+            boolean located = (carried || table.containsKey(pk)) && table.containsKey(dk);
+            List<Stop> to = located ? stops : rest;
+            if (open) to.add(new Stop(j.id, true, j.pickup, located));
+            to.add(new Stop(j.id, false, j.dropoff, located));
+            if (located) {
+                if (open) keys.add(pk);
+                keys.add(dk);
+            }
+        }
+
+        int n = stops.size();
+        if (rows.size() + n > MAX_CACHED_PLACES) { // long-lived tab that has seen many places: start over
+            rows.clear();
+        }
+        int[] loc = new int[n], mate = new int[n];
+        for (int s = 0; s < n; s++) {
+            loc[s] = row(keys.get(s));
+            mate[s] = -1;
+            if (s > 0 && !stops.get(s).pickup && stops.get(s - 1).pickup && stops.get(s - 1).jobId == stops.get(s).jobId) {
+                mate[s] = s - 1;
+                mate[s - 1] = s;
+            }
+        }
+        if (n > 0) {
+            Route r = new Route(loc, mate, dist, cap, start + BUDGET_NS);
+            r.nearestNeighbour(farthestFromCentre(loc, mate));
+            plan.nearestNeighbourKm = r.length();
+            while (r.twoOpt() | r.orOpt()) {
+                if (r.outOfTime()) break;
+            }
+            plan.km = r.length();
+            for (int s : r.seq) plan.stops.add(stops.get(s));
+        }
+        plan.stops.addAll(rest);
+        plan.unlocated = rest.size();
+        plan.micros = (System.nanoTime() - start) / 1000;
+        return plan;
+    }
+
+    // A feasible first stop (a pickup, or the dropoff of a job already on board) on the edge of the area, so the
+    // route sweeps across it instead of starting in the middle and doubling back
+    private int farthestFromCentre(int[] loc, int[] mate) {
+        double cLat = 0, cLon = 0;
+        for (int l : loc) {
+            cLat += lat[l];
+            cLon += lon[l];
+        }
+        cLat /= loc.length;
+        cLon /= loc.length;
+        double cCos = Math.cos(cLat);
+        int best = -1;
+        double far = -1;
+        for (int s = 0; s < loc.length; s++) {
+            if (mate[s] >= 0 && mate[s] < s) continue; // dropoff of a job not yet picked up
+            double d = km(cLat, cLon, cCos, lat[loc[s]], lon[loc[s]], cosLat[loc[s]]);
+            if (d > far) {
+                far = d;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    // Matrix row for a located place's key, adding it (and its distances to every cached place) on first sight
+    private int row(String k) {
+        Integer r = rows.get(k);
+        if (r != null) return r;
+        int id = rows.size();
+        if (id >= cap) {
+            int next = Math.max(64, cap * 2);
+            float[] grown = new float[next * next];
+            for (int i = 0; i < id; i++) System.arraycopy(dist, i * cap, grown, i * next, id);
+            dist = grown;
+            cap = next;
+            lat = Arrays.copyOf(lat, next);
+            lon = Arrays.copyOf(lon, next);
+            cosLat = Arrays.copyOf(cosLat, next);
+        }
+        double[] c = table.get(k);
+        rows.put(k, id);
+        double la = lat[id] = Math.toRadians(c[0]), lo = lon[id] = Math.toRadians(c[1]), cl = cosLat[id] = Math.cos(la);
+        // km() written out: the first plan runs this loop mostly interpreted, where a call per pair costs more than the maths
+        for (int i = 0, at = id * cap, down = id; i < id; i++, down += cap) {
+            double x = (lon[i] - lo) * (cl + cosLat[i]) / 2, y = lat[i] - la;
+            float d = (float) (EARTH_KM * Math.sqrt(x * x + y * y));
+            dist[at + i] = d;
+            dist[down] = d;
+        }
+        dist[id * cap + id] = 0;
+        return id;
+    }
+
+    // Equirectangular distance between points in radians, given their cos(lat): within a city it matches the
+    // great-circle distance to a fraction of a percent, without any trigonometry per pair
+    static double km(double lat1, double lon1, double cos1, double lat2, double lon2, double cos2) {
+        double x = (lon2 - lon1) * (cos1 + cos2) / 2, y = lat2 - lat1;
+        return EARTH_KM * Math.sqrt(x * x + y * y);
+    }
+
+    // One open path over stops 0..n-1; mate[s] is the other stop of s's job or -1, pickups always before their dropoff.
+    // Moves are only tried where they create an edge to one of a stop's NEIGHBOURS nearest stops, which keeps a pass
+    // near-linear; a move between far-apart stops almost never shortens the route.
+    static final class Route {
+        static final int NEIGHBOURS = 12;
+        static final double EPS = 1e-6;
+        final int n;
+        final int[] loc, mate, seq, pos;
+        final int[][] near;
+        final boolean[] pickup;
+        final float[] dist;
+        final int cap;
+        final long deadline;
+
+        Route(int[] loc, int[] mate, float[] dist, int cap, long deadline) {
+            this.n = loc.length;
+            this.loc = loc;
+            this.mate = mate;
+            this.dist = dist;
+            this.cap = cap;
+            this.deadline = deadline;
+            seq = new int[n];
+            pos = new int[n];
+            pickup = new boolean[n];
+            for (int s = 0; s < n; s++) pickup[s] = mate[s] > s;
+            near = new int[n][];
+            int k = Math.min(NEIGHBOURS, n - 1);
+            double[] kd = new double[k];
+            for (int s = 0; s < n; s++) { // insertion into a sorted top-k; d() inlined, as in row()
+                int[] top = new int[k];
+                int size = 0, base = loc[s] * cap;
+                for (int t = 0; t < n; t++) {
+                    if (t == s) continue;
+                    double dt = dist[base + loc[t]];
+                    if (size == k && dt >= kd[k - 1]) continue;
+                    int at = size == k ? k - 1 : size++;
+                    while (at > 0 && kd[at - 1] > dt) {
+                        kd[at] = kd[at - 1];
+                        top[at] = top[at - 1];
+                        at--;
+                    }
+                    kd[at] = dt;
+                    top[at] = t;
+                }
+                near[s] = top;
+            }
+        }
+
+        // Distance between stops; -1 is the open end of the route
+        double d(int a, int b) { return a < 0 || b < 0 ? 0 : dist[loc[a] * cap + loc[b]]; }
+
+        int at(int p) { return p >= 0 && p < n ? seq[p] : -1; }
+
+        boolean outOfTime() { return System.nanoTime() > deadline; }
+
+        double length() {
+            double km = 0;
+            for (int i = 1; i < n; i++) km += d(seq[i - 1], seq[i]);
+            return km;
+        }
+
+        void nearestNeighbour(int first) {
+            boolean[] done = new boolean[n];
+            int cur = first;
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    cur = -1;
+                    double best = Double.MAX_VALUE;
+                    int base = loc[seq[i - 1]] * cap;
+                    for (int s = 0; s < n; s++) {
+                        if (done[s] || (!pickup[s] && mate[s] >= 0 && !done[mate[s]])) continue;
+                        double dd = dist[base + loc[s]];
+                        if (dd < best) {
+                            best = dd;
+                            cur = s;
+                        }
+                    }
+                }
+                done[cur] = true;
+                seq[i] = cur;
+                pos[cur] = i;
+            }
+        }
+
+        // Reverses a stretch seq[i..j] wherever that shortens the route, i.e. replaces edges (a, seq[i]) and
+        // (seq[j], b) by (a, seq[j]) and (seq[i], b). Tried from both ends of each edge towards its near stops.
+        boolean twoOpt() {
+            boolean improved = false;
+            for (int p = 0; p < n; p++) {
+                if ((p & 31) == 0 && outOfTime()) return improved;
+                int s = seq[p];
+                // (a, s) -> (a, c): reverse seq[p..pos[c]]
+                int a = at(p - 1);
+                for (int c : near[s]) {
+                    if (a >= 0 && d(a, c) >= d(a, s) - EPS) break;
+                    if (tryReverse(p, pos[c])) { improved = true; break; }
+                }
+                // (s, b) -> (c, b): reverse seq[pos[c]..p]
+                s = seq[p];
+                int b = at(p + 1);
+                for (int c : near[s]) {
+                    if (b >= 0 && d(c, b) >= d(s, b) - EPS) break;
+                    if (tryReverse(pos[c], p)) { improved = true; break; }
+                }
+            }
+            return improved;
+        }
+
+        private boolean tryReverse(int i, int j) {
+            if (j <= i) return false;
+            int a = at(i - 1), b = at(j + 1), si = seq[i], sj = seq[j];
+            if (d(a, sj) + d(si, b) - d(a, si) - d(sj, b) >= -EPS) return false;
+            for (int q = i; q <= j; q++) { // a stretch holding both stops of a job would put its dropoff first
+                int m = mate[seq[q]];
+                if (m >= 0 && pos[m] >= i && pos[m] <= j) return false;
+            }
+            for (int lo = i, hi = j; lo < hi; lo++, hi--) {
+                int t = seq[lo];
+                seq[lo] = seq[hi];
+                seq[hi] = t;
+            }
+            for (int q = i; q <= j; q++) pos[seq[q]] = q;
+            return true;
+        }
+
+        // Moves each run of 1-3 stops next to one of its near stops: after a stop near its first, or before a stop
+        // near its last. Forward only while no pickup in the run passes its dropoff, backward only while no
+        // dropoff passes its pickup.
+        boolean orOpt() {
+            boolean improved = false;
+            for (int k = 1; k <= 3; k++) {
+                for (int i = 0; i + k <= n; i++) {
+                    if ((i & 31) == 0 && outOfTime()) return improved;
+                    int last = i + k - 1, f = seq[i], l = seq[last];
+                    double gain = d(at(i - 1), f) + d(l, at(last + 1)) - d(at(i - 1), at(last + 1));
+                    if (gain < EPS) continue;
+                    int fwdLimit = n - 1, backLimit = -1; // insert after position p, p in [backLimit, i - 2] or [last + 1, fwdLimit]
+                    for (int q = i; q <= last; q++) {
+                        int s = seq[q];
+                        if (mate[s] < 0) continue;
+                        if (pickup[s]) fwdLimit = Math.min(fwdLimit, pos[mate[s]] - 1);
+                        else backLimit = Math.max(backLimit, pos[mate[s]]);
+                    }
+                    double best = -EPS;
+                    int to = Integer.MIN_VALUE;
+                    for (int side = 0; side < 2; side++) {
+                        for (int c : near[side == 0 ? f : l]) {
+                            int p = side == 0 ? pos[c] : pos[c] - 1;
+                            if (p >= i - 1 && p <= last) continue; // inside the run or where it already is
+                            if (p > last ? p > fwdLimit : p < backLimit) continue;
+                            int x = at(p), y = at(p + 1);
+                            double delta = d(x, f) + d(l, y) - d(x, y) - gain;
+                            if (delta < best) {
+                                best = delta;
+                                to = p;
+                            }
+                        }
+                    }
+                    if (to == Integer.MIN_VALUE) continue;
+                    move(i, k, to);
+                    improved = true;
+                }
+            }
+            return improved;
+        }
+
+        // Moves seq[i..i+k-1] to just after position to (its position before the move)
+        private void move(int i, int k, int to) {
+            int last = i + k - 1, from;
+            int[] run = Arrays.copyOfRange(seq, i, i + k);
+            if (to > last) {
+                System.arraycopy(seq, last + 1, seq, i, to - last);
+                System.arraycopy(run, 0, seq, to - k + 1, k);
+                from = i;
+            } else {
+                System.arraycopy(seq, to + 1, seq, to + 1 + k, i - to - 1);
+                System.arraycopy(run, 0, seq, to + 1, k);
+                from = to + 1;
+                to = last;
+            }
+            for (int q = from; q <= to; q++) pos[seq[q]] = q;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.minilogistics.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Query execution shared by both apps. Every statement is a PreparedStatement (served from the
+// pooled connection's statement cache) and every statement/ResultSet is closed before returning.
+// Each call is timed under Metrics.sql, with the rows it read or wrote.
+public final class Sql {
+    private Sql() {}
+
+    public interface RowMapper<T> { T map(ResultSet rs) throws SQLException; }
+    public interface RowHandler { void handle(ResultSet rs) throws SQLException; }
+
+    public static <T> List<T> list(Connection c, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> out = new ArrayList<>();
+        each(c, sql, rs -> out.add(mapper.map(rs)), params);
+        return out;
+    }
+
+    // First row mapped, or null when there is none
+    public static <T> T one(Connection c, String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            bind(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean found = rs.next();
+                m.rows(found ? 1 : 0);
+                return found ? mapper.map(rs) : null;
+            }
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    public static void each(Connection c, String sql, RowHandler handler, Object... params) throws SQLException {
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            bind(ps, params);
+            long n = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { handler.handle(rs); n++; }
+            }
+            m.rows(n);
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    public static int update(Connection c, String sql, Object... params) throws SQLException {
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            bind(ps, params);
+            int n = ps.executeUpdate();
+            m.rows(n);
+            return n;
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    // Runs an INSERT and returns the generated key
+    public static int insert(Connection c, String sql, Object... params) throws SQLException {
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            bind(ps, params);
+            m.rows(ps.executeUpdate());
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No generated key returned");
+                return keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    // One multi-row INSERT (prefix + " VALUES (?,..),(?,..)") instead of a round trip per row; returns the
+    // generated keys in row order
+    public static int[] insertRows(Connection c, String prefix, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) return new int[0];
+        String sql = values(prefix, rows);
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            bind(ps, flatten(rows));
+            m.rows(ps.executeUpdate());
+            int[] ids = new int[rows.size()];
+            int n = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (keys.next() && n < ids.length) ids[n++] = keys.getInt(1);
+            }
+            if (n != ids.length) throw new SQLException("Expected " + ids.length + " generated keys, got " + n);
+            return ids;
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    // Multi-row INSERT into a table without generated keys; returns the rows written
+    public static int insertAll(Connection c, String prefix, List<Object[]> rows) throws SQLException {
+        return rows.isEmpty() ? 0 : update(c, values(prefix, rows), flatten(rows));
+    }
+
+    private static String values(String prefix, List<Object[]> rows) {
+        StringBuilder sql = new StringBuilder(prefix).append(" VALUES ");
+        String group = placeholders(rows.get(0).length);
+        for (int i = 0; i < rows.size(); i++) sql.append(i == 0 ? "" : ",").append(group);
+        return sql.toString();
+    }
+
+    private static Object[] flatten(List<Object[]> rows) {
+        Object[] params = new Object[rows.size() * rows.get(0).length];
+        int p = 0;
+        for (Object[] row : rows) for (Object v : row) params[p++] = v;
+        return params;
+    }
+
+    public static int[] batch(Connection c, String sql, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) return new int[0];
+        Metrics.Span m = Metrics.sql(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                bind(ps, row);
+                ps.addBatch();
+            }
+            m.rows(rows.size());
+            return ps.executeBatch();
+        } catch (SQLException e) {
+            m.fail(e);
+            throw e;
+        } finally {
+            m.close();
+        }
+    }
+
+    // prefix + "(?,?,...)" over ids in chunks of 1000 so large sets don't exceed placeholder limits
+    public static void eachIn(Connection c, String prefix, Collection<Integer> ids, RowHandler handler) throws SQLException {
+        eachIn(c, prefix, ids, "", handler);
+    }
+
+    // Same, with a tail after the list, e.g. " FOR UPDATE"
+    public static void eachIn(Connection c, String prefix, Collection<Integer> ids, String suffix, RowHandler handler) throws SQLException {
+        List<Integer> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += 1000) {
+            List<Integer> chunk = all.subList(from, Math.min(all.size(), from + 1000));
+            each(c, prefix + placeholders(chunk.size()) + suffix, handler, chunk.toArray());
+        }
+    }
+
+    public static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 2 + 1).append('(');
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ",?");
+        return sb.append(')').toString();
+    }
+
+    public static void bind(PreparedStatement ps, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object p = params[i];
+            if (p instanceof LocalDateTime) ps.setTimestamp(i + 1, Timestamp.valueOf((LocalDateTime) p));
+            else ps.setObject(i + 1, p);
+        }
+    }
+}
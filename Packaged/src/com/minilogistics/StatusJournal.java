@@ -0,0 +1,234 @@
+package com.minilogistics.controller;
+
+import com.minilogistics.db.Repositories.StatusUpdate;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Write-ahead journal for the driver app's status changes. submit() appends the change to a local file
+// and syncs it to disk before returning, so the view can show it straight away and nothing is lost when
+// the app, the network or the database goes down. A background thread replays pending entries in order,
+// in batches, through DriverAppController.syncStatus. Every entry carries a random idempotency key, so a
+// batch that was applied but never acknowledged is safe to send again (migrations/V7__status_requests.sql).
+// Refused changes (job reassigned or closed meanwhile, or a permanent database error) go to the listener
+// and leave the journal like any other acknowledged entry; acknowledged entries are compacted away once
+// enough pile up or none are pending.
+// One line per record: crc32, then "P key jobId at status" (pending) or "A key result" (acknowledged), fields
+// URL-encoded. Replay of the file stops at the first torn or corrupt line.
+// Settings: minilogistics.journal.dir (journal), .batch (50), .compactAfter (256), .retryMaxMs (30000)
+public class StatusJournal implements AutoCloseable {
+    static final int BATCH = Integer.getInteger("minilogistics.journal.batch", 50);
+    static final int COMPACT_AFTER = Integer.getInteger("minilogistics.journal.compactAfter", 256);
+    static final long RETRY_MIN_MS = 500, RETRY_MAX_MS = Long.getLong("minilogistics.journal.retryMaxMs", 30000L);
+
+    public interface Listener {
+        // A queued change the server refused ("Conflict: ...") or couldn't apply ("Error: ...")
+        void conflict(int deliveryId, String status, String reason);
+        // After each acknowledged batch, with how many entries are still waiting
+        void synced(int pending);
+    }
+
+    private final Path file;
+    private final DriverAppController ctrl;
+    private final Listener listener;
+    private final Map<String, StatusUpdate> pending = new LinkedHashMap<>(); // submission order
+    private final ScheduledExecutorService worker;
+    private FileChannel ch;
+    private int acked; // acknowledged entries still in the file
+    private long retryMs = RETRY_MIN_MS;
+    private boolean scheduled, closed;
+
+    // One journal per driver, so entries left by an earlier session replay on the next login
+    public static StatusJournal open(DriverAppController ctrl, int driverId, Listener listener) throws IOException {
+        Path dir = Paths.get(System.getProperty("minilogistics.journal.dir", "journal"));
+        Files.createDirectories(dir);
+        return new StatusJournal(dir.resolve("driver-" + driverId + ".journal"), ctrl, listener);
+    }
+
+    public StatusJournal(Path file, DriverAppController ctrl, Listener listener) throws IOException {
+        this.file = file;
+        this.ctrl = ctrl;
+        this.listener = listener;
+        boolean torn = Files.exists(file) && load();
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "status-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        synchronized (this) {
+            if (torn || acked > 0) compact(); // also drops a torn tail before anything is appended after it
+            kick(0);
+        }
+    }
+
+    // Durable once this returns; the returned entry is what will be replayed
+    public synchronized StatusUpdate submit(int deliveryId, String status) throws IOException {
+        if (closed) throw new IOException("Journal closed");
+        StatusUpdate u = new StatusUpdate(UUID.randomUUID().toString(), deliveryId, status, System.currentTimeMillis());
+        append("P " + u.key + " " + u.deliveryId + " " + u.at + " " + enc(u.status), true);
+        pending.put(u.key, u);
+        kick(0);
+        return u;
+    }
+
+    // Latest queued status per job, for showing changes the server hasn't seen yet
+    public synchronized Map<Integer, String> pendingStatuses() {
+        Map<Integer, String> out = new LinkedHashMap<>();
+        for (StatusUpdate u : pending.values()) out.put(u.deliveryId, u.status);
+        return out;
+    }
+
+    public synchronized int pendingCount() { return pending.size(); }
+
+    // Stops replaying; whatever is still pending stays on disk for the next session
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        worker.shutdown();
+        try {
+            synchronized (this) { ch.close(); }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void kick(long delayMs) { // caller holds the lock
+        if (scheduled || closed || pending.isEmpty()) return;
+        scheduled = true;
+        worker.schedule(this::replay, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void replay() {
+        List<StatusUpdate> batch = new ArrayList<>(BATCH);
+        synchronized (this) {
+            scheduled = false;
+            for (StatusUpdate u : pending.values()) {
+                if (batch.size() == BATCH) break;
+                batch.add(u);
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        List<String> results;
+        try {
+            results = ctrl.syncStatus(batch);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            results = null;
+        }
+
+        List<Integer> refused = new ArrayList<>();
+        int left;
+        synchronized (this) {
+            if (results == null || results.size() != batch.size()) {
+                // Unreachable or a transient failure: keep everything and back off, doubling up to the cap
+                long wait = retryMs;
+                retryMs = Math.min(retryMs * 2, RETRY_MAX_MS);
+                kick(wait);
+                return;
+            }
+            retryMs = RETRY_MIN_MS;
+            if (closed) return; // the server has them; the next session's replay gets the same answers back
+            try {
+                // Not synced: a lost acknowledgement only means the server sees the key again
+                StringBuilder acks = new StringBuilder();
+                for (int i = 0; i < batch.size(); i++) acks.append(line("A " + batch.get(i).key + " " + enc(results.get(i))));
+                ch.write(ByteBuffer.wrap(acks.toString().getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                pending.remove(batch.get(i).key);
+                if (!"Success".equals(results.get(i))) refused.add(i);
+            }
+            acked += batch.size();
+            if (acked >= COMPACT_AFTER || pending.isEmpty()) compact();
+            kick(0);
+            left = pending.size();
+        }
+        for (int i : refused) listener.conflict(batch.get(i).deliveryId, batch.get(i).status, results.get(i));
+        listener.synced(left);
+    }
+
+    // Rewrites the file with only the pending entries (caller holds the lock). The copy is synced and
+    // moved over the old file atomically, so a crash leaves either the old journal or the new one.
+    private void compact() {
+        try {
+            if (pending.isEmpty()) {
+                ch.truncate(0);
+                ch.force(false);
+            } else {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                StringBuilder sb = new StringBuilder();
+                for (StatusUpdate u : pending.values()) sb.append(line("P " + u.key + " " + u.deliveryId + " " + u.at + " " + enc(u.status)));
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    out.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+                    out.force(false);
+                }
+                ch.close();
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            acked = 0;
+        } catch (IOException e) {
+            e.printStackTrace(); // the uncompacted file is still a valid journal
+        }
+    }
+
+    private void append(String record, boolean sync) throws IOException {
+        ch.write(ByteBuffer.wrap(line(record).getBytes(StandardCharsets.UTF_8)));
+        if (sync) ch.force(false);
+    }
+
+    private static String line(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x %s%n", crc.getValue(), record);
+    }
+
+    // Returns true when the file ended in a torn or corrupt line
+    private boolean load() throws IOException {
+        for (String l : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (l.length() < 10 || l.charAt(8) != ' ') return true;
+            String record = l.substring(9);
+            CRC32 crc = new CRC32();
+            crc.update(record.getBytes(StandardCharsets.UTF_8));
+            if (!l.startsWith(String.format("%08x", crc.getValue()))) return true;
+            String[] f = record.split(" ");
+            if (f[0].equals("P") && f.length == 5) {
+                pending.put(f[1], new StatusUpdate(f[1], Integer.parseInt(f[2]), dec(f[4]), Long.parseLong(f[3])));
+            } else if (f[0].equals("A") && f.length >= 2) {
+                pending.remove(f[1]);
+                acked++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String enc(String s) { return URLEncoder.encode(s, StandardCharsets.UTF_8); }
+    private static String dec(String s) { return URLDecoder.decode(s, StandardCharsets.UTF_8); }
+}
@@ -0,0 +1,41 @@
+-- complete_delivery as of V6, but a CANCELLED job is no longer completed: it used to skip only
+-- COMPLETED rows, so completing a cancelled job credited its fee. The same rule as a replayed
+-- COMPLETED from the offline journal (Repositories.statusConflict). V5 and V6 stay as they were
+-- first applied; this script replaces the procedure on every database, fresh or upgraded.
+USE logistics_db;
+
+DROP PROCEDURE IF EXISTS complete_delivery;
+
+DELIMITER //
+CREATE PROCEDURE complete_delivery(IN p_delivery INT, IN p_driver INT, OUT p_credited TINYINT, OUT p_earnings DOUBLE)
+BEGIN
+    DECLARE v_found INT DEFAULT 0;
+    DECLARE v_fee DOUBLE DEFAULT 0;
+    DECLARE v_now DATETIME DEFAULT NOW();
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    SET p_credited = 0;
+    START TRANSACTION;
+    SELECT 1, COALESCE(fee, 0) INTO v_found, v_fee FROM deliveries
+        WHERE delivery_id = p_delivery AND assigned_driver_id = p_driver AND status NOT IN ('COMPLETED', 'CANCELLED')
+        FOR UPDATE;
+    IF v_found = 1 THEN
+        UPDATE deliveries SET status = 'COMPLETED' WHERE delivery_id = p_delivery;
+        INSERT INTO earnings_ledger (driver_id, delivery_id, kind, amount, created_at) VALUES (p_driver, p_delivery, 'FEE', v_fee, v_now);
+        INSERT INTO earnings_daily (driver_id, day, total, jobs) VALUES (p_driver, DATE(v_now), v_fee, 1)
+            ON DUPLICATE KEY UPDATE total = total + v_fee, jobs = jobs + 1;
+        INSERT INTO earnings_total (driver_id, total, jobs) VALUES (p_driver, v_fee, 1)
+            ON DUPLICATE KEY UPDATE total = total + v_fee, jobs = jobs + 1;
+        INSERT INTO change_log (table_name, row_id, op) VALUES ('deliveries', p_delivery, 'U'), ('drivers', p_driver, 'U');
+        SET p_credited = 1;
+    END IF;
+    SELECT COALESCE(MAX(total), 0) INTO p_earnings FROM earnings_total WHERE driver_id = p_driver;
+    COMMIT;
+END //
+DELIMITER ;
+
+INSERT INTO schema_version (version) VALUES (10);
@@ -0,0 +1,12 @@
+-- ingest_checkpoints keyed on a SHA-256 of the source path instead of the path itself: V9's
+-- VARCHAR(255) primary key could not hold a deep absolute path, and widening it far enough would
+-- exceed InnoDB's 3072-byte index limit. The path stays in the table, now up to 4096 characters.
+USE logistics_db;
+
+ALTER TABLE ingest_checkpoints
+    MODIFY source VARCHAR(4096) NOT NULL,
+    ADD COLUMN source_hash BINARY(32) AS (UNHEX(SHA2(source, 256))) STORED NOT NULL FIRST,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (source_hash);
+
+INSERT INTO schema_version (version) VALUES (11);
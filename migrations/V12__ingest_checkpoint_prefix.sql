@@ -0,0 +1,9 @@
+-- Fingerprint of the file a checkpoint belongs to (controller/DeliveryIngest.prefixHash): a hash of the
+-- bytes already loaded, up to the first 64 KB. A different file saved under the same path no longer
+-- resumes at the old offset; it is loaded from the top. 0 (checkpoints from before this script) matches any file.
+USE logistics_db;
+
+ALTER TABLE ingest_checkpoints
+    ADD COLUMN prefix_hash BIGINT NOT NULL DEFAULT 0 AFTER rows_loaded;
+
+INSERT INTO schema_version (version) VALUES (12);
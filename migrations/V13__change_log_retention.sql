@@ -0,0 +1,8 @@
+-- change_log is now pruned (db/ChangeLog.prune: entries older than minilogistics.changes.retentionMin
+-- plus the settle window), and every reader scans it by primary-key range across all tables, so the
+-- per-table index is dead weight on each insert.
+USE logistics_db;
+
+ALTER TABLE change_log DROP INDEX idx_change_table;
+
+INSERT INTO schema_version (version) VALUES (13);
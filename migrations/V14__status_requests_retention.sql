@@ -0,0 +1,8 @@
+-- status_requests is now pruned (controller/DriverAppController.pruneRequests): keys applied more than
+-- minilogistics.statusRequests.retentionDays (30) plus one day ago are deleted, and journal entries queued
+-- before that window are refused rather than replayed. The index lets the delete find old rows by time.
+USE logistics_db;
+
+CREATE INDEX idx_status_requests_applied ON status_requests (applied_at);
+
+INSERT INTO schema_version (version) VALUES (14);
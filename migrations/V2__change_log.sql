@@ -0,0 +1,13 @@
+-- Change tracking for the auto-refreshing admin panels.
+-- Controller write paths append one row per touched entity; panels poll
+-- "change_id > last seen" per table instead of re-reading whole tables.
+USE logistics_db;
+
+CREATE TABLE IF NOT EXISTS change_log (
+    change_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(30) NOT NULL,
+    row_id INT NOT NULL,
+    op CHAR(1) NOT NULL, -- I = insert, U = update, D = delete
+    changed_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_change_table (table_name, change_id)
+);
@@ -0,0 +1,18 @@
+-- Indexes for the per-driver active-job count and the deliveries/assignments join.
+USE logistics_db;
+
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INT PRIMARY KEY,
+    applied_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+INSERT IGNORE INTO schema_version (version) VALUES (2);
+
+-- getDrivers groups active deliveries by driver and updateDriverStatus counts one
+-- driver's active deliveries; both become index range scans instead of full scans.
+CREATE INDEX idx_deliveries_driver_status ON deliveries (assigned_driver_id, status);
+
+-- getDeliveries LEFT JOINs assignments on delivery_id. InnoDB only had the implicit
+-- foreign-key index; naming it keeps the plan stable across environments.
+CREATE INDEX idx_assignments_delivery ON assignments (delivery_id);
+
+INSERT INTO schema_version (version) VALUES (3);
@@ -0,0 +1,7 @@
+-- Lets the paged deliveries listing filter by status and still walk delivery_id in order
+-- (InnoDB secondary indexes carry the primary key, so this is effectively (status, delivery_id)).
+USE logistics_db;
+
+CREATE INDEX idx_deliveries_status ON deliveries (status);
+
+INSERT INTO schema_version (version) VALUES (4);
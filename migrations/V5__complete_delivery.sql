@@ -0,0 +1,37 @@
+-- One-round-trip, idempotent job completion for DriverAppController.completeJob.
+-- Marks the delivery COMPLETED, credits its fee to the assigned driver, records both rows in
+-- change_log and returns the new balance, all in one transaction. The delivery row is locked
+-- first, so a second (or concurrent) COMPLETED for the same job finds it already completed and
+-- credits nothing. p_credited is 1 only for the call that actually completed the job.
+USE logistics_db;
+
+DROP PROCEDURE IF EXISTS complete_delivery;
+
+DELIMITER //
+CREATE PROCEDURE complete_delivery(IN p_delivery INT, IN p_driver INT, OUT p_credited TINYINT, OUT p_earnings DOUBLE)
+BEGIN
+    DECLARE v_found INT DEFAULT 0;
+    DECLARE v_fee DOUBLE DEFAULT 0;
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    SET p_credited = 0;
+    START TRANSACTION;
+    SELECT 1, COALESCE(fee, 0) INTO v_found, v_fee FROM deliveries
+        WHERE delivery_id = p_delivery AND assigned_driver_id = p_driver AND status <> 'COMPLETED'
+        FOR UPDATE;
+    IF v_found = 1 THEN
+        UPDATE deliveries SET status = 'COMPLETED' WHERE delivery_id = p_delivery;
+        UPDATE drivers SET earnings = earnings + v_fee WHERE user_id = p_driver;
+        INSERT INTO change_log (table_name, row_id, op) VALUES ('deliveries', p_delivery, 'U'), ('drivers', p_driver, 'U');
+        SET p_credited = 1;
+    END IF;
+    SELECT earnings INTO p_earnings FROM drivers WHERE user_id = p_driver;
+    COMMIT;
+END //
+DELIMITER ;
+
+INSERT INTO schema_version (version) VALUES (5);
@@ -0,0 +1,75 @@
+-- Append-only earnings ledger with per-driver daily and lifetime rollups.
+-- complete_delivery now appends one FEE entry per completed delivery (the unique key on delivery_id
+-- backs up its idempotency) and bumps both rollups in the same transaction instead of doing a
+-- read-modify-write on drivers.earnings. Balances are read from earnings_total in O(1);
+-- AdminPortalController.reconcileEarnings checks the rollups against the ledger.
+-- drivers.earnings is no longer maintained: its value at migration time becomes an OPENING entry.
+USE logistics_db;
+
+CREATE TABLE IF NOT EXISTS earnings_ledger (
+    entry_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    driver_id INT NOT NULL,
+    delivery_id INT NULL,
+    kind VARCHAR(10) NOT NULL DEFAULT 'FEE', -- FEE = completed delivery, OPENING = balance carried over
+    amount DOUBLE NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uq_ledger_delivery (delivery_id),
+    INDEX idx_ledger_driver (driver_id, created_at)
+);
+
+-- FEE entries only, by the day they were earned
+CREATE TABLE IF NOT EXISTS earnings_daily (
+    driver_id INT NOT NULL,
+    day DATE NOT NULL,
+    total DOUBLE NOT NULL DEFAULT 0,
+    jobs INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (driver_id, day)
+);
+
+-- Every ledger entry; jobs counts FEE entries
+CREATE TABLE IF NOT EXISTS earnings_total (
+    driver_id INT PRIMARY KEY,
+    total DOUBLE NOT NULL DEFAULT 0,
+    jobs INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO earnings_ledger (driver_id, delivery_id, kind, amount)
+    SELECT user_id, NULL, 'OPENING', earnings FROM drivers WHERE earnings <> 0;
+INSERT INTO earnings_total (driver_id, total, jobs)
+    SELECT driver_id, SUM(amount), 0 FROM earnings_ledger GROUP BY driver_id;
+
+DROP PROCEDURE IF EXISTS complete_delivery;
+
+DELIMITER //
+CREATE PROCEDURE complete_delivery(IN p_delivery INT, IN p_driver INT, OUT p_credited TINYINT, OUT p_earnings DOUBLE)
+BEGIN
+    DECLARE v_found INT DEFAULT 0;
+    DECLARE v_fee DOUBLE DEFAULT 0;
+    DECLARE v_now DATETIME DEFAULT NOW();
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    SET p_credited = 0;
+    START TRANSACTION;
+    SELECT 1, COALESCE(fee, 0) INTO v_found, v_fee FROM deliveries
+        WHERE delivery_id = p_delivery AND assigned_driver_id = p_driver AND status <> 'COMPLETED'
+        FOR UPDATE;
+    IF v_found = 1 THEN
+        UPDATE deliveries SET status = 'COMPLETED' WHERE delivery_id = p_delivery;
+        INSERT INTO earnings_ledger (driver_id, delivery_id, kind, amount, created_at) VALUES (p_driver, p_delivery, 'FEE', v_fee, v_now);
+        INSERT INTO earnings_daily (driver_id, day, total, jobs) VALUES (p_driver, DATE(v_now), v_fee, 1)
+            ON DUPLICATE KEY UPDATE total = total + v_fee, jobs = jobs + 1;
+        INSERT INTO earnings_total (driver_id, total, jobs) VALUES (p_driver, v_fee, 1)
+            ON DUPLICATE KEY UPDATE total = total + v_fee, jobs = jobs + 1;
+        INSERT INTO change_log (table_name, row_id, op) VALUES ('deliveries', p_delivery, 'U'), ('drivers', p_driver, 'U');
+        SET p_credited = 1;
+    END IF;
+    SELECT COALESCE(MAX(total), 0) INTO p_earnings FROM earnings_total WHERE driver_id = p_driver;
+    COMMIT;
+END //
+DELIMITER ;
+
+INSERT INTO schema_version (version) VALUES (6);
@@ -0,0 +1,17 @@
+-- Idempotency keys for driver status changes replayed from the driver app's offline journal
+-- (controller/StatusJournal). Each queued change carries a client-generated key; the first replay
+-- records its result here in the same transaction as the update, and any later replay of that key
+-- (lost acknowledgement, crash before compaction) gets the recorded result back without re-applying.
+USE logistics_db;
+
+CREATE TABLE IF NOT EXISTS status_requests (
+    request_key CHAR(36) PRIMARY KEY,
+    driver_id INT NOT NULL,
+    delivery_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    result VARCHAR(100) NOT NULL,          -- Success or Conflict: ...
+    queued_at DATETIME NULL,               -- when the driver made the change on the device
+    applied_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO schema_version (version) VALUES (7);
@@ -0,0 +1,21 @@
+-- Day-partitioned audit_logs (db/AuditArchive). Partitioning needs the partition column in every
+-- unique key, so the primary key becomes (log_id, timestamp); log_id stays AUTO_INCREMENT and unique
+-- in practice. Everything starts in the catch-all p_future partition: AuditArchive's maintenance
+-- splits it into daily partitions pYYYYMMDD (rows before that day) on its first run, keeps a week
+-- of empty ones ahead, and rolls partitions older than the retention window into compressed segment
+-- files before dropping them, so the table only ever holds the retention window.
+USE logistics_db;
+
+UPDATE audit_logs SET timestamp = CURRENT_TIMESTAMP WHERE timestamp IS NULL;
+
+ALTER TABLE audit_logs
+    MODIFY timestamp DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (log_id, timestamp),
+    ADD INDEX idx_audit_time (timestamp);
+
+ALTER TABLE audit_logs PARTITION BY RANGE (TO_DAYS(timestamp)) (
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+INSERT INTO schema_version (version) VALUES (8);
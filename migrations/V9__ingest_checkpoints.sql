@@ -0,0 +1,13 @@
+-- Resume points for the delivery ingest pipeline (controller/DeliveryIngest). Each committed batch of
+-- deliveries moves its file's checkpoint in the same transaction, so after a crash or cancel the next
+-- run starts at exactly the first byte that was not loaded.
+USE logistics_db;
+
+CREATE TABLE IF NOT EXISTS ingest_checkpoints (
+    source VARCHAR(255) PRIMARY KEY,        -- absolute path of the ingested file
+    byte_offset BIGINT NOT NULL,            -- everything before this offset is loaded
+    rows_loaded BIGINT NOT NULL,
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+INSERT INTO schema_version (version) VALUES (9);